@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import com.vmware.loginsightapi.core.FieldConstraint;
 import com.vmware.loginsightapi.core.GroupBy;
 import com.vmware.loginsightapi.core.GroupByDynamicBinWidth;
 import com.vmware.loginsightapi.core.GroupByFixedBinWidth;
@@ -333,6 +334,74 @@ public class AggregateQueryBuilder extends QueryBuilder {
 		return this;
 	}
 
+	/**
+	 * Aggregate function of the query
+	 * 
+	 * @return AggregationFunction
+	 */
+	AggregationFunction getAggregationFunction() {
+		return aggregationFunction;
+	}
+
+	/**
+	 * Field aggregated by the query
+	 * 
+	 * @return field name, null for COUNT and SAMPLE
+	 */
+	String getAggregationField() {
+		return aggregationField;
+	}
+
+	/**
+	 * Width of the time bins of the query
+	 * 
+	 * @return bin width in milliseconds
+	 */
+	int getBinWidth() {
+		return binWidth;
+	}
+
+	/**
+	 * Whether the query has group-by or order-by clauses
+	 * 
+	 * @return true if the bins are grouped or ordered by a field
+	 */
+	boolean hasGroupByOrOrderBy() {
+		return (groupBy != null && !groupBy.isEmpty()) || (orderBys != null && !orderBys.isEmpty());
+	}
+
+	/**
+	 * Copy of this query for one partial aggregate of one time slice of an
+	 * AggregateQueryFanOut
+	 * 
+	 * @param function
+	 *            aggregate function of the partial query
+	 * @param boundaries
+	 *            additional constraints of the partial query, null ones are
+	 *            ignored
+	 * @return AggregateQueryBuilder of the partial query
+	 */
+	AggregateQueryBuilder partial(AggregationFunction function, FieldConstraint... boundaries) {
+		AggregateQueryBuilder partial = new AggregateQueryBuilder();
+		partial.constraints.addAll(constraints);
+		for (FieldConstraint boundary : boundaries) {
+			if (boundary != null) {
+				partial.constraints.add(boundary);
+			}
+		}
+		partial.contentPackFields.addAll(contentPackFields);
+		partial.limit = limit;
+		partial.timeout = timeout;
+		partial.includeDefaults = includeDefaults;
+		partial.binWidth = binWidth;
+		partial.aggregationFunction = function;
+		partial.aggregationField = function == AggregationFunction.COUNT || function == AggregationFunction.SAMPLE
+				? null : aggregationField;
+		partial.groupBy.addAll(groupBy);
+		partial.orderBys.addAll(orderBys);
+		return partial;
+	}
+
 	/**
 	 * Builds Url parameters for aggregate query
 	 * 
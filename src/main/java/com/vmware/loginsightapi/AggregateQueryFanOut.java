@@ -0,0 +1,428 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import com.vmware.loginsightapi.AggregateQueryBuilder.AggregationFunction;
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.AggregateSeries;
+import com.vmware.loginsightapi.core.FieldConstraint;
+
+/**
+ * Runs an aggregate query over a long time range as several concurrent
+ * queries on time slices of the range. <br>
+ *
+ * A bin may straddle two slices, and the final AVG, STDEV or VARIANCE of its
+ * two halves cannot be combined. The query is therefore rewritten into
+ * partial aggregates which merge exactly: COUNT, SUM, MIN and MAX are queried
+ * as such, AVG as the COUNT of the events having the field and the SUM,
+ * STDEV and VARIANCE as the COUNT, SUM and VARIANCE, from which the sum of
+ * squares of each bin is derived. The partials of the bins with the same
+ * minimum timestamp are merged and the final value computed from the merged
+ * partials. The server variance is taken as the sample variance (n - 1
+ * denominator). <br>
+ *
+ * The range is cut into {@code slices} slices of equal width, at multiples of
+ * the bin width from its start, and at most {@code parallelism} partial
+ * queries run at once. The bins are returned in increasing timestamp order,
+ * up to the limit of the query. UCOUNT and SAMPLE, the queries with group-by
+ * or order-by clauses, whose bins cannot be matched, and the queries without
+ * a lower timestamp bound are sent as is.
+ *
+ * <pre>
+ * AggregateQueryBuilder query = RequestBuilders.aggreateQuery().average("response_time").binWidth(3600000);
+ * query.setConstraints(RequestBuilders.constraint().ge("timestamp", from).lt("timestamp", to).build());
+ * AggregateResponse response = new AggregateQueryFanOut(client).query(query);
+ * </pre>
+ */
+public class AggregateQueryFanOut {
+
+	private static final String TIMESTAMP = "timestamp";
+
+	private final LogInsightClient client;
+	private final int slices;
+	private final int parallelism;
+
+	/**
+	 * Constructs the fan-out with the slices and parallelism of the client
+	 * configuration
+	 *
+	 * @param client
+	 *            LogInsight client
+	 */
+	public AggregateQueryFanOut(LogInsightClient client) {
+		this(client, client.getConfiguration().getQueryFanOutSlices(),
+				client.getConfiguration().getQueryFanOutParallelism());
+	}
+
+	/**
+	 * Constructs the fan-out
+	 *
+	 * @param client
+	 *            LogInsight client
+	 * @param slices
+	 *            number of time slices of a query
+	 * @param parallelism
+	 *            maximum number of partial queries running concurrently
+	 */
+	public AggregateQueryFanOut(LogInsightClient client, int slices, int parallelism) {
+		if (slices <= 0 || parallelism <= 0) {
+			throw new IllegalArgumentException("Invalid slices or parallelism");
+		}
+		this.client = client;
+		this.slices = slices;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Performs the aggregate query on time slices and waits for the merged
+	 * bins
+	 *
+	 * @param query
+	 *            aggregate query
+	 * @return AggregateResponse with the merged bins
+	 * @throws LogInsightApiException
+	 *             if a partial query fails
+	 */
+	public AggregateResponse query(AggregateQueryBuilder query) throws LogInsightApiException {
+		try {
+			return queryAsync(query).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LogInsightApiException("Aggregation query interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new LogInsightApiException("Aggregation query failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Performs the aggregate query on time slices without blocking the calling
+	 * thread. Cancelling the future cancels the running partial queries.
+	 *
+	 * @param query
+	 *            aggregate query
+	 * @return future of the AggregateResponse. Completes exceptionally with
+	 *         {@code LogInsightApiException} or {@code AuthFailure}
+	 */
+	public CompletableFuture<AggregateResponse> queryAsync(AggregateQueryBuilder query) {
+		List<AggregationFunction> partials = partials(query);
+		long[] range = MessageQueryFanOut.timeRange(query);
+		List<Long> cuts = range == null || partials == null ? Collections.<Long> emptyList()
+				: cuts(range[0], range[1], query.getBinWidth());
+		if (cuts.isEmpty()) {
+			return client.aggregateQueryAsync(query.toUrlString());
+		}
+		CompletableFuture<AggregateResponse> result = new CompletableFuture<AggregateResponse>();
+		new Execution(query, partials, cuts, result).launch();
+		return result;
+	}
+
+	/**
+	 * Aggregate functions of the partial queries of a query
+	 *
+	 * @return partial functions, null if the query cannot be merged
+	 */
+	static List<AggregationFunction> partials(AggregateQueryBuilder query) {
+		if (query.hasGroupByOrOrderBy()) {
+			return null;
+		}
+		switch (query.getAggregationFunction()) {
+		case COUNT:
+		case SUM:
+		case MIN:
+		case MAX:
+			return Collections.singletonList(query.getAggregationFunction());
+		case AVG:
+			return Arrays.asList(AggregationFunction.COUNT, AggregationFunction.SUM);
+		case STDEV:
+		case VARIANCE:
+			return Arrays.asList(AggregationFunction.COUNT, AggregationFunction.SUM, AggregationFunction.VARIANCE);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Cuts between the slices at multiples of the bin width from the start of
+	 * the range, so that the bins of the slices line up
+	 */
+	private List<Long> cuts(long from, long to, int binWidth) {
+		List<Long> cuts = new ArrayList<Long>();
+		long width = Math.max(binWidth, 1);
+		long bins = (to - from + width - 1) / width;
+		for (int i = 1; i < slices; i++) {
+			long cut = from + bins * i / slices * width;
+			if (cut > from && cut < to && (cuts.isEmpty() || cut > cuts.get(cuts.size() - 1))) {
+				cuts.add(cut);
+			}
+		}
+		return cuts;
+	}
+
+	/**
+	 * Partial aggregate of a bin, merged across the slices
+	 */
+	static final class Partial {
+		long minTimestamp = Long.MAX_VALUE;
+		long maxTimestamp = Long.MIN_VALUE;
+		long count;
+		double sum;
+		double sumOfSquares;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		boolean hasValue;
+
+		void bounds(AggregateSeries bins, int index) {
+			minTimestamp = Math.min(minTimestamp, bins.getMinTimestamp(index));
+			if (bins.hasMaxTimestamp(index)) {
+				maxTimestamp = Math.max(maxTimestamp, bins.getMaxTimestamp(index));
+			}
+		}
+
+		void merge(Partial other) {
+			minTimestamp = Math.min(minTimestamp, other.minTimestamp);
+			maxTimestamp = Math.max(maxTimestamp, other.maxTimestamp);
+			count += other.count;
+			sum += other.sum;
+			sumOfSquares += other.sumOfSquares;
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+			hasValue |= other.hasValue;
+		}
+
+		/**
+		 * Final value of the aggregate function
+		 *
+		 * @return value, null if undefined for the bin
+		 */
+		Long value(AggregationFunction function) {
+			switch (function) {
+			case COUNT:
+				return count;
+			case SUM:
+				return hasValue ? Math.round(sum) : null;
+			case MIN:
+				return hasValue ? min : null;
+			case MAX:
+				return hasValue ? max : null;
+			case AVG:
+				return count > 0 ? Math.round(sum / count) : null;
+			case VARIANCE:
+				return count > 0 ? Math.round(variance()) : null;
+			case STDEV:
+				return count > 0 ? Math.round(Math.sqrt(variance())) : null;
+			default:
+				throw new IllegalArgumentException("Cannot merge " + function);
+			}
+		}
+
+		private double variance() {
+			if (count < 2) {
+				return 0;
+			}
+			double mean = sum / count;
+			return Math.max(0, (sumOfSquares - count * mean * mean) / (count - 1));
+		}
+	}
+
+	/**
+	 * Folds the partial responses of one slice into the merged partials
+	 *
+	 * @param functions
+	 *            functions of the partial queries
+	 * @param responses
+	 *            responses of the partial queries of the slice, in the order
+	 *            of the functions
+	 * @param merged
+	 *            partials by minimum timestamp of the bins
+	 */
+	static void fold(List<AggregationFunction> functions, List<AggregateResponse> responses,
+			Map<Long, Partial> merged) {
+		Map<Long, Partial> slice = new TreeMap<Long, Partial>();
+		Map<Long, Double> variances = new TreeMap<Long, Double>();
+		for (int i = 0; i < functions.size(); i++) {
+			AggregateSeries bins = responses.get(i).getSeries();
+			if (bins == null) {
+				continue;
+			}
+			for (int j = 0; j < bins.size(); j++) {
+				if (!bins.hasMinTimestamp(j) || !bins.hasValue(j)) {
+					continue;
+				}
+				long minTimestamp = bins.getMinTimestamp(j);
+				Partial partial = slice.computeIfAbsent(minTimestamp, k -> new Partial());
+				partial.bounds(bins, j);
+				long value = bins.getValue(j);
+				switch (functions.get(i)) {
+				case COUNT:
+					partial.count = value;
+					break;
+				case SUM:
+					partial.sum = value;
+					partial.hasValue = true;
+					break;
+				case MIN:
+					partial.min = value;
+					partial.hasValue = true;
+					break;
+				case MAX:
+					partial.max = value;
+					partial.hasValue = true;
+					break;
+				case VARIANCE:
+					variances.put(minTimestamp, (double) value);
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		for (Map.Entry<Long, Partial> entry : slice.entrySet()) {
+			Partial partial = entry.getValue();
+			if (partial.count > 0) {
+				// sum of squares = (n - 1) * variance + sum^2 / n
+				double variance = variances.getOrDefault(entry.getKey(), 0.0);
+				partial.sumOfSquares = (partial.count - 1) * variance + partial.sum * partial.sum / partial.count;
+			}
+			Partial total = merged.get(entry.getKey());
+			if (total == null) {
+				merged.put(entry.getKey(), partial);
+			} else {
+				total.merge(partial);
+			}
+		}
+	}
+
+	/**
+	 * Partial queries of one fan-out, started and merged under the lock of
+	 * this object
+	 */
+	private final class Execution {
+		private final AggregateQueryBuilder query;
+		private final List<AggregationFunction> functions;
+		private final List<Long> cuts;
+		private final CompletableFuture<AggregateResponse> result;
+		private final int count;
+		private final List<CompletableFuture<AggregateResponse>> futures;
+		private final List<AggregateResponse> responses;
+		private int next;
+		private int running;
+
+		Execution(AggregateQueryBuilder query, List<AggregationFunction> functions, List<Long> cuts,
+				CompletableFuture<AggregateResponse> result) {
+			this.query = query;
+			this.functions = functions;
+			this.cuts = cuts;
+			this.result = result;
+			this.count = (cuts.size() + 1) * functions.size();
+			this.futures = new ArrayList<CompletableFuture<AggregateResponse>>(
+					Collections.<CompletableFuture<AggregateResponse>> nCopies(count, null));
+			this.responses = new ArrayList<AggregateResponse>(Collections.<AggregateResponse> nCopies(count, null));
+			result.whenComplete((response, ex) -> {
+				if (result.isCancelled()) {
+					cancel();
+				}
+			});
+		}
+
+		/**
+		 * Partial query i, of slice i / functions and function i % functions
+		 */
+		private AggregateQueryBuilder partial(int i) {
+			int slice = i / functions.size();
+			AggregationFunction function = functions.get(i % functions.size());
+			FieldConstraint ge = slice > 0 ? FieldConstraint.ge(TIMESTAMP, Long.toString(cuts.get(slice - 1))) : null;
+			FieldConstraint lt = slice < cuts.size() ? FieldConstraint.lt(TIMESTAMP, Long.toString(cuts.get(slice)))
+					: null;
+			FieldConstraint exists = function == AggregationFunction.COUNT
+					&& query.getAggregationFunction() != AggregationFunction.COUNT
+							? FieldConstraint.exists(query.getAggregationField()) : null;
+			return query.partial(function, ge, lt, exists);
+		}
+
+		synchronized void launch() {
+			while (!result.isDone() && running < parallelism && next < count) {
+				int i = next++;
+				running++;
+				CompletableFuture<AggregateResponse> future = client.aggregateQueryAsync(partial(i).toUrlString());
+				futures.set(i, future);
+				future.whenComplete((response, ex) -> completed(i, response, ex));
+			}
+			if (running == 0 && next == count && !result.isDone()) {
+				result.complete(merge());
+			}
+		}
+
+		private synchronized void completed(int i, AggregateResponse response, Throwable ex) {
+			running--;
+			futures.set(i, null);
+			if (result.isDone()) {
+				return;
+			}
+			if (ex != null) {
+				Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+				if (result.completeExceptionally(cause)) {
+					cancel();
+				}
+				return;
+			}
+			responses.set(i, response);
+			launch();
+		}
+
+		private synchronized void cancel() {
+			for (CompletableFuture<AggregateResponse> future : futures) {
+				if (future != null) {
+					future.cancel(false);
+				}
+			}
+		}
+
+		private AggregateResponse merge() {
+			Map<Long, Partial> merged = new TreeMap<Long, Partial>();
+			boolean complete = true;
+			int duration = 0;
+			for (int slice = 0; slice * functions.size() < count; slice++) {
+				List<AggregateResponse> partials = responses.subList(slice * functions.size(),
+						(slice + 1) * functions.size());
+				for (AggregateResponse partial : partials) {
+					complete &= partial.isComplete();
+					duration = Math.max(duration, partial.getDuration());
+				}
+				fold(functions, partials, merged);
+			}
+			AggregateSeries.Builder bins = new AggregateSeries.Builder(Math.min(merged.size(), query.limit));
+			int size = 0;
+			for (Partial partial : merged.values()) {
+				if (size++ >= query.limit) {
+					break;
+				}
+				bins.add(partial.minTimestamp, partial.maxTimestamp == Long.MIN_VALUE ? null : partial.maxTimestamp,
+						partial.value(query.getAggregationFunction()));
+			}
+			AggregateResponse response = new AggregateResponse();
+			response.setComplete(complete);
+			response.setDuration(duration);
+			response.setSeries(bins.build());
+			return response;
+		}
+	}
+}
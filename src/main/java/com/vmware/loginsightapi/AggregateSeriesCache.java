@@ -0,0 +1,198 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.AggregateSeries;
+import com.vmware.loginsightapi.core.FieldConstraint;
+
+/**
+ * Cache of aggregate time series for incremental refresh, such as the series
+ * of a dashboard refreshed every few seconds over the last 24 hours. <br>
+ *
+ * The bins of a series are kept per query without its timestamp constraints,
+ * that is per constraints, aggregate function, field and bin width. A bin
+ * ending more than {@code settleDelayMs} before it was fetched no longer
+ * changes. When the series is queried again, over a range starting at or
+ * after the cached one, the settled bins in the range are reused and only the
+ * trailing bins, from the end of the last settled bin, are queried and
+ * spliced onto them. Bins starting before the range are dropped. <br>
+ *
+ * The whole series is queried again after {@code maxAgeMs}, to pick up the
+ * events ingested late, and when the cached bins cannot be reused: the query
+ * has a group-by or order-by clause, no lower timestamp bound or no bin
+ * width, the range starts before the cached one, or the previous response
+ * was incomplete or may have been truncated by the limit. The least recently
+ * used series are evicted above {@code maxEntries}.
+ */
+public class AggregateSeriesCache {
+
+	private static final String TIMESTAMP = "timestamp";
+
+	private final int maxEntries;
+	private final long settleDelayMs;
+	private final long maxAgeMs;
+	private final ClientMetrics metrics;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/**
+	 * Constructs the cache
+	 *
+	 * @param maxEntries
+	 *            maximum number of series, 0 disables the cache
+	 * @param settleDelayMs
+	 *            delay after which a bin no longer changes, in milliseconds
+	 * @param maxAgeMs
+	 *            time after which a series is queried again in full, in
+	 *            milliseconds
+	 * @param metrics
+	 *            metrics recording the refreshes
+	 */
+	AggregateSeriesCache(int maxEntries, long settleDelayMs, long maxAgeMs, ClientMetrics metrics) {
+		this.maxEntries = maxEntries;
+		this.settleDelayMs = settleDelayMs;
+		this.maxAgeMs = maxAgeMs;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Whether series are cached
+	 *
+	 * @return true if the maximum number of series is positive
+	 */
+	public boolean isEnabled() {
+		return maxEntries > 0;
+	}
+
+	/**
+	 * Performs an aggregate query, reusing the settled bins of the previous
+	 * query of the series
+	 *
+	 * @param query
+	 *            aggregate query with a timestamp range
+	 * @param fetch
+	 *            performs an aggregate query given its relative url
+	 * @return future of the aggregate response
+	 */
+	CompletableFuture<AggregateResponse> query(AggregateQueryBuilder query,
+			Function<String, CompletableFuture<AggregateResponse>> fetch) {
+		long[] range = MessageQueryFanOut.timeRange(query);
+		long binWidth = query.getBinWidth();
+		if (!isEnabled() || range == null || binWidth <= 0 || query.hasGroupByOrOrderBy()) {
+			return fetch.apply(query.toUrlString());
+		}
+		long from = range[0];
+		long to = range[1];
+		long now = System.currentTimeMillis();
+		String key = QueryResultCache.normalize(withRange(query, null, null).toUrlString());
+		Entry entry = get(key);
+		boolean reusable = entry != null && entry.from <= from && now - entry.createdAt < maxAgeMs;
+		// the bins ending before the settle point of the previous query
+		AggregateSeries settled = reusable
+				? entry.series.range(from, Math.min(entry.settledUntil, to) - binWidth + 1) : AggregateSeries.empty();
+		long createdAt = reusable ? entry.createdAt : now;
+		long cut = settled.isEmpty() ? from : settled.getMinTimestamp(settled.size() - 1) + binWidth;
+		if (cut >= to) {
+			metrics.recordSeriesRefresh(settled.size());
+			AggregateResponse response = new AggregateResponse();
+			response.setComplete(true);
+			response.setSeries(settled);
+			return CompletableFuture.completedFuture(response);
+		}
+		String url = cut == from ? query.toUrlString() : withRange(query, cut, to).toUrlString();
+		return fetch.apply(url).thenApply(tail -> {
+			AggregateSeries bins = tail.getSeries() == null ? AggregateSeries.empty() : tail.getSeries();
+			if (!settled.isEmpty()) {
+				metrics.recordSeriesRefresh(settled.size());
+				bins = new AggregateSeries.Builder(settled.size() + bins.size()).addAll(settled)
+						.addAll(bins.range(cut, Long.MAX_VALUE)).build();
+			}
+			AggregateResponse response = new AggregateResponse();
+			response.setComplete(tail.isComplete());
+			response.setDuration(tail.getDuration());
+			response.setSeries(bins);
+			if (tail.isComplete() && tail.getSeries() != null && tail.getSeries().size() < query.limit
+					&& bins.isSorted()) {
+				put(key, new Entry(bins, from, Math.min(now - settleDelayMs, to), createdAt));
+			}
+			return response;
+		});
+	}
+
+	/**
+	 * Copy of the query with another timestamp range
+	 *
+	 * @param from
+	 *            lowest timestamp, inclusive, null for none
+	 * @param to
+	 *            highest timestamp, exclusive, null for none
+	 */
+	private static AggregateQueryBuilder withRange(AggregateQueryBuilder query, Long from, Long to) {
+		AggregateQueryBuilder copy = query.partial(query.getAggregationFunction());
+		copy.constraints.removeIf(constraint -> TIMESTAMP.equals(constraint.getName()));
+		if (from != null) {
+			copy.constraints.add(FieldConstraint.ge(TIMESTAMP, Long.toString(from)));
+		}
+		if (to != null) {
+			copy.constraints.add(FieldConstraint.lt(TIMESTAMP, Long.toString(to)));
+		}
+		return copy;
+	}
+
+	private synchronized Entry get(String key) {
+		return entries.get(key);
+	}
+
+	private synchronized void put(String key, Entry entry) {
+		Entry current = entries.get(key);
+		if (current != null && current.settledUntil > entry.settledUntil) {
+			// a concurrent refresh stored a more recent series
+			return;
+		}
+		entries.put(key, entry);
+		while (entries.size() > maxEntries) {
+			entries.remove(entries.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Drops all the cached series
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+	}
+
+	/**
+	 * Number of cached series
+	 *
+	 * @return count of series
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private static final class Entry {
+		final AggregateSeries series;
+		final long from;
+		final long settledUntil;
+		final long createdAt;
+
+		Entry(AggregateSeries series, long from, long settledUntil, long createdAt) {
+			this.series = series;
+			this.from = from;
+			this.settledUntil = settledUntil;
+			this.createdAt = createdAt;
+		}
+	}
+}
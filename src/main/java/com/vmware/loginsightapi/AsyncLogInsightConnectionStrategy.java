@@ -9,45 +9,257 @@
 package com.vmware.loginsightapi;
 
 import java.util.List;
-
-import javax.net.ssl.SSLContext;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.Header;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
-import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
 
-import com.vmware.loginsightapi.util.NonValidatingSSLSocketFactory;
+import com.vmware.loginsightapi.util.DaemonThreadFactory;
 
 /**
- * Defines the connection strategy with CloseableHttpAsyncClient
+ * Defines the connection strategy with CloseableHttpAsyncClient. <br>
+ *
+ * The connection pool and the IO reactor of the http client are sized from
+ * the {@code loginsight.connection.*} properties of the configuration. Each
+ * route gets at least {@code loginsight.ingestion.max.inflight} connections,
+ * so that each concurrent ingestion request keeps a keep-alive connection,
+ * and the pool holds twice the connections per route by default: one route
+ * for the API port and one for the ingestion port. <br>
+ *
+ * Idle connections are kept alive for {@code loginsight.connection.keepalive.ms}
+ * at most, or less when the server asks for it, and closed by a background
+ * task after {@code loginsight.connection.idle.eviction.ms}. The statistics
+ * of the pool are available from {@link #getPoolStats()}. <br>
+ *
+ * The https connections are layered with the {@link TlsSessionStrategy} of
+ * the {@code loginsight.tls.*} properties.
  */
 
 public class AsyncLogInsightConnectionStrategy implements LogInsightConnectionStrategy<CloseableHttpAsyncClient> {
 
+	/**
+	 * Connections per route of the http client defaults
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 2;
+
+	private final int maxConnectionsPerRoute;
+	private final int maxConnectionsTotal;
+	private final int ioThreads;
+	private final int connectTimeoutMs;
+	private final int socketTimeoutMs;
+	private final int requestTimeoutMs;
+	private final int sendBufferSize;
+	private final int receiveBufferSize;
+	private final boolean tcpNoDelay;
+	private final long keepAliveMs;
+	private final long idleEvictionMs;
+	private final Configuration config;
+	private final ClientMetrics metrics;
+
 	private CloseableHttpAsyncClient asyncHttpClient;
+	private PoolingNHttpClientConnectionManager connectionManager;
+
+	/**
+	 * Connection strategy with the default connection pool and IO reactor
+	 * configuration
+	 */
+	public AsyncLogInsightConnectionStrategy() {
+		this(new Configuration());
+	}
+
+	/**
+	 * Connection strategy with the connection pool and IO reactor of the
+	 * configuration
+	 * 
+	 * @param config
+	 *            Configuration object
+	 */
+	public AsyncLogInsightConnectionStrategy(Configuration config) {
+		this(config, null);
+	}
 
 	/**
-	 * Initializes and returns the httpClient with NoopHostnameVerifier
+	 * Connection strategy with the connection pool, IO reactor and TLS
+	 * configuration of the configuration, counting the TLS handshakes in the
+	 * metrics
+	 * 
+	 * @param config
+	 *            Configuration object
+	 * @param metrics
+	 *            metrics of the client, null for none
+	 */
+	public AsyncLogInsightConnectionStrategy(Configuration config, ClientMetrics metrics) {
+		this.config = config;
+		this.metrics = metrics;
+		this.maxConnectionsPerRoute = Math.max(Math.max(config.getConnectionMaxPerRoute(), config.getIngestionMaxInFlight()),
+				DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+		this.maxConnectionsTotal = config.getConnectionMaxTotal() > 0 ? config.getConnectionMaxTotal()
+				: 2 * maxConnectionsPerRoute;
+		this.ioThreads = config.getConnectionIoThreads() > 0 ? config.getConnectionIoThreads()
+				: Runtime.getRuntime().availableProcessors();
+		this.connectTimeoutMs = config.getConnectionConnectTimeoutMs();
+		this.socketTimeoutMs = config.getConnectionSocketTimeoutMs();
+		this.requestTimeoutMs = config.getConnectionRequestTimeoutMs();
+		this.sendBufferSize = config.getConnectionSendBufferSize();
+		this.receiveBufferSize = config.getConnectionReceiveBufferSize();
+		this.tcpNoDelay = config.isConnectionTcpNoDelay();
+		this.keepAliveMs = config.getConnectionKeepAliveMs();
+		this.idleEvictionMs = config.getConnectionIdleEvictionMs();
+	}
+
+	/**
+	 * Maximum number of pooled connections to one host and port
+	 * 
+	 * @return connections per route
+	 */
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Maximum number of pooled connections
+	 * 
+	 * @return connections of all the routes
+	 */
+	public int getMaxConnectionsTotal() {
+		return maxConnectionsTotal;
+	}
+
+	/**
+	 * Number of IO dispatcher threads of the http client
+	 * 
+	 * @return number of threads
+	 */
+	public int getIoThreads() {
+		return ioThreads;
+	}
+
+	/**
+	 * Current statistics of the connection pool of the http client
+	 * 
+	 * @return leased, pending (waiting for a connection), available and
+	 *         maximum connections of all the routes, null before the http
+	 *         client is created
+	 */
+	public PoolStats getPoolStats() {
+		PoolingNHttpClientConnectionManager manager = connectionManager;
+		return manager == null ? null : manager.getTotalStats();
+	}
+
+	/**
+	 * Initializes, starts and returns the httpClient
 	 * 
 	 * @return CloseableHttpAsyncClient
 	 */
 	@Override
 	public CloseableHttpAsyncClient getHttpClient() {
-		// Trust own CA and all self-signed certs
-		SSLContext sslcontext = NonValidatingSSLSocketFactory.getSSLContext();
-		// Allow TLSv1 protocol only
-
-		SSLIOSessionStrategy sslSessionStrategy = new SSLIOSessionStrategy(sslcontext, new String[] { "TLSv1" }, null,
-				new NoopHostnameVerifier());
+		TlsSessionStrategy sslSessionStrategy = TlsSessionStrategy.create(config, metrics);
 		List<Header> headers = LogInsightClient.getDefaultHeaders();
 
-		asyncHttpClient = HttpAsyncClients.custom().setSSLStrategy(sslSessionStrategy).setDefaultHeaders(headers)
-				.build();
+		IOReactorConfig.Builder reactorConfig = IOReactorConfig.custom().setIoThreadCount(ioThreads)
+				.setConnectTimeout(connectTimeoutMs).setSoTimeout(socketTimeoutMs).setTcpNoDelay(tcpNoDelay)
+				.setSoKeepAlive(true);
+		if (sendBufferSize > 0) {
+			reactorConfig.setSndBufSize(sendBufferSize);
+		}
+		if (receiveBufferSize > 0) {
+			reactorConfig.setRcvBufSize(receiveBufferSize);
+		}
+		PoolingNHttpClientConnectionManager manager;
+		try {
+			manager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig.build()),
+					RegistryBuilder.<SchemeIOSessionStrategy> create().register("http", NoopIOSessionStrategy.INSTANCE)
+							.register("https", sslSessionStrategy).build());
+		} catch (IOReactorException e) {
+			throw new LogInsightApiException("Unable to start the IO reactor of the http client", e);
+		}
+		manager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		manager.setMaxTotal(maxConnectionsTotal);
+		RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(connectTimeoutMs)
+				.setSocketTimeout(socketTimeoutMs).setConnectionRequestTimeout(requestTimeoutMs).build();
+
+		asyncHttpClient = HttpAsyncClients.custom().setConnectionManager(manager).setDefaultHeaders(headers)
+				.setDefaultRequestConfig(requestConfig).setKeepAliveStrategy(keepAliveStrategy()).build();
+		connectionManager = manager;
 		asyncHttpClient.start();
+		if (idleEvictionMs > 0) {
+			IdleConnectionEvictor.schedule(asyncHttpClient, manager, idleEvictionMs);
+		}
 
 		return asyncHttpClient;
 	}
 
+	/**
+	 * Keep-alive duration requested by the server, at most
+	 * {@code keepAliveMs}
+	 */
+	private ConnectionKeepAliveStrategy keepAliveStrategy() {
+		return (response, context) -> {
+			long requested = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			if (keepAliveMs <= 0) {
+				return requested;
+			}
+			return requested > 0 ? Math.min(requested, keepAliveMs) : keepAliveMs;
+		};
+	}
+
+	/**
+	 * Closes the expired and idle connections of a pool periodically, until
+	 * its http client is closed. A single daemon thread serves all the
+	 * clients.
+	 */
+	private static final class IdleConnectionEvictor implements Runnable {
+		private static final ScheduledExecutorService EXECUTOR = Executors
+				.newSingleThreadScheduledExecutor(new DaemonThreadFactory("loginsight-connection-evictor"));
+
+		private final CloseableHttpAsyncClient client;
+		private final PoolingNHttpClientConnectionManager manager;
+		private final long idleMs;
+		private volatile ScheduledFuture<?> future;
+
+		private IdleConnectionEvictor(CloseableHttpAsyncClient client, PoolingNHttpClientConnectionManager manager,
+				long idleMs) {
+			this.client = client;
+			this.manager = manager;
+			this.idleMs = idleMs;
+		}
+
+		static void schedule(CloseableHttpAsyncClient client, PoolingNHttpClientConnectionManager manager,
+				long idleMs) {
+			IdleConnectionEvictor evictor = new IdleConnectionEvictor(client, manager, idleMs);
+			long period = Math.max(idleMs / 2, 1);
+			evictor.future = EXECUTOR.scheduleWithFixedDelay(evictor, period, period, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void run() {
+			if (!client.isRunning()) {
+				// null if the first run precedes the assignment, cancelled by
+				// the next run then
+				ScheduledFuture<?> scheduled = future;
+				if (scheduled != null) {
+					scheduled.cancel(false);
+				}
+				return;
+			}
+			manager.closeExpiredConnections();
+			manager.closeIdleConnections(idleMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
 }
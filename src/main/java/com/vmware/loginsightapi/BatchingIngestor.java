@@ -0,0 +1,722 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.loginsightapi.core.IngestionRequest;
+import com.vmware.loginsightapi.core.IngestionResponse;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.util.DaemonThreadFactory;
+import com.vmware.loginsightapi.util.DiskSpool;
+import com.vmware.loginsightapi.util.IngestionRequestEntity;
+import com.vmware.loginsightapi.util.JsonCodecs;
+import com.vmware.loginsightapi.util.MessageSizeEstimator;
+import com.vmware.loginsightapi.util.OverflowQueue;
+
+/**
+ * Background ingestor which accepts single messages from any thread and sends
+ * them to LogInsight in batches. <br>
+ *
+ * A batch is sent as soon as one of the following limits is reached <br>
+ * 1. number of messages in the batch reaches {@code maxMessages} <br>
+ * 2. estimated serialized size of the batch reaches {@code maxBytes} <br>
+ * 3. first message of the batch waited for {@code lingerMs} milliseconds <br>
+ *
+ * Batches are sent by {@code maxInFlight} senders, each with at most one
+ * request in flight, so up to {@code maxInFlight} batches are sent
+ * concurrently over the keep-alive connections of the client. When all the
+ * senders are busy, the dispatcher waits and the messages accumulate in the
+ * queue. {@code getSenders} reports the requests and latency of each sender.
+ * The queue is bounded; when it is full the {@link OverflowQueue} policy
+ * either makes {@code add} wait for free space or drops messages, which are
+ * counted by {@code getDroppedMessages}.
+ *
+ * With a {@link DiskSpool} the batches which fail while LogInsight is
+ * unreachable, that is with a failure retryable by the ingestion
+ * {@link RetryPolicy}, or which find all the senders busy for the linger time,
+ * are written to the spool instead. Batches rejected by LogInsight, such as
+ * with a client error, are dropped and counted by {@code getFailedMessages}.
+ * While the spool holds batches new batches are spooled as well, so that they
+ * are ingested in order. A background thread writes the failed batches to the
+ * spool, away from the I/O threads of the http client, and drains the spool
+ * with up to {@code maxInFlight} concurrent requests, backing off while
+ * LogInsight is failing. Spooled batches survive restarts and are replayed by
+ * the next ingestor opened on the same directory.
+ *
+ * <b>Usage: </b> <br>
+ * {@code
+ * try (BatchingIngestor ingestor = new BatchingIngestor(client)) {
+ *     ingestor.add(new Message("System failed"));
+ * }
+ * }
+ */
+// close() waits for the dispatcher and the in-flight requests, interruptibly
+@SuppressWarnings("try")
+public class BatchingIngestor implements AutoCloseable {
+
+	private final static Logger logger = LoggerFactory.getLogger(BatchingIngestor.class);
+
+	private static final long MAX_DRAIN_BACKOFF_MS = 30000;
+
+	// queued by flush and close to wake the dispatcher from its linger wait
+	private static final Message WAKE_UP = new Message();
+
+	private final LogInsightClient client;
+	private final int maxMessages;
+	private final int maxBytes;
+	private final long lingerNanos;
+	private final int maxInFlight;
+
+	private final OverflowQueue<Message> queue;
+	private final List<Sender> senders;
+	private final BlockingQueue<Sender> idleSenders;
+	private final Thread dispatcher;
+	private final DiskSpool spool;
+	private final RetryPolicy retryPolicy;
+	private final BlockingQueue<List<Message>> failedBatches = new LinkedBlockingQueue<List<Message>>();
+	private final Thread drainer;
+	private final AtomicInteger drainFailures = new AtomicInteger();
+
+	// batch under construction, confined to the dispatcher thread
+	private List<Message> batch = new ArrayList<Message>();
+	private long batchBytes = MessageSizeEstimator.REQUEST_OVERHEAD;
+	private long deadline;
+
+	private final AtomicLong flushRequested = new AtomicLong();
+	private final Object flushMonitor = new Object();
+	private long flushCompleted;
+
+	private final AtomicLong sentMessages = new AtomicLong();
+	private final AtomicLong failedMessages = new AtomicLong();
+	private final AtomicLong sentBatches = new AtomicLong();
+	private final AtomicLong spooledMessages = new AtomicLong();
+
+	private volatile boolean running = true;
+
+	/**
+	 * Constructs the ingestor with batching limits and queue policy from the
+	 * client configuration. The disk spool is opened when
+	 * {@code loginsight.ingestion.spool.dir} is set.
+	 *
+	 * @param client
+	 *            LogInsightClient used to send the batches
+	 * @throws LogInsightApiException
+	 *             if the spool cannot be opened
+	 * @see Configuration
+	 */
+	public BatchingIngestor(LogInsightClient client) {
+		this(client, client.getConfiguration().getIngestionBatchMaxMessages(),
+				client.getConfiguration().getIngestionBatchMaxBytes(),
+				client.getConfiguration().getIngestionBatchLingerMs(),
+				client.getConfiguration().getIngestionMaxInFlight(), newQueue(client.getConfiguration()),
+				openSpool(client.getConfiguration()));
+	}
+
+	/**
+	 * Constructs the ingestor with explicit batching limits and the default
+	 * queue policy
+	 *
+	 * @param client
+	 *            LogInsightClient used to send the batches
+	 * @param maxMessages
+	 *            maximum number of messages in a batch
+	 * @param maxBytes
+	 *            maximum estimated serialized size of a batch in bytes
+	 * @param lingerMs
+	 *            maximum time in milliseconds a batch waits to fill up
+	 * @param maxInFlight
+	 *            maximum number of batches sent concurrently
+	 */
+	public BatchingIngestor(LogInsightClient client, int maxMessages, int maxBytes, long lingerMs,
+			int maxInFlight) {
+		this(client, maxMessages, maxBytes, lingerMs, maxInFlight, null);
+	}
+
+	/**
+	 * Constructs the ingestor with explicit batching limits, the default queue
+	 * policy and a disk spool
+	 *
+	 * @param client
+	 *            LogInsightClient used to send the batches
+	 * @param maxMessages
+	 *            maximum number of messages in a batch
+	 * @param maxBytes
+	 *            maximum estimated serialized size of a batch in bytes
+	 * @param lingerMs
+	 *            maximum time in milliseconds a batch waits to fill up
+	 * @param maxInFlight
+	 *            maximum number of batches sent concurrently
+	 * @param spool
+	 *            spool for the batches which cannot be sent, null to drop
+	 *            them. The spool is closed with the ingestor.
+	 */
+	public BatchingIngestor(LogInsightClient client, int maxMessages, int maxBytes, long lingerMs,
+			int maxInFlight, DiskSpool spool) {
+		this(client, maxMessages, maxBytes, lingerMs, maxInFlight, newQueue(new Configuration()), spool);
+	}
+
+	/**
+	 * Constructs the ingestor with explicit batching limits, queue and disk
+	 * spool
+	 *
+	 * @param client
+	 *            LogInsightClient used to send the batches
+	 * @param maxMessages
+	 *            maximum number of messages in a batch
+	 * @param maxBytes
+	 *            maximum estimated serialized size of a batch in bytes
+	 * @param lingerMs
+	 *            maximum time in milliseconds a batch waits to fill up
+	 * @param maxInFlight
+	 *            maximum number of batches sent concurrently
+	 * @param queue
+	 *            bounded queue of the messages waiting for a batch
+	 * @param spool
+	 *            spool for the batches which cannot be sent, null to drop
+	 *            them. The spool is closed with the ingestor.
+	 */
+	public BatchingIngestor(LogInsightClient client, int maxMessages, int maxBytes, long lingerMs,
+			int maxInFlight, OverflowQueue<Message> queue, DiskSpool spool) {
+		if (maxMessages <= 0 || maxBytes <= MessageSizeEstimator.REQUEST_OVERHEAD || lingerMs < 0
+				|| maxInFlight <= 0) {
+			throw new IllegalArgumentException("Invalid batching limits");
+		}
+		this.client = client;
+		this.maxMessages = maxMessages;
+		this.maxBytes = maxBytes;
+		this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+		this.maxInFlight = maxInFlight;
+		this.queue = queue;
+		List<Sender> senderList = new ArrayList<Sender>(maxInFlight);
+		for (int i = 0; i < maxInFlight; i++) {
+			senderList.add(new Sender(i));
+		}
+		this.senders = Collections.unmodifiableList(senderList);
+		this.idleSenders = new ArrayBlockingQueue<Sender>(maxInFlight, false, senderList);
+		this.spool = spool;
+		Configuration config = client.getConfiguration();
+		this.retryPolicy = (config != null ? config : new Configuration()).getIngestionRetryPolicy();
+		this.dispatcher = new DaemonThreadFactory("loginsight-ingestion-dispatcher").newThread(this::dispatch);
+		this.dispatcher.start();
+		if (spool != null) {
+			this.drainer = new DaemonThreadFactory("loginsight-ingestion-spool").newThread(this::drain);
+			this.drainer.start();
+		} else {
+			this.drainer = null;
+		}
+	}
+
+	private static OverflowQueue<Message> newQueue(Configuration config) {
+		return new OverflowQueue<Message>(config.getIngestionQueueCapacity(), config.getIngestionQueueOverflow(),
+				config.getIngestionQueueBlockTimeoutMs(), config.getIngestionQueueSampleRate());
+	}
+
+	private static DiskSpool openSpool(Configuration config) {
+		if (config.getIngestionSpoolDir() == null) {
+			return null;
+		}
+		try {
+			return new DiskSpool(Paths.get(config.getIngestionSpoolDir()), config.getIngestionSpoolMaxBytes(),
+					config.getIngestionSpoolSegmentBytes(), config.getIngestionSpoolFsync(),
+					config.getIngestionSpoolFsyncIntervalMs(), config.getIngestionSpoolEviction());
+		} catch (IOException e) {
+			throw new LogInsightApiException("Unable to open the ingestion spool " + config.getIngestionSpoolDir(), e);
+		}
+	}
+
+	/**
+	 * Queues a message for ingestion. Can be called from any thread. When the
+	 * queue is full the overflow policy applies: the call waits at most the
+	 * block timeout, or a message is dropped.
+	 *
+	 * @param message
+	 *            Message object
+	 * @return true if the message is queued, false if it is dropped
+	 * @throws IllegalStateException
+	 *             if the ingestor is closed
+	 */
+	public boolean add(Message message) {
+		if (!running) {
+			throw new IllegalStateException("BatchingIngestor is closed");
+		}
+		return queue.offer(message);
+	}
+
+	/**
+	 * Sends all the messages queued so far and waits for their ingestion
+	 * requests to complete.
+	 *
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		long ticket = flushRequested.incrementAndGet();
+		queue.signal(WAKE_UP);
+		synchronized (flushMonitor) {
+			while (flushCompleted < ticket && dispatcher.isAlive()) {
+				flushMonitor.wait(100);
+			}
+		}
+		awaitInFlight();
+	}
+
+	/**
+	 * Number of messages successfully ingested
+	 *
+	 * @return count of ingested messages
+	 */
+	public long getSentMessages() {
+		return sentMessages.get();
+	}
+
+	/**
+	 * Number of messages that could not be ingested
+	 *
+	 * @return count of failed messages
+	 */
+	public long getFailedMessages() {
+		return failedMessages.get();
+	}
+
+	/**
+	 * Number of batches sent to LogInsight
+	 *
+	 * @return count of batches
+	 */
+	public long getSentBatches() {
+		return sentBatches.get();
+	}
+
+	/**
+	 * Number of messages dropped by the overflow policy of the queue
+	 *
+	 * @return count of dropped messages
+	 */
+	public long getDroppedMessages() {
+		return queue.getDroppedElements();
+	}
+
+	/**
+	 * Number of messages written to the disk spool
+	 *
+	 * @return count of spooled messages
+	 */
+	public long getSpooledMessages() {
+		return spooledMessages.get();
+	}
+
+	/**
+	 * Number of batches waiting in the disk spool
+	 *
+	 * @return count of spooled batches, 0 without spool
+	 */
+	public long getSpooledBatches() {
+		return spool == null ? 0 : spool.getPendingRecords();
+	}
+
+	/**
+	 * Number of messages waiting in the queue
+	 *
+	 * @return count of queued messages
+	 */
+	public int getPendingMessages() {
+		return queue.size();
+	}
+
+	/**
+	 * Stops accepting messages, sends the queued messages and waits for the
+	 * in-flight requests. The batches left in the disk spool stay there for
+	 * the next run. The LogInsightClient is not closed.
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		if (!running) {
+			return;
+		}
+		running = false;
+		queue.signal(WAKE_UP);
+		dispatcher.join();
+		if (drainer != null) {
+			drainer.join();
+		}
+		awaitInFlight();
+		if (spool != null) {
+			spoolFailedBatches();
+			try {
+				spool.close();
+			} catch (IOException e) {
+				logger.warn("Unable to close the ingestion spool", e);
+			}
+		}
+	}
+
+	/**
+	 * Statistics of the senders
+	 *
+	 * @return list of the {@code maxInFlight} senders
+	 */
+	public List<Sender> getSenders() {
+		return senders;
+	}
+
+	private void awaitInFlight() throws InterruptedException {
+		List<Sender> idle = new ArrayList<Sender>(maxInFlight);
+		try {
+			while (idle.size() < maxInFlight) {
+				idle.add(idleSenders.take());
+			}
+		} finally {
+			idleSenders.addAll(idle);
+		}
+	}
+
+	/**
+	 * Dispatcher loop. Collects the messages from the queue into batches and
+	 * sends them.
+	 */
+	private void dispatch() {
+		try {
+			while (running || !queue.isEmpty() || !batch.isEmpty()) {
+				long requested = flushRequested.get();
+				if (requested > flushCompleted || !running) {
+					// drain everything queued before the flush (or close) request
+					Message message;
+					while ((message = queue.poll()) != null) {
+						if (message != WAKE_UP) {
+							append(message);
+						}
+					}
+					sendBatch();
+					synchronized (flushMonitor) {
+						flushCompleted = requested;
+						flushMonitor.notifyAll();
+					}
+					continue;
+				}
+
+				long waitNanos = batch.isEmpty() ? lingerNanos : deadline - System.nanoTime();
+				Message message = queue.poll(Math.max(waitNanos, 0), TimeUnit.NANOSECONDS);
+				if (message != null && message != WAKE_UP) {
+					append(message);
+				}
+				if (!batch.isEmpty() && System.nanoTime() - deadline >= 0) {
+					sendBatch();
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.warn("Ingestion dispatcher interrupted, " + (queue.size() + batch.size())
+					+ " messages are not sent");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Adds a message to the current batch, sending the batch when it reaches
+	 * its count or size limit.
+	 *
+	 * @param message
+	 *            Message object
+	 * @throws InterruptedException
+	 *             if the dispatcher is interrupted while waiting for a permit
+	 */
+	private void append(Message message) throws InterruptedException {
+		int size = MessageSizeEstimator.estimate(message);
+		if (!batch.isEmpty() && batchBytes + size > maxBytes) {
+			sendBatch();
+		}
+		if (batch.isEmpty()) {
+			deadline = System.nanoTime() + lingerNanos;
+		}
+		batch.add(message);
+		batchBytes += size;
+		if (batch.size() >= maxMessages || batchBytes >= maxBytes) {
+			sendBatch();
+		}
+	}
+
+	/**
+	 * Sends the current batch and starts a new batch.
+	 *
+	 * @throws InterruptedException
+	 *             if the dispatcher is interrupted while waiting for a permit
+	 */
+	private void sendBatch() throws InterruptedException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		List<Message> messages = batch;
+		batch = new ArrayList<Message>();
+		batchBytes = MessageSizeEstimator.REQUEST_OVERHEAD;
+		send(messages);
+	}
+
+	/**
+	 * Sends a batch asynchronously with an idle sender. Blocks the dispatcher
+	 * when all the senders are busy.
+	 * With a spool, the batch is spooled instead when the spool is not empty
+	 * or no sender is free within the linger time.
+	 *
+	 * @param messages
+	 *            list of messages
+	 * @throws InterruptedException
+	 *             if the dispatcher is interrupted while waiting
+	 */
+	private void send(List<Message> messages) throws InterruptedException {
+		Sender sender;
+		if (spool == null) {
+			sender = idleSenders.take();
+		} else if (spool.getPendingRecords() > 0 || !failedBatches.isEmpty()
+				|| (sender = idleSenders.poll(lingerNanos, TimeUnit.NANOSECONDS)) == null) {
+			spool(messages);
+			return;
+		}
+		sender.ingest(new IngestionRequest(messages)).whenComplete((response, ex) -> {
+			if (ex == null) {
+				sentMessages.addAndGet(response.getIngested());
+				sentBatches.incrementAndGet();
+			} else {
+				failed(messages, ex);
+			}
+			idleSenders.offer(sender);
+		});
+	}
+
+	/**
+	 * Handles a failed batch from the I/O thread of the http client: the batch
+	 * is handed to the drainer to be spooled when LogInsight is unreachable,
+	 * dropped otherwise
+	 */
+	private void failed(List<Message> messages, Throwable ex) {
+		if (spool != null && isUnreachable(ex)) {
+			logger.warn("Unable to ingest a batch of " + messages.size() + " messages, spooling it: " + ex);
+			failedBatches.offer(messages);
+		} else {
+			failedMessages.addAndGet(messages.size());
+			logger.error("Unable to ingest a batch of " + messages.size() + " messages", ex);
+		}
+	}
+
+	/**
+	 * Checks whether an ingestion failed because LogInsight could not be
+	 * reached, rather than because it rejected the batch
+	 *
+	 * @param ex
+	 *            failure of the ingestion request
+	 * @return true for the failures retryable by the ingestion retry policy,
+	 *         and for logins failing with an I/O error
+	 */
+	private boolean isUnreachable(Throwable ex) {
+		Throwable failure = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+		if (failure instanceof AuthFailure) {
+			for (Throwable cause = failure.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return retryPolicy.isRetryable(failure);
+	}
+
+	/**
+	 * Writes the batches which failed while LogInsight was unreachable to the
+	 * spool
+	 */
+	private void spoolFailedBatches() {
+		List<Message> messages;
+		while ((messages = failedBatches.poll()) != null) {
+			spool(messages);
+		}
+	}
+
+	/**
+	 * Writes a batch to the disk spool
+	 *
+	 * @param messages
+	 *            list of messages
+	 */
+	private void spool(List<Message> messages) {
+		try {
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			new IngestionRequestEntity(new IngestionRequest(messages)).writeTo(payload);
+			if (spool.append(payload.toByteArray())) {
+				spooledMessages.addAndGet(messages.size());
+				return;
+			}
+			logger.error("Ingestion spool is full, dropping a batch of " + messages.size() + " messages");
+		} catch (IOException | RuntimeException e) {
+			logger.error("Unable to spool a batch of " + messages.size() + " messages", e);
+		}
+		failedMessages.addAndGet(messages.size());
+	}
+
+	/**
+	 * Spool drainer loop. Sends the spooled batches in order with up to
+	 * {@code maxInFlight} concurrent requests. Batches failing while
+	 * LogInsight is unreachable go back to the spool and draining pauses with
+	 * an exponential backoff. Batches rejected by LogInsight are dropped.
+	 * Also writes the batches failed by the senders to the spool.
+	 */
+	private void drain() {
+		try {
+			while (running) {
+				spoolFailedBatches();
+				int failures = drainFailures.get();
+				if (failures > 0) {
+					pause(Math.min(100L << Math.min(failures, 10), MAX_DRAIN_BACKOFF_MS));
+				}
+				DiskSpool.Record record = spool.poll(100, TimeUnit.MILLISECONDS);
+				if (record == null) {
+					continue;
+				}
+				IngestionRequest request;
+				try {
+					request = JsonCodecs.get().read(record.getPayload(), IngestionRequest.class);
+				} catch (IOException e) {
+					logger.error("Dropping an unreadable batch from the ingestion spool", e);
+					spool.commit(record);
+					continue;
+				}
+				Sender sender = idleSenders.take();
+				sender.ingest(request).whenComplete((response, ex) -> {
+					if (ex == null) {
+						spool.commit(record);
+						sentMessages.addAndGet(response.getIngested());
+						sentBatches.incrementAndGet();
+						drainFailures.set(0);
+					} else if (isUnreachable(ex)) {
+						spool.retry(record);
+						drainFailures.incrementAndGet();
+						logger.debug("Unable to ingest a spooled batch", ex);
+					} else {
+						spool.commit(record);
+						failedMessages.addAndGet(request.count());
+						logger.error("Dropping a spooled batch of " + request.count() + " messages rejected by LogInsight",
+								ex);
+					}
+					idleSenders.offer(sender);
+				});
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void pause(long millis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + millis;
+		long remaining;
+		while (running && (remaining = deadline - System.currentTimeMillis()) > 0) {
+			List<Message> messages = failedBatches.poll(Math.min(remaining, 100), TimeUnit.MILLISECONDS);
+			if (messages != null) {
+				spool(messages);
+			}
+		}
+	}
+
+	/**
+	 * Sender of ingestion requests with at most one request in flight. Keeps
+	 * the number of requests and their latency.
+	 */
+	public final class Sender {
+
+		private final int id;
+		private final LongAdder requests = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+		private final LongAdder totalLatencyNanos = new LongAdder();
+		private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+		private Sender(int id) {
+			this.id = id;
+		}
+
+		private CompletableFuture<IngestionResponse> ingest(IngestionRequest request) {
+			long start = System.nanoTime();
+			CompletableFuture<IngestionResponse> result;
+			try {
+				result = client.ingestAsync(request);
+			} catch (RuntimeException e) {
+				result = new CompletableFuture<IngestionResponse>();
+				result.completeExceptionally(e);
+			}
+			return result.whenComplete((response, ex) -> {
+				long latency = System.nanoTime() - start;
+				requests.increment();
+				if (ex != null) {
+					failures.increment();
+				}
+				totalLatencyNanos.add(latency);
+				maxLatencyNanos.accumulateAndGet(latency, Math::max);
+			});
+		}
+
+		/**
+		 * Index of the sender
+		 *
+		 * @return sender index, from 0 to {@code maxInFlight - 1}
+		 */
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * Number of completed requests
+		 *
+		 * @return count of requests
+		 */
+		public long getRequests() {
+			return requests.sum();
+		}
+
+		/**
+		 * Number of failed requests
+		 *
+		 * @return count of failed requests
+		 */
+		public long getFailures() {
+			return failures.sum();
+		}
+
+		/**
+		 * Average latency of the completed requests
+		 *
+		 * @return latency in milliseconds, 0 without requests
+		 */
+		public double getAverageLatencyMs() {
+			long count = requests.sum();
+			return count == 0 ? 0 : totalLatencyNanos.sum() / (count * 1000000.0);
+		}
+
+		/**
+		 * Highest latency of the completed requests
+		 *
+		 * @return latency in milliseconds
+		 */
+		public double getMaxLatencyMs() {
+			return maxLatencyNanos.get() / 1000000.0;
+		}
+	}
+}
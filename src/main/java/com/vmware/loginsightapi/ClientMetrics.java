@@ -0,0 +1,336 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters collected by a LogInsightClient or a LogInsightClusterClient. The
+ * counters are updated without locking and can be read from any thread.
+ *
+ * @see LogInsightClient#getMetrics()
+ * @see LogInsightClusterClient#getMetrics()
+ */
+public class ClientMetrics {
+
+	private final LongAdder ingestionRequests = new LongAdder();
+	private final LongAdder ingestionContentBytes = new LongAdder();
+	private final LongAdder ingestionTransferredBytes = new LongAdder();
+	private final LongAdder compressionFallbacks = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder retryBudgetExhausted = new LongAdder();
+	private final LongAdder queryCacheHits = new LongAdder();
+	private final LongAdder queryCacheMisses = new LongAdder();
+	private final LongAdder queryCacheEvictions = new LongAdder();
+	private final LongAdder queriesCoalesced = new LongAdder();
+	private final LongAdder seriesRefreshes = new LongAdder();
+	private final LongAdder seriesBinsReused = new LongAdder();
+	private final LongAdder tlsHandshakes = new LongAdder();
+	private final LongAdder tlsHandshakesResumed = new LongAdder();
+	private final LongAdder tlsHandshakeNanos = new LongAdder();
+	private final LongAdder logins = new LongAdder();
+	private final LongAdder sessionRenewals = new LongAdder();
+	private final LongAdder reauthentications = new LongAdder();
+	private final LongAdder failovers = new LongAdder();
+	private final LongAdder nodeEjections = new LongAdder();
+	private final LongAdder nodeReinstatements = new LongAdder();
+
+	void recordIngestion(long contentBytes, long transferredBytes) {
+		ingestionRequests.increment();
+		ingestionContentBytes.add(contentBytes);
+		ingestionTransferredBytes.add(transferredBytes);
+	}
+
+	void recordCompressionFallback() {
+		compressionFallbacks.increment();
+	}
+
+	void recordRetry() {
+		retries.increment();
+	}
+
+	void recordRetryBudgetExhausted() {
+		retryBudgetExhausted.increment();
+	}
+
+	void recordQueryCacheHit() {
+		queryCacheHits.increment();
+	}
+
+	void recordQueryCacheMiss() {
+		queryCacheMisses.increment();
+	}
+
+	void recordQueryCacheEviction() {
+		queryCacheEvictions.increment();
+	}
+
+	void recordQueryCoalesced() {
+		queriesCoalesced.increment();
+	}
+
+	void recordSeriesRefresh(int binsReused) {
+		seriesRefreshes.increment();
+		seriesBinsReused.add(binsReused);
+	}
+
+	void recordTlsHandshake(long nanos, boolean resumed) {
+		tlsHandshakes.increment();
+		tlsHandshakeNanos.add(nanos);
+		if (resumed) {
+			tlsHandshakesResumed.increment();
+		}
+	}
+
+	void recordLogin() {
+		logins.increment();
+	}
+
+	void recordSessionRenewal() {
+		sessionRenewals.increment();
+	}
+
+	void recordReauthentication() {
+		reauthentications.increment();
+	}
+
+	void recordFailover() {
+		failovers.increment();
+	}
+
+	void recordNodeEjection() {
+		nodeEjections.increment();
+	}
+
+	void recordNodeReinstatement() {
+		nodeReinstatements.increment();
+	}
+
+	/**
+	 * Number of ingestion requests sent
+	 *
+	 * @return count of ingestion requests
+	 */
+	public long getIngestionRequests() {
+		return ingestionRequests.sum();
+	}
+
+	/**
+	 * Size of the ingestion request bodies before compression
+	 *
+	 * @return serialized json bytes
+	 */
+	public long getIngestionContentBytes() {
+		return ingestionContentBytes.sum();
+	}
+
+	/**
+	 * Size of the ingestion request bodies as sent, after compression
+	 *
+	 * @return transferred body bytes
+	 */
+	public long getIngestionTransferredBytes() {
+		return ingestionTransferredBytes.sum();
+	}
+
+	/**
+	 * Ratio of the ingestion body size before and after compression
+	 *
+	 * @return compression ratio, 1.0 when nothing was sent
+	 */
+	public double getIngestionCompressionRatio() {
+		long transferred = getIngestionTransferredBytes();
+		return transferred == 0 ? 1.0 : (double) getIngestionContentBytes() / transferred;
+	}
+
+	/**
+	 * Number of compressed ingestion requests rejected by the server and sent
+	 * again uncompressed
+	 *
+	 * @return count of compression fallbacks
+	 */
+	public long getCompressionFallbacks() {
+		return compressionFallbacks.sum();
+	}
+
+	/**
+	 * Number of retried request attempts
+	 *
+	 * @return count of retries
+	 */
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * Number of retryable failures which were not retried because the retry
+	 * budget was exhausted
+	 *
+	 * @return count of retries refused by the budget
+	 */
+	public long getRetryBudgetExhausted() {
+		return retryBudgetExhausted.sum();
+	}
+
+	/**
+	 * Number of queries answered from the query result cache
+	 *
+	 * @return count of cache hits
+	 */
+	public long getQueryCacheHits() {
+		return queryCacheHits.sum();
+	}
+
+	/**
+	 * Number of queries sent to the server because their result was not
+	 * cached or had expired
+	 *
+	 * @return count of cache misses
+	 */
+	public long getQueryCacheMisses() {
+		return queryCacheMisses.sum();
+	}
+
+	/**
+	 * Number of cached results evicted to keep the cache under its maximum
+	 * size
+	 *
+	 * @return count of evictions
+	 */
+	public long getQueryCacheEvictions() {
+		return queryCacheEvictions.sum();
+	}
+
+	/**
+	 * Number of queries which joined an identical query in flight instead of
+	 * sending their own request
+	 *
+	 * @return count of coalesced queries
+	 */
+	public long getQueriesCoalesced() {
+		return queriesCoalesced.sum();
+	}
+
+	/**
+	 * Number of aggregate series refreshed by querying only their trailing
+	 * bins
+	 *
+	 * @return count of incremental refreshes
+	 */
+	public long getSeriesRefreshes() {
+		return seriesRefreshes.sum();
+	}
+
+	/**
+	 * Number of cached bins reused by the incremental refreshes instead of
+	 * being queried again
+	 *
+	 * @return count of reused bins
+	 */
+	public long getSeriesBinsReused() {
+		return seriesBinsReused.sum();
+	}
+
+	/**
+	 * Number of TLS handshakes completed by new connections
+	 *
+	 * @return count of handshakes
+	 */
+	public long getTlsHandshakes() {
+		return tlsHandshakes.sum();
+	}
+
+	/**
+	 * Number of TLS handshakes which resumed a cached session instead of
+	 * negotiating a new one
+	 *
+	 * @return count of abbreviated handshakes
+	 */
+	public long getTlsHandshakesResumed() {
+		return tlsHandshakesResumed.sum();
+	}
+
+	/**
+	 * Total duration of the TLS handshakes
+	 *
+	 * @return time in milliseconds
+	 */
+	public long getTlsHandshakeTimeMs() {
+		return TimeUnit.NANOSECONDS.toMillis(tlsHandshakeNanos.sum());
+	}
+
+	/**
+	 * Average duration of a TLS handshake
+	 *
+	 * @return time in milliseconds, 0.0 when no handshake was made
+	 */
+	public double getTlsHandshakeAverageMs() {
+		long handshakes = getTlsHandshakes();
+		return handshakes == 0 ? 0.0 : tlsHandshakeNanos.sum() / 1e6 / handshakes;
+	}
+
+	/**
+	 * Number of sessions opened with LogInsight, including the renewals and
+	 * the logins after the expiry of a session
+	 *
+	 * @return count of successful logins
+	 */
+	public long getLogins() {
+		return logins.sum();
+	}
+
+	/**
+	 * Number of sessions renewed in the background before their expiry
+	 *
+	 * @return count of renewals
+	 */
+	public long getSessionRenewals() {
+		return sessionRenewals.sum();
+	}
+
+	/**
+	 * Number of requests sent again with a new session after being rejected
+	 * with an expired one
+	 *
+	 * @return count of re-authenticated requests
+	 */
+	public long getReauthentications() {
+		return reauthentications.sum();
+	}
+
+	/**
+	 * Number of requests of a cluster client sent again to another node after
+	 * a node failure
+	 *
+	 * @return count of failed over requests
+	 */
+	public long getFailovers() {
+		return failovers.sum();
+	}
+
+	/**
+	 * Number of times a cluster node was ejected after consecutive failures
+	 *
+	 * @return count of ejections
+	 */
+	public long getNodeEjections() {
+		return nodeEjections.sum();
+	}
+
+	/**
+	 * Number of times an ejected cluster node passed its health check and
+	 * received requests again
+	 *
+	 * @return count of reinstatements
+	 */
+	public long getNodeReinstatements() {
+		return nodeReinstatements.sum();
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node of a LogInsightClusterClient: the client holding the session and the
+ * connections to one LogInsight node, and the load and health of the node as
+ * seen by the requests sent to it. <br>
+ *
+ * The response time of the node is an exponentially weighted moving average,
+ * in which the last response weighs {@code LATENCY_WEIGHT}.
+ */
+class ClusterNode {
+
+	private static final double LATENCY_WEIGHT = 0.3;
+
+	private final String host;
+	private final LogInsightClient client;
+
+	private final AtomicInteger outstandingRequests = new AtomicInteger();
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	private volatile double latencyMs;
+	private volatile boolean ejected;
+
+	/**
+	 * Constructs the node, healthy
+	 *
+	 * @param host
+	 *            host name of the node
+	 * @param client
+	 *            client of the node
+	 */
+	ClusterNode(String host, LogInsightClient client) {
+		this.host = host;
+		this.client = client;
+	}
+
+	String getHost() {
+		return host;
+	}
+
+	LogInsightClient getClient() {
+		return client;
+	}
+
+	/**
+	 * Number of requests sent to the node and not completed yet
+	 *
+	 * @return count of requests
+	 */
+	int getOutstandingRequests() {
+		return outstandingRequests.get();
+	}
+
+	/**
+	 * Moving average of the response time of the node
+	 *
+	 * @return average in milliseconds, 0 before the first response
+	 */
+	double getLatencyMs() {
+		return latencyMs;
+	}
+
+	/**
+	 * Expected wait of a new request: the average response time times the
+	 * requests it would queue behind. Nodes without response yet count as 1
+	 * millisecond, so that they are tried first.
+	 *
+	 * @return cost in milliseconds
+	 */
+	double getLatencyCost() {
+		return Math.max(latencyMs, 1) * (outstandingRequests.get() + 1);
+	}
+
+	/**
+	 * Whether the node is ejected, waiting for a successful health check
+	 *
+	 * @return true if ejected
+	 */
+	boolean isEjected() {
+		return ejected;
+	}
+
+	void requestStarted() {
+		outstandingRequests.incrementAndGet();
+	}
+
+	/**
+	 * Records the completion of a request
+	 *
+	 * @param nanos
+	 *            duration of the request
+	 * @param nodeFailure
+	 *            whether the request failed because the node did not answer
+	 *            or answered with a server error
+	 * @param ejectFailures
+	 *            consecutive node failures ejecting the node
+	 * @return true if the node failed {@code ejectFailures} consecutive
+	 *         requests
+	 */
+	boolean requestCompleted(long nanos, boolean nodeFailure, int ejectFailures) {
+		outstandingRequests.decrementAndGet();
+		if (nodeFailure) {
+			return consecutiveFailures.incrementAndGet() >= ejectFailures;
+		}
+		consecutiveFailures.set(0);
+		recordLatency(TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0);
+		return false;
+	}
+
+	private synchronized void recordLatency(double ms) {
+		latencyMs = latencyMs == 0 ? ms : latencyMs + LATENCY_WEIGHT * (ms - latencyMs);
+	}
+
+	/**
+	 * Ejects the node
+	 *
+	 * @return false if the node was already ejected
+	 */
+	synchronized boolean eject() {
+		if (ejected) {
+			return false;
+		}
+		ejected = true;
+		return true;
+	}
+
+	/**
+	 * Sends requests to the node again, after a successful health check
+	 */
+	synchronized void reinstate() {
+		consecutiveFailures.set(0);
+		ejected = false;
+	}
+}
@@ -8,11 +8,17 @@
  */
 package com.vmware.loginsightapi;
 
+import java.security.KeyStore;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.configuration2.builder.FileBasedConfigurationBuilder;
@@ -27,6 +33,11 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.vmware.loginsightapi.LogInsightClusterClient.Balancing;
+import com.vmware.loginsightapi.util.DiskSpool.EvictionPolicy;
+import com.vmware.loginsightapi.util.DiskSpool.FsyncPolicy;
+import com.vmware.loginsightapi.util.OverflowQueue.OverflowPolicy;
+
 /**
  * This class builds configuration from the apache commons properties file. or
  * allow developer to programmatically build the configuration. <br>
@@ -37,253 +48,2685 @@ import org.slf4j.LoggerFactory;
  * 3. Override the values programmatically using "setter" methods <br>
  * 
  */
-public class Configuration {
+public class Configuration implements Cloneable {
+
+	/**
+	 * File name for the config file
+	 */
+	public final static String FILENAME = "config.properties";
+
+	/**
+	 * Property key for host name
+	 */
+	public final static String KEY_LI_HOST = "loginsight.host";
+
+	/**
+	 * Property key for port
+	 */
+	public final static String KEY_LI_PORT = "loginsight.port";
+
+	/**
+	 * Property key for ingestion port
+	 */
+	public final static String KEY_LI_INGESTION_PORT = "loginsight.ingestion.port";
+
+	/**
+	 * Property key for user name
+	 */
+	public final static String KEY_LI_USER = "loginsight.user";
+
+	/**
+	 * Property key for password
+	 */
+	public final static String KEY_LI_PASSWORD = "loginsight.password";
+
+	/**
+	 * Property key for Connection scheme
+	 */
+	public static final String KEY_CONNECTION_SCHEME = "loginsight.connection.scheme";
+
+	/**
+	 * Default protocol scheme
+	 */
+	public static final String DEFAULT_SCHEME = "https";
+
+	/**
+	 * Default query port
+	 */
+	public static final int DEFAULT_PORT = 443;
+
+	/**
+	 * Default Ingestion Port
+	 */
+	public static final int DEFAULT_INGESTION_PORT = 9543;
+
+	/**
+	 * Property key for maximum number of messages in an ingestion batch
+	 */
+	public static final String KEY_INGESTION_BATCH_MAX_MESSAGES = "loginsight.ingestion.batch.max.messages";
+
+	/**
+	 * Property key for maximum serialized size (bytes) of an ingestion batch
+	 */
+	public static final String KEY_INGESTION_BATCH_MAX_BYTES = "loginsight.ingestion.batch.max.bytes";
+
+	/**
+	 * Property key for maximum time (milliseconds) a message waits for its
+	 * batch to fill up
+	 */
+	public static final String KEY_INGESTION_BATCH_LINGER_MS = "loginsight.ingestion.batch.linger.ms";
+
+	/**
+	 * Property key for maximum number of concurrent ingestion requests
+	 */
+	public static final String KEY_INGESTION_MAX_IN_FLIGHT = "loginsight.ingestion.max.inflight";
+
+	/**
+	 * Property key for maximum number of messages in a single ingestion
+	 * request. Larger requests are split.
+	 */
+	public static final String KEY_INGESTION_REQUEST_MAX_MESSAGES = "loginsight.ingestion.request.max.messages";
+
+	/**
+	 * Property key for maximum serialized size (bytes) of a single ingestion
+	 * request. Larger requests are split.
+	 */
+	public static final String KEY_INGESTION_REQUEST_MAX_BYTES = "loginsight.ingestion.request.max.bytes";
+
+	/**
+	 * Property key for maximum number of messages waiting in the ingestion
+	 * queue
+	 */
+	public static final String KEY_INGESTION_QUEUE_CAPACITY = "loginsight.ingestion.queue.capacity";
+
+	/**
+	 * Property key for overflow policy of a full ingestion queue (block,
+	 * drop_newest, drop_oldest or sample)
+	 */
+	public static final String KEY_INGESTION_QUEUE_OVERFLOW = "loginsight.ingestion.queue.overflow";
+
+	/**
+	 * Property key for maximum time (milliseconds) a producer waits on a full
+	 * ingestion queue with the block policy
+	 */
+	public static final String KEY_INGESTION_QUEUE_BLOCK_TIMEOUT_MS = "loginsight.ingestion.queue.block.timeout.ms";
+
+	/**
+	 * Property key for the sampling rate (one in n messages kept) of a filling
+	 * ingestion queue with the sample policy
+	 */
+	public static final String KEY_INGESTION_QUEUE_SAMPLE_RATE = "loginsight.ingestion.queue.sample.rate";
+
+	/**
+	 * Property key for compression of the ingestion request bodies (none or
+	 * gzip)
+	 */
+	public static final String KEY_INGESTION_COMPRESSION = "loginsight.ingestion.compression";
+
+	/**
+	 * Property key for gzip compression level (1-9) of the ingestion request
+	 * bodies
+	 */
+	public static final String KEY_INGESTION_COMPRESSION_LEVEL = "loginsight.ingestion.compression.level";
+
+	/**
+	 * Property key for the directory of the ingestion spool. The spool is
+	 * disabled when the directory is not set.
+	 */
+	public static final String KEY_INGESTION_SPOOL_DIR = "loginsight.ingestion.spool.dir";
+
+	/**
+	 * Property key for maximum disk usage (bytes) of the ingestion spool
+	 */
+	public static final String KEY_INGESTION_SPOOL_MAX_BYTES = "loginsight.ingestion.spool.max.bytes";
+
+	/**
+	 * Property key for size (bytes) of an ingestion spool segment file
+	 */
+	public static final String KEY_INGESTION_SPOOL_SEGMENT_BYTES = "loginsight.ingestion.spool.segment.bytes";
+
+	/**
+	 * Property key for fsync policy of the ingestion spool (always, interval
+	 * or never)
+	 */
+	public static final String KEY_INGESTION_SPOOL_FSYNC = "loginsight.ingestion.spool.fsync";
+
+	/**
+	 * Property key for fsync interval (milliseconds) of the ingestion spool
+	 */
+	public static final String KEY_INGESTION_SPOOL_FSYNC_INTERVAL_MS = "loginsight.ingestion.spool.fsync.interval.ms";
+
+	/**
+	 * Property key for eviction policy of a full ingestion spool (drop_oldest
+	 * or reject)
+	 */
+	public static final String KEY_INGESTION_SPOOL_EVICTION = "loginsight.ingestion.spool.eviction";
+
+	/**
+	 * Property key for maximum number of attempts of an ingestion request
+	 * (1 disables the retries)
+	 */
+	public static final String KEY_RETRY_INGESTION_MAX_ATTEMPTS = "loginsight.retry.ingestion.max.attempts";
+
+	/**
+	 * Property key for maximum number of attempts of a query (1 disables the
+	 * retries)
+	 */
+	public static final String KEY_RETRY_QUERY_MAX_ATTEMPTS = "loginsight.retry.query.max.attempts";
+
+	/**
+	 * Property key for backoff (milliseconds) of the first retry
+	 */
+	public static final String KEY_RETRY_BASE_DELAY_MS = "loginsight.retry.base.delay.ms";
+
+	/**
+	 * Property key for maximum backoff (milliseconds) between two attempts
+	 */
+	public static final String KEY_RETRY_MAX_DELAY_MS = "loginsight.retry.max.delay.ms";
+
+	/**
+	 * Property key for the comma separated http status codes which are retried
+	 */
+	public static final String KEY_RETRY_STATUSES = "loginsight.retry.statuses";
+
+	/**
+	 * Property key for retries allowed per request by the retry budget
+	 */
+	public static final String KEY_RETRY_BUDGET_RATIO = "loginsight.retry.budget.ratio";
+
+	/**
+	 * Property key for retries per second allowed by the retry budget
+	 * regardless of the number of requests
+	 */
+	public static final String KEY_RETRY_BUDGET_MIN_PER_SECOND = "loginsight.retry.budget.min.per.second";
+
+	/**
+	 * Property key for number of events in the first page of a QueryCursor
+	 */
+	public static final String KEY_QUERY_PAGE_SIZE = "loginsight.query.page.size";
+
+	/**
+	 * Property key for minimum number of events in a page of a QueryCursor
+	 */
+	public static final String KEY_QUERY_PAGE_MIN_SIZE = "loginsight.query.page.min.size";
+
+	/**
+	 * Property key for maximum number of events in a page of a QueryCursor
+	 */
+	public static final String KEY_QUERY_PAGE_MAX_SIZE = "loginsight.query.page.max.size";
+
+	/**
+	 * Property key for latency (milliseconds) of a page which the page size of
+	 * a QueryCursor adapts to
+	 */
+	public static final String KEY_QUERY_PAGE_TARGET_LATENCY_MS = "loginsight.query.page.target.latency.ms";
+
+	/**
+	 * Property key for number of time slices of a MessageQueryFanOut
+	 */
+	public static final String KEY_QUERY_FANOUT_SLICES = "loginsight.query.fanout.slices";
+
+	/**
+	 * Property key for maximum number of slices of a MessageQueryFanOut queried
+	 * concurrently
+	 */
+	public static final String KEY_QUERY_FANOUT_PARALLELISM = "loginsight.query.fanout.parallelism";
+
+	/**
+	 * Property key for maximum estimated size (bytes) of the cached query
+	 * results, 0 disables the cache
+	 */
+	public static final String KEY_QUERY_CACHE_MAX_BYTES = "loginsight.query.cache.max.bytes";
+
+	/**
+	 * Property key for time to live (milliseconds) of a cached query result
+	 */
+	public static final String KEY_QUERY_CACHE_TTL_MS = "loginsight.query.cache.ttl.ms";
+
+	/**
+	 * Property key for time to live (milliseconds) of a cached query result
+	 * whose time range is in the past
+	 */
+	public static final String KEY_QUERY_CACHE_SETTLED_TTL_MS = "loginsight.query.cache.settled.ttl.ms";
+
+	/**
+	 * Property key for delay (milliseconds) after which the time range of a
+	 * query is considered in the past
+	 */
+	public static final String KEY_QUERY_CACHE_SETTLE_DELAY_MS = "loginsight.query.cache.settle.delay.ms";
+
+	/**
+	 * Property key for sharing one request between concurrent identical
+	 * queries (true or false)
+	 */
+	public static final String KEY_QUERY_COALESCING = "loginsight.query.coalescing";
+
+	/**
+	 * Property key for maximum number of aggregate series kept for incremental
+	 * refresh, 0 disables the series cache
+	 */
+	public static final String KEY_SERIES_CACHE_MAX_ENTRIES = "loginsight.series.cache.max.entries";
+
+	/**
+	 * Property key for interval (milliseconds) between the polls of a live
+	 * tail returning events
+	 */
+	public static final String KEY_TAIL_INTERVAL_MS = "loginsight.tail.interval.ms";
+
+	/**
+	 * Property key for maximum interval (milliseconds) between the polls of an
+	 * idle live tail
+	 */
+	public static final String KEY_TAIL_MAX_INTERVAL_MS = "loginsight.tail.max.interval.ms";
+
+	/**
+	 * Property key for window (milliseconds) before the newest event which a
+	 * live tail queries again for late events
+	 */
+	public static final String KEY_TAIL_OVERLAP_MS = "loginsight.tail.overlap.ms";
+
+	/**
+	 * Property key for maximum number of recent events a live tail remembers
+	 * to skip the events already delivered
+	 */
+	public static final String KEY_TAIL_MAX_FINGERPRINTS = "loginsight.tail.max.fingerprints";
+
+	/**
+	 * Property key for maximum number of pooled connections to LogInsight, 0
+	 * for twice the connections per route
+	 */
+	public static final String KEY_CONNECTION_MAX_TOTAL = "loginsight.connection.max.total";
+
+	/**
+	 * Property key for maximum number of pooled connections to one host and
+	 * port
+	 */
+	public static final String KEY_CONNECTION_MAX_PER_ROUTE = "loginsight.connection.max.per.route";
+
+	/**
+	 * Property key for number of IO dispatcher threads of the http client, 0
+	 * for one per processor
+	 */
+	public static final String KEY_CONNECTION_IO_THREADS = "loginsight.connection.io.threads";
+
+	/**
+	 * Property key for timeout (milliseconds) of the connection to LogInsight,
+	 * 0 for none
+	 */
+	public static final String KEY_CONNECTION_CONNECT_TIMEOUT_MS = "loginsight.connection.connect.timeout.ms";
+
+	/**
+	 * Property key for maximum inactivity (milliseconds) of a connection while
+	 * waiting for a response, 0 for none
+	 */
+	public static final String KEY_CONNECTION_SOCKET_TIMEOUT_MS = "loginsight.connection.socket.timeout.ms";
+
+	/**
+	 * Property key for timeout (milliseconds) of a request waiting for a
+	 * pooled connection, 0 for none
+	 */
+	public static final String KEY_CONNECTION_REQUEST_TIMEOUT_MS = "loginsight.connection.request.timeout.ms";
+
+	/**
+	 * Property key for socket send buffer size (bytes), 0 for the system
+	 * default
+	 */
+	public static final String KEY_CONNECTION_SEND_BUFFER_SIZE = "loginsight.connection.send.buffer.size";
+
+	/**
+	 * Property key for socket receive buffer size (bytes), 0 for the system
+	 * default
+	 */
+	public static final String KEY_CONNECTION_RECEIVE_BUFFER_SIZE = "loginsight.connection.receive.buffer.size";
+
+	/**
+	 * Property key for disabling Nagle's algorithm on the connections (true or
+	 * false)
+	 */
+	public static final String KEY_CONNECTION_TCP_NO_DELAY = "loginsight.connection.tcp.nodelay";
+
+	/**
+	 * Property key for maximum time (milliseconds) an idle connection is kept
+	 * alive for reuse, shorter when the server asks for it
+	 */
+	public static final String KEY_CONNECTION_KEEP_ALIVE_MS = "loginsight.connection.keepalive.ms";
+
+	/**
+	 * Property key for time (milliseconds) after which idle connections are
+	 * closed by a background task, 0 disables the task
+	 */
+	public static final String KEY_CONNECTION_IDLE_EVICTION_MS = "loginsight.connection.idle.eviction.ms";
+
+	/**
+	 * Property key for comma separated TLS protocols enabled on the connections,
+	 * the ones not supported by the JVM are ignored
+	 */
+	public static final String KEY_TLS_PROTOCOLS = "loginsight.tls.protocols";
+
+	/**
+	 * Property key for comma separated cipher suites enabled on the connections,
+	 * empty for the defaults of the JVM
+	 */
+	public static final String KEY_TLS_CIPHER_SUITES = "loginsight.tls.cipher.suites";
+
+	/**
+	 * Property key for path of the trust store holding the certificates of
+	 * the server, empty for the default trust store of the JVM
+	 */
+	public static final String KEY_TLS_TRUST_STORE = "loginsight.tls.trust.store";
+
+	/**
+	 * Property key for password of the trust store
+	 */
+	public static final String KEY_TLS_TRUST_STORE_PASSWORD = "loginsight.tls.trust.store.password";
+
+	/**
+	 * Property key for type of the trust store, such as JKS or PKCS12
+	 */
+	public static final String KEY_TLS_TRUST_STORE_TYPE = "loginsight.tls.trust.store.type";
+
+	/**
+	 * Property key for trusting any server certificate without verifying it
+	 * nor the host name (true or false), for self-signed certificates in test
+	 * environments
+	 */
+	public static final String KEY_TLS_TRUST_ALL = "loginsight.tls.trust.all";
+
+	/**
+	 * Property key for verifying that the server certificate matches the host
+	 * name (true or false)
+	 */
+	public static final String KEY_TLS_VERIFY_HOSTNAME = "loginsight.tls.verify.hostname";
+
+	/**
+	 * Property key for maximum number of TLS sessions cached for resumption,
+	 * 0 for the default of the JVM
+	 */
+	public static final String KEY_TLS_SESSION_CACHE_SIZE = "loginsight.tls.session.cache.size";
+
+	/**
+	 * Property key for time (seconds) a cached TLS session can be resumed, 0
+	 * for the default of the JVM
+	 */
+	public static final String KEY_TLS_SESSION_TIMEOUT_S = "loginsight.tls.session.timeout.s";
+
+	/**
+	 * Property key for time (milliseconds) before the expiry of the session at
+	 * which a new session is opened in the background, 0 disables the renewal
+	 */
+	public static final String KEY_SESSION_RENEWAL_MARGIN_MS = "loginsight.session.renewal.margin.ms";
+
+	/**
+	 * Property key for the comma separated host names of the nodes of a
+	 * LogInsight cluster, used by LogInsightClusterClient
+	 */
+	public static final String KEY_CLUSTER_HOSTS = "loginsight.cluster.hosts";
+
+	/**
+	 * Property key for the selection of the cluster node of a request:
+	 * least_requests or latency_ewma
+	 */
+	public static final String KEY_CLUSTER_BALANCING = "loginsight.cluster.balancing";
+
+	/**
+	 * Property key for number of consecutive failed requests after which a
+	 * cluster node is ejected
+	 */
+	public static final String KEY_CLUSTER_EJECT_FAILURES = "loginsight.cluster.eject.failures";
+
+	/**
+	 * Property key for interval (milliseconds) between the health checks of an
+	 * ejected cluster node
+	 */
+	public static final String KEY_CLUSTER_PROBE_INTERVAL_MS = "loginsight.cluster.probe.interval.ms";
+
+	/**
+	 * Ingestion request bodies are sent uncompressed
+	 */
+	public static final String COMPRESSION_NONE = "none";
+
+	/**
+	 * Ingestion request bodies are sent gzip compressed
+	 */
+	public static final String COMPRESSION_GZIP = "gzip";
+
+	/**
+	 * Default maximum number of messages in an ingestion batch
+	 */
+	public static final int DEFAULT_INGESTION_BATCH_MAX_MESSAGES = 1000;
+
+	/**
+	 * Default maximum serialized size of an ingestion batch (1 MB)
+	 */
+	public static final int DEFAULT_INGESTION_BATCH_MAX_BYTES = 1024 * 1024;
+
+	/**
+	 * Default linger time of an ingestion batch in milliseconds
+	 */
+	public static final long DEFAULT_INGESTION_BATCH_LINGER_MS = 50;
+
+	/**
+	 * Default maximum number of concurrent ingestion requests
+	 */
+	public static final int DEFAULT_INGESTION_MAX_IN_FLIGHT = 4;
+
+	/**
+	 * Default maximum number of messages in a single ingestion request
+	 */
+	public static final int DEFAULT_INGESTION_REQUEST_MAX_MESSAGES = 10000;
+
+	/**
+	 * Default maximum serialized size of a single ingestion request (4 MB)
+	 */
+	public static final long DEFAULT_INGESTION_REQUEST_MAX_BYTES = 4L * 1024 * 1024;
+
+	/**
+	 * Default maximum number of messages waiting in the ingestion queue
+	 */
+	public static final int DEFAULT_INGESTION_QUEUE_CAPACITY = 100000;
+
+	/**
+	 * Default overflow policy of a full ingestion queue
+	 */
+	public static final OverflowPolicy DEFAULT_INGESTION_QUEUE_OVERFLOW = OverflowPolicy.BLOCK;
+
+	/**
+	 * Default time a producer waits on a full ingestion queue in milliseconds
+	 */
+	public static final long DEFAULT_INGESTION_QUEUE_BLOCK_TIMEOUT_MS = 1000;
+
+	/**
+	 * Default sampling rate of a filling ingestion queue
+	 */
+	public static final int DEFAULT_INGESTION_QUEUE_SAMPLE_RATE = 10;
+
+	/**
+	 * Default compression of the ingestion request bodies
+	 */
+	public static final String DEFAULT_INGESTION_COMPRESSION = COMPRESSION_NONE;
+
+	/**
+	 * Default gzip compression level, favouring speed over ratio
+	 */
+	public static final int DEFAULT_INGESTION_COMPRESSION_LEVEL = 4;
+
+	/**
+	 * Default maximum disk usage of the ingestion spool (1 GB)
+	 */
+	public static final long DEFAULT_INGESTION_SPOOL_MAX_BYTES = 1024L * 1024 * 1024;
+
+	/**
+	 * Default size of an ingestion spool segment file (16 MB)
+	 */
+	public static final int DEFAULT_INGESTION_SPOOL_SEGMENT_BYTES = 16 * 1024 * 1024;
+
+	/**
+	 * Default fsync policy of the ingestion spool
+	 */
+	public static final FsyncPolicy DEFAULT_INGESTION_SPOOL_FSYNC = FsyncPolicy.INTERVAL;
+
+	/**
+	 * Default fsync interval of the ingestion spool in milliseconds
+	 */
+	public static final long DEFAULT_INGESTION_SPOOL_FSYNC_INTERVAL_MS = 1000;
+
+	/**
+	 * Default eviction policy of a full ingestion spool
+	 */
+	public static final EvictionPolicy DEFAULT_INGESTION_SPOOL_EVICTION = EvictionPolicy.DROP_OLDEST;
+
+	/**
+	 * Default maximum number of attempts of an ingestion request
+	 */
+	public static final int DEFAULT_RETRY_INGESTION_MAX_ATTEMPTS = 3;
+
+	/**
+	 * Default maximum number of attempts of a query
+	 */
+	public static final int DEFAULT_RETRY_QUERY_MAX_ATTEMPTS = 3;
+
+	/**
+	 * Default backoff of the first retry in milliseconds
+	 */
+	public static final long DEFAULT_RETRY_BASE_DELAY_MS = 100;
+
+	/**
+	 * Default maximum backoff between two attempts in milliseconds
+	 */
+	public static final long DEFAULT_RETRY_MAX_DELAY_MS = 10000;
+
+	/**
+	 * Default retried http status codes: too many requests, bad gateway,
+	 * service unavailable and gateway timeout
+	 */
+	public static final Set<Integer> DEFAULT_RETRY_STATUSES = Collections
+			.unmodifiableSet(new TreeSet<Integer>(Arrays.asList(429, 502, 503, 504)));
+
+	/**
+	 * Default retries allowed per request by the retry budget (10%)
+	 */
+	public static final double DEFAULT_RETRY_BUDGET_RATIO = 0.1;
+
+	/**
+	 * Default retries per second allowed by the retry budget
+	 */
+	public static final int DEFAULT_RETRY_BUDGET_MIN_PER_SECOND = 10;
+
+	/**
+	 * Default number of events in the first page of a QueryCursor
+	 */
+	public static final int DEFAULT_QUERY_PAGE_SIZE = 1000;
+
+	/**
+	 * Default minimum number of events in a page of a QueryCursor
+	 */
+	public static final int DEFAULT_QUERY_PAGE_MIN_SIZE = 100;
+
+	/**
+	 * Default maximum number of events in a page of a QueryCursor
+	 */
+	public static final int DEFAULT_QUERY_PAGE_MAX_SIZE = 10000;
+
+	/**
+	 * Default target latency (milliseconds) of a page of a QueryCursor
+	 */
+	public static final long DEFAULT_QUERY_PAGE_TARGET_LATENCY_MS = 1000;
+
+	/**
+	 * Default number of time slices of a MessageQueryFanOut
+	 */
+	public static final int DEFAULT_QUERY_FANOUT_SLICES = 8;
+
+	/**
+	 * Default maximum number of slices of a MessageQueryFanOut queried
+	 * concurrently
+	 */
+	public static final int DEFAULT_QUERY_FANOUT_PARALLELISM = 4;
+
+	/**
+	 * Query results are not cached by default
+	 */
+	public static final long DEFAULT_QUERY_CACHE_MAX_BYTES = 0;
+
+	/**
+	 * Default time to live (milliseconds) of a cached query result
+	 */
+	public static final long DEFAULT_QUERY_CACHE_TTL_MS = 10000;
+
+	/**
+	 * Default time to live (milliseconds) of a cached query result whose time
+	 * range is in the past
+	 */
+	public static final long DEFAULT_QUERY_CACHE_SETTLED_TTL_MS = 3600000;
+
+	/**
+	 * Default delay (milliseconds) after which the time range of a query is
+	 * considered in the past
+	 */
+	public static final long DEFAULT_QUERY_CACHE_SETTLE_DELAY_MS = 300000;
+
+	/**
+	 * Concurrent identical queries share one request by default
+	 */
+	public static final boolean DEFAULT_QUERY_COALESCING = true;
+
+	/**
+	 * Default maximum number of aggregate series kept for incremental refresh
+	 */
+	public static final int DEFAULT_SERIES_CACHE_MAX_ENTRIES = 64;
+
+	/**
+	 * Default interval (milliseconds) between the polls of a live tail
+	 */
+	public static final long DEFAULT_TAIL_INTERVAL_MS = 1000;
+
+	/**
+	 * Default maximum interval (milliseconds) between the polls of an idle
+	 * live tail
+	 */
+	public static final long DEFAULT_TAIL_MAX_INTERVAL_MS = 30000;
+
+	/**
+	 * Default window (milliseconds) of late events queried again by a live
+	 * tail
+	 */
+	public static final long DEFAULT_TAIL_OVERLAP_MS = 30000;
+
+	/**
+	 * Default maximum number of recent events remembered by a live tail
+	 */
+	public static final int DEFAULT_TAIL_MAX_FINGERPRINTS = 100000;
+
+	/**
+	 * Default maximum number of pooled connections, twice the connections per
+	 * route: one route for the API port and one for the ingestion port
+	 */
+	public static final int DEFAULT_CONNECTION_MAX_TOTAL = 0;
+
+	/**
+	 * Default maximum number of pooled connections to one host and port
+	 */
+	public static final int DEFAULT_CONNECTION_MAX_PER_ROUTE = 20;
+
+	/**
+	 * Default number of IO dispatcher threads, one per processor
+	 */
+	public static final int DEFAULT_CONNECTION_IO_THREADS = 0;
+
+	/**
+	 * Default timeout (milliseconds) of the connection to LogInsight
+	 */
+	public static final int DEFAULT_CONNECTION_CONNECT_TIMEOUT_MS = 10000;
+
+	/**
+	 * Default maximum inactivity (milliseconds) of a connection while waiting
+	 * for a response
+	 */
+	public static final int DEFAULT_CONNECTION_SOCKET_TIMEOUT_MS = 120000;
+
+	/**
+	 * Requests wait for a pooled connection without timeout by default
+	 */
+	public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS = 0;
+
+	/**
+	 * Sockets use the system default send buffer size by default
+	 */
+	public static final int DEFAULT_CONNECTION_SEND_BUFFER_SIZE = 0;
+
+	/**
+	 * Sockets use the system default receive buffer size by default
+	 */
+	public static final int DEFAULT_CONNECTION_RECEIVE_BUFFER_SIZE = 0;
+
+	/**
+	 * Nagle's algorithm is disabled by default, small requests are sent at
+	 * once
+	 */
+	public static final boolean DEFAULT_CONNECTION_TCP_NO_DELAY = true;
+
+	/**
+	 * Default maximum time (milliseconds) an idle connection is kept alive
+	 */
+	public static final long DEFAULT_CONNECTION_KEEP_ALIVE_MS = 60000;
+
+	/**
+	 * Default time (milliseconds) after which idle connections are closed
+	 */
+	public static final long DEFAULT_CONNECTION_IDLE_EVICTION_MS = 30000;
+
+	/**
+	 * Default TLS protocols: TLS 1.3 and TLS 1.2
+	 */
+	public static final List<String> DEFAULT_TLS_PROTOCOLS = Collections
+			.unmodifiableList(Arrays.asList("TLSv1.3", "TLSv1.2"));
+
+	/**
+	 * Default cipher suites: the defaults of the JVM
+	 */
+	public static final List<String> DEFAULT_TLS_CIPHER_SUITES = Collections.<String> emptyList();
+
+	/**
+	 * Default trust store: the default trust store of the JVM
+	 */
+	public static final String DEFAULT_TLS_TRUST_STORE = null;
+
+	/**
+	 * Default trust store password: none
+	 */
+	public static final String DEFAULT_TLS_TRUST_STORE_PASSWORD = null;
+
+	/**
+	 * Default trust store type: the default key store type of the JVM
+	 */
+	public static final String DEFAULT_TLS_TRUST_STORE_TYPE = KeyStore.getDefaultType();
+
+	/**
+	 * Server certificates are verified by default
+	 */
+	public static final boolean DEFAULT_TLS_TRUST_ALL = false;
+
+	/**
+	 * Host names are verified by default
+	 */
+	public static final boolean DEFAULT_TLS_VERIFY_HOSTNAME = true;
+
+	/**
+	 * Default TLS session cache size: the default of the JVM
+	 */
+	public static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 0;
+
+	/**
+	 * Default TLS session timeout: the default of the JVM
+	 */
+	public static final int DEFAULT_TLS_SESSION_TIMEOUT_S = 0;
+
+	/**
+	 * Default time (milliseconds) before the session expiry at which it is
+	 * renewed
+	 */
+	public static final long DEFAULT_SESSION_RENEWAL_MARGIN_MS = 60000;
+
+	/**
+	 * Default cluster nodes: none, the cluster client uses {@code loginsight.host}
+	 */
+	public static final List<String> DEFAULT_CLUSTER_HOSTS = Collections.<String> emptyList();
+
+	/**
+	 * Requests are sent by default to the cluster node with the fewest
+	 * outstanding requests
+	 */
+	public static final Balancing DEFAULT_CLUSTER_BALANCING = Balancing.LEAST_REQUESTS;
+
+	/**
+	 * Default number of consecutive failures ejecting a cluster node
+	 */
+	public static final int DEFAULT_CLUSTER_EJECT_FAILURES = 3;
+
+	/**
+	 * Default interval (milliseconds) between the health checks of an ejected
+	 * cluster node
+	 */
+	public static final long DEFAULT_CLUSTER_PROBE_INTERVAL_MS = 5000;
+
+	String host;
+	String user;
+	String password;
+	String port;
+	String ingestionPort;
+	String scheme;
+	int ingestionBatchMaxMessages = DEFAULT_INGESTION_BATCH_MAX_MESSAGES;
+	int ingestionBatchMaxBytes = DEFAULT_INGESTION_BATCH_MAX_BYTES;
+	long ingestionBatchLingerMs = DEFAULT_INGESTION_BATCH_LINGER_MS;
+	int ingestionMaxInFlight = DEFAULT_INGESTION_MAX_IN_FLIGHT;
+	int ingestionRequestMaxMessages = DEFAULT_INGESTION_REQUEST_MAX_MESSAGES;
+	long ingestionRequestMaxBytes = DEFAULT_INGESTION_REQUEST_MAX_BYTES;
+	int ingestionQueueCapacity = DEFAULT_INGESTION_QUEUE_CAPACITY;
+	OverflowPolicy ingestionQueueOverflow = DEFAULT_INGESTION_QUEUE_OVERFLOW;
+	long ingestionQueueBlockTimeoutMs = DEFAULT_INGESTION_QUEUE_BLOCK_TIMEOUT_MS;
+	int ingestionQueueSampleRate = DEFAULT_INGESTION_QUEUE_SAMPLE_RATE;
+	String ingestionCompression = DEFAULT_INGESTION_COMPRESSION;
+	int ingestionCompressionLevel = DEFAULT_INGESTION_COMPRESSION_LEVEL;
+	String ingestionSpoolDir;
+	long ingestionSpoolMaxBytes = DEFAULT_INGESTION_SPOOL_MAX_BYTES;
+	int ingestionSpoolSegmentBytes = DEFAULT_INGESTION_SPOOL_SEGMENT_BYTES;
+	FsyncPolicy ingestionSpoolFsync = DEFAULT_INGESTION_SPOOL_FSYNC;
+	long ingestionSpoolFsyncIntervalMs = DEFAULT_INGESTION_SPOOL_FSYNC_INTERVAL_MS;
+	EvictionPolicy ingestionSpoolEviction = DEFAULT_INGESTION_SPOOL_EVICTION;
+	int retryIngestionMaxAttempts = DEFAULT_RETRY_INGESTION_MAX_ATTEMPTS;
+	int retryQueryMaxAttempts = DEFAULT_RETRY_QUERY_MAX_ATTEMPTS;
+	long retryBaseDelayMs = DEFAULT_RETRY_BASE_DELAY_MS;
+	long retryMaxDelayMs = DEFAULT_RETRY_MAX_DELAY_MS;
+	Set<Integer> retryStatuses = DEFAULT_RETRY_STATUSES;
+	double retryBudgetRatio = DEFAULT_RETRY_BUDGET_RATIO;
+	int retryBudgetMinPerSecond = DEFAULT_RETRY_BUDGET_MIN_PER_SECOND;
+	int queryPageSize = DEFAULT_QUERY_PAGE_SIZE;
+	int queryPageMinSize = DEFAULT_QUERY_PAGE_MIN_SIZE;
+	int queryPageMaxSize = DEFAULT_QUERY_PAGE_MAX_SIZE;
+	long queryPageTargetLatencyMs = DEFAULT_QUERY_PAGE_TARGET_LATENCY_MS;
+	int queryFanOutSlices = DEFAULT_QUERY_FANOUT_SLICES;
+	int queryFanOutParallelism = DEFAULT_QUERY_FANOUT_PARALLELISM;
+	long queryCacheMaxBytes = DEFAULT_QUERY_CACHE_MAX_BYTES;
+	long queryCacheTtlMs = DEFAULT_QUERY_CACHE_TTL_MS;
+	long queryCacheSettledTtlMs = DEFAULT_QUERY_CACHE_SETTLED_TTL_MS;
+	long queryCacheSettleDelayMs = DEFAULT_QUERY_CACHE_SETTLE_DELAY_MS;
+	boolean queryCoalescing = DEFAULT_QUERY_COALESCING;
+	int seriesCacheMaxEntries = DEFAULT_SERIES_CACHE_MAX_ENTRIES;
+	long tailIntervalMs = DEFAULT_TAIL_INTERVAL_MS;
+	long tailMaxIntervalMs = DEFAULT_TAIL_MAX_INTERVAL_MS;
+	long tailOverlapMs = DEFAULT_TAIL_OVERLAP_MS;
+	int tailMaxFingerprints = DEFAULT_TAIL_MAX_FINGERPRINTS;
+	int connectionMaxTotal = DEFAULT_CONNECTION_MAX_TOTAL;
+	int connectionMaxPerRoute = DEFAULT_CONNECTION_MAX_PER_ROUTE;
+	int connectionIoThreads = DEFAULT_CONNECTION_IO_THREADS;
+	int connectionConnectTimeoutMs = DEFAULT_CONNECTION_CONNECT_TIMEOUT_MS;
+	int connectionSocketTimeoutMs = DEFAULT_CONNECTION_SOCKET_TIMEOUT_MS;
+	int connectionRequestTimeoutMs = DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS;
+	int connectionSendBufferSize = DEFAULT_CONNECTION_SEND_BUFFER_SIZE;
+	int connectionReceiveBufferSize = DEFAULT_CONNECTION_RECEIVE_BUFFER_SIZE;
+	boolean connectionTcpNoDelay = DEFAULT_CONNECTION_TCP_NO_DELAY;
+	long connectionKeepAliveMs = DEFAULT_CONNECTION_KEEP_ALIVE_MS;
+	long connectionIdleEvictionMs = DEFAULT_CONNECTION_IDLE_EVICTION_MS;
+	List<String> tlsProtocols = DEFAULT_TLS_PROTOCOLS;
+	List<String> tlsCipherSuites = DEFAULT_TLS_CIPHER_SUITES;
+	String tlsTrustStore = DEFAULT_TLS_TRUST_STORE;
+	String tlsTrustStorePassword = DEFAULT_TLS_TRUST_STORE_PASSWORD;
+	String tlsTrustStoreType = DEFAULT_TLS_TRUST_STORE_TYPE;
+	boolean tlsTrustAll = DEFAULT_TLS_TRUST_ALL;
+	boolean tlsVerifyHostname = DEFAULT_TLS_VERIFY_HOSTNAME;
+	int tlsSessionCacheSize = DEFAULT_TLS_SESSION_CACHE_SIZE;
+	int tlsSessionTimeoutS = DEFAULT_TLS_SESSION_TIMEOUT_S;
+	long sessionRenewalMarginMs = DEFAULT_SESSION_RENEWAL_MARGIN_MS;
+	List<String> clusterHosts = DEFAULT_CLUSTER_HOSTS;
+	Balancing clusterBalancing = DEFAULT_CLUSTER_BALANCING;
+	int clusterEjectFailures = DEFAULT_CLUSTER_EJECT_FAILURES;
+	long clusterProbeIntervalMs = DEFAULT_CLUSTER_PROBE_INTERVAL_MS;
+
+	private final static Logger logger = LoggerFactory.getLogger(Configuration.class);
+
+	/**
+	 * Empty config constructor
+	 */
+	public Configuration() {
+		this.port = Integer.toString(DEFAULT_PORT);
+		this.ingestionPort = Integer.toString(DEFAULT_INGESTION_PORT);
+		this.scheme = DEFAULT_SCHEME;
+	}
+
+	/**
+	 * Config constructor with host, user and password
+	 * 
+	 * @param host
+	 *            name of the loginsight host
+	 * @param user
+	 *            user name
+	 * @param password
+	 *            password
+	 * 
+	 */
+	public Configuration(String host, String user, String password) {
+		this.host = host;
+		this.user = user;
+		this.password = password;
+		this.port = Integer.toString(DEFAULT_PORT);
+		this.ingestionPort = Integer.toString(DEFAULT_INGESTION_PORT);
+		this.scheme = DEFAULT_SCHEME;
+	}
+
+	/**
+	 * Builds the configuration from a property map
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @return Configuration object           
+	 * 
+	 */
+	public static Configuration buildConfig(Map<String, String> configData) {
+
+		Configuration liConfig = new Configuration();
+
+		liConfig.port = Integer.toString(DEFAULT_PORT);
+		liConfig.ingestionPort = Integer.toString(DEFAULT_INGESTION_PORT);
+		liConfig.scheme = DEFAULT_SCHEME;
+
+		if (configData.containsKey(KEY_LI_HOST) && null != configData.get(KEY_LI_HOST) && StringUtils.isNotEmpty(configData.get(KEY_LI_HOST))) {
+			liConfig.host = configData.get(KEY_LI_HOST);
+		}
+
+		if (configData.containsKey(KEY_LI_PORT) && null != configData.get(KEY_LI_PORT) && StringUtils.isNotEmpty(configData.get(KEY_LI_PORT))) {
+			logger.info("setting port as well");
+			liConfig.port = configData.get(KEY_LI_PORT);
+		}
+
+		if (configData.containsKey(KEY_LI_INGESTION_PORT) && null != configData.get(KEY_LI_INGESTION_PORT)
+				&& StringUtils.isNotEmpty(configData.get(KEY_LI_INGESTION_PORT))) {
+			liConfig.ingestionPort = configData.get(KEY_LI_INGESTION_PORT);
+		}
+
+		if (configData.containsKey(KEY_LI_USER) && null != configData.get(KEY_LI_USER) && StringUtils.isNotEmpty(configData.get(KEY_LI_USER))) {
+			liConfig.user = configData.get(KEY_LI_USER);
+		}
+
+		if (configData.containsKey(KEY_LI_PASSWORD) && null != configData.get(KEY_LI_PASSWORD) && StringUtils.isNotEmpty(configData.get(KEY_LI_PASSWORD))) {
+			liConfig.password = configData.get(KEY_LI_PASSWORD);
+		}
+
+		if (configData.containsKey(KEY_CONNECTION_SCHEME) && null != configData.get(KEY_CONNECTION_SCHEME)
+				&& StringUtils.isNotEmpty(configData.get(KEY_CONNECTION_SCHEME))) {
+			liConfig.scheme = configData.get(KEY_CONNECTION_SCHEME);
+		}
+
+		liConfig.ingestionBatchMaxMessages = intValue(configData, KEY_INGESTION_BATCH_MAX_MESSAGES,
+				liConfig.ingestionBatchMaxMessages);
+		liConfig.ingestionBatchMaxBytes = intValue(configData, KEY_INGESTION_BATCH_MAX_BYTES,
+				liConfig.ingestionBatchMaxBytes);
+		liConfig.ingestionBatchLingerMs = longValue(configData, KEY_INGESTION_BATCH_LINGER_MS,
+				liConfig.ingestionBatchLingerMs);
+		liConfig.ingestionMaxInFlight = intValue(configData, KEY_INGESTION_MAX_IN_FLIGHT,
+				liConfig.ingestionMaxInFlight);
+		liConfig.ingestionRequestMaxMessages = intValue(configData, KEY_INGESTION_REQUEST_MAX_MESSAGES,
+				liConfig.ingestionRequestMaxMessages);
+		liConfig.ingestionRequestMaxBytes = longValue(configData, KEY_INGESTION_REQUEST_MAX_BYTES,
+				liConfig.ingestionRequestMaxBytes);
+		liConfig.ingestionQueueCapacity = intValue(configData, KEY_INGESTION_QUEUE_CAPACITY,
+				liConfig.ingestionQueueCapacity);
+		liConfig.ingestionQueueOverflow = enumValue(configData, KEY_INGESTION_QUEUE_OVERFLOW, OverflowPolicy.class,
+				liConfig.ingestionQueueOverflow);
+		liConfig.ingestionQueueBlockTimeoutMs = longValue(configData, KEY_INGESTION_QUEUE_BLOCK_TIMEOUT_MS,
+				liConfig.ingestionQueueBlockTimeoutMs);
+		liConfig.ingestionQueueSampleRate = intValue(configData, KEY_INGESTION_QUEUE_SAMPLE_RATE,
+				liConfig.ingestionQueueSampleRate);
+		if (hasValue(configData, KEY_INGESTION_COMPRESSION)) {
+			liConfig.setIngestionCompression(configData.get(KEY_INGESTION_COMPRESSION));
+		}
+		liConfig.setIngestionCompressionLevel(intValue(configData, KEY_INGESTION_COMPRESSION_LEVEL,
+				liConfig.ingestionCompressionLevel));
+		if (hasValue(configData, KEY_INGESTION_SPOOL_DIR)) {
+			liConfig.ingestionSpoolDir = configData.get(KEY_INGESTION_SPOOL_DIR).trim();
+		}
+		liConfig.ingestionSpoolMaxBytes = longValue(configData, KEY_INGESTION_SPOOL_MAX_BYTES,
+				liConfig.ingestionSpoolMaxBytes);
+		liConfig.ingestionSpoolSegmentBytes = intValue(configData, KEY_INGESTION_SPOOL_SEGMENT_BYTES,
+				liConfig.ingestionSpoolSegmentBytes);
+		liConfig.ingestionSpoolFsync = enumValue(configData, KEY_INGESTION_SPOOL_FSYNC, FsyncPolicy.class,
+				liConfig.ingestionSpoolFsync);
+		liConfig.ingestionSpoolFsyncIntervalMs = longValue(configData, KEY_INGESTION_SPOOL_FSYNC_INTERVAL_MS,
+				liConfig.ingestionSpoolFsyncIntervalMs);
+		liConfig.ingestionSpoolEviction = enumValue(configData, KEY_INGESTION_SPOOL_EVICTION, EvictionPolicy.class,
+				liConfig.ingestionSpoolEviction);
+		liConfig.retryIngestionMaxAttempts = intValue(configData, KEY_RETRY_INGESTION_MAX_ATTEMPTS,
+				liConfig.retryIngestionMaxAttempts);
+		liConfig.retryQueryMaxAttempts = intValue(configData, KEY_RETRY_QUERY_MAX_ATTEMPTS,
+				liConfig.retryQueryMaxAttempts);
+		liConfig.retryBaseDelayMs = longValue(configData, KEY_RETRY_BASE_DELAY_MS, liConfig.retryBaseDelayMs);
+		liConfig.retryMaxDelayMs = longValue(configData, KEY_RETRY_MAX_DELAY_MS, liConfig.retryMaxDelayMs);
+		liConfig.retryStatuses = intSetValue(configData, KEY_RETRY_STATUSES, liConfig.retryStatuses);
+		liConfig.retryBudgetRatio = doubleValue(configData, KEY_RETRY_BUDGET_RATIO, liConfig.retryBudgetRatio);
+		liConfig.retryBudgetMinPerSecond = intValue(configData, KEY_RETRY_BUDGET_MIN_PER_SECOND,
+				liConfig.retryBudgetMinPerSecond);
+		liConfig.queryPageSize = intValue(configData, KEY_QUERY_PAGE_SIZE, liConfig.queryPageSize);
+		liConfig.queryPageMinSize = intValue(configData, KEY_QUERY_PAGE_MIN_SIZE, liConfig.queryPageMinSize);
+		liConfig.queryPageMaxSize = intValue(configData, KEY_QUERY_PAGE_MAX_SIZE, liConfig.queryPageMaxSize);
+		liConfig.queryPageTargetLatencyMs = longValue(configData, KEY_QUERY_PAGE_TARGET_LATENCY_MS,
+				liConfig.queryPageTargetLatencyMs);
+		liConfig.queryFanOutSlices = intValue(configData, KEY_QUERY_FANOUT_SLICES, liConfig.queryFanOutSlices);
+		liConfig.queryFanOutParallelism = intValue(configData, KEY_QUERY_FANOUT_PARALLELISM,
+				liConfig.queryFanOutParallelism);
+		liConfig.queryCacheMaxBytes = longValue(configData, KEY_QUERY_CACHE_MAX_BYTES, liConfig.queryCacheMaxBytes);
+		liConfig.queryCacheTtlMs = longValue(configData, KEY_QUERY_CACHE_TTL_MS, liConfig.queryCacheTtlMs);
+		liConfig.queryCacheSettledTtlMs = longValue(configData, KEY_QUERY_CACHE_SETTLED_TTL_MS,
+				liConfig.queryCacheSettledTtlMs);
+		liConfig.queryCacheSettleDelayMs = longValue(configData, KEY_QUERY_CACHE_SETTLE_DELAY_MS,
+				liConfig.queryCacheSettleDelayMs);
+		liConfig.queryCoalescing = booleanValue(configData, KEY_QUERY_COALESCING, liConfig.queryCoalescing);
+		liConfig.seriesCacheMaxEntries = intValue(configData, KEY_SERIES_CACHE_MAX_ENTRIES,
+				liConfig.seriesCacheMaxEntries);
+		liConfig.tailIntervalMs = longValue(configData, KEY_TAIL_INTERVAL_MS, liConfig.tailIntervalMs);
+		liConfig.tailMaxIntervalMs = longValue(configData, KEY_TAIL_MAX_INTERVAL_MS, liConfig.tailMaxIntervalMs);
+		liConfig.tailOverlapMs = longValue(configData, KEY_TAIL_OVERLAP_MS, liConfig.tailOverlapMs);
+		liConfig.tailMaxFingerprints = intValue(configData, KEY_TAIL_MAX_FINGERPRINTS, liConfig.tailMaxFingerprints);
+		liConfig.connectionMaxTotal = intValue(configData, KEY_CONNECTION_MAX_TOTAL, liConfig.connectionMaxTotal);
+		liConfig.connectionMaxPerRoute = intValue(configData, KEY_CONNECTION_MAX_PER_ROUTE,
+				liConfig.connectionMaxPerRoute);
+		liConfig.connectionIoThreads = intValue(configData, KEY_CONNECTION_IO_THREADS, liConfig.connectionIoThreads);
+		liConfig.connectionConnectTimeoutMs = intValue(configData, KEY_CONNECTION_CONNECT_TIMEOUT_MS,
+				liConfig.connectionConnectTimeoutMs);
+		liConfig.connectionSocketTimeoutMs = intValue(configData, KEY_CONNECTION_SOCKET_TIMEOUT_MS,
+				liConfig.connectionSocketTimeoutMs);
+		liConfig.connectionRequestTimeoutMs = intValue(configData, KEY_CONNECTION_REQUEST_TIMEOUT_MS,
+				liConfig.connectionRequestTimeoutMs);
+		liConfig.connectionSendBufferSize = intValue(configData, KEY_CONNECTION_SEND_BUFFER_SIZE,
+				liConfig.connectionSendBufferSize);
+		liConfig.connectionReceiveBufferSize = intValue(configData, KEY_CONNECTION_RECEIVE_BUFFER_SIZE,
+				liConfig.connectionReceiveBufferSize);
+		liConfig.connectionTcpNoDelay = booleanValue(configData, KEY_CONNECTION_TCP_NO_DELAY,
+				liConfig.connectionTcpNoDelay);
+		liConfig.connectionKeepAliveMs = longValue(configData, KEY_CONNECTION_KEEP_ALIVE_MS,
+				liConfig.connectionKeepAliveMs);
+		liConfig.connectionIdleEvictionMs = longValue(configData, KEY_CONNECTION_IDLE_EVICTION_MS,
+				liConfig.connectionIdleEvictionMs);
+		liConfig.tlsProtocols = stringListValue(configData, KEY_TLS_PROTOCOLS, liConfig.tlsProtocols);
+		liConfig.tlsCipherSuites = stringListValue(configData, KEY_TLS_CIPHER_SUITES, liConfig.tlsCipherSuites);
+		liConfig.tlsTrustStore = stringValue(configData, KEY_TLS_TRUST_STORE, liConfig.tlsTrustStore);
+		liConfig.tlsTrustStorePassword = stringValue(configData, KEY_TLS_TRUST_STORE_PASSWORD,
+				liConfig.tlsTrustStorePassword);
+		liConfig.tlsTrustStoreType = stringValue(configData, KEY_TLS_TRUST_STORE_TYPE, liConfig.tlsTrustStoreType);
+		liConfig.tlsTrustAll = booleanValue(configData, KEY_TLS_TRUST_ALL, liConfig.tlsTrustAll);
+		liConfig.tlsVerifyHostname = booleanValue(configData, KEY_TLS_VERIFY_HOSTNAME, liConfig.tlsVerifyHostname);
+		liConfig.tlsSessionCacheSize = intValue(configData, KEY_TLS_SESSION_CACHE_SIZE, liConfig.tlsSessionCacheSize);
+		liConfig.tlsSessionTimeoutS = intValue(configData, KEY_TLS_SESSION_TIMEOUT_S, liConfig.tlsSessionTimeoutS);
+		liConfig.sessionRenewalMarginMs = longValue(configData, KEY_SESSION_RENEWAL_MARGIN_MS,
+				liConfig.sessionRenewalMarginMs);
+		liConfig.clusterHosts = stringListValue(configData, KEY_CLUSTER_HOSTS, liConfig.clusterHosts);
+		liConfig.clusterBalancing = enumValue(configData, KEY_CLUSTER_BALANCING, Balancing.class,
+				liConfig.clusterBalancing);
+		liConfig.clusterEjectFailures = intValue(configData, KEY_CLUSTER_EJECT_FAILURES, liConfig.clusterEjectFailures);
+		liConfig.clusterProbeIntervalMs = longValue(configData, KEY_CLUSTER_PROBE_INTERVAL_MS,
+				liConfig.clusterProbeIntervalMs);
+		return liConfig;
+	}
+
+	/**
+	 * Checks whether the property map carries a non empty value for the key
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @param key
+	 *            property key
+	 * @return true if the value is present
+	 */
+	private static boolean hasValue(Map<String, String> configData, String key) {
+		return configData.containsKey(key) && null != configData.get(key)
+				&& StringUtils.isNotEmpty(configData.get(key).trim());
+	}
+
+	/**
+	 * Reads an integer property from the property map
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @param key
+	 *            property key
+	 * @param defaultValue
+	 *            value returned when the property is not set
+	 * @return integer value of the property
+	 */
+	private static int intValue(Map<String, String> configData, String key, int defaultValue) {
+		if (hasValue(configData, key)) {
+			try {
+				return Integer.parseInt(configData.get(key).trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value for " + key + ": " + configData.get(key), e);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a long property from the property map
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @param key
+	 *            property key
+	 * @param defaultValue
+	 *            value returned when the property is not set
+	 * @return long value of the property
+	 */
+	private static long longValue(Map<String, String> configData, String key, long defaultValue) {
+		if (hasValue(configData, key)) {
+			try {
+				return Long.parseLong(configData.get(key).trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value for " + key + ": " + configData.get(key), e);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a decimal property from the property map
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @param key
+	 *            property key
+	 * @param defaultValue
+	 *            value returned when the property is not set
+	 * @return double value of the property
+	 */
+	private static double doubleValue(Map<String, String> configData, String key, double defaultValue) {
+		if (hasValue(configData, key)) {
+			try {
+				return Double.parseDouble(configData.get(key).trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value for " + key + ": " + configData.get(key), e);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a boolean property (true or false) from the property map
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @param key
+	 *            property key
+	 * @param defaultValue
+	 *            value returned when the property is not set
+	 * @return boolean value of the property
+	 */
+	private static boolean booleanValue(Map<String, String> configData, String key, boolean defaultValue) {
+		if (hasValue(configData, key)) {
+			String value = configData.get(key).trim();
+			if ("true".equalsIgnoreCase(value)) {
+				return true;
+			} else if ("false".equalsIgnoreCase(value)) {
+				return false;
+			}
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + configData.get(key));
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a comma separated list of integers from the property map
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @param key
+	 *            property key
+	 * @param defaultValue
+	 *            value returned when the property is not set
+	 * @return unmodifiable set of the integers
+	 */
+	private static Set<Integer> intSetValue(Map<String, String> configData, String key, Set<Integer> defaultValue) {
+		if (hasValue(configData, key)) {
+			Set<Integer> values = new TreeSet<Integer>();
+			try {
+				for (String value : configData.get(key).split(",")) {
+					if (StringUtils.isNotBlank(value)) {
+						values.add(Integer.parseInt(value.trim()));
+					}
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value for " + key + ": " + configData.get(key), e);
+			}
+			return Collections.unmodifiableSet(values);
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a string property from the property map
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @param key
+	 *            property key
+	 * @param defaultValue
+	 *            value returned when the property is not set
+	 * @return trimmed value of the property
+	 */
+	private static String stringValue(Map<String, String> configData, String key, String defaultValue) {
+		if (hasValue(configData, key)) {
+			return configData.get(key).trim();
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads a comma separated list of strings from the property map
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @param key
+	 *            property key
+	 * @param defaultValue
+	 *            value returned when the property is not set
+	 * @return unmodifiable list of the trimmed, non empty strings
+	 */
+	private static List<String> stringListValue(Map<String, String> configData, String key,
+			List<String> defaultValue) {
+		if (hasValue(configData, key)) {
+			List<String> values = new ArrayList<String>();
+			for (String value : configData.get(key).split(",")) {
+				if (StringUtils.isNotBlank(value)) {
+					values.add(value.trim());
+				}
+			}
+			return Collections.unmodifiableList(values);
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Reads an enum property from the property map, ignoring the case of the
+	 * value
+	 * 
+	 * @param configData
+	 *            Config data in a hashmap
+	 * @param key
+	 *            property key
+	 * @param type
+	 *            enum class
+	 * @param defaultValue
+	 *            value returned when the property is not set
+	 * @return enum value of the property
+	 */
+	private static <E extends Enum<E>> E enumValue(Map<String, String> configData, String key, Class<E> type,
+			E defaultValue) {
+		if (hasValue(configData, key)) {
+			try {
+				return Enum.valueOf(type, configData.get(key).trim().toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid value for " + key + ": " + configData.get(key), e);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns the http or https
+	 * 
+	 * @return http or https
+	 */
+	public String getScheme() {
+		return scheme;
+	}
+
+	/**
+	 * Sets the scheme to provided one http or https
+	 * 
+	 * @param scheme
+	 *            http or https
+	 */
+	public void setScheme(String scheme) {
+		this.scheme = scheme;
+	}
+
+	/**
+	 * Ingestion port
+	 * 
+	 * @return ingestion port number (string format)
+	 */
+	public String getIngestionPort() {
+		return ingestionPort;
+	}
+
+	/**
+	 * Updates the ingestion port
+	 * 
+	 * @param ingestionPort
+	 *            ingestion port number (string format)
+	 */
+	public void setIngestionPort(String ingestionPort) {
+		this.ingestionPort = ingestionPort;
+	}
+
+	/**
+	 * Updates the host name of the loginsight
+	 * 
+	 * @param host
+	 *            Host name of the LogInsight server
+	 */
+	public void setHost(String host) {
+		this.host = host;
+	}
+
+	/**
+	 * Copy of the configuration for another LogInsight host, such as a node of
+	 * a cluster
+	 * 
+	 * @param host
+	 *            Host name of the LogInsight server
+	 * @return Configuration object
+	 */
+	public Configuration forHost(String host) {
+		try {
+			Configuration copy = (Configuration) super.clone();
+			copy.host = host;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Updates the user name of the LogInsight user
+	 * 
+	 * @param user
+	 *            user name for LogInsight
+	 */
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	/**
+	 * Updates the password for LogInsight connection
+	 * 
+	 * @param password
+	 *            password for LogInsight
+	 */
+	public void setPassword(String password) {
+		this.password = password;
+	}
+
+	/**
+	 * Updates the LogInsight port number
+	 * 
+	 * @param port
+	 *            Port number (string format)
+	 */
+	public void setPort(String port) {
+		this.port = port;
+	}
+
+	/**
+	 * Getter for Loginsight host name
+	 * 
+	 * @return Loginsight hostname
+	 */
+	public String getHost() {
+		return this.host;
+	}
+
+	/**
+	 * Getter for Loginsight server port
+	 * 
+	 * @return Loginsight server port (stringified format)
+	 */
+	public String getPort() {
+		return this.port;
+	}
+
+	/**
+	 * Getter for Loginsight user for authentication
+	 * 
+	 * @return Loginsight user
+	 */
+	public String getUser() {
+		return this.user;
+	}
+
+	/**
+	 * Getter for Loginsight password for authentication
+	 * 
+	 * @return Loginsight password
+	 */
+	public String getPassword() {
+		return this.password;
+	}
+
+	/**
+	 * Getter for maximum number of messages in an ingestion batch
+	 * 
+	 * @return maximum number of messages per batch
+	 */
+	public int getIngestionBatchMaxMessages() {
+		return ingestionBatchMaxMessages;
+	}
+
+	/**
+	 * Updates the maximum number of messages in an ingestion batch
+	 * 
+	 * @param ingestionBatchMaxMessages
+	 *            maximum number of messages per batch
+	 */
+	public void setIngestionBatchMaxMessages(int ingestionBatchMaxMessages) {
+		this.ingestionBatchMaxMessages = ingestionBatchMaxMessages;
+	}
+
+	/**
+	 * Getter for maximum serialized size of an ingestion batch
+	 * 
+	 * @return maximum size of a batch in bytes
+	 */
+	public int getIngestionBatchMaxBytes() {
+		return ingestionBatchMaxBytes;
+	}
+
+	/**
+	 * Updates the maximum serialized size of an ingestion batch
+	 * 
+	 * @param ingestionBatchMaxBytes
+	 *            maximum size of a batch in bytes
+	 */
+	public void setIngestionBatchMaxBytes(int ingestionBatchMaxBytes) {
+		this.ingestionBatchMaxBytes = ingestionBatchMaxBytes;
+	}
+
+	/**
+	 * Getter for the linger time of an ingestion batch
+	 * 
+	 * @return linger time in milliseconds
+	 */
+	public long getIngestionBatchLingerMs() {
+		return ingestionBatchLingerMs;
+	}
+
+	/**
+	 * Updates the linger time of an ingestion batch
+	 * 
+	 * @param ingestionBatchLingerMs
+	 *            linger time in milliseconds
+	 */
+	public void setIngestionBatchLingerMs(long ingestionBatchLingerMs) {
+		this.ingestionBatchLingerMs = ingestionBatchLingerMs;
+	}
+
+	/**
+	 * Getter for maximum number of concurrent ingestion requests
+	 * 
+	 * @return maximum number of in-flight ingestion requests
+	 */
+	public int getIngestionMaxInFlight() {
+		return ingestionMaxInFlight;
+	}
+
+	/**
+	 * Updates the maximum number of concurrent ingestion requests
+	 * 
+	 * @param ingestionMaxInFlight
+	 *            maximum number of in-flight ingestion requests
+	 */
+	public void setIngestionMaxInFlight(int ingestionMaxInFlight) {
+		this.ingestionMaxInFlight = ingestionMaxInFlight;
+	}
+
+	/**
+	 * Getter for maximum number of messages in a single ingestion request
+	 * 
+	 * @return messages per request
+	 */
+	public int getIngestionRequestMaxMessages() {
+		return ingestionRequestMaxMessages;
+	}
+
+	/**
+	 * Updates the maximum number of messages in a single ingestion request
+	 * 
+	 * @param ingestionRequestMaxMessages
+	 *            messages per request
+	 */
+	public void setIngestionRequestMaxMessages(int ingestionRequestMaxMessages) {
+		this.ingestionRequestMaxMessages = ingestionRequestMaxMessages;
+	}
+
+	/**
+	 * Getter for maximum serialized size of a single ingestion request
+	 * 
+	 * @return request size in bytes
+	 */
+	public long getIngestionRequestMaxBytes() {
+		return ingestionRequestMaxBytes;
+	}
+
+	/**
+	 * Updates the maximum serialized size of a single ingestion request
+	 * 
+	 * @param ingestionRequestMaxBytes
+	 *            request size in bytes
+	 */
+	public void setIngestionRequestMaxBytes(long ingestionRequestMaxBytes) {
+		this.ingestionRequestMaxBytes = ingestionRequestMaxBytes;
+	}
+
+	/**
+	 * Getter for maximum number of messages waiting in the ingestion queue
+	 * 
+	 * @return queue capacity
+	 */
+	public int getIngestionQueueCapacity() {
+		return ingestionQueueCapacity;
+	}
+
+	/**
+	 * Updates the maximum number of messages waiting in the ingestion queue
+	 * 
+	 * @param ingestionQueueCapacity
+	 *            queue capacity
+	 */
+	public void setIngestionQueueCapacity(int ingestionQueueCapacity) {
+		this.ingestionQueueCapacity = ingestionQueueCapacity;
+	}
+
+	/**
+	 * Getter for overflow policy of a full ingestion queue
+	 * 
+	 * @return overflow policy
+	 */
+	public OverflowPolicy getIngestionQueueOverflow() {
+		return ingestionQueueOverflow;
+	}
+
+	/**
+	 * Updates the overflow policy of a full ingestion queue
+	 * 
+	 * @param ingestionQueueOverflow
+	 *            overflow policy
+	 */
+	public void setIngestionQueueOverflow(OverflowPolicy ingestionQueueOverflow) {
+		this.ingestionQueueOverflow = ingestionQueueOverflow;
+	}
+
+	/**
+	 * Getter for maximum time a producer waits on a full ingestion queue with
+	 * the block policy
+	 * 
+	 * @return block timeout in milliseconds
+	 */
+	public long getIngestionQueueBlockTimeoutMs() {
+		return ingestionQueueBlockTimeoutMs;
+	}
+
+	/**
+	 * Updates the maximum time a producer waits on a full ingestion queue with
+	 * the block policy
+	 * 
+	 * @param ingestionQueueBlockTimeoutMs
+	 *            block timeout in milliseconds
+	 */
+	public void setIngestionQueueBlockTimeoutMs(long ingestionQueueBlockTimeoutMs) {
+		this.ingestionQueueBlockTimeoutMs = ingestionQueueBlockTimeoutMs;
+	}
+
+	/**
+	 * Getter for sampling rate of a filling ingestion queue with the sample
+	 * policy
+	 * 
+	 * @return one in n messages kept
+	 */
+	public int getIngestionQueueSampleRate() {
+		return ingestionQueueSampleRate;
+	}
+
+	/**
+	 * Updates the sampling rate of a filling ingestion queue with the sample
+	 * policy
+	 * 
+	 * @param ingestionQueueSampleRate
+	 *            one in n messages kept
+	 */
+	public void setIngestionQueueSampleRate(int ingestionQueueSampleRate) {
+		this.ingestionQueueSampleRate = ingestionQueueSampleRate;
+	}
+
+	/**
+	 * Getter for compression of the ingestion request bodies
+	 * 
+	 * @return {@code COMPRESSION_NONE} or {@code COMPRESSION_GZIP}
+	 */
+	public String getIngestionCompression() {
+		return ingestionCompression;
+	}
+
+	/**
+	 * Updates the compression of the ingestion request bodies
+	 * 
+	 * @param ingestionCompression
+	 *            none or gzip
+	 * @throws IllegalArgumentException
+	 *             for unsupported compression
+	 */
+	public void setIngestionCompression(String ingestionCompression) {
+		String compression = StringUtils.lowerCase(StringUtils.trim(ingestionCompression));
+		if (!COMPRESSION_NONE.equals(compression) && !COMPRESSION_GZIP.equals(compression)) {
+			throw new IllegalArgumentException(
+					"Invalid value for " + KEY_INGESTION_COMPRESSION + ": " + ingestionCompression);
+		}
+		this.ingestionCompression = compression;
+	}
+
+	/**
+	 * Checks whether the ingestion request bodies are gzip compressed
+	 * 
+	 * @return true for gzip compression
+	 */
+	public boolean isIngestionGzipEnabled() {
+		return COMPRESSION_GZIP.equals(ingestionCompression);
+	}
+
+	/**
+	 * Getter for gzip compression level of the ingestion request bodies
+	 * 
+	 * @return compression level (1-9)
+	 */
+	public int getIngestionCompressionLevel() {
+		return ingestionCompressionLevel;
+	}
+
+	/**
+	 * Updates the gzip compression level of the ingestion request bodies
+	 * 
+	 * @param ingestionCompressionLevel
+	 *            compression level, 1 (fastest) to 9 (best compression)
+	 * @throws IllegalArgumentException
+	 *             for levels out of range
+	 */
+	public void setIngestionCompressionLevel(int ingestionCompressionLevel) {
+		if (ingestionCompressionLevel < 1 || ingestionCompressionLevel > 9) {
+			throw new IllegalArgumentException(
+					"Invalid value for " + KEY_INGESTION_COMPRESSION_LEVEL + ": " + ingestionCompressionLevel);
+		}
+		this.ingestionCompressionLevel = ingestionCompressionLevel;
+	}
+
+	/**
+	 * Getter for the directory of the ingestion spool
+	 * 
+	 * @return spool directory or null if the spool is disabled
+	 */
+	public String getIngestionSpoolDir() {
+		return ingestionSpoolDir;
+	}
+
+	/**
+	 * Updates the directory of the ingestion spool
+	 * 
+	 * @param ingestionSpoolDir
+	 *            spool directory, null disables the spool
+	 */
+	public void setIngestionSpoolDir(String ingestionSpoolDir) {
+		this.ingestionSpoolDir = ingestionSpoolDir;
+	}
+
+	/**
+	 * Getter for maximum disk usage of the ingestion spool
+	 * 
+	 * @return maximum spool size in bytes
+	 */
+	public long getIngestionSpoolMaxBytes() {
+		return ingestionSpoolMaxBytes;
+	}
+
+	/**
+	 * Updates the maximum disk usage of the ingestion spool
+	 * 
+	 * @param ingestionSpoolMaxBytes
+	 *            maximum spool size in bytes
+	 */
+	public void setIngestionSpoolMaxBytes(long ingestionSpoolMaxBytes) {
+		this.ingestionSpoolMaxBytes = ingestionSpoolMaxBytes;
+	}
+
+	/**
+	 * Getter for size of an ingestion spool segment file
+	 * 
+	 * @return segment size in bytes
+	 */
+	public int getIngestionSpoolSegmentBytes() {
+		return ingestionSpoolSegmentBytes;
+	}
+
+	/**
+	 * Updates the size of an ingestion spool segment file
+	 * 
+	 * @param ingestionSpoolSegmentBytes
+	 *            segment size in bytes
+	 */
+	public void setIngestionSpoolSegmentBytes(int ingestionSpoolSegmentBytes) {
+		this.ingestionSpoolSegmentBytes = ingestionSpoolSegmentBytes;
+	}
+
+	/**
+	 * Getter for fsync policy of the ingestion spool
+	 * 
+	 * @return fsync policy
+	 */
+	public FsyncPolicy getIngestionSpoolFsync() {
+		return ingestionSpoolFsync;
+	}
+
+	/**
+	 * Updates the fsync policy of the ingestion spool
+	 * 
+	 * @param ingestionSpoolFsync
+	 *            fsync policy
+	 */
+	public void setIngestionSpoolFsync(FsyncPolicy ingestionSpoolFsync) {
+		this.ingestionSpoolFsync = ingestionSpoolFsync;
+	}
+
+	/**
+	 * Getter for fsync interval of the ingestion spool
+	 * 
+	 * @return fsync interval in milliseconds
+	 */
+	public long getIngestionSpoolFsyncIntervalMs() {
+		return ingestionSpoolFsyncIntervalMs;
+	}
+
+	/**
+	 * Updates the fsync interval of the ingestion spool
+	 * 
+	 * @param ingestionSpoolFsyncIntervalMs
+	 *            fsync interval in milliseconds
+	 */
+	public void setIngestionSpoolFsyncIntervalMs(long ingestionSpoolFsyncIntervalMs) {
+		this.ingestionSpoolFsyncIntervalMs = ingestionSpoolFsyncIntervalMs;
+	}
+
+	/**
+	 * Getter for eviction policy of a full ingestion spool
+	 * 
+	 * @return eviction policy
+	 */
+	public EvictionPolicy getIngestionSpoolEviction() {
+		return ingestionSpoolEviction;
+	}
+
+	/**
+	 * Updates the eviction policy of a full ingestion spool
+	 * 
+	 * @param ingestionSpoolEviction
+	 *            eviction policy
+	 */
+	public void setIngestionSpoolEviction(EvictionPolicy ingestionSpoolEviction) {
+		this.ingestionSpoolEviction = ingestionSpoolEviction;
+	}
+
+	/**
+	 * Getter for maximum number of attempts of an ingestion request
+	 * 
+	 * @return number of attempts
+	 */
+	public int getRetryIngestionMaxAttempts() {
+		return retryIngestionMaxAttempts;
+	}
+
+	/**
+	 * Updates the maximum number of attempts of an ingestion request
+	 * 
+	 * @param retryIngestionMaxAttempts
+	 *            number of attempts
+	 */
+	public void setRetryIngestionMaxAttempts(int retryIngestionMaxAttempts) {
+		this.retryIngestionMaxAttempts = retryIngestionMaxAttempts;
+	}
+
+	/**
+	 * Getter for maximum number of attempts of a query
+	 * 
+	 * @return number of attempts
+	 */
+	public int getRetryQueryMaxAttempts() {
+		return retryQueryMaxAttempts;
+	}
+
+	/**
+	 * Updates the maximum number of attempts of a query
+	 * 
+	 * @param retryQueryMaxAttempts
+	 *            number of attempts
+	 */
+	public void setRetryQueryMaxAttempts(int retryQueryMaxAttempts) {
+		this.retryQueryMaxAttempts = retryQueryMaxAttempts;
+	}
+
+	/**
+	 * Getter for backoff of the first retry
+	 * 
+	 * @return delay in milliseconds
+	 */
+	public long getRetryBaseDelayMs() {
+		return retryBaseDelayMs;
+	}
+
+	/**
+	 * Updates the backoff of the first retry
+	 * 
+	 * @param retryBaseDelayMs
+	 *            delay in milliseconds
+	 */
+	public void setRetryBaseDelayMs(long retryBaseDelayMs) {
+		this.retryBaseDelayMs = retryBaseDelayMs;
+	}
+
+	/**
+	 * Getter for maximum backoff between two attempts
+	 * 
+	 * @return delay in milliseconds
+	 */
+	public long getRetryMaxDelayMs() {
+		return retryMaxDelayMs;
+	}
+
+	/**
+	 * Updates the maximum backoff between two attempts
+	 * 
+	 * @param retryMaxDelayMs
+	 *            delay in milliseconds
+	 */
+	public void setRetryMaxDelayMs(long retryMaxDelayMs) {
+		this.retryMaxDelayMs = retryMaxDelayMs;
+	}
+
+	/**
+	 * Getter for http status codes which are retried
+	 * 
+	 * @return set of status codes
+	 */
+	public Set<Integer> getRetryStatuses() {
+		return retryStatuses;
+	}
+
+	/**
+	 * Updates the http status codes which are retried
+	 * 
+	 * @param retryStatuses
+	 *            set of status codes
+	 */
+	public void setRetryStatuses(Set<Integer> retryStatuses) {
+		this.retryStatuses = retryStatuses;
+	}
+
+	/**
+	 * Getter for retries allowed per request by the retry budget
+	 * 
+	 * @return retries per request
+	 */
+	public double getRetryBudgetRatio() {
+		return retryBudgetRatio;
+	}
+
+	/**
+	 * Updates the retries allowed per request by the retry budget
+	 * 
+	 * @param retryBudgetRatio
+	 *            retries per request
+	 */
+	public void setRetryBudgetRatio(double retryBudgetRatio) {
+		this.retryBudgetRatio = retryBudgetRatio;
+	}
+
+	/**
+	 * Getter for retries per second allowed by the retry budget
+	 * 
+	 * @return retries per second
+	 */
+	public int getRetryBudgetMinPerSecond() {
+		return retryBudgetMinPerSecond;
+	}
+
+	/**
+	 * Updates the retries per second allowed by the retry budget
+	 * 
+	 * @param retryBudgetMinPerSecond
+	 *            retries per second
+	 */
+	public void setRetryBudgetMinPerSecond(int retryBudgetMinPerSecond) {
+		this.retryBudgetMinPerSecond = retryBudgetMinPerSecond;
+	}
+
+	/**
+	 * Getter for number of events in the first page of a QueryCursor
+	 * 
+	 * @return number of events
+	 */
+	public int getQueryPageSize() {
+		return queryPageSize;
+	}
+
+	/**
+	 * Updates the number of events in the first page of a QueryCursor
+	 * 
+	 * @param queryPageSize
+	 *            number of events
+	 */
+	public void setQueryPageSize(int queryPageSize) {
+		this.queryPageSize = queryPageSize;
+	}
+
+	/**
+	 * Getter for minimum number of events in a page of a QueryCursor
+	 * 
+	 * @return number of events
+	 */
+	public int getQueryPageMinSize() {
+		return queryPageMinSize;
+	}
+
+	/**
+	 * Updates the minimum number of events in a page of a QueryCursor
+	 * 
+	 * @param queryPageMinSize
+	 *            number of events
+	 */
+	public void setQueryPageMinSize(int queryPageMinSize) {
+		this.queryPageMinSize = queryPageMinSize;
+	}
+
+	/**
+	 * Getter for maximum number of events in a page of a QueryCursor
+	 * 
+	 * @return number of events
+	 */
+	public int getQueryPageMaxSize() {
+		return queryPageMaxSize;
+	}
+
+	/**
+	 * Updates the maximum number of events in a page of a QueryCursor
+	 * 
+	 * @param queryPageMaxSize
+	 *            number of events
+	 */
+	public void setQueryPageMaxSize(int queryPageMaxSize) {
+		this.queryPageMaxSize = queryPageMaxSize;
+	}
+
+	/**
+	 * Getter for target latency of a page of a QueryCursor
+	 * 
+	 * @return latency in milliseconds
+	 */
+	public long getQueryPageTargetLatencyMs() {
+		return queryPageTargetLatencyMs;
+	}
+
+	/**
+	 * Updates the target latency of a page of a QueryCursor
+	 * 
+	 * @param queryPageTargetLatencyMs
+	 *            latency in milliseconds
+	 */
+	public void setQueryPageTargetLatencyMs(long queryPageTargetLatencyMs) {
+		this.queryPageTargetLatencyMs = queryPageTargetLatencyMs;
+	}
+
+	/**
+	 * Getter for number of time slices of a MessageQueryFanOut
+	 * 
+	 * @return number of slices
+	 */
+	public int getQueryFanOutSlices() {
+		return queryFanOutSlices;
+	}
+
+	/**
+	 * Updates the number of time slices of a MessageQueryFanOut
+	 * 
+	 * @param queryFanOutSlices
+	 *            number of slices
+	 */
+	public void setQueryFanOutSlices(int queryFanOutSlices) {
+		this.queryFanOutSlices = queryFanOutSlices;
+	}
+
+	/**
+	 * Getter for maximum number of slices of a MessageQueryFanOut queried
+	 * concurrently
+	 * 
+	 * @return number of concurrent queries
+	 */
+	public int getQueryFanOutParallelism() {
+		return queryFanOutParallelism;
+	}
+
+	/**
+	 * Updates the maximum number of slices of a MessageQueryFanOut queried
+	 * concurrently
+	 * 
+	 * @param queryFanOutParallelism
+	 *            number of concurrent queries
+	 */
+	public void setQueryFanOutParallelism(int queryFanOutParallelism) {
+		this.queryFanOutParallelism = queryFanOutParallelism;
+	}
+
+	/**
+	 * Getter for maximum estimated size of the cached query results
+	 * 
+	 * @return size in bytes, 0 when the cache is disabled
+	 */
+	public long getQueryCacheMaxBytes() {
+		return queryCacheMaxBytes;
+	}
+
+	/**
+	 * Updates the maximum estimated size of the cached query results
+	 * 
+	 * @param queryCacheMaxBytes
+	 *            size in bytes, 0 disables the cache
+	 */
+	public void setQueryCacheMaxBytes(long queryCacheMaxBytes) {
+		this.queryCacheMaxBytes = queryCacheMaxBytes;
+	}
+
+	/**
+	 * Getter for time to live of a cached query result
+	 * 
+	 * @return time to live in milliseconds
+	 */
+	public long getQueryCacheTtlMs() {
+		return queryCacheTtlMs;
+	}
+
+	/**
+	 * Updates the time to live of a cached query result
+	 * 
+	 * @param queryCacheTtlMs
+	 *            time to live in milliseconds
+	 */
+	public void setQueryCacheTtlMs(long queryCacheTtlMs) {
+		this.queryCacheTtlMs = queryCacheTtlMs;
+	}
+
+	/**
+	 * Getter for time to live of a cached query result whose time range is in
+	 * the past
+	 * 
+	 * @return time to live in milliseconds
+	 */
+	public long getQueryCacheSettledTtlMs() {
+		return queryCacheSettledTtlMs;
+	}
+
+	/**
+	 * Updates the time to live of a cached query result whose time range is
+	 * in the past
+	 * 
+	 * @param queryCacheSettledTtlMs
+	 *            time to live in milliseconds
+	 */
+	public void setQueryCacheSettledTtlMs(long queryCacheSettledTtlMs) {
+		this.queryCacheSettledTtlMs = queryCacheSettledTtlMs;
+	}
+
+	/**
+	 * Getter for delay after which the time range of a query is considered
+	 * in the past
+	 * 
+	 * @return delay in milliseconds
+	 */
+	public long getQueryCacheSettleDelayMs() {
+		return queryCacheSettleDelayMs;
+	}
+
+	/**
+	 * Updates the delay after which the time range of a query is considered
+	 * in the past
+	 * 
+	 * @param queryCacheSettleDelayMs
+	 *            delay in milliseconds
+	 */
+	public void setQueryCacheSettleDelayMs(long queryCacheSettleDelayMs) {
+		this.queryCacheSettleDelayMs = queryCacheSettleDelayMs;
+	}
+
+	/**
+	 * Getter for sharing of one request between concurrent identical queries
+	 * 
+	 * @return true if concurrent identical queries are coalesced
+	 */
+	public boolean isQueryCoalescing() {
+		return queryCoalescing;
+	}
+
+	/**
+	 * Updates the sharing of one request between concurrent identical queries
+	 * 
+	 * @param queryCoalescing
+	 *            true to coalesce concurrent identical queries
+	 */
+	public void setQueryCoalescing(boolean queryCoalescing) {
+		this.queryCoalescing = queryCoalescing;
+	}
+
+	/**
+	 * Getter for maximum number of aggregate series kept for incremental
+	 * refresh
+	 * 
+	 * @return number of series, 0 when the series cache is disabled
+	 */
+	public int getSeriesCacheMaxEntries() {
+		return seriesCacheMaxEntries;
+	}
+
+	/**
+	 * Updates the maximum number of aggregate series kept for incremental
+	 * refresh
+	 * 
+	 * @param seriesCacheMaxEntries
+	 *            number of series, 0 disables the series cache
+	 */
+	public void setSeriesCacheMaxEntries(int seriesCacheMaxEntries) {
+		this.seriesCacheMaxEntries = seriesCacheMaxEntries;
+	}
+
+	/**
+	 * Getter for interval between the polls of a live tail returning events
+	 * 
+	 * @return interval in milliseconds
+	 */
+	public long getTailIntervalMs() {
+		return tailIntervalMs;
+	}
+
+	/**
+	 * Updates the interval between the polls of a live tail returning events
+	 * 
+	 * @param tailIntervalMs
+	 *            interval in milliseconds
+	 */
+	public void setTailIntervalMs(long tailIntervalMs) {
+		this.tailIntervalMs = tailIntervalMs;
+	}
+
+	/**
+	 * Getter for maximum interval between the polls of an idle live tail
+	 * 
+	 * @return interval in milliseconds
+	 */
+	public long getTailMaxIntervalMs() {
+		return tailMaxIntervalMs;
+	}
+
+	/**
+	 * Updates the maximum interval between the polls of an idle live tail
+	 * 
+	 * @param tailMaxIntervalMs
+	 *            interval in milliseconds
+	 */
+	public void setTailMaxIntervalMs(long tailMaxIntervalMs) {
+		this.tailMaxIntervalMs = tailMaxIntervalMs;
+	}
+
+	/**
+	 * Getter for window of late events queried again by a live tail
+	 * 
+	 * @return window in milliseconds
+	 */
+	public long getTailOverlapMs() {
+		return tailOverlapMs;
+	}
+
+	/**
+	 * Updates the window of late events queried again by a live tail
+	 * 
+	 * @param tailOverlapMs
+	 *            window in milliseconds
+	 */
+	public void setTailOverlapMs(long tailOverlapMs) {
+		this.tailOverlapMs = tailOverlapMs;
+	}
+
+	/**
+	 * Getter for maximum number of recent events remembered by a live tail
+	 * 
+	 * @return number of events
+	 */
+	public int getTailMaxFingerprints() {
+		return tailMaxFingerprints;
+	}
+
+	/**
+	 * Updates the maximum number of recent events remembered by a live tail
+	 * 
+	 * @param tailMaxFingerprints
+	 *            number of events
+	 */
+	public void setTailMaxFingerprints(int tailMaxFingerprints) {
+		this.tailMaxFingerprints = tailMaxFingerprints;
+	}
+
+	/**
+	 * Getter for maximum number of pooled connections
+	 * 
+	 * @return number of connections, 0 for twice the connections per route
+	 */
+	public int getConnectionMaxTotal() {
+		return connectionMaxTotal;
+	}
+
+	/**
+	 * Updates the maximum number of pooled connections
+	 * 
+	 * @param connectionMaxTotal
+	 *            number of connections, 0 for twice the connections per route
+	 */
+	public void setConnectionMaxTotal(int connectionMaxTotal) {
+		this.connectionMaxTotal = connectionMaxTotal;
+	}
+
+	/**
+	 * Getter for maximum number of pooled connections to one host and port
+	 * 
+	 * @return number of connections, at least the concurrent ingestion requests
+	 */
+	public int getConnectionMaxPerRoute() {
+		return connectionMaxPerRoute;
+	}
+
+	/**
+	 * Updates the maximum number of pooled connections to one host and port
+	 * 
+	 * @param connectionMaxPerRoute
+	 *            number of connections
+	 */
+	public void setConnectionMaxPerRoute(int connectionMaxPerRoute) {
+		this.connectionMaxPerRoute = connectionMaxPerRoute;
+	}
 
 	/**
-	 * File name for the config file
+	 * Getter for number of IO dispatcher threads of the http client
+	 * 
+	 * @return number of threads, 0 for one per processor
 	 */
-	public final static String FILENAME = "config.properties";
+	public int getConnectionIoThreads() {
+		return connectionIoThreads;
+	}
 
 	/**
-	 * Property key for host name
+	 * Updates the number of IO dispatcher threads of the http client
+	 * 
+	 * @param connectionIoThreads
+	 *            number of threads, 0 for one per processor
 	 */
-	public final static String KEY_LI_HOST = "loginsight.host";
+	public void setConnectionIoThreads(int connectionIoThreads) {
+		this.connectionIoThreads = connectionIoThreads;
+	}
 
 	/**
-	 * Property key for port
+	 * Getter for timeout of the connection to LogInsight
+	 * 
+	 * @return timeout in milliseconds, 0 for none
 	 */
-	public final static String KEY_LI_PORT = "loginsight.port";
+	public int getConnectionConnectTimeoutMs() {
+		return connectionConnectTimeoutMs;
+	}
 
 	/**
-	 * Property key for ingestion port
+	 * Updates the timeout of the connection to LogInsight
+	 * 
+	 * @param connectionConnectTimeoutMs
+	 *            timeout in milliseconds, 0 for none
 	 */
-	public final static String KEY_LI_INGESTION_PORT = "loginsight.ingestion.port";
+	public void setConnectionConnectTimeoutMs(int connectionConnectTimeoutMs) {
+		this.connectionConnectTimeoutMs = connectionConnectTimeoutMs;
+	}
 
 	/**
-	 * Property key for user name
+	 * Getter for maximum inactivity of a connection while waiting for a
+	 * response
+	 * 
+	 * @return timeout in milliseconds, 0 for none
 	 */
-	public final static String KEY_LI_USER = "loginsight.user";
+	public int getConnectionSocketTimeoutMs() {
+		return connectionSocketTimeoutMs;
+	}
 
 	/**
-	 * Property key for password
+	 * Updates the maximum inactivity of a connection while waiting for a
+	 * response
+	 * 
+	 * @param connectionSocketTimeoutMs
+	 *            timeout in milliseconds, 0 for none
 	 */
-	public final static String KEY_LI_PASSWORD = "loginsight.password";
+	public void setConnectionSocketTimeoutMs(int connectionSocketTimeoutMs) {
+		this.connectionSocketTimeoutMs = connectionSocketTimeoutMs;
+	}
 
 	/**
-	 * Property key for Connection scheme
+	 * Getter for timeout of a request waiting for a pooled connection
+	 * 
+	 * @return timeout in milliseconds, 0 for none
 	 */
-	public static final String KEY_CONNECTION_SCHEME = "loginsight.connection.scheme";
+	public int getConnectionRequestTimeoutMs() {
+		return connectionRequestTimeoutMs;
+	}
 
 	/**
-	 * Default protocol scheme
+	 * Updates the timeout of a request waiting for a pooled connection
+	 * 
+	 * @param connectionRequestTimeoutMs
+	 *            timeout in milliseconds, 0 for none
 	 */
-	public static final String DEFAULT_SCHEME = "https";
+	public void setConnectionRequestTimeoutMs(int connectionRequestTimeoutMs) {
+		this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+	}
 
 	/**
-	 * Default query port
+	 * Getter for socket send buffer size
+	 * 
+	 * @return size in bytes, 0 for the system default
 	 */
-	public static final int DEFAULT_PORT = 443;
+	public int getConnectionSendBufferSize() {
+		return connectionSendBufferSize;
+	}
 
 	/**
-	 * Default Ingestion Port
+	 * Updates the socket send buffer size
+	 * 
+	 * @param connectionSendBufferSize
+	 *            size in bytes, 0 for the system default
 	 */
-	public static final int DEFAULT_INGESTION_PORT = 9543;
+	public void setConnectionSendBufferSize(int connectionSendBufferSize) {
+		this.connectionSendBufferSize = connectionSendBufferSize;
+	}
 
-	String host;
-	String user;
-	String password;
-	String port;
-	String ingestionPort;
-	String scheme;
+	/**
+	 * Getter for socket receive buffer size
+	 * 
+	 * @return size in bytes, 0 for the system default
+	 */
+	public int getConnectionReceiveBufferSize() {
+		return connectionReceiveBufferSize;
+	}
 
-	private final static Logger logger = LoggerFactory.getLogger(Configuration.class);
+	/**
+	 * Updates the socket receive buffer size
+	 * 
+	 * @param connectionReceiveBufferSize
+	 *            size in bytes, 0 for the system default
+	 */
+	public void setConnectionReceiveBufferSize(int connectionReceiveBufferSize) {
+		this.connectionReceiveBufferSize = connectionReceiveBufferSize;
+	}
 
 	/**
-	 * Empty config constructor
+	 * Getter for disabling of Nagle's algorithm on the connections
+	 * 
+	 * @return true if TCP_NODELAY is set
 	 */
-	public Configuration() {
-		this.port = Integer.toString(DEFAULT_PORT);
-		this.ingestionPort = Integer.toString(DEFAULT_INGESTION_PORT);
-		this.scheme = DEFAULT_SCHEME;
+	public boolean isConnectionTcpNoDelay() {
+		return connectionTcpNoDelay;
 	}
 
 	/**
-	 * Config constructor with host, user and password
+	 * Updates the disabling of Nagle's algorithm on the connections
 	 * 
-	 * @param host
-	 *            name of the loginsight host
-	 * @param user
-	 *            user name
-	 * @param password
-	 *            password
+	 * @param connectionTcpNoDelay
+	 *            true to set TCP_NODELAY
+	 */
+	public void setConnectionTcpNoDelay(boolean connectionTcpNoDelay) {
+		this.connectionTcpNoDelay = connectionTcpNoDelay;
+	}
+
+	/**
+	 * Getter for maximum time an idle connection is kept alive for reuse
 	 * 
+	 * @return time in milliseconds
 	 */
-	public Configuration(String host, String user, String password) {
-		this.host = host;
-		this.user = user;
-		this.password = password;
-		this.port = Integer.toString(DEFAULT_PORT);
-		this.ingestionPort = Integer.toString(DEFAULT_INGESTION_PORT);
-		this.scheme = DEFAULT_SCHEME;
+	public long getConnectionKeepAliveMs() {
+		return connectionKeepAliveMs;
 	}
 
 	/**
-	 * Builds the configuration from a property map
+	 * Updates the maximum time an idle connection is kept alive for reuse
 	 * 
-	 * @param configData
-	 *            Config data in a hashmap
-	 * @return Configuration object           
+	 * @param connectionKeepAliveMs
+	 *            time in milliseconds
+	 */
+	public void setConnectionKeepAliveMs(long connectionKeepAliveMs) {
+		this.connectionKeepAliveMs = connectionKeepAliveMs;
+	}
+
+	/**
+	 * Getter for time after which idle connections are closed
 	 * 
+	 * @return time in milliseconds, 0 when idle connections are not evicted
 	 */
-	public static Configuration buildConfig(Map<String, String> configData) {
+	public long getConnectionIdleEvictionMs() {
+		return connectionIdleEvictionMs;
+	}
 
-		Configuration liConfig = new Configuration();
+	/**
+	 * Updates the time after which idle connections are closed
+	 * 
+	 * @param connectionIdleEvictionMs
+	 *            time in milliseconds, 0 disables the eviction
+	 */
+	public void setConnectionIdleEvictionMs(long connectionIdleEvictionMs) {
+		this.connectionIdleEvictionMs = connectionIdleEvictionMs;
+	}
 
-		liConfig.port = Integer.toString(DEFAULT_PORT);
-		liConfig.ingestionPort = Integer.toString(DEFAULT_INGESTION_PORT);
-		liConfig.scheme = DEFAULT_SCHEME;
+	/**
+	 * Getter for TLS protocols enabled on the connections
+	 * 
+	 * @return protocol names
+	 */
+	public List<String> getTlsProtocols() {
+		return tlsProtocols;
+	}
 
-		if (configData.containsKey(KEY_LI_HOST) && null != configData.get(KEY_LI_HOST) && StringUtils.isNotEmpty(configData.get(KEY_LI_HOST))) {
-			liConfig.host = configData.get(KEY_LI_HOST);
-		}
+	/**
+	 * Updates the TLS protocols enabled on the connections
+	 * 
+	 * @param tlsProtocols
+	 *            protocol names, such as TLSv1.2
+	 */
+	public void setTlsProtocols(List<String> tlsProtocols) {
+		this.tlsProtocols = tlsProtocols;
+	}
 
-		if (configData.containsKey(KEY_LI_PORT) && null != configData.get(KEY_LI_PORT) && StringUtils.isNotEmpty(configData.get(KEY_LI_PORT))) {
-			logger.info("setting port as well");
-			liConfig.port = configData.get(KEY_LI_PORT);
-		}
+	/**
+	 * Getter for cipher suites enabled on the connections
+	 * 
+	 * @return cipher suite names, empty for the defaults of the JVM
+	 */
+	public List<String> getTlsCipherSuites() {
+		return tlsCipherSuites;
+	}
 
-		if (configData.containsKey(KEY_LI_INGESTION_PORT) && null != configData.get(KEY_LI_INGESTION_PORT)
-				&& StringUtils.isNotEmpty(configData.get(KEY_LI_INGESTION_PORT))) {
-			liConfig.ingestionPort = configData.get(KEY_LI_INGESTION_PORT);
-		}
+	/**
+	 * Updates the cipher suites enabled on the connections
+	 * 
+	 * @param tlsCipherSuites
+	 *            cipher suite names, empty for the defaults of the JVM
+	 */
+	public void setTlsCipherSuites(List<String> tlsCipherSuites) {
+		this.tlsCipherSuites = tlsCipherSuites;
+	}
 
-		if (configData.containsKey(KEY_LI_USER) && null != configData.get(KEY_LI_USER) && StringUtils.isNotEmpty(configData.get(KEY_LI_USER))) {
-			liConfig.user = configData.get(KEY_LI_USER);
-		}
+	/**
+	 * Getter for path of the trust store
+	 * 
+	 * @return path of the trust store, null for the default trust store of the JVM
+	 */
+	public String getTlsTrustStore() {
+		return tlsTrustStore;
+	}
 
-		if (configData.containsKey(KEY_LI_PASSWORD) && null != configData.get(KEY_LI_PASSWORD) && StringUtils.isNotEmpty(configData.get(KEY_LI_PASSWORD))) {
-			liConfig.password = configData.get(KEY_LI_PASSWORD);
-		}
+	/**
+	 * Updates the path of the trust store
+	 * 
+	 * @param tlsTrustStore
+	 *            path of the trust store, null for the default trust store of the JVM
+	 */
+	public void setTlsTrustStore(String tlsTrustStore) {
+		this.tlsTrustStore = tlsTrustStore;
+	}
 
-		if (configData.containsKey(KEY_CONNECTION_SCHEME) && null != configData.get(KEY_CONNECTION_SCHEME)
-				&& StringUtils.isNotEmpty(configData.get(KEY_CONNECTION_SCHEME))) {
-			liConfig.scheme = configData.get(KEY_CONNECTION_SCHEME);
-		}
-		return liConfig;
+	/**
+	 * Getter for password of the trust store
+	 * 
+	 * @return password, null for none
+	 */
+	public String getTlsTrustStorePassword() {
+		return tlsTrustStorePassword;
 	}
 
 	/**
-	 * Returns the http or https
+	 * Updates the password of the trust store
 	 * 
-	 * @return http or https
+	 * @param tlsTrustStorePassword
+	 *            password, null for none
 	 */
-	public String getScheme() {
-		return scheme;
+	public void setTlsTrustStorePassword(String tlsTrustStorePassword) {
+		this.tlsTrustStorePassword = tlsTrustStorePassword;
 	}
 
 	/**
-	 * Sets the scheme to provided one http or https
+	 * Getter for type of the trust store
 	 * 
-	 * @param scheme
-	 *            http or https
+	 * @return key store type
 	 */
-	public void setScheme(String scheme) {
-		this.scheme = scheme;
+	public String getTlsTrustStoreType() {
+		return tlsTrustStoreType;
 	}
 
 	/**
-	 * Ingestion port
+	 * Updates the type of the trust store
 	 * 
-	 * @return ingestion port number (string format)
+	 * @param tlsTrustStoreType
+	 *            key store type, such as JKS or PKCS12
 	 */
-	public String getIngestionPort() {
-		return ingestionPort;
+	public void setTlsTrustStoreType(String tlsTrustStoreType) {
+		this.tlsTrustStoreType = tlsTrustStoreType;
 	}
 
 	/**
-	 * Updates the ingestion port
+	 * Whether any server certificate is trusted
 	 * 
-	 * @param ingestionPort
-	 *            ingestion port number (string format)
+	 * @return true if server certificates and host names are not verified
 	 */
-	public void setIngestionPort(String ingestionPort) {
-		this.ingestionPort = ingestionPort;
+	public boolean isTlsTrustAll() {
+		return tlsTrustAll;
 	}
 
 	/**
-	 * Updates the host name of the loginsight
+	 * Updates whether any server certificate is trusted
 	 * 
-	 * @param host
-	 *            Host name of the LogInsight server
+	 * @param tlsTrustAll
+	 *            true to skip the verification of the server certificates and host names
 	 */
-	public void setHost(String host) {
-		this.host = host;
+	public void setTlsTrustAll(boolean tlsTrustAll) {
+		this.tlsTrustAll = tlsTrustAll;
 	}
 
 	/**
-	 * Updates the user name of the LogInsight user
+	 * Whether the server certificate must match the host name
 	 * 
-	 * @param user
-	 *            user name for LogInsight
+	 * @return true if host names are verified
 	 */
-	public void setUser(String user) {
-		this.user = user;
+	public boolean isTlsVerifyHostname() {
+		return tlsVerifyHostname;
 	}
 
 	/**
-	 * Updates the password for LogInsight connection
+	 * Updates whether the server certificate must match the host name
 	 * 
-	 * @param password
-	 *            password for LogInsight
+	 * @param tlsVerifyHostname
+	 *            true to verify the host names
 	 */
-	public void setPassword(String password) {
-		this.password = password;
+	public void setTlsVerifyHostname(boolean tlsVerifyHostname) {
+		this.tlsVerifyHostname = tlsVerifyHostname;
 	}
 
 	/**
-	 * Updates the LogInsight port number
+	 * Getter for maximum number of cached TLS sessions
 	 * 
-	 * @param port
-	 *            Port number (string format)
+	 * @return number of sessions, 0 for the default of the JVM
 	 */
-	public void setPort(String port) {
-		this.port = port;
+	public int getTlsSessionCacheSize() {
+		return tlsSessionCacheSize;
 	}
 
 	/**
-	 * Getter for Loginsight host name
+	 * Updates the maximum number of cached TLS sessions
 	 * 
-	 * @return Loginsight hostname
+	 * @param tlsSessionCacheSize
+	 *            number of sessions, 0 for the default of the JVM
 	 */
-	public String getHost() {
-		return this.host;
+	public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+		this.tlsSessionCacheSize = tlsSessionCacheSize;
 	}
 
 	/**
-	 * Getter for Loginsight server port
+	 * Getter for time a cached TLS session can be resumed
 	 * 
-	 * @return Loginsight server port (stringified format)
+	 * @return time in seconds, 0 for the default of the JVM
 	 */
-	public String getPort() {
-		return this.port;
+	public int getTlsSessionTimeoutS() {
+		return tlsSessionTimeoutS;
 	}
 
 	/**
-	 * Getter for Loginsight user for authentication
+	 * Updates the time a cached TLS session can be resumed
 	 * 
-	 * @return Loginsight user
+	 * @param tlsSessionTimeoutS
+	 *            time in seconds, 0 for the default of the JVM
 	 */
-	public String getUser() {
-		return this.user;
+	public void setTlsSessionTimeoutS(int tlsSessionTimeoutS) {
+		this.tlsSessionTimeoutS = tlsSessionTimeoutS;
 	}
 
 	/**
-	 * Getter for Loginsight password for authentication
+	 * Getter for time before the session expiry at which it is renewed
 	 * 
-	 * @return Loginsight password
+	 * @return time in milliseconds, 0 when the session is not renewed
 	 */
-	public String getPassword() {
-		return this.password;
+	public long getSessionRenewalMarginMs() {
+		return sessionRenewalMarginMs;
+	}
+
+	/**
+	 * Updates the time before the session expiry at which it is renewed
+	 * 
+	 * @param sessionRenewalMarginMs
+	 *            time in milliseconds, 0 disables the renewal
+	 */
+	public void setSessionRenewalMarginMs(long sessionRenewalMarginMs) {
+		this.sessionRenewalMarginMs = sessionRenewalMarginMs;
+	}
+
+	/**
+	 * Getter for the host names of the nodes of the cluster
+	 * 
+	 * @return list of host names, empty for {@code loginsight.host} only
+	 */
+	public List<String> getClusterHosts() {
+		return clusterHosts;
+	}
+
+	/**
+	 * Updates the host names of the nodes of the cluster
+	 * 
+	 * @param clusterHosts
+	 *            list of host names
+	 */
+	public void setClusterHosts(List<String> clusterHosts) {
+		this.clusterHosts = clusterHosts;
+	}
+
+	/**
+	 * Getter for the selection of the cluster node of a request
+	 * 
+	 * @return balancing policy
+	 */
+	public Balancing getClusterBalancing() {
+		return clusterBalancing;
+	}
+
+	/**
+	 * Updates the selection of the cluster node of a request
+	 * 
+	 * @param clusterBalancing
+	 *            balancing policy
+	 */
+	public void setClusterBalancing(Balancing clusterBalancing) {
+		this.clusterBalancing = clusterBalancing;
+	}
+
+	/**
+	 * Getter for number of consecutive failures ejecting a cluster node
+	 * 
+	 * @return number of failed requests
+	 */
+	public int getClusterEjectFailures() {
+		return clusterEjectFailures;
+	}
+
+	/**
+	 * Updates the number of consecutive failures ejecting a cluster node
+	 * 
+	 * @param clusterEjectFailures
+	 *            number of failed requests
+	 */
+	public void setClusterEjectFailures(int clusterEjectFailures) {
+		this.clusterEjectFailures = clusterEjectFailures;
+	}
+
+	/**
+	 * Getter for interval between the health checks of an ejected cluster
+	 * node
+	 * 
+	 * @return interval in milliseconds
+	 */
+	public long getClusterProbeIntervalMs() {
+		return clusterProbeIntervalMs;
+	}
+
+	/**
+	 * Updates the interval between the health checks of an ejected cluster
+	 * node
+	 * 
+	 * @param clusterProbeIntervalMs
+	 *            interval in milliseconds
+	 */
+	public void setClusterProbeIntervalMs(long clusterProbeIntervalMs) {
+		this.clusterProbeIntervalMs = clusterProbeIntervalMs;
+	}
+
+	/**
+	 * Retry policy of the ingestion requests
+	 * 
+	 * @return RetryPolicy built from the retry properties
+	 */
+	public RetryPolicy getIngestionRetryPolicy() {
+		return new RetryPolicy(retryIngestionMaxAttempts, retryBaseDelayMs, retryMaxDelayMs, retryStatuses);
+	}
+
+	/**
+	 * Retry policy of the message and aggregate queries
+	 * 
+	 * @return RetryPolicy built from the retry properties
+	 */
+	public RetryPolicy getQueryRetryPolicy() {
+		return new RetryPolicy(retryQueryMaxAttempts, retryBaseDelayMs, retryMaxDelayMs, retryStatuses);
 	}
 
 	/**
@@ -326,6 +2769,72 @@ public class Configuration {
 	 * loginsight.agentId = agentId <br>
 	 * loginsight.connection.scheme = http protocol scheme <br>
 	 * loginsight.ingestion.port = Ingestion port number <br>
+	 * loginsight.ingestion.batch.max.messages = messages per ingestion batch <br>
+	 * loginsight.ingestion.batch.max.bytes = serialized bytes per ingestion batch <br>
+	 * loginsight.ingestion.batch.linger.ms = batch linger time in milliseconds <br>
+	 * loginsight.ingestion.max.inflight = concurrent ingestion requests <br>
+	 * loginsight.ingestion.request.max.messages = messages per ingestion request <br>
+	 * loginsight.ingestion.request.max.bytes = serialized bytes per ingestion request <br>
+	 * loginsight.ingestion.queue.capacity = messages waiting for ingestion <br>
+	 * loginsight.ingestion.queue.overflow = block, drop_newest, drop_oldest or sample <br>
+	 * loginsight.ingestion.queue.block.timeout.ms = producer wait on a full queue <br>
+	 * loginsight.ingestion.queue.sample.rate = one in n messages kept when sampling <br>
+	 * loginsight.ingestion.compression = none or gzip <br>
+	 * loginsight.ingestion.compression.level = gzip level 1-9 <br>
+	 * loginsight.ingestion.spool.dir = directory of the ingestion spool <br>
+	 * loginsight.ingestion.spool.max.bytes = maximum spool size in bytes <br>
+	 * loginsight.ingestion.spool.segment.bytes = spool segment size in bytes <br>
+	 * loginsight.ingestion.spool.fsync = always, interval or never <br>
+	 * loginsight.ingestion.spool.fsync.interval.ms = spool fsync interval <br>
+	 * loginsight.ingestion.spool.eviction = drop_oldest or reject <br>
+	 * loginsight.retry.ingestion.max.attempts = attempts per ingestion request <br>
+	 * loginsight.retry.query.max.attempts = attempts per query <br>
+	 * loginsight.retry.base.delay.ms = backoff of the first retry <br>
+	 * loginsight.retry.max.delay.ms = maximum backoff <br>
+	 * loginsight.retry.statuses = retried http status codes, e.g. 429,503 <br>
+	 * loginsight.retry.budget.ratio = retries allowed per request <br>
+	 * loginsight.retry.budget.min.per.second = retries allowed per second <br>
+	 * loginsight.query.page.size = events in the first page of a cursor <br>
+	 * loginsight.query.page.min.size = minimum events in a page <br>
+	 * loginsight.query.page.max.size = maximum events in a page <br>
+	 * loginsight.query.page.target.latency.ms = latency the page size adapts to <br>
+	 * loginsight.query.fanout.slices = time slices of a fan-out query <br>
+	 * loginsight.query.fanout.parallelism = slices queried concurrently <br>
+	 * loginsight.query.cache.max.bytes = size of the query result cache, 0 disables it <br>
+	 * loginsight.query.cache.ttl.ms = time to live of a cached result <br>
+	 * loginsight.query.cache.settled.ttl.ms = time to live of a result of a past time range <br>
+	 * loginsight.query.cache.settle.delay.ms = age of a time range considered past <br>
+	 * loginsight.query.coalescing = share one request between identical concurrent queries <br>
+	 * loginsight.series.cache.max.entries = aggregate series kept for incremental refresh <br>
+	 * loginsight.tail.interval.ms = interval between the polls of a live tail <br>
+	 * loginsight.tail.max.interval.ms = maximum interval between the polls of an idle live tail <br>
+	 * loginsight.tail.overlap.ms = window of late events queried again by a live tail <br>
+	 * loginsight.tail.max.fingerprints = recent events remembered by a live tail <br>
+	 * loginsight.connection.max.total = maximum number of pooled connections, 0 for twice the connections per route <br>
+	 * loginsight.connection.max.per.route = maximum number of pooled connections to one host and port <br>
+	 * loginsight.connection.io.threads = IO dispatcher threads, 0 for one per processor <br>
+	 * loginsight.connection.connect.timeout.ms = connection timeout <br>
+	 * loginsight.connection.socket.timeout.ms = socket inactivity timeout <br>
+	 * loginsight.connection.request.timeout.ms = timeout of a request waiting for a pooled connection <br>
+	 * loginsight.connection.send.buffer.size = socket send buffer size <br>
+	 * loginsight.connection.receive.buffer.size = socket receive buffer size <br>
+	 * loginsight.connection.tcp.nodelay = set TCP_NODELAY on the connections <br>
+	 * loginsight.connection.keepalive.ms = maximum time an idle connection is kept alive <br>
+	 * loginsight.connection.idle.eviction.ms = idle time after which connections are closed, 0 disables it <br>
+	 * loginsight.tls.protocols = comma separated TLS protocols, such as TLSv1.3,TLSv1.2 <br>
+	 * loginsight.tls.cipher.suites = comma separated cipher suites, empty for the JVM defaults <br>
+	 * loginsight.tls.trust.store = trust store holding the server certificates, empty for the JVM trust store <br>
+	 * loginsight.tls.trust.store.password = password of the trust store <br>
+	 * loginsight.tls.trust.store.type = type of the trust store <br>
+	 * loginsight.tls.trust.all = trust any server certificate, for tests only <br>
+	 * loginsight.tls.verify.hostname = verify that the server certificate matches the host name <br>
+	 * loginsight.tls.session.cache.size = TLS sessions cached for resumption, 0 for the JVM default <br>
+	 * loginsight.tls.session.timeout.s = time a cached TLS session can be resumed <br>
+	 * loginsight.session.renewal.margin.ms = time before the session expiry at which a new session is opened, 0 disables it <br>
+	 * loginsight.cluster.hosts = comma separated host names of the cluster nodes, empty for loginsight.host <br>
+	 * loginsight.cluster.balancing = least_requests or latency_ewma <br>
+	 * loginsight.cluster.eject.failures = consecutive failed requests after which a cluster node is ejected <br>
+	 * loginsight.cluster.probe.interval.ms = interval between the health checks of an ejected cluster node <br>
 	 * 
 	 * @param configFileName
 	 *            Name of the config file to read
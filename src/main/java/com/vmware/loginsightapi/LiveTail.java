@@ -0,0 +1,378 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.loginsightapi.core.Field;
+import com.vmware.loginsightapi.core.FieldConstraint;
+import com.vmware.loginsightapi.core.LogInsightApiError;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.core.MessageQueryResponse;
+import com.vmware.loginsightapi.util.AsyncCallback;
+import com.vmware.loginsightapi.util.DaemonThreadFactory;
+import com.vmware.loginsightapi.util.FingerprintSet;
+
+/**
+ * Polls a message query for new events and delivers them to a listener, like
+ * {@code tail -f}. <br>
+ *
+ * Each poll queries the events newer than the watermark, the newest timestamp
+ * seen so far, minus an overlap window: events are often ingested after more
+ * recent ones, and re-scanning the window catches them. The events of the
+ * window which were already delivered are recognized by a 64-bit fingerprint
+ * of their timestamp, text and fields, kept in a bounded
+ * {@link FingerprintSet} until they fall out of the window. When a poll
+ * returns a full page, the older events are requested page by page, up to the
+ * capacity of the set. <br>
+ *
+ * The interval between the polls doubles while no new event arrives, up to
+ * {@code maxIntervalMs}, and goes back to {@code intervalMs} on the next new
+ * event. The listener is called on the thread of the tail, with the new events
+ * of a poll oldest first, or with the error of a failed poll; the tail keeps
+ * polling after an error until it is closed. The queries bypass the query
+ * result cache.
+ *
+ * <pre>
+ * try (LiveTail tail = client.liveTail(query, (events, error) -&gt; {
+ * 	...
+ * })) {
+ * 	...
+ * }
+ * </pre>
+ */
+public class LiveTail implements AutoCloseable {
+
+	private final static Logger logger = LoggerFactory.getLogger(LiveTail.class);
+
+	private static final String TIMESTAMP = "timestamp";
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final LogInsightClient client;
+	private final MessageQueryBuilder query;
+	private final AsyncCallback<List<Message>, LogInsightApiError> listener;
+	private final int pageSize;
+	private final long intervalMs;
+	private final long maxIntervalMs;
+	private final long overlapMs;
+	private final int maxEventsPerPoll;
+	private final FingerprintSet fingerprints;
+	private final ScheduledExecutorService scheduler;
+
+	private final long since;
+	private volatile long watermark;
+	private volatile long currentIntervalMs;
+	private volatile boolean closed;
+	private volatile CompletableFuture<MessageQueryResponse> pending;
+	private volatile long polls;
+	private volatile long delivered;
+	private volatile long duplicates;
+
+	/**
+	 * Constructs the tail with the properties of the client configuration
+	 *
+	 * @param client
+	 *            LogInsight client
+	 * @param query
+	 *            message query, its limit is replaced by the page size
+	 * @param since
+	 *            timestamp (milliseconds since epoch) from which the events
+	 *            are delivered
+	 * @param listener
+	 *            receives the new events or the error of a poll
+	 */
+	public LiveTail(LogInsightClient client, MessageQueryBuilder query, long since,
+			AsyncCallback<List<Message>, LogInsightApiError> listener) {
+		this(client, query, since, listener, client.getConfiguration().getQueryPageSize(),
+				client.getConfiguration().getTailIntervalMs(), client.getConfiguration().getTailMaxIntervalMs(),
+				client.getConfiguration().getTailOverlapMs(), client.getConfiguration().getTailMaxFingerprints());
+	}
+
+	/**
+	 * Constructs the tail
+	 *
+	 * @param client
+	 *            LogInsight client
+	 * @param query
+	 *            message query, its limit is replaced by the page size
+	 * @param since
+	 *            timestamp (milliseconds since epoch) from which the events
+	 *            are delivered
+	 * @param listener
+	 *            receives the new events or the error of a poll
+	 * @param pageSize
+	 *            number of events requested at once
+	 * @param intervalMs
+	 *            interval between the polls returning events, in milliseconds
+	 * @param maxIntervalMs
+	 *            maximum interval between the polls of an idle tail, in
+	 *            milliseconds
+	 * @param overlapMs
+	 *            window before the watermark queried again for late events, in
+	 *            milliseconds
+	 * @param maxFingerprints
+	 *            maximum number of recent events remembered
+	 */
+	public LiveTail(LogInsightClient client, MessageQueryBuilder query, long since,
+			AsyncCallback<List<Message>, LogInsightApiError> listener, int pageSize, long intervalMs,
+			long maxIntervalMs, long overlapMs, int maxFingerprints) {
+		if (pageSize <= 0 || intervalMs <= 0 || maxIntervalMs < intervalMs || overlapMs < 0) {
+			throw new IllegalArgumentException("Invalid live tail properties");
+		}
+		this.client = client;
+		this.query = query;
+		this.listener = listener;
+		this.pageSize = pageSize;
+		this.intervalMs = intervalMs;
+		this.maxIntervalMs = maxIntervalMs;
+		this.overlapMs = overlapMs;
+		this.fingerprints = new FingerprintSet(maxFingerprints);
+		// leaves room for the fingerprints of the overlap window
+		this.maxEventsPerPoll = Math.max(pageSize, maxFingerprints / 2);
+		this.since = since;
+		this.watermark = since;
+		this.currentIntervalMs = intervalMs;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("loginsight-tail"));
+	}
+
+	/**
+	 * Starts polling
+	 *
+	 * @return this tail
+	 */
+	public LiveTail start() {
+		schedule(this::poll, 0);
+		return this;
+	}
+
+	/**
+	 * Stops polling, cancelling the pending query
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		CompletableFuture<MessageQueryResponse> query = pending;
+		if (query != null) {
+			query.cancel(false);
+		}
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Newest timestamp seen, the next poll queries the events newer than it
+	 * minus the overlap window
+	 *
+	 * @return timestamp in milliseconds since epoch
+	 */
+	public long getWatermark() {
+		return watermark;
+	}
+
+	/**
+	 * Current interval between the polls, adapted to the activity
+	 *
+	 * @return interval in milliseconds
+	 */
+	public long getIntervalMs() {
+		return currentIntervalMs;
+	}
+
+	/**
+	 * Number of polls completed
+	 *
+	 * @return count of polls
+	 */
+	public long getPolls() {
+		return polls;
+	}
+
+	/**
+	 * Number of events delivered to the listener
+	 *
+	 * @return count of events
+	 */
+	public long getDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * Number of events skipped because they were already seen
+	 *
+	 * @return count of events
+	 */
+	public long getDuplicates() {
+		return duplicates;
+	}
+
+	private void poll() {
+		if (closed) {
+			return;
+		}
+		Poll poll = new Poll(Math.max(watermark - overlapMs, since), System.currentTimeMillis());
+		fetch(poll, null);
+	}
+
+	private void fetch(Poll poll, FieldConstraint boundary) {
+		String url = query.page(pageSize, FieldConstraint.ge(TIMESTAMP, Long.toString(poll.lower)), boundary)
+				.toUrlString();
+		CompletableFuture<MessageQueryResponse> future = client.messageQueryAsync(url, false);
+		pending = future;
+		future.whenComplete((response, ex) -> schedule(() -> onPage(poll, response, ex), 0));
+	}
+
+	/**
+	 * Collects the new events of a page, and requests the older events if
+	 * the page is full
+	 */
+	private void onPage(Poll poll, MessageQueryResponse response, Throwable ex) {
+		pending = null;
+		if (closed) {
+			return;
+		}
+		if (ex != null) {
+			Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+			logger.warn("Live tail poll failed: " + cause);
+			notify(null, new LogInsightApiError("Live tail poll failed", cause));
+			next(false);
+			return;
+		}
+		List<Message> events = response.getEvents() == null ? Collections.<Message> emptyList()
+				: response.getEvents();
+		long oldest = Long.MAX_VALUE;
+		long newest = Long.MIN_VALUE;
+		for (Message event : events) {
+			long timestamp = event.getTimestamp() == null ? poll.started : event.getTimestamp();
+			oldest = Math.min(oldest, timestamp);
+			newest = Math.max(newest, timestamp);
+			if (fingerprints.add(fingerprint(event), timestamp)) {
+				poll.events.add(event);
+			} else {
+				duplicates++;
+			}
+			poll.newest = Math.max(poll.newest, timestamp);
+		}
+		if (events.size() >= pageSize && oldest != Long.MAX_VALUE) {
+			if (poll.events.size() < maxEventsPerPoll) {
+				// the page is full: more events are older than its oldest one
+				fetch(poll, oldest == newest && oldest == poll.boundary
+						? FieldConstraint.lt(TIMESTAMP, Long.toString(oldest))
+						: FieldConstraint.le(TIMESTAMP, Long.toString(oldest)));
+				poll.boundary = oldest;
+				return;
+			}
+			logger.warn("Live tail fell behind, skipping the events older than " + oldest);
+		}
+		complete(poll);
+	}
+
+	private void complete(Poll poll) {
+		polls++;
+		if (poll.newest != Long.MIN_VALUE) {
+			// an event timestamped in the future must not move the window past
+			// the events still to come
+			watermark = Math.max(watermark, Math.min(poll.newest, poll.started));
+		}
+		fingerprints.expire(Math.max(watermark - overlapMs, since));
+		if (!poll.events.isEmpty()) {
+			Collections.reverse(poll.events);
+			poll.events.sort(Comparator.comparingLong(e -> e.getTimestamp() == null ? poll.started : e.getTimestamp()));
+			delivered += poll.events.size();
+			notify(poll.events, LogInsightApiError.create());
+		}
+		next(!poll.events.isEmpty());
+	}
+
+	private void notify(List<Message> events, LogInsightApiError error) {
+		try {
+			listener.completed(events, error);
+		} catch (RuntimeException e) {
+			logger.warn("Live tail listener failed", e);
+		}
+	}
+
+	/**
+	 * Schedules the next poll, backing off while the tail is idle
+	 */
+	private void next(boolean active) {
+		currentIntervalMs = active ? intervalMs : Math.min(currentIntervalMs * 2, maxIntervalMs);
+		schedule(this::poll, currentIntervalMs);
+	}
+
+	private void schedule(Runnable task, long delayMs) {
+		if (closed) {
+			return;
+		}
+		try {
+			scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// closed meanwhile
+		}
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the timestamp, text and fields of an event
+	 */
+	static long fingerprint(Message event) {
+		long hash = FNV_OFFSET;
+		long timestamp = event.getTimestamp() == null ? -1 : event.getTimestamp();
+		for (int i = 0; i < 8; i++) {
+			hash = (hash ^ (timestamp >>> (8 * i) & 0xff)) * FNV_PRIME;
+		}
+		hash = hash(hash, event.getText());
+		if (event.getFields() != null) {
+			for (Field field : event.getFields()) {
+				hash = hash(hash(hash, field.getName()), field.getContent());
+			}
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, String value) {
+		if (value == null) {
+			return (hash ^ 0xff) * FNV_PRIME;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+			hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+		}
+		// separator, so that "ab"+"c" and "a"+"bc" differ
+		return (hash ^ 0x1f) * FNV_PRIME;
+	}
+
+	/**
+	 * State of a poll, which may span several pages
+	 */
+	private static final class Poll {
+		final long lower;
+		final long started;
+		final List<Message> events = new ArrayList<Message>();
+		long newest = Long.MIN_VALUE;
+		long boundary = Long.MIN_VALUE;
+
+		Poll(long lower, long started) {
+			this.lower = lower;
+			this.started = started;
+		}
+	}
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+
+import com.vmware.loginsightapi.core.Field;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.util.DaemonThreadFactory;
+import com.vmware.loginsightapi.util.MpscRingBuffer;
+
+/**
+ * Log4j2 appender sending the log events to LogInsight. <br>
+ *
+ * The logging thread only copies the event into a preallocated entry of a
+ * lock-free ring buffer; it never blocks and never waits for the network. When
+ * the buffer is full the event is dropped and counted. A background thread
+ * converts the events to messages, with the level, logger, thread and the
+ * context map (MDC) as fields, and sends them with a {@link BatchingIngestor}.
+ *
+ * <pre>
+ * &lt;Configuration packages="com.vmware.loginsightapi"&gt;
+ *   &lt;Appenders&gt;
+ *     &lt;LogInsight name="LogInsight" configFile="config.properties" bufferSize="8192"/&gt;
+ *   &lt;/Appenders&gt;
+ *   ...
+ * </pre>
+ *
+ * Events of the loggers of this API and of the http client are not sent, so
+ * that ingesting the logs does not produce more logs.
+ */
+@Plugin(name = "LogInsight", category = "Core", elementType = "appender", printObject = true)
+public class LogInsightAppender extends AbstractAppender {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Default number of events buffered between the logging threads and the
+	 * ingestion
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private static final int DRAIN_LIMIT = 1024;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+	private static final long CONNECT_RETRY_MS = 5000;
+	private static final long STOP_TIMEOUT_MS = 10000;
+	private static final int MAX_FIELD_NAMES = 1024;
+	private static final String[] IGNORED_LOGGERS = { "com.vmware.loginsightapi", "org.apache.http" };
+
+	private final Supplier<LogInsightClient> clientFactory;
+	private final MpscRingBuffer<EventEntry> buffer;
+	private final Consumer<EventEntry> handler = this::handle;
+	private final Map<String, String> fieldNames = new HashMap<String, String>();
+	private final LongAdder droppedEvents = new LongAdder();
+
+	private volatile boolean running;
+	private volatile Thread worker;
+	private LogInsightClient client;
+	private BatchingIngestor ingestor;
+
+	/**
+	 * Constructs the appender
+	 *
+	 * @param name
+	 *            name of the appender
+	 * @param filter
+	 *            filter of the events, may be null
+	 * @param ignoreExceptions
+	 *            whether exceptions of the appender are logged instead of
+	 *            passed to the caller
+	 * @param clientFactory
+	 *            creates the client once the appender is started, called from
+	 *            the background thread
+	 * @param bufferSize
+	 *            number of buffered events, rounded up to a power of two
+	 */
+	public LogInsightAppender(String name, Filter filter, boolean ignoreExceptions,
+			Supplier<LogInsightClient> clientFactory, int bufferSize) {
+		super(name, filter, null, ignoreExceptions);
+		this.clientFactory = clientFactory;
+		this.buffer = new MpscRingBuffer<EventEntry>(bufferSize, EventEntry::new);
+	}
+
+	/**
+	 * Creates the appender from the log4j2 configuration. The client is
+	 * configured with the properties file {@code configFile} if given, or
+	 * else with {@code host}, {@code user} and {@code password}.
+	 *
+	 * @param name
+	 *            name of the appender
+	 * @param configFile
+	 *            LogInsight properties file, see
+	 *            {@link Configuration#buildFromConfig(String)}
+	 * @param host
+	 *            LogInsight host
+	 * @param user
+	 *            user name
+	 * @param password
+	 *            password
+	 * @param bufferSize
+	 *            number of buffered events, 8192 by default
+	 * @param ignoreExceptions
+	 *            whether exceptions are logged instead of passed to the caller,
+	 *            true by default
+	 * @param filter
+	 *            filter of the events
+	 * @return the appender, null if the configuration is invalid
+	 */
+	@PluginFactory
+	public static LogInsightAppender createAppender(@PluginAttribute("name") String name,
+			@PluginAttribute("configFile") String configFile, @PluginAttribute("host") String host,
+			@PluginAttribute("user") String user, @PluginAttribute("password") String password,
+			@PluginAttribute("bufferSize") String bufferSize,
+			@PluginAttribute("ignoreExceptions") String ignoreExceptions, @PluginElement("Filter") Filter filter) {
+		if (StringUtils.isBlank(name)) {
+			LOGGER.error("No name provided for LogInsightAppender");
+			return null;
+		}
+		if (StringUtils.isBlank(configFile) && StringUtils.isBlank(host)) {
+			LOGGER.error("LogInsightAppender " + name + " needs a configFile or a host");
+			return null;
+		}
+		int size = DEFAULT_BUFFER_SIZE;
+		if (StringUtils.isNotBlank(bufferSize)) {
+			try {
+				size = Integer.parseInt(bufferSize.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.error("Invalid bufferSize " + bufferSize + " for LogInsightAppender " + name);
+				return null;
+			}
+		}
+		Supplier<LogInsightClient> clientFactory = () -> new LogInsightClient(StringUtils.isNotBlank(configFile)
+				? Configuration.buildFromConfig(configFile) : new Configuration(host, user, password));
+		return new LogInsightAppender(name, filter, !"false".equalsIgnoreCase(ignoreExceptions), clientFactory,
+				size);
+	}
+
+	@Override
+	public void start() {
+		running = true;
+		worker = new DaemonThreadFactory("loginsight-appender").newThread(this::run);
+		worker.start();
+		super.start();
+	}
+
+	/**
+	 * Stops the appender. The buffered events are sent before the client is
+	 * closed.
+	 */
+	@Override
+	public void stop() {
+		super.stop();
+		running = false;
+		Thread thread = worker;
+		if (thread == null) {
+			return;
+		}
+		LockSupport.unpark(thread);
+		try {
+			thread.join(STOP_TIMEOUT_MS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Copies the event into the ring buffer. Never blocks; the event is
+	 * dropped if the buffer is full.
+	 *
+	 * @param event
+	 *            log event
+	 */
+	@Override
+	public void append(LogEvent event) {
+		if (Thread.currentThread() == worker || isIgnored(event.getLoggerName())) {
+			return;
+		}
+		long sequence = buffer.claim();
+		if (sequence < 0) {
+			droppedEvents.increment();
+			return;
+		}
+		EventEntry entry = buffer.get(sequence);
+		entry.timeMillis = event.getTimeMillis();
+		entry.level = event.getLevel();
+		entry.loggerName = event.getLoggerName();
+		entry.threadName = event.getThreadName();
+		entry.message = event.getMessage() == null ? null : event.getMessage().getFormattedMessage();
+		entry.thrown = event.getThrown();
+		entry.contextMap = event.getContextMap();
+		buffer.publish(sequence);
+	}
+
+	/**
+	 * Number of events dropped because the buffer was full
+	 *
+	 * @return count of dropped events
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.sum();
+	}
+
+	/**
+	 * Number of events in the buffer
+	 *
+	 * @return count of buffered events
+	 */
+	public int getPendingEvents() {
+		return buffer.size();
+	}
+
+	private static boolean isIgnored(String loggerName) {
+		if (loggerName == null) {
+			return false;
+		}
+		for (String ignored : IGNORED_LOGGERS) {
+			if (loggerName.startsWith(ignored)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void run() {
+		if (!connect()) {
+			return;
+		}
+		try {
+			while (running) {
+				if (buffer.drain(handler, DRAIN_LIMIT) == 0) {
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+				}
+			}
+			buffer.drain(handler, Integer.MAX_VALUE);
+			ingestor.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				client.close();
+			} catch (Exception e) {
+				LOGGER.error("Unable to close the LogInsight client of appender " + getName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Creates the client, retrying until the appender is stopped. Tried at
+	 * least once, so that the events buffered before an early stop are sent.
+	 */
+	private boolean connect() {
+		do {
+			try {
+				client = clientFactory.get();
+				ingestor = new BatchingIngestor(client);
+				return true;
+			} catch (RuntimeException e) {
+				LOGGER.error("LogInsightAppender " + getName() + " unable to connect to LogInsight, retrying in "
+						+ CONNECT_RETRY_MS + "ms", e);
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(CONNECT_RETRY_MS));
+			}
+		} while (running);
+		return false;
+	}
+
+	private void handle(EventEntry entry) {
+		String text = entry.message == null ? "" : entry.message;
+		if (entry.thrown != null) {
+			text = text + System.lineSeparator() + ExceptionUtils.getStackTrace(entry.thrown);
+		}
+		Map<String, String> context = entry.contextMap;
+		List<Field> fields = new ArrayList<Field>(3 + (context == null ? 0 : context.size()));
+		fields.add(new Field("level", String.valueOf(entry.level)));
+		fields.add(new Field("logger", entry.loggerName));
+		fields.add(new Field("thread", entry.threadName));
+		if (context != null) {
+			for (Map.Entry<String, String> mdc : context.entrySet()) {
+				fields.add(new Field(fieldName(mdc.getKey()), mdc.getValue()));
+			}
+		}
+		Message message = new Message(text, entry.timeMillis, fields);
+		entry.clear();
+		ingestor.add(message);
+	}
+
+	/**
+	 * LogInsight field names only contain letters, digits and underscores
+	 */
+	private String fieldName(String key) {
+		String name = fieldNames.get(key);
+		if (name == null) {
+			StringBuilder builder = new StringBuilder(key.length());
+			for (int i = 0; i < key.length(); i++) {
+				char c = key.charAt(i);
+				builder.append(Character.isLetterOrDigit(c) && c < 128 ? c : '_');
+			}
+			name = builder.toString();
+			if (fieldNames.size() < MAX_FIELD_NAMES) {
+				fieldNames.put(key, name);
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * Preallocated copy of a log event in the ring buffer
+	 */
+	private static final class EventEntry {
+		long timeMillis;
+		Level level;
+		String loggerName;
+		String threadName;
+		String message;
+		Throwable thrown;
+		Map<String, String> contextMap;
+
+		void clear() {
+			level = null;
+			loggerName = null;
+			threadName = null;
+			message = null;
+			thrown = null;
+			contextMap = null;
+		}
+	}
+}
@@ -11,22 +11,34 @@ package com.vmware.loginsightapi;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 //import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,8 +47,13 @@ import com.vmware.loginsightapi.core.AuthInfo;
 import com.vmware.loginsightapi.core.IngestionRequest;
 import com.vmware.loginsightapi.core.IngestionResponse;
 import com.vmware.loginsightapi.core.LogInsightApiError;
+import com.vmware.loginsightapi.core.Message;
 import com.vmware.loginsightapi.core.MessageQueryResponse;
+import com.vmware.loginsightapi.core.MessageQueryStream;
 import com.vmware.loginsightapi.util.AsyncCallback;
+import com.vmware.loginsightapi.util.IngestionRequestEntity;
+import com.vmware.loginsightapi.util.IngestionRequestSplitter;
+import com.vmware.loginsightapi.util.SingleFlight;
 
 /**
  * LogInsight client class providing mechanisms to connect to LogInsight, Query
@@ -55,6 +72,11 @@ public class LogInsightClient implements AutoCloseable {
 	 */
 	public static final String API_URL_SESSION_PATH = "/api/v1/sessions";
 
+	/**
+	 * Relative path of the version url, which does not require a session
+	 */
+	public static final String API_URL_VERSION_PATH = "/api/v1/version";
+
 	/**
 	 * Relative path of the event query url
 	 */
@@ -70,13 +92,22 @@ public class LogInsightClient implements AutoCloseable {
 	 */
 	public static final String API_URL_INGESTION = "/api/v1/messages/ingest/";
 
-	private String sessionId;
-
 	private LogInsightConnectionStrategy connectionStrategy;
 	private Configuration config;
 
 	private final CloseableHttpAsyncClient asyncHttpClient;
 
+	private final ClientMetrics metrics = new ClientMetrics();
+	private final AtomicBoolean compressionRejected = new AtomicBoolean();
+	private final RetryExecutor retries;
+	private final QueryResultCache queryCache;
+	private final AggregateSeriesCache seriesCache;
+	private final SessionManager session;
+	private final SingleFlight<String, MessageQueryResponse> messageQueries = new SingleFlight<String, MessageQueryResponse>(
+			metrics::recordQueryCoalesced);
+	private final SingleFlight<String, AggregateResponse> aggregateQueries = new SingleFlight<String, AggregateResponse>(
+			metrics::recordQueryCoalesced);
+
 	private final static Logger logger = LoggerFactory.getLogger(LogInsightClient.class);
 
 	/**
@@ -87,10 +118,7 @@ public class LogInsightClient implements AutoCloseable {
 	 * @see Configuration
 	 */
 	public LogInsightClient(Configuration config) {
-		this.connectionStrategy = new AsyncLogInsightConnectionStrategy();
-		this.config = config;
-		asyncHttpClient = connectionStrategy.getHttpClient();
-		this.connect();
+		this(config, null, true);
 	}
 
 	/**
@@ -99,15 +127,46 @@ public class LogInsightClient implements AutoCloseable {
 	 * @param config
 	 *            Configuration object
 	 * @param connectionStrategy
-	 *            Connection strategy to use
+	 *            Connection strategy to use, null for the
+	 *            AsyncLogInsightConnectionStrategy of the configuration
 	 * 
 	 */
 	public LogInsightClient(Configuration config,
 			LogInsightConnectionStrategy<CloseableHttpAsyncClient> connectionStrategy) {
-		this.connectionStrategy = connectionStrategy;
+		this(config, connectionStrategy, true);
+	}
+
+	/**
+	 * Builds LogInsightClient object with config object and connection
+	 * strategy, optionally without logging in. See
+	 * {@link LogInsightClientBuilder}.
+	 * 
+	 * @param config
+	 *            Configuration object
+	 * @param connectionStrategy
+	 *            Connection strategy to use, null for the
+	 *            AsyncLogInsightConnectionStrategy of the configuration
+	 * @param connect
+	 *            false to return without logging in, the session is then
+	 *            opened by {@link #connectAsync()} or by the first query
+	 */
+	LogInsightClient(Configuration config, LogInsightConnectionStrategy<CloseableHttpAsyncClient> connectionStrategy,
+			boolean connect) {
+		this.connectionStrategy = connectionStrategy != null ? connectionStrategy
+				: new AsyncLogInsightConnectionStrategy(config, metrics);
 		this.config = config;
-		asyncHttpClient = connectionStrategy.getHttpClient();
-		this.connect();
+		this.retries = new RetryExecutor(
+				new RetryBudget(this.config.getRetryBudgetRatio(), this.config.getRetryBudgetMinPerSecond()), metrics);
+		this.queryCache = new QueryResultCache(this.config.getQueryCacheMaxBytes(), this.config.getQueryCacheTtlMs(),
+				this.config.getQueryCacheSettledTtlMs(), this.config.getQueryCacheSettleDelayMs(), metrics);
+		this.seriesCache = new AggregateSeriesCache(this.config.getSeriesCacheMaxEntries(),
+				this.config.getQueryCacheSettleDelayMs(), this.config.getQueryCacheSettledTtlMs(), metrics);
+		this.session = new SessionManager(this::login, this::loginAsync, this.config.getSessionRenewalMarginMs(),
+				metrics);
+		asyncHttpClient = this.connectionStrategy.getHttpClient();
+		if (connect) {
+			this.connect();
+		}
 	}
 
 	/**
@@ -122,10 +181,7 @@ public class LogInsightClient implements AutoCloseable {
 	 * 
 	 */
 	public LogInsightClient(String host, String user, String password) {
-		this.connectionStrategy = new AsyncLogInsightConnectionStrategy();
-		this.config = new Configuration(host, user, password);
-		asyncHttpClient = connectionStrategy.getHttpClient();
-		this.connect();
+		this(new Configuration(host, user, password), null, true);
 	}
 
 	/**
@@ -144,10 +200,60 @@ public class LogInsightClient implements AutoCloseable {
 	 */
 	public LogInsightClient(String host, String user, String password,
 			LogInsightConnectionStrategy<CloseableHttpAsyncClient> connectionStrategy) {
-		this.connectionStrategy = connectionStrategy;
-		this.config = new Configuration(host, user, password);
-		asyncHttpClient = connectionStrategy.getHttpClient();
-		this.connect();
+		this(new Configuration(host, user, password), connectionStrategy, true);
+	}
+
+	/**
+	 * Returns the configuration used by this client
+	 *
+	 * @return Configuration object
+	 */
+	public Configuration getConfiguration() {
+		return config;
+	}
+
+	/**
+	 * Returns the counters collected by this client
+	 *
+	 * @return ClientMetrics object
+	 */
+	public ClientMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the cache of the message and aggregate query results, enabled
+	 * with {@code loginsight.query.cache.max.bytes}
+	 *
+	 * @return QueryResultCache object
+	 */
+	public QueryResultCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Returns the cache of the aggregate series refreshed incrementally by
+	 * {@link #aggregateSeriesQueryAsync(AggregateQueryBuilder)}, enabled with
+	 * {@code loginsight.series.cache.max.entries}
+	 *
+	 * @return AggregateSeriesCache object
+	 */
+	public AggregateSeriesCache getSeriesCache() {
+		return seriesCache;
+	}
+
+	/**
+	 * Returns the current statistics of the connection pool of the http
+	 * client: leased, pending, available and maximum connections
+	 *
+	 * @return PoolStats object, null if the connection strategy does not
+	 *         pool connections
+	 */
+	public PoolStats getConnectionPoolStats() {
+		if (connectionStrategy instanceof AsyncLogInsightConnectionStrategy) {
+			return ((AsyncLogInsightConnectionStrategy) connectionStrategy).getPoolStats();
+		}
+		return null;
 	}
 
 	/**
@@ -236,33 +342,91 @@ public class LogInsightClient implements AutoCloseable {
 	 * Connects to LogInsight and initialize AsyncHttpClient with LogInsight
 	 * session Id. This method should be called after a successful
 	 * authentication with LogInsight, so that {@code getSessionId} returns a
-	 * proper session id.
+	 * proper session id. The session is then renewed in the background
+	 * {@code loginsight.session.renewal.margin.ms} before it expires, and
+	 * opened again when a query is rejected with an expired session.
 	 * 
 	 * @throws AuthFailure
 	 *             authentication failure exception
 	 */
 	protected void connect() throws AuthFailure {
+		session.login();
+	}
 
-		String body = String.format("{\"username\":\"%s\",\"password\":\"%s\"}", config.getUser(), config.getPassword());
+	/**
+	 * Connects to LogInsight without blocking the calling thread. Joins the
+	 * login in flight, if any.
+	 * 
+	 * @return future completed once the session is opened. Completes
+	 *         exceptionally with {@code AuthFailure} or
+	 *         {@code LogInsightApiException}
+	 */
+	public CompletableFuture<Void> connectAsync() {
+		return session.loginAsync().thenApply(sessionId -> null);
+	}
 
-		HttpPost httpPost = new HttpPost(sessionUrl());
-		httpPost.addHeader("Accept", "application/json");
-		httpPost.addHeader("Content-type", "application/json");
-		HttpResponse response = null;
-		httpPost.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
-		try {
-			Future<HttpResponse> future = asyncHttpClient.execute(httpPost, null);
-			response = future.get();
-			String serverResponse = IOUtils.toString(response.getEntity().getContent(), "UTF-8");
-			logger.info("Auth response = " + serverResponse);
-			if (response.getStatusLine().getStatusCode() == 200) {
-				AuthInfo authInfo = AuthInfo.fromJsonString(serverResponse);
-				sessionId = authInfo.getSessionId();
-			} else {
-				logger.error("Unable to authenticate. StatusCode=" + response.getStatusLine().getStatusCode());
-				logger.error("Unable to authenticate. " + serverResponse);
-				throw new AuthFailure("Connection to LogInsight failed. " + serverResponse);
+	/**
+	 * Checks whether a session has been opened
+	 * 
+	 * @return true once a login succeeded
+	 */
+	public boolean isConnected() {
+		return session.getSessionId() != null;
+	}
+
+	/**
+	 * Opens connections to the API port and, when it differs, to the
+	 * ingestion port, by sending concurrent requests which do not need a
+	 * session. The connections are then kept alive in the pool for the next
+	 * requests.
+	 * 
+	 * @param count
+	 *            number of connections per port
+	 * @return future completed once all the requests completed, successfully
+	 *         or not
+	 */
+	CompletableFuture<Void> openConnectionsAsync(int count) {
+		List<String> urls = new ArrayList<String>();
+		urls.add(apiUrl() + API_URL_VERSION_PATH);
+		if (!StringUtils.equals(config.getPort(), config.getIngestionPort())) {
+			urls.add(config.getScheme() + "://" + config.getHost() + ":" + config.getIngestionPort()
+					+ API_URL_VERSION_PATH);
+		}
+		List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+		for (String url : urls) {
+			for (int i = 0; i < count; i++) {
+				futures.add(versionAsync(url).handle((response, ex) -> null));
 			}
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+
+	/**
+	 * Checks that the LogInsight API answers, without session. Used as health
+	 * check of the nodes of a LogInsightClusterClient.
+	 * 
+	 * @return future completed once the version request succeeded. Completes
+	 *         exceptionally with {@code LogInsightApiException}
+	 */
+	CompletableFuture<Void> probeAsync() {
+		return versionAsync(apiUrl() + API_URL_VERSION_PATH);
+	}
+
+	private CompletableFuture<Void> versionAsync(String url) {
+		return executeAsync(() -> new HttpGet(url), httpResponse -> {
+			EntityUtils.consume(httpResponse.getEntity());
+			if (httpResponse.getStatusLine().getStatusCode() != 200) {
+				throw new LogInsightHttpException("Received " + httpResponse.getStatusLine() + " from LogInsight",
+						httpResponse.getStatusLine().getStatusCode(), retryAfterMs(httpResponse));
+			}
+			return null;
+		}, "LogInsight version request failed");
+	}
+
+	private AuthInfo login() throws AuthFailure {
+		try {
+			Future<HttpResponse> future = asyncHttpClient.execute(getSessionHttpRequest(), null);
+			return handleLoginResponse(future.get());
 		} catch (InterruptedException ie) {
 			throw new AuthFailure("Connection to LogInsight failed", ie);
 		} catch (ExecutionException ee) {
@@ -272,6 +436,41 @@ public class LogInsightClient implements AutoCloseable {
 		}
 	}
 
+	private CompletableFuture<AuthInfo> loginAsync() {
+		return executeAsync(this::getSessionHttpRequest, this::handleLoginResponse, "Connection to LogInsight failed");
+	}
+
+	private HttpPost getSessionHttpRequest() {
+		String body = String.format("{\"username\":\"%s\",\"password\":\"%s\"}", config.getUser(), config.getPassword());
+
+		HttpPost httpPost = new HttpPost(sessionUrl());
+		httpPost.addHeader("Accept", "application/json");
+		httpPost.addHeader("Content-type", "application/json");
+		httpPost.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+		return httpPost;
+	}
+
+	/**
+	 * Converts the http response of a login request to AuthInfo
+	 * 
+	 * @param response
+	 *            http response
+	 * @return AuthInfo object
+	 * @throws IOException
+	 *             failed to read the response body
+	 */
+	private AuthInfo handleLoginResponse(HttpResponse response) throws IOException {
+		String serverResponse = IOUtils.toString(response.getEntity().getContent(), "UTF-8");
+		logger.info("Auth response = " + serverResponse);
+		if (response.getStatusLine().getStatusCode() == 200) {
+			return AuthInfo.fromJsonString(serverResponse);
+		} else {
+			logger.error("Unable to authenticate. StatusCode=" + response.getStatusLine().getStatusCode());
+			logger.error("Unable to authenticate. " + serverResponse);
+			throw new AuthFailure("Connection to LogInsight failed. " + serverResponse);
+		}
+	}
+
 	/**
 	 * Stop the async http client.
 	 */
@@ -298,27 +497,44 @@ public class LogInsightClient implements AutoCloseable {
 	 *             general LogInsightApiException
 	 */
 	public MessageQueryResponse messageQuery(String apiUrl) throws LogInsightApiException {
+		MessageQueryResponse response = queryCache.get(apiUrl, MessageQueryResponse.class);
+		if (response == null) {
+			response = coalesce(messageQueries, apiUrl,
+					() -> retries.execute(
+							() -> withSession(() -> messageQueryOnce(apiUrl, this::handleMessageQueryResponse)),
+							config.getQueryRetryPolicy()),
+					"Message query failed");
+			queryCache.put(apiUrl, response);
+		}
+		return response;
+	}
+
+	/**
+	 * Performs message query and decodes the events while they are iterated,
+	 * instead of binding them all into a list. Suited for queries returning
+	 * many events. The returned stream must be closed unless it is iterated to
+	 * the end.
+	 *
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @return lazily decoded message query response
+	 * @throws LogInsightApiException
+	 *             general LogInsightApiException
+	 * @see MessageQueryStream
+	 */
+	public MessageQueryStream messageQueryStream(String apiUrl) throws LogInsightApiException {
+		return retries.execute(() -> withSession(() -> messageQueryOnce(apiUrl, this::handleMessageQueryStream)),
+				config.getQueryRetryPolicy());
+	}
+
+	private <T> T messageQueryOnce(String apiUrl, ResponseHandler<T> handler) throws LogInsightApiException {
 		HttpGet request = null;
 		try {
 			request = getHttpRequest(apiUrl, false);
 			Future<HttpResponse> future = asyncHttpClient.execute(request, null);
 			HttpResponse httpResponse = future.get();
 			logger.debug("Response: " + httpResponse.getStatusLine());
-			if (httpResponse.getStatusLine().getStatusCode() == 200) {
-				InputStream responseBody = httpResponse.getEntity().getContent();
-				String responseString = IOUtils.toString(responseBody, "UTF-8");
-				logger.warn("Response: " + responseString);
-				return MessageQueryResponse.fromJsonString(responseString);
-			}
-			if ((httpResponse.getStatusLine().getStatusCode() == 401)
-					|| (httpResponse.getStatusLine().getStatusCode() == 440)) {
-				logger.warn("Session expired, retrying the request after authentication");
-				sessionId = null;
-				throw new AuthFailure("Invalid session id. Message query failed.");
-			} else {
-				throw new LogInsightApiException(
-						"Unable to query the response from LogInsight " + httpResponse.getStatusLine());
-			}
+			return handler.handleResponse(httpResponse);
 		} catch (InterruptedException ie) {
 			throw new LogInsightApiException("Message query failed", ie);
 		} catch (ExecutionException ee) {
@@ -340,43 +556,113 @@ public class LogInsightClient implements AutoCloseable {
 	 */
 	public void messageQuery(String apiUrl, AsyncCallback<MessageQueryResponse, LogInsightApiError> callback)
 			throws LogInsightApiException {
-		HttpGet request = null;
-		try {
-			request = getHttpRequest(apiUrl, false);
-			asyncHttpClient.execute(request, new FutureCallback<HttpResponse>() {
-
-				@Override
-				public void completed(HttpResponse httpResponse) {
+		messageQueryAsync(apiUrl).whenComplete((response, ex) -> {
+			if (ex == null) {
+				callback.completed(response, LogInsightApiError.create());
+			} else {
+				callback.completed(null, new LogInsightApiError("Message query failed", unwrap(ex)));
+			}
+		});
+	}
 
-					try {
-						InputStream responseBody = httpResponse.getEntity().getContent();
-						String responseString = IOUtils.toString(responseBody, "UTF-8");
-						logger.warn("Response: " + responseString);
-						callback.completed(MessageQueryResponse.fromJsonString(responseString),
-								LogInsightApiError.create());
+	/**
+	 * Performs message query without blocking the calling thread. The returned
+	 * future is completed from the I/O thread of the http client. Concurrent
+	 * identical queries share one request and one response, which must not be
+	 * modified.
+	 * 
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @return future of the message query response. Completes exceptionally
+	 *         with {@code LogInsightApiException} or {@code AuthFailure}
+	 */
+	public CompletableFuture<MessageQueryResponse> messageQueryAsync(String apiUrl) {
+		return messageQueryAsync(apiUrl, true);
+	}
 
-					} catch (IOException e) {
-						e.printStackTrace();
-						callback.completed(null, new LogInsightApiError("Unable to process the query response", e));
-					}
+	/**
+	 * Performs message query without blocking the calling thread, optionally
+	 * bypassing the query result cache
+	 * 
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @param useCache
+	 *            false to neither read nor update the query result cache, for
+	 *            the queries which must see the latest events
+	 * @return future of the message query response
+	 */
+	CompletableFuture<MessageQueryResponse> messageQueryAsync(String apiUrl, boolean useCache) {
+		MessageQueryResponse cached = useCache ? queryCache.get(apiUrl, MessageQueryResponse.class) : null;
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		return coalesceAsync(messageQueries, apiUrl, () -> {
+			CompletableFuture<MessageQueryResponse> future = retries.executeAsync(
+					() -> withSessionAsync(() -> executeAsync(() -> getHttpRequest(apiUrl, false),
+							this::handleMessageQueryResponse, "Message query failed")),
+					config.getQueryRetryPolicy());
+			if (useCache) {
+				future.thenAccept(response -> queryCache.put(apiUrl, response));
+			}
+			return future;
+		});
+	}
 
-				}
+	/**
+	 * Performs message query without blocking the calling thread, decoding
+	 * the events while they are iterated. See
+	 * {@link #messageQueryStream(String)}.
+	 * 
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @return future of the lazily decoded message query response. Completes
+	 *         exceptionally with {@code LogInsightApiException} or
+	 *         {@code AuthFailure}
+	 */
+	public CompletableFuture<MessageQueryStream> messageQueryStreamAsync(String apiUrl) {
+		return retries.executeAsync(() -> withSessionAsync(() -> executeAsync(() -> getHttpRequest(apiUrl, false),
+				this::handleMessageQueryStream, "Message query failed")), config.getQueryRetryPolicy());
+	}
 
-				@Override
-				public void failed(Exception ex) {
-					callback.completed(null, new LogInsightApiError("Failed message Query", ex));
-				}
+	/**
+	 * Iterates over all the events of a message query, requesting the pages
+	 * one after the other. See {@link QueryCursor}.
+	 * 
+	 * @param query
+	 *            message query, its limit is replaced by the page size
+	 * @return cursor over the events, the first page being already requested
+	 */
+	public QueryCursor messageQueryCursor(MessageQueryBuilder query) {
+		return new QueryCursor(this, query);
+	}
 
-				@Override
-				public void cancelled() {
-					callback.completed(null, new LogInsightApiError("Cancelled message Query", ""));
-				}
+	/**
+	 * Delivers the new events of a message query to a listener as they are
+	 * ingested, starting now. See {@link LiveTail}.
+	 * 
+	 * @param query
+	 *            message query, its limit is replaced by the page size
+	 * @param listener
+	 *            receives each batch of new events, oldest first, or the
+	 *            error of a failed poll
+	 * @return the started tail, to be closed to stop polling
+	 */
+	public LiveTail liveTail(MessageQueryBuilder query, AsyncCallback<List<Message>, LogInsightApiError> listener) {
+		return new LiveTail(this, query, System.currentTimeMillis(), listener).start();
+	}
 
-			});
-			logger.info("Finished completely!!!");
-		} catch (Exception ie) {
-			callback.completed(null, new LogInsightApiError("Message query failed", ie));
-		}
+	/**
+	 * Performs a message query over a long time range as concurrent queries on
+	 * time slices of the range. See {@link MessageQueryFanOut}.
+	 * 
+	 * @param query
+	 *            message query with a timestamp range
+	 * @return future of the merged message query response, newest events
+	 *         first. Completes exceptionally with
+	 *         {@code LogInsightApiException} or {@code AuthFailure}
+	 */
+	public CompletableFuture<MessageQueryResponse> messageQueryFanOutAsync(MessageQueryBuilder query) {
+		return new MessageQueryFanOut(this).queryAsync(query);
 	}
 
 	/**
@@ -389,25 +675,25 @@ public class LogInsightClient implements AutoCloseable {
 	 *             exception
 	 */
 	public AggregateResponse aggregateQuery(String apiUrl) throws LogInsightApiException {
+		AggregateResponse response = queryCache.get(apiUrl, AggregateResponse.class);
+		if (response == null) {
+			response = coalesce(aggregateQueries, apiUrl,
+					() -> retries.execute(() -> withSession(() -> aggregateQueryOnce(apiUrl)),
+							config.getQueryRetryPolicy()),
+					"Aggregation query failed");
+			queryCache.put(apiUrl, response);
+		}
+		return response;
+	}
+
+	private AggregateResponse aggregateQueryOnce(String apiUrl) throws LogInsightApiException {
 		HttpGet request = null;
 		try {
 			request = getHttpRequest(apiUrl, true);
 			Future<HttpResponse> future = asyncHttpClient.execute(request, null);
 			HttpResponse httpResponse = future.get();
 			logger.debug("Aggregate Response: " + httpResponse.getStatusLine());
-			System.out.println("Aggregate Response: " + httpResponse.getStatusLine());
-
-			if ((httpResponse.getStatusLine().getStatusCode() == 401)
-					|| (httpResponse.getStatusLine().getStatusCode() == 440)) {
-				logger.warn("Session expired, retrying the request after authentication");
-				sessionId = null;
-				throw new AuthFailure("Session expired. Received " + httpResponse.getStatusLine() + " from LogInsight");
-			} else {
-				InputStream responseBody = httpResponse.getEntity().getContent();
-				String responseString = IOUtils.toString(responseBody, "UTF-8");
-				logger.warn("Response: " + responseString);
-				return AggregateResponse.fromJsonString(responseString);
-			}
+			return handleAggregateResponse(httpResponse);
 		} catch (InterruptedException ie) {
 			throw new LogInsightApiException("Aggregation query failed", ie);
 		} catch (ExecutionException ee) {
@@ -426,78 +712,246 @@ public class LogInsightClient implements AutoCloseable {
 	 *            callback
 	 */
 	public void aggregateQuery(String apiUrl, AsyncCallback<AggregateResponse, LogInsightApiError> callback) {
-		HttpGet request = null;
+		logger.debug("Querying " + aggregateQueryUrl() + apiUrl);
+		aggregateQueryAsync(apiUrl).whenComplete((response, ex) -> {
+			if (ex == null) {
+				callback.completed(response, LogInsightApiError.create());
+			} else {
+				callback.completed(null, new LogInsightApiError("Aggregation query failed", unwrap(ex)));
+			}
+		});
+	}
+
+	/**
+	 * Performs aggregate query without blocking the calling thread. The
+	 * returned future is completed from the I/O thread of the http client.
+	 * Concurrent identical queries share one request and one response, which
+	 * must not be modified.
+	 * 
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @return future of the aggregate response. Completes exceptionally with
+	 *         {@code LogInsightApiException} or {@code AuthFailure}
+	 */
+	public CompletableFuture<AggregateResponse> aggregateQueryAsync(String apiUrl) {
+		return aggregateQueryAsync(apiUrl, true);
+	}
+
+	/**
+	 * Performs aggregate query without blocking the calling thread, optionally
+	 * bypassing the query result cache
+	 * 
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @param useCache
+	 *            false to neither read nor update the query result cache, for
+	 *            the queries which must see the latest events
+	 * @return future of the aggregate response
+	 */
+	CompletableFuture<AggregateResponse> aggregateQueryAsync(String apiUrl, boolean useCache) {
+		AggregateResponse cached = useCache ? queryCache.get(apiUrl, AggregateResponse.class) : null;
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		return coalesceAsync(aggregateQueries, apiUrl, () -> {
+			CompletableFuture<AggregateResponse> future = retries.executeAsync(
+					() -> withSessionAsync(() -> executeAsync(() -> getHttpRequest(apiUrl, true),
+							this::handleAggregateResponse, "Aggregation query failed")),
+					config.getQueryRetryPolicy());
+			if (useCache) {
+				future.thenAccept(response -> queryCache.put(apiUrl, response));
+			}
+			return future;
+		});
+	}
+
+	/**
+	 * Performs an aggregate query over a time range, reusing the settled bins
+	 * of the previous query of the same series and querying only the trailing
+	 * bins. See {@link AggregateSeriesCache}.
+	 * 
+	 * @param query
+	 *            aggregate query with a timestamp range and a bin width
+	 * @return AggregateResponse
+	 * @throws LogInsightApiException
+	 *             exception
+	 */
+	public AggregateResponse aggregateSeriesQuery(AggregateQueryBuilder query) throws LogInsightApiException {
 		try {
-			request = getHttpRequest(apiUrl, true);
-			logger.debug("Querying " + aggregateQueryUrl() + apiUrl);
-			asyncHttpClient.execute(request, new FutureCallback<HttpResponse>() {
+			return aggregateSeriesQueryAsync(query).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LogInsightApiException("Aggregation query interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new LogInsightApiException("Aggregation query failed", e.getCause());
+		}
+	}
 
-				@Override
-				public void completed(HttpResponse httpResponse) {
+	/**
+	 * Performs an aggregate query over a time range without blocking the
+	 * calling thread, reusing the settled bins of the previous query of the
+	 * same series. See {@link AggregateSeriesCache}.
+	 * 
+	 * @param query
+	 *            aggregate query with a timestamp range and a bin width
+	 * @return future of the aggregate response. Completes exceptionally with
+	 *         {@code LogInsightApiException} or {@code AuthFailure}
+	 */
+	public CompletableFuture<AggregateResponse> aggregateSeriesQueryAsync(AggregateQueryBuilder query) {
+		return seriesCache.query(query, url -> aggregateQueryAsync(url, false));
+	}
 
-					try {
-						String responseString = IOUtils.toString(httpResponse.getEntity().getContent(), "UTF-8");
-						logger.warn("Response: " + responseString);
-						callback.completed(AggregateResponse.fromJsonString(responseString),
-								LogInsightApiError.create());
+	/**
+	 * Performs an aggregate query over a long time range as concurrent partial
+	 * queries on time slices of the range. See {@link AggregateQueryFanOut}.
+	 * 
+	 * @param query
+	 *            aggregate query with a timestamp range
+	 * @return future of the merged aggregate response. Completes exceptionally
+	 *         with {@code LogInsightApiException} or {@code AuthFailure}
+	 */
+	public CompletableFuture<AggregateResponse> aggregateQueryFanOutAsync(AggregateQueryBuilder query) {
+		return new AggregateQueryFanOut(this).queryAsync(query);
+	}
 
-					} catch (IOException e) {
-						e.printStackTrace();
-						callback.completed(null, new LogInsightApiError("Unable to process the query response", e));
-					}
+	/**
+	 * Runs a blocking request, and runs it once more with a new session when
+	 * it is rejected with an expired session. Concurrent requests rejected
+	 * with the same session share a single login. Logs in first when no
+	 * session has been opened yet.
+	 */
+	private <T> T withSession(Supplier<T> request) {
+		String usedId = session.getSessionId();
+		if (usedId == null) {
+			usedId = session.login();
+		}
+		try {
+			return request.get();
+		} catch (SessionExpiredException e) {
+			session.relogin(usedId);
+			return request.get();
+		}
+	}
 
-				}
+	/**
+	 * Starts an asynchronous request, and starts it once more with a new
+	 * session when it is rejected with an expired session. Concurrent
+	 * requests rejected with the same session share a single login. Logs in
+	 * first when no session has been opened yet.
+	 */
+	private <T> CompletableFuture<T> withSessionAsync(Supplier<CompletableFuture<T>> request) {
+		String usedId = session.getSessionId();
+		if (usedId == null) {
+			return session.loginAsync().thenCompose(sessionId -> withSessionAsync(sessionId, request));
+		}
+		return withSessionAsync(usedId, request);
+	}
 
-				@Override
-				public void failed(Exception ex) {
-					callback.completed(null, new LogInsightApiError("Failed message Query", ex));
-				}
+	private <T> CompletableFuture<T> withSessionAsync(String usedId, Supplier<CompletableFuture<T>> request) {
+		CompletableFuture<T> future = request.get();
+		CompletableFuture<T> result = future.handle((response, ex) -> {
+			if (unwrap(ex) instanceof SessionExpiredException) {
+				return session.reloginAsync(usedId).thenCompose(id -> request.get());
+			}
+			return future;
+		}).thenCompose(Function.identity());
+		result.whenComplete((response, ex) -> {
+			if (result.isCancelled()) {
+				future.cancel(false);
+			}
+		});
+		return result;
+	}
 
-				@Override
-				public void cancelled() {
-					callback.completed(null, new LogInsightApiError("Cancelled message Query", ""));
-				}
+	/**
+	 * Runs a blocking query, unless the identical query is already in flight
+	 * in which case its response is awaited instead
+	 */
+	private <T> T coalesce(SingleFlight<String, T> flights, String apiUrl, Supplier<T> query, String errorMessage) {
+		if (!config.isQueryCoalescing()) {
+			return query.get();
+		}
+		try {
+			return flights.executeBlocking(QueryResultCache.normalize(apiUrl), query);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new LogInsightApiException(errorMessage, ie);
+		}
+	}
 
-			});
-		} catch (Exception ie) {
-			callback.completed(null, new LogInsightApiError("Message query failed", ie));
+	/**
+	 * Starts an asynchronous query, unless the identical query is already in
+	 * flight in which case the returned future completes with its response
+	 */
+	private <T> CompletableFuture<T> coalesceAsync(SingleFlight<String, T> flights, String apiUrl,
+			Supplier<CompletableFuture<T>> query) {
+		if (!config.isQueryCoalescing()) {
+			return query.get();
 		}
+		return flights.execute(QueryResultCache.normalize(apiUrl), query);
 	}
 
 	/**
-	 * Ingest messages to loginsight
+	 * Ingest messages to loginsight. Requests above
+	 * {@code loginsight.ingestion.request.max.messages} messages or
+	 * {@code loginsight.ingestion.request.max.bytes} bytes are split into parts
+	 * which are sent in parallel; the response then carries the total number
+	 * of ingested messages.
 	 * 
 	 * @param messages
 	 *            IngestionRequest object with list of messages
 	 * @return IngestionResponse object
 	 * @throws LogInsightApiException
-	 *             Api exception
+	 *             Api exception. With a split request, some of the parts may
+	 *             have been ingested.
 	 * @see IngestionRequest
 	 * @see IngestionResponse
 	 */
 	public IngestionResponse ingest(IngestionRequest messages) throws LogInsightApiException {
+		List<List<Message>> parts = splitIngestionRequest(messages);
+		if (parts.size() == 1) {
+			return retries.execute(() -> ingestPart(messages), config.getIngestionRetryPolicy());
+		}
+		CompletableFuture<IngestionResponse> future = ingestParts(parts);
+		try {
+			return future.get();
+		} catch (InterruptedException ie) {
+			future.cancel(false);
+			throw new LogInsightApiException("Ingestion failed", ie);
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof LogInsightApiException) {
+				throw (LogInsightApiException) ee.getCause();
+			}
+			if (ee.getCause() instanceof AuthFailure) {
+				throw (AuthFailure) ee.getCause();
+			}
+			throw new LogInsightApiException("Ingestion failed", ee);
+		}
+	}
 
-		// IngestionResponse response = null;
-		HttpPost httpPost = null;
+	private IngestionResponse ingestPart(IngestionRequest messages) throws LogInsightApiException {
+		boolean gzip = isIngestionGzipEnabled();
 		try {
-			httpPost = getIngestionHttpRequest(messages);
-			logger.info("Sending : " + messages.toJson());
+			return ingest(messages, gzip);
+		} catch (CompressionRejectedException e) {
+			IngestionResponse response = ingest(messages, false);
+			disableIngestionGzip(e);
+			return response;
+		}
+	}
+
+	private IngestionResponse ingest(IngestionRequest messages, boolean gzip) throws LogInsightApiException {
+		IngestionRequestEntity entity = newIngestionEntity(messages, gzip);
+		try {
+			HttpPost httpPost = getIngestionHttpRequest(entity);
+			logger.debug("Sending " + messages.count() + " messages");
 			Future<HttpResponse> future = asyncHttpClient.execute(httpPost, null);
 			HttpResponse httpResponse = future.get();
 			logger.debug("Response: " + httpResponse.getStatusLine());
-			InputStream responseBody = httpResponse.getEntity().getContent();
-			String responseString = IOUtils.toString(responseBody, "UTF-8");
-			if (httpResponse.getStatusLine().getStatusCode() == 200) {
-				// String responseString =
-				// convertStreamToString(httpResponse.getEntity().getContent());
-				logger.warn("Response: " + responseString);
-				return IngestionResponse.fromJsonString(responseString);
-			} else {
-				// String responseString =
-				// convertStreamToString(httpResponse.getEntity().getContent());
-				throw new LogInsightApiException("Unable to send messages to LogInsight. Received "
-						+ httpResponse.getStatusLine() + " from LogInsight. Response = " + responseString);
-			}
+			return handleIngestionResponse(httpResponse, entity);
 		} catch (InterruptedException ie) {
 			throw new LogInsightApiException("Ingestion failed", ie);
 		} catch (ExecutionException ee) {
@@ -507,6 +961,336 @@ public class LogInsightClient implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Ingest messages to loginsight without blocking the calling thread. The
+	 * returned future is completed from the I/O thread of the http client.
+	 * Large requests are split like with {@link #ingest(IngestionRequest)}.
+	 * 
+	 * @param messages
+	 *            IngestionRequest object with list of messages
+	 * @return future of the ingestion response. Completes exceptionally with
+	 *         {@code LogInsightApiException}
+	 * @see IngestionRequest
+	 * @see IngestionResponse
+	 */
+	public CompletableFuture<IngestionResponse> ingestAsync(IngestionRequest messages) {
+		List<List<Message>> parts = splitIngestionRequest(messages);
+		if (parts.size() == 1) {
+			return retries.executeAsync(() -> ingestPartAsync(messages), config.getIngestionRetryPolicy());
+		}
+		return ingestParts(parts);
+	}
+
+	private List<List<Message>> splitIngestionRequest(IngestionRequest messages) {
+		List<List<Message>> parts = IngestionRequestSplitter.split(messages.getMessages(),
+				config.getIngestionRequestMaxMessages(), config.getIngestionRequestMaxBytes());
+		if (parts.size() > 1) {
+			logger.debug("Splitting " + messages.count() + " messages into " + parts.size() + " requests");
+		}
+		return parts;
+	}
+
+	/**
+	 * Sends the parts of a split ingestion request in parallel and sums up
+	 * their responses. Fails when any of the parts fails.
+	 * 
+	 * @param parts
+	 *            lists of messages
+	 * @return future of the aggregated ingestion response
+	 */
+	private CompletableFuture<IngestionResponse> ingestParts(List<List<Message>> parts) {
+		List<CompletableFuture<IngestionResponse>> futures = new ArrayList<CompletableFuture<IngestionResponse>>(
+				parts.size());
+		for (List<Message> part : parts) {
+			IngestionRequest request = new IngestionRequest(part);
+			futures.add(retries.executeAsync(() -> ingestPartAsync(request), config.getIngestionRetryPolicy()));
+		}
+		CompletableFuture<IngestionResponse> result = new CompletableFuture<IngestionResponse>();
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).whenComplete((v, ex) -> {
+			if (ex != null) {
+				Throwable cause = unwrap(ex);
+				if (cause instanceof AuthFailure) {
+					result.completeExceptionally(cause);
+				} else {
+					long failed = futures.stream().filter(CompletableFuture::isCompletedExceptionally).count();
+					result.completeExceptionally(new LogInsightApiException(
+							"Ingestion failed for " + failed + " of " + parts.size() + " requests", cause));
+				}
+				return;
+			}
+			IngestionResponse first = futures.get(0).join();
+			IngestionResponse response = new IngestionResponse();
+			response.setStatus(first.getStatus());
+			response.setMessage(first.getMessage());
+			response.setIngested(futures.stream().mapToInt(future -> future.join().getIngested()).sum());
+			result.complete(response);
+		});
+		result.whenComplete((response, ex) -> {
+			if (result.isCancelled()) {
+				futures.forEach(future -> future.cancel(false));
+			}
+		});
+		return result;
+	}
+
+	private CompletableFuture<IngestionResponse> ingestPartAsync(IngestionRequest messages) {
+		boolean gzip = isIngestionGzipEnabled();
+		CompletableFuture<IngestionResponse> future = ingestAsync(messages, gzip);
+		if (!gzip) {
+			return future;
+		}
+		CompletableFuture<IngestionResponse> result = future.handle((response, ex) -> {
+			Throwable cause = unwrap(ex);
+			if (cause instanceof CompressionRejectedException) {
+				return ingestAsync(messages, false).thenApply(plainResponse -> {
+					disableIngestionGzip((CompressionRejectedException) cause);
+					return plainResponse;
+				});
+			}
+			return future;
+		}).thenCompose(Function.identity());
+		result.whenComplete((response, ex) -> {
+			if (result.isCancelled()) {
+				future.cancel(false);
+			}
+		});
+		return result;
+	}
+
+	private CompletableFuture<IngestionResponse> ingestAsync(IngestionRequest messages, boolean gzip) {
+		IngestionRequestEntity entity = newIngestionEntity(messages, gzip);
+		return executeAsync(() -> getIngestionHttpRequest(entity),
+				httpResponse -> handleIngestionResponse(httpResponse, entity), "Ingestion failed");
+	}
+
+	/**
+	 * Checks whether ingestion request bodies are compressed. Compression is
+	 * configured with {@code loginsight.ingestion.compression} and is turned
+	 * off for the lifetime of the client when the server rejects compressed
+	 * bodies.
+	 * 
+	 * @return true if the ingestion request bodies are gzip compressed
+	 */
+	public boolean isIngestionGzipEnabled() {
+		return config.isIngestionGzipEnabled() && !compressionRejected.get();
+	}
+
+	private void disableIngestionGzip(CompressionRejectedException e) {
+		metrics.recordCompressionFallback();
+		if (compressionRejected.compareAndSet(false, true)) {
+			logger.warn("LogInsight rejected the compressed ingestion request (" + e.getMessage()
+					+ "), sending uncompressed requests from now on");
+		}
+	}
+
+	private IngestionRequestEntity newIngestionEntity(IngestionRequest messages, boolean gzip) {
+		return new IngestionRequestEntity(messages, gzip, config.getIngestionCompressionLevel());
+	}
+
+	/**
+	 * Executes the request with the async http client and completes the
+	 * returned future from the http client callback. Cancelling the returned
+	 * future cancels the http request.
+	 * 
+	 * @param requestSupplier
+	 *            builds the request, failures are reported through the future
+	 * @param handler
+	 *            converts the http response to the result
+	 * @param errorMessage
+	 *            message of the LogInsightApiException on failures
+	 * @return future of the result
+	 */
+	private <T> CompletableFuture<T> executeAsync(Supplier<? extends HttpUriRequest> requestSupplier,
+			ResponseHandler<T> handler, String errorMessage) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		try {
+			Future<HttpResponse> httpFuture = asyncHttpClient.execute(requestSupplier.get(),
+					new FutureCallback<HttpResponse>() {
+
+						@Override
+						public void completed(HttpResponse httpResponse) {
+							try {
+								result.complete(handler.handleResponse(httpResponse));
+							} catch (LogInsightApiException | AuthFailure e) {
+								result.completeExceptionally(e);
+							} catch (IOException | RuntimeException e) {
+								result.completeExceptionally(new LogInsightApiException(errorMessage, e));
+							}
+						}
+
+						@Override
+						public void failed(Exception ex) {
+							result.completeExceptionally(new LogInsightApiException(errorMessage, ex));
+						}
+
+						@Override
+						public void cancelled() {
+							result.cancel(false);
+						}
+
+					});
+			if (httpFuture != null) {
+				result.whenComplete((response, ex) -> {
+					if (result.isCancelled()) {
+						httpFuture.cancel(true);
+					}
+				});
+			}
+		} catch (LogInsightApiException | AuthFailure e) {
+			result.completeExceptionally(e);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(new LogInsightApiException(errorMessage, e));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the root cause of the exceptions raised through
+	 * {@code CompletableFuture} stages
+	 * 
+	 * @param ex
+	 *            exception received from a future
+	 * @return unwrapped exception
+	 */
+	private static Throwable unwrap(Throwable ex) {
+		if (ex instanceof CompletionException && ex.getCause() != null) {
+			return ex.getCause();
+		}
+		return ex;
+	}
+
+	/**
+	 * Converts the http response of a message query to MessageQueryResponse
+	 * 
+	 * @param httpResponse
+	 *            http response
+	 * @return MessageQueryResponse object
+	 * @throws IOException
+	 *             failed to read the response body
+	 */
+	private MessageQueryResponse handleMessageQueryResponse(HttpResponse httpResponse) throws IOException {
+		if (httpResponse.getStatusLine().getStatusCode() == 200) {
+			InputStream responseBody = httpResponse.getEntity().getContent();
+			if (!logger.isDebugEnabled()) {
+				return MessageQueryResponse.fromJsonStream(responseBody);
+			}
+			String responseString = IOUtils.toString(responseBody, "UTF-8");
+			logger.debug("Response: " + responseString);
+			return MessageQueryResponse.fromJsonString(responseString);
+		}
+		throw messageQueryFailure(httpResponse);
+	}
+
+	/**
+	 * Converts the http response of a message query to a MessageQueryStream
+	 * 
+	 * @param httpResponse
+	 *            http response
+	 * @return MessageQueryStream reading the response body
+	 * @throws IOException
+	 *             failed to read the response body
+	 */
+	private MessageQueryStream handleMessageQueryStream(HttpResponse httpResponse) throws IOException {
+		if (httpResponse.getStatusLine().getStatusCode() == 200) {
+			return new MessageQueryStream(httpResponse.getEntity().getContent());
+		}
+		throw messageQueryFailure(httpResponse);
+	}
+
+	private RuntimeException messageQueryFailure(HttpResponse httpResponse) {
+		if ((httpResponse.getStatusLine().getStatusCode() == 401)
+				|| (httpResponse.getStatusLine().getStatusCode() == 440)) {
+			logger.warn("Session expired, retrying the request after authentication");
+			return new SessionExpiredException("Invalid session id. Message query failed.");
+		} else {
+			return new LogInsightHttpException(
+					"Unable to query the response from LogInsight " + httpResponse.getStatusLine(),
+					httpResponse.getStatusLine().getStatusCode(), retryAfterMs(httpResponse));
+		}
+	}
+
+	/**
+	 * Converts the http response of an aggregate query to AggregateResponse
+	 * 
+	 * @param httpResponse
+	 *            http response
+	 * @return AggregateResponse object
+	 * @throws IOException
+	 *             failed to read the response body
+	 */
+	private AggregateResponse handleAggregateResponse(HttpResponse httpResponse) throws IOException {
+		if ((httpResponse.getStatusLine().getStatusCode() == 401)
+				|| (httpResponse.getStatusLine().getStatusCode() == 440)) {
+			logger.warn("Session expired, retrying the request after authentication");
+			throw new SessionExpiredException(
+					"Session expired. Received " + httpResponse.getStatusLine() + " from LogInsight");
+		} else if (httpResponse.getStatusLine().getStatusCode() != 200) {
+			throw new LogInsightHttpException(
+					"Unable to query the response from LogInsight " + httpResponse.getStatusLine(),
+					httpResponse.getStatusLine().getStatusCode(), retryAfterMs(httpResponse));
+		} else {
+			InputStream responseBody = httpResponse.getEntity().getContent();
+			if (logger.isDebugEnabled()) {
+				String responseString = IOUtils.toString(responseBody, "UTF-8");
+				logger.debug("Response: " + responseString);
+				responseBody = IOUtils.toInputStream(responseString, "UTF-8");
+			}
+			return AggregateResponse.fromJsonStream(responseBody);
+		}
+	}
+
+	/**
+	 * Reads the {@code Retry-After} header of a response, given either in
+	 * seconds or as an http date
+	 * 
+	 * @param httpResponse
+	 *            http response
+	 * @return requested delay in milliseconds, -1 without valid header
+	 */
+	private static long retryAfterMs(HttpResponse httpResponse) {
+		Header header = httpResponse.getFirstHeader("Retry-After");
+		if (header == null || StringUtils.isBlank(header.getValue())) {
+			return -1;
+		}
+		String value = header.getValue().trim();
+		if (StringUtils.isNumeric(value)) {
+			return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+		}
+		Date date = DateUtils.parseDate(value);
+		return date == null ? -1 : Math.max(date.getTime() - System.currentTimeMillis(), 0);
+	}
+
+	/**
+	 * Converts the http response of an ingestion request to IngestionResponse
+	 * 
+	 * @param httpResponse
+	 *            http response
+	 * @param entity
+	 *            entity of the request
+	 * @return IngestionResponse object
+	 * @throws IOException
+	 *             failed to read the response body
+	 */
+	private IngestionResponse handleIngestionResponse(HttpResponse httpResponse, IngestionRequestEntity entity)
+			throws IOException {
+		metrics.recordIngestion(entity.getContentBytes(), entity.getTransferredBytes());
+		InputStream responseBody = httpResponse.getEntity().getContent();
+		String responseString = IOUtils.toString(responseBody, "UTF-8");
+		int statusCode = httpResponse.getStatusLine().getStatusCode();
+		if (entity.getContentEncoding() != null && (statusCode == 415 || statusCode == 400)) {
+			throw new CompressionRejectedException("Received " + httpResponse.getStatusLine()
+					+ " for a compressed request. Response = " + responseString, statusCode);
+		}
+		if (statusCode == 200) {
+			logger.debug("Response: " + responseString);
+			return IngestionResponse.fromJsonString(responseString);
+		} else {
+			throw new LogInsightHttpException("Unable to send messages to LogInsight. Received "
+					+ httpResponse.getStatusLine() + " from LogInsight. Response = " + responseString, statusCode,
+					retryAfterMs(httpResponse));
+		}
+	}
+
 	/**
 	 * Returns sessionId if available. Throws AuthFailure in case sessionId not
 	 * available.
@@ -516,6 +1300,7 @@ public class LogInsightClient implements AutoCloseable {
 	 *             authentication failure
 	 */
 	public String getSessionId() throws AuthFailure {
+		String sessionId = session.getSessionId();
 		if (sessionId == null) {
 			throw new AuthFailure("Invalid session id");
 		}
@@ -527,6 +1312,8 @@ public class LogInsightClient implements AutoCloseable {
 	 */
 	@Override
 	public void close() throws Exception {
+		retries.shutdown();
+		session.close();
 		this.stopAsyncHttpClient();
 	}
 
@@ -589,11 +1376,15 @@ public class LogInsightClient implements AutoCloseable {
 	 * @return HttpPost object
 	 */
 	public HttpPost getIngestionHttpRequest(IngestionRequest ingestionRequest) {
+		return getIngestionHttpRequest(newIngestionEntity(ingestionRequest, isIngestionGzipEnabled()));
+	}
+
+	private HttpPost getIngestionHttpRequest(IngestionRequestEntity entity) {
 		HttpPost httpPost = null;
 		try {
 			httpPost = new HttpPost(ingestionApiUrl());
 
-			httpPost.setEntity(new StringEntity(ingestionRequest.toJson(), ContentType.APPLICATION_JSON));
+			httpPost.setEntity(entity);
 			httpPost.addHeader("Content-Type", "application/json");
 			httpPost.addHeader("Accept", "application/json");
 		} catch (IllegalArgumentException e) {
@@ -602,4 +1393,28 @@ public class LogInsightClient implements AutoCloseable {
 		return httpPost;
 	}
 
+	/**
+	 * Raised when the server does not accept a compressed ingestion request
+	 */
+	private static class CompressionRejectedException extends LogInsightHttpException {
+
+		private static final long serialVersionUID = -2964135327384412563L;
+
+		CompressionRejectedException(String message, int statusCode) {
+			super(message, statusCode, -1);
+		}
+	}
+
+	/**
+	 * Raised when a query is rejected with an expired session
+	 */
+	private static class SessionExpiredException extends AuthFailure {
+
+		private static final long serialVersionUID = 4109786328950382201L;
+
+		SessionExpiredException(String message) {
+			super(message);
+		}
+	}
+
 }
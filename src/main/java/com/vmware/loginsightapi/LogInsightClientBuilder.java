@@ -0,0 +1,240 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.AuthInfo;
+import com.vmware.loginsightapi.core.IngestionRequest;
+import com.vmware.loginsightapi.core.IngestionResponse;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.core.MessageQueryResponse;
+import com.vmware.loginsightapi.util.DaemonThreadFactory;
+import com.vmware.loginsightapi.util.IngestionRequestEntity;
+
+/**
+ * Builder class for LogInsightClient which does not block on the login
+ *
+ * <b> Some Usages: </b> <br>
+ * {@code
+ * LogInsightClient client = new LogInsightClientBuilder().withConfiguration(config).build();
+ * } <br>
+ * {@code
+ * CompletableFuture<LogInsightClient> ready = new LogInsightClientBuilder().withConfiguration(config)
+ *         .withPrewarmedConnections(4).withJsonWarmUp().buildAsync();
+ * } <br>
+ *
+ * The client returned by {@link #build()} is created without waiting for
+ * LogInsight: the login is started in the background, or, with
+ * {@link #withLazyLogin()}, sent along with the first query. A failed
+ * background login is reported by the first query, which logs in again.
+ * Optionally, connections to LogInsight are opened and the json codecs are
+ * warmed up in the background, so that the first requests do not pay for the
+ * TCP and TLS handshakes and for the initialization of the json bindings.
+ */
+public class LogInsightClientBuilder {
+
+	private final static Logger logger = LoggerFactory.getLogger(LogInsightClientBuilder.class);
+
+	private Configuration config;
+	private LogInsightConnectionStrategy<CloseableHttpAsyncClient> connectionStrategy;
+	private boolean lazyLogin;
+	private int prewarmedConnections;
+	private boolean jsonWarmUp;
+
+	/**
+	 * Default constructor
+	 */
+	public LogInsightClientBuilder() {
+	}
+
+	/**
+	 * Builds the client with the configuration
+	 *
+	 * @param config
+	 *            Configuration object
+	 * @return LogInsightClientBuilder instance (this)
+	 */
+	public LogInsightClientBuilder withConfiguration(Configuration config) {
+		this.config = config;
+		return this;
+	}
+
+	/**
+	 * Builds the client with a configuration of the host and credentials
+	 *
+	 * @param host
+	 *            LogInsight host name
+	 * @param user
+	 *            LogInsight user name
+	 * @param password
+	 *            LogInsight password
+	 * @return LogInsightClientBuilder instance (this)
+	 */
+	public LogInsightClientBuilder withCredentials(String host, String user, String password) {
+		this.config = new Configuration(host, user, password);
+		return this;
+	}
+
+	/**
+	 * Builds the client with the connection strategy, instead of the
+	 * AsyncLogInsightConnectionStrategy of the configuration
+	 *
+	 * @param connectionStrategy
+	 *            Connection strategy to use
+	 * @return LogInsightClientBuilder instance (this)
+	 */
+	public LogInsightClientBuilder withConnectionStrategy(
+			LogInsightConnectionStrategy<CloseableHttpAsyncClient> connectionStrategy) {
+		this.connectionStrategy = connectionStrategy;
+		return this;
+	}
+
+	/**
+	 * Logs in with the first query instead of in the background
+	 *
+	 * @return LogInsightClientBuilder instance (this)
+	 */
+	public LogInsightClientBuilder withLazyLogin() {
+		this.lazyLogin = true;
+		return this;
+	}
+
+	/**
+	 * Opens connections in the background, kept alive in the pool of the
+	 * http client for the first requests
+	 *
+	 * @param count
+	 *            number of connections to the API port and to the ingestion
+	 *            port, at most the connections per route of the pool
+	 * @return LogInsightClientBuilder instance (this)
+	 */
+	public LogInsightClientBuilder withPrewarmedConnections(int count) {
+		this.prewarmedConnections = count;
+		return this;
+	}
+
+	/**
+	 * Decodes and encodes sample requests and responses in the background,
+	 * so that the json bindings are initialized before the first requests
+	 *
+	 * @return LogInsightClientBuilder instance (this)
+	 */
+	public LogInsightClientBuilder withJsonWarmUp() {
+		this.jsonWarmUp = true;
+		return this;
+	}
+
+	/**
+	 * Builds the client without waiting for LogInsight
+	 *
+	 * @return LogInsightClient instance
+	 */
+	public LogInsightClient build() {
+		LogInsightClient client = newClient();
+		if (!lazyLogin) {
+			client.connectAsync().whenComplete((v, ex) -> {
+				if (ex != null) {
+					logger.warn("Unable to connect to LogInsight, logging in again with the first query", ex);
+				}
+			});
+		}
+		warmUp(client);
+		return client;
+	}
+
+	/**
+	 * Builds the client and logs in without blocking the calling thread. The
+	 * client is closed if the login fails.
+	 *
+	 * @return future of the client, completed once it has logged in and the
+	 *         warm-up has completed. Completes exceptionally with
+	 *         {@code AuthFailure} or {@code LogInsightApiException}
+	 */
+	public CompletableFuture<LogInsightClient> buildAsync() {
+		LogInsightClient client = newClient();
+		CompletableFuture<Void> login = client.connectAsync();
+		CompletableFuture<Void> warmUp = warmUp(client);
+		CompletableFuture<LogInsightClient> ready = new CompletableFuture<LogInsightClient>();
+		login.thenCompose(v -> warmUp).whenComplete((v, ex) -> {
+			if (ex == null) {
+				ready.complete(client);
+				return;
+			}
+			try {
+				client.close();
+			} catch (Exception e) {
+				logger.debug("Unable to close the client", e);
+			}
+			ready.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+		});
+		return ready;
+	}
+
+	private LogInsightClient newClient() {
+		if (config == null) {
+			throw new IllegalStateException("No configuration, call withConfiguration or withCredentials");
+		}
+		return new LogInsightClient(config, connectionStrategy, false);
+	}
+
+	/**
+	 * Starts the warm-up tasks in the background
+	 *
+	 * @return future completed once the tasks completed, successfully or not
+	 */
+	private CompletableFuture<Void> warmUp(LogInsightClient client) {
+		CompletableFuture<Void> connections = prewarmedConnections > 0
+				? client.openConnectionsAsync(prewarmedConnections) : CompletableFuture.completedFuture(null);
+		CompletableFuture<Void> json = new CompletableFuture<Void>();
+		if (jsonWarmUp) {
+			new DaemonThreadFactory("loginsight-warmup").newThread(() -> {
+				warmUpJsonCodecs();
+				json.complete(null);
+			}).start();
+		} else {
+			json.complete(null);
+		}
+		return CompletableFuture.allOf(connections, json);
+	}
+
+	/**
+	 * Decodes and encodes a sample of each request and response type
+	 */
+	static void warmUpJsonCodecs() {
+		try {
+			AuthInfo.fromJsonString("{\"userId\":\"\",\"sessionId\":\"\",\"ttl\":0}");
+			MessageQueryResponse.fromJsonStream(stream("{\"complete\":true,\"duration\":0,\"events\":[{\"text\":\"\","
+					+ "\"timestamp\":0,\"fields\":[{\"name\":\"\",\"content\":\"\"}]}]}"));
+			AggregateResponse.fromJsonStream(
+					stream("{\"complete\":true,\"duration\":0,\"bins\":[{\"minTimestamp\":0,\"maxTimestamp\":0,\"value\":0}]}"));
+			IngestionResponse.fromJsonString("{\"status\":\"ok\",\"message\":\"\",\"ingested\":0}");
+			new IngestionRequestEntity(new IngestionRequest(Collections.singletonList(new Message(""))))
+					.writeTo(new ByteArrayOutputStream());
+		} catch (IOException | RuntimeException e) {
+			logger.debug("Json warm-up failed", e);
+		}
+	}
+
+	private static InputStream stream(String json) {
+		return IOUtils.toInputStream(json, StandardCharsets.UTF_8);
+	}
+}
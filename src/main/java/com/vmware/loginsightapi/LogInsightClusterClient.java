@@ -0,0 +1,495 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.IngestionRequest;
+import com.vmware.loginsightapi.core.IngestionResponse;
+import com.vmware.loginsightapi.core.MessageQueryResponse;
+import com.vmware.loginsightapi.util.DaemonThreadFactory;
+
+/**
+ * Client of a LogInsight cluster, balancing the queries and the ingestion
+ * requests over the nodes of {@code loginsight.cluster.hosts}. <br>
+ *
+ * Each node has its own LogInsightClient, with its own session, connection
+ * pool, retries and caches, configured like the cluster except for the host.
+ * The clients log in in the background when the cluster client is created.
+ * A request is sent to the healthy node with the fewest outstanding requests,
+ * or with {@code loginsight.cluster.balancing} latency_ewma, to the healthy
+ * node with the lowest average response time multiplied by its outstanding
+ * requests plus one. <br>
+ *
+ * A request failing on a node, after the retries of its client, with an I/O
+ * error or an http server error is sent again to another node, until every
+ * node has been tried, so that a node restart is not seen by the callers.
+ * Ingestion requests may then be ingested twice if the node failed after
+ * ingesting them. A node failing {@code loginsight.cluster.eject.failures}
+ * consecutive requests is ejected: it receives no more requests, unless all
+ * the nodes are ejected, and its version API is checked every
+ * {@code loginsight.cluster.probe.interval.ms} until it answers again.
+ * Failures reported by a node, such as an invalid query or rejected
+ * credentials, are returned to the caller.
+ *
+ * <b> Some Usages: </b> <br>
+ * {@code
+ * config.setClusterHosts(Arrays.asList("li-node1", "li-node2", "li-node3"));
+ * LogInsightClusterClient cluster = new LogInsightClusterClient(config);
+ * CompletableFuture<IngestionResponse> response = cluster.ingestAsync(request);
+ * } <br>
+ */
+public class LogInsightClusterClient implements AutoCloseable {
+
+	/**
+	 * Selection of the node of a request among the healthy nodes
+	 */
+	public enum Balancing {
+		/**
+		 * Node with the fewest outstanding requests
+		 */
+		LEAST_REQUESTS,
+		/**
+		 * Node with the lowest moving average of the response time, weighted
+		 * by its outstanding requests
+		 */
+		LATENCY_EWMA
+	}
+
+	private final static Logger logger = LoggerFactory.getLogger(LogInsightClusterClient.class);
+
+	private final Configuration config;
+	private final List<ClusterNode> nodes;
+	private final ClientMetrics metrics = new ClientMetrics();
+	private final ScheduledThreadPoolExecutor prober;
+	private final AtomicInteger rotation = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * Constructs the cluster client with the configuration and logs in to the
+	 * nodes in the background
+	 *
+	 * @param config
+	 *            Configuration object, with the nodes in
+	 *            {@code loginsight.cluster.hosts}, or only
+	 *            {@code loginsight.host}
+	 * @throws LogInsightApiException
+	 *             if the http client of a node cannot be created
+	 */
+	public LogInsightClusterClient(Configuration config) {
+		this(config, host -> null);
+	}
+
+	/**
+	 * Constructs the cluster client with a connection strategy per node
+	 *
+	 * @param config
+	 *            Configuration object
+	 * @param connectionStrategies
+	 *            connection strategy of the client of a host, or null for
+	 *            the AsyncLogInsightConnectionStrategy of the configuration
+	 */
+	LogInsightClusterClient(Configuration config,
+			Function<String, LogInsightConnectionStrategy<CloseableHttpAsyncClient>> connectionStrategies) {
+		this.config = config;
+		List<String> hosts = config.getClusterHosts().isEmpty() ? Collections.singletonList(config.getHost())
+				: config.getClusterHosts();
+		List<ClusterNode> clusterNodes = new ArrayList<ClusterNode>();
+		try {
+			for (String host : hosts) {
+				clusterNodes.add(new ClusterNode(host,
+						new LogInsightClient(config.forHost(host), connectionStrategies.apply(host), false)));
+			}
+		} catch (RuntimeException e) {
+			for (ClusterNode node : clusterNodes) {
+				closeQuietly(node);
+			}
+			throw e;
+		}
+		this.nodes = Collections.unmodifiableList(clusterNodes);
+		this.prober = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("loginsight-cluster"));
+		this.prober.setRemoveOnCancelPolicy(true);
+		for (ClusterNode node : nodes) {
+			node.getClient().connectAsync().whenComplete((v, ex) -> {
+				if (ex == null) {
+					return;
+				}
+				Throwable cause = unwrap(ex);
+				if (isNodeFailure(cause)) {
+					eject(node, cause);
+				} else {
+					logger.warn("Unable to log in to LogInsight node " + node.getHost()
+							+ ", logging in again with the first request", cause);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns the configuration used by this client
+	 *
+	 * @return Configuration object
+	 */
+	public Configuration getConfiguration() {
+		return config;
+	}
+
+	/**
+	 * Counters of the requests sent again to another node, and of the
+	 * ejections and reinstatements of the nodes. The requests of each node
+	 * are counted by the metrics of its client, see {@link #getClient(String)}
+	 *
+	 * @return ClientMetrics of this cluster client
+	 */
+	public ClientMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Host names of the nodes
+	 *
+	 * @return list of host names, in the configured order
+	 */
+	public List<String> getHosts() {
+		List<String> hosts = new ArrayList<String>(nodes.size());
+		for (ClusterNode node : nodes) {
+			hosts.add(node.getHost());
+		}
+		return hosts;
+	}
+
+	/**
+	 * Host names of the nodes which are not ejected
+	 *
+	 * @return list of host names, in the configured order
+	 */
+	public List<String> getHealthyHosts() {
+		List<String> hosts = new ArrayList<String>(nodes.size());
+		for (ClusterNode node : nodes) {
+			if (!node.isEjected()) {
+				hosts.add(node.getHost());
+			}
+		}
+		return hosts;
+	}
+
+	/**
+	 * Client of a node, for the requests bound to one node such as the
+	 * cursors and live tails of a query
+	 *
+	 * @param host
+	 *            host name of the node
+	 * @return LogInsightClient of the node
+	 * @throws IllegalArgumentException
+	 *             if the host is not a node of the cluster
+	 */
+	public LogInsightClient getClient(String host) {
+		for (ClusterNode node : nodes) {
+			if (node.getHost().equals(host)) {
+				return node.getClient();
+			}
+		}
+		throw new IllegalArgumentException("Unknown LogInsight node " + host);
+	}
+
+	/**
+	 * Ingest messages to loginsight through one of the nodes
+	 *
+	 * @param messages
+	 *            IngestionRequest object with list of messages
+	 * @return IngestionResponse object
+	 * @throws LogInsightApiException
+	 *             Api exception, once the request failed on every node
+	 * @see LogInsightClient#ingest(IngestionRequest)
+	 */
+	public IngestionResponse ingest(IngestionRequest messages) throws LogInsightApiException {
+		return execute(client -> client.ingest(messages));
+	}
+
+	/**
+	 * Ingest messages to loginsight through one of the nodes without blocking
+	 * the calling thread
+	 *
+	 * @param messages
+	 *            IngestionRequest object with list of messages
+	 * @return future of the ingestion response. Completes exceptionally with
+	 *         {@code LogInsightApiException}
+	 * @see LogInsightClient#ingestAsync(IngestionRequest)
+	 */
+	public CompletableFuture<IngestionResponse> ingestAsync(IngestionRequest messages) {
+		return executeAsync(client -> client.ingestAsync(messages));
+	}
+
+	/**
+	 * Performs message query on one of the nodes
+	 *
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @return MessageQueryResponse object
+	 * @throws LogInsightApiException
+	 *             Api exception, once the query failed on every node
+	 * @see LogInsightClient#messageQuery(String)
+	 */
+	public MessageQueryResponse messageQuery(String apiUrl) throws LogInsightApiException {
+		return execute(client -> client.messageQuery(apiUrl));
+	}
+
+	/**
+	 * Performs message query on one of the nodes without blocking the calling
+	 * thread
+	 *
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @return future of the message query response. Completes exceptionally
+	 *         with {@code LogInsightApiException} or {@code AuthFailure}
+	 * @see LogInsightClient#messageQueryAsync(String)
+	 */
+	public CompletableFuture<MessageQueryResponse> messageQueryAsync(String apiUrl) {
+		return executeAsync(client -> client.messageQueryAsync(apiUrl));
+	}
+
+	/**
+	 * Performs aggregate query on one of the nodes
+	 *
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @return AggregateResponse object
+	 * @throws LogInsightApiException
+	 *             Api exception, once the query failed on every node
+	 * @see LogInsightClient#aggregateQuery(String)
+	 */
+	public AggregateResponse aggregateQuery(String apiUrl) throws LogInsightApiException {
+		return execute(client -> client.aggregateQuery(apiUrl));
+	}
+
+	/**
+	 * Performs aggregate query on one of the nodes without blocking the
+	 * calling thread
+	 *
+	 * @param apiUrl
+	 *            relative url of the API
+	 * @return future of the aggregate response. Completes exceptionally with
+	 *         {@code LogInsightApiException} or {@code AuthFailure}
+	 * @see LogInsightClient#aggregateQueryAsync(String)
+	 */
+	public CompletableFuture<AggregateResponse> aggregateQueryAsync(String apiUrl) {
+		return executeAsync(client -> client.aggregateQueryAsync(apiUrl));
+	}
+
+	/**
+	 * Sends a request to the selected node, then to the other nodes while it
+	 * fails with a node failure
+	 */
+	private <T> T execute(Function<LogInsightClient, T> request) {
+		Set<ClusterNode> tried = new HashSet<ClusterNode>();
+		while (true) {
+			ClusterNode node = select(tried);
+			tried.add(node);
+			node.requestStarted();
+			long start = System.nanoTime();
+			RuntimeException failure;
+			try {
+				T response = request.apply(node.getClient());
+				completed(node, start, null);
+				return response;
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+			if (!completed(node, start, failure) || tried.size() >= nodes.size()) {
+				throw failure;
+			}
+			metrics.recordFailover();
+			logger.debug("Request failed on LogInsight node " + node.getHost() + ", trying another node", failure);
+		}
+	}
+
+	private <T> CompletableFuture<T> executeAsync(Function<LogInsightClient, CompletableFuture<T>> request) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		executeAsync(request, new HashSet<ClusterNode>(), result);
+		return result;
+	}
+
+	private <T> void executeAsync(Function<LogInsightClient, CompletableFuture<T>> request, Set<ClusterNode> tried,
+			CompletableFuture<T> result) {
+		ClusterNode node = select(tried);
+		tried.add(node);
+		node.requestStarted();
+		long start = System.nanoTime();
+		CompletableFuture<T> future;
+		try {
+			future = request.apply(node.getClient());
+		} catch (RuntimeException e) {
+			future = new CompletableFuture<T>();
+			future.completeExceptionally(e);
+		}
+		future.whenComplete((response, ex) -> {
+			Throwable failure = ex == null ? null : unwrap(ex);
+			boolean nodeFailure = completed(node, start, failure);
+			if (failure == null) {
+				result.complete(response);
+			} else if (nodeFailure && tried.size() < nodes.size() && !result.isDone()) {
+				metrics.recordFailover();
+				logger.debug("Request failed on LogInsight node " + node.getHost() + ", trying another node",
+						failure);
+				executeAsync(request, tried, result);
+			} else {
+				result.completeExceptionally(failure);
+			}
+		});
+	}
+
+	/**
+	 * Selects the node of a request among the nodes not tried yet, the
+	 * healthy ones if any. Ties are broken in turn.
+	 */
+	private ClusterNode select(Set<ClusterNode> tried) {
+		List<ClusterNode> candidates = new ArrayList<ClusterNode>(nodes.size());
+		for (ClusterNode node : nodes) {
+			if (!node.isEjected() && !tried.contains(node)) {
+				candidates.add(node);
+			}
+		}
+		if (candidates.isEmpty()) {
+			// every remaining node is ejected, try them rather than failing
+			for (ClusterNode node : nodes) {
+				if (!tried.contains(node)) {
+					candidates.add(node);
+				}
+			}
+		}
+		boolean latency = config.getClusterBalancing() == Balancing.LATENCY_EWMA;
+		int offset = Math.floorMod(rotation.getAndIncrement(), candidates.size());
+		ClusterNode selected = null;
+		double selectedCost = 0;
+		for (int i = 0; i < candidates.size(); i++) {
+			ClusterNode node = candidates.get((offset + i) % candidates.size());
+			double cost = latency ? node.getLatencyCost() : node.getOutstandingRequests();
+			if (selected == null || cost < selectedCost) {
+				selected = node;
+				selectedCost = cost;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Records the completion of a request and ejects the node after too many
+	 * failures
+	 *
+	 * @return true if the request failed with a node failure
+	 */
+	private boolean completed(ClusterNode node, long startNanos, Throwable failure) {
+		boolean nodeFailure = failure != null && isNodeFailure(failure);
+		if (node.requestCompleted(System.nanoTime() - startNanos, nodeFailure, config.getClusterEjectFailures())) {
+			eject(node, failure);
+		}
+		return nodeFailure;
+	}
+
+	/**
+	 * Checks whether a request failed because of the node rather than of the
+	 * request: the node did not answer, or answered with a server error
+	 *
+	 * @param failure
+	 *            exception of the failed request
+	 * @return true for an http status of 500 or more, or an I/O error other
+	 *         than an unparseable response
+	 */
+	static boolean isNodeFailure(Throwable failure) {
+		if (failure instanceof LogInsightHttpException) {
+			return ((LogInsightHttpException) failure).getStatusCode() >= 500;
+		}
+		if (failure instanceof ParseException) {
+			return false;
+		}
+		for (Throwable cause = failure.getCause(); cause != null; cause = cause.getCause()) {
+			if (cause instanceof InterruptedException) {
+				return false;
+			}
+			if (cause instanceof IOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void eject(ClusterNode node, Throwable failure) {
+		if (!node.eject()) {
+			return;
+		}
+		metrics.recordNodeEjection();
+		logger.warn("Ejecting LogInsight node " + node.getHost() + " until it passes a health check", failure);
+		scheduleProbe(node);
+	}
+
+	private void scheduleProbe(ClusterNode node) {
+		if (closed) {
+			return;
+		}
+		try {
+			prober.schedule(() -> probe(node), config.getClusterProbeIntervalMs(), TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.debug("Cluster client closed, no more health checks of " + node.getHost());
+		}
+	}
+
+	private void probe(ClusterNode node) {
+		node.getClient().probeAsync().whenComplete((v, ex) -> {
+			if (ex == null) {
+				node.reinstate();
+				metrics.recordNodeReinstatement();
+				logger.info("LogInsight node " + node.getHost() + " passed its health check, sending requests again");
+			} else {
+				logger.debug("LogInsight node " + node.getHost() + " failed its health check", unwrap(ex));
+				scheduleProbe(node);
+			}
+		});
+	}
+
+	private static Throwable unwrap(Throwable ex) {
+		return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+	}
+
+	private static void closeQuietly(ClusterNode node) {
+		try {
+			node.getClient().close();
+		} catch (Exception e) {
+			logger.debug("Unable to close the client of " + node.getHost(), e);
+		}
+	}
+
+	/**
+	 * Stops the health checks and closes the clients of the nodes
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		prober.shutdownNow();
+		for (ClusterNode node : nodes) {
+			closeQuietly(node);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+/**
+ * LogInsightApiException raised for an unexpected http status of a LogInsight
+ * response
+ */
+public class LogInsightHttpException extends LogInsightApiException {
+
+	private static final long serialVersionUID = 6130918475630264407L;
+
+	private final int statusCode;
+	private final long retryAfterMs;
+
+	/**
+	 * Constructs LogInsightHttpException with the status of the response
+	 * 
+	 * @param message
+	 *            Error message
+	 * @param statusCode
+	 *            http status code of the response
+	 * @param retryAfterMs
+	 *            delay requested by the {@code Retry-After} header in
+	 *            milliseconds, -1 without header
+	 */
+	public LogInsightHttpException(String message, int statusCode, long retryAfterMs) {
+		super(message);
+		this.statusCode = statusCode;
+		this.retryAfterMs = retryAfterMs;
+	}
+
+	/**
+	 * Http status code of the response
+	 * 
+	 * @return status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Delay requested by the {@code Retry-After} header of the response
+	 * 
+	 * @return delay in milliseconds, -1 without header
+	 */
+	public long getRetryAfterMs() {
+		return retryAfterMs;
+	}
+}
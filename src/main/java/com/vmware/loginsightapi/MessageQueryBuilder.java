@@ -8,6 +8,8 @@
  */
 package com.vmware.loginsightapi;
 
+import com.vmware.loginsightapi.core.FieldConstraint;
+
 /**
  * MessageQueryBuilder extends from QueryBuilder and overwrites toUrlString.
  */
@@ -38,4 +40,29 @@ public class MessageQueryBuilder extends QueryBuilder {
 		return url;
 	}
 
+	/**
+	 * Copy of this query for one page of a QueryCursor or one slice of a
+	 * MessageQueryFanOut
+	 * 
+	 * @param pageLimit
+	 *            number of events of the page
+	 * @param boundaries
+	 *            additional constraints of the page, null ones are ignored
+	 * @return MessageQueryBuilder of the page
+	 */
+	MessageQueryBuilder page(int pageLimit, FieldConstraint... boundaries) {
+		MessageQueryBuilder page = new MessageQueryBuilder();
+		page.constraints.addAll(constraints);
+		for (FieldConstraint boundary : boundaries) {
+			if (boundary != null) {
+				page.constraints.add(boundary);
+			}
+		}
+		page.contentPackFields.addAll(contentPackFields);
+		page.limit = pageLimit;
+		page.timeout = timeout;
+		page.includeDefaults = includeDefaults;
+		return page;
+	}
+
 }
@@ -0,0 +1,429 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.AggregateResponseBin;
+import com.vmware.loginsightapi.core.FieldConstraint;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.core.MessageQueryResponse;
+
+/**
+ * Runs a message query over a long time range as several concurrent queries
+ * on time slices of the range. <br>
+ *
+ * The slices are planned from a COUNT aggregate of the query, so that each
+ * slice holds about the same number of events: dense periods get narrower
+ * slices. When the aggregate fails, the range is cut into slices of equal
+ * width. At most {@code parallelism} slices are queried at once, the newest
+ * first, each with the limit of the query. <br>
+ *
+ * The events of the slices are merged newest first, like a single query
+ * returns them, and truncated to the limit of the query. A slice is cancelled,
+ * or not queried at all, as soon as the newer slices already hold the limit.
+ * <br>
+ *
+ * The timestamp range is taken from the {@code timestamp} constraints of the
+ * query. A query without a lower timestamp bound is sent as is; the upper
+ * bound defaults to the current time.
+ *
+ * <pre>
+ * MessageQueryBuilder query = (MessageQueryBuilder) RequestBuilders.messageQuery().limit(1000)
+ * 		.setConstraints(RequestBuilders.constraint().gt("timestamp", from).lt("timestamp", to).build());
+ * MessageQueryResponse response = new MessageQueryFanOut(client).query(query);
+ * </pre>
+ */
+public class MessageQueryFanOut {
+
+	private final static Logger logger = LoggerFactory.getLogger(MessageQueryFanOut.class);
+
+	private static final String TIMESTAMP = "timestamp";
+
+	/**
+	 * Bins of the planning aggregate per slice
+	 */
+	private static final int BINS_PER_SLICE = 16;
+
+	private static final Comparator<Head> NEWEST_FIRST = (a, b) -> {
+		int order = Long.compare(b.timestamp(), a.timestamp());
+		return order != 0 ? order : Integer.compare(a.slice, b.slice);
+	};
+
+	private final LogInsightClient client;
+	private final int slices;
+	private final int parallelism;
+
+	/**
+	 * Constructs the fan-out with the slices and parallelism of the client
+	 * configuration
+	 *
+	 * @param client
+	 *            LogInsight client
+	 */
+	public MessageQueryFanOut(LogInsightClient client) {
+		this(client, client.getConfiguration().getQueryFanOutSlices(),
+				client.getConfiguration().getQueryFanOutParallelism());
+	}
+
+	/**
+	 * Constructs the fan-out
+	 *
+	 * @param client
+	 *            LogInsight client
+	 * @param slices
+	 *            number of time slices of a query
+	 * @param parallelism
+	 *            maximum number of slices queried concurrently
+	 */
+	public MessageQueryFanOut(LogInsightClient client, int slices, int parallelism) {
+		if (slices <= 0 || parallelism <= 0) {
+			throw new IllegalArgumentException("Invalid slices or parallelism");
+		}
+		this.client = client;
+		this.slices = slices;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Performs the message query on time slices and waits for the merged
+	 * events
+	 *
+	 * @param query
+	 *            message query
+	 * @return MessageQueryResponse with the events of all the slices, newest
+	 *         first, up to the limit of the query
+	 * @throws LogInsightApiException
+	 *             if a slice query fails
+	 */
+	public MessageQueryResponse query(MessageQueryBuilder query) throws LogInsightApiException {
+		try {
+			return queryAsync(query).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LogInsightApiException("Message query interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new LogInsightApiException("Message query failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Performs the message query on time slices without blocking the calling
+	 * thread. Cancelling the future cancels the running slices.
+	 *
+	 * @param query
+	 *            message query
+	 * @return future of the MessageQueryResponse. Completes exceptionally with
+	 *         {@code LogInsightApiException} or {@code AuthFailure}
+	 */
+	public CompletableFuture<MessageQueryResponse> queryAsync(MessageQueryBuilder query) {
+		long[] range = timeRange(query);
+		if (range == null || slices == 1) {
+			return client.messageQueryAsync(query.toUrlString());
+		}
+		CompletableFuture<MessageQueryResponse> result = new CompletableFuture<MessageQueryResponse>();
+		CompletableFuture<List<Long>> plan = plan(query, range[0], range[1]);
+		result.whenComplete((response, ex) -> plan.cancel(false));
+		plan.thenAccept(cuts -> new Execution(query, cuts, result).launch());
+		return result;
+	}
+
+	/**
+	 * Range of the timestamp constraints of the query
+	 *
+	 * @return {from, to}, from inclusive and to exclusive, or null without a
+	 *         lower bound
+	 */
+	static long[] timeRange(QueryBuilder query) {
+		long from = Long.MIN_VALUE;
+		long to = Long.MAX_VALUE;
+		for (FieldConstraint constraint : query.constraints) {
+			if (!TIMESTAMP.equals(constraint.getName()) || constraint.getValue() == null) {
+				continue;
+			}
+			long value;
+			try {
+				value = Long.parseLong(constraint.getValue().toString().trim());
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			switch (constraint.getOperator()) {
+			case GT:
+				from = Math.max(from, value + 1);
+				break;
+			case GE:
+				from = Math.max(from, value);
+				break;
+			case LT:
+				to = Math.min(to, value);
+				break;
+			case LE:
+				to = Math.min(to, value + 1);
+				break;
+			default:
+				break;
+			}
+		}
+		if (from == Long.MIN_VALUE) {
+			return null;
+		}
+		if (to == Long.MAX_VALUE) {
+			to = System.currentTimeMillis() + 1;
+		}
+		return to - from > 1 ? new long[] { from, to } : null;
+	}
+
+	/**
+	 * Plans the cut points between the slices, in increasing order, from a
+	 * COUNT aggregate of the query over the range
+	 */
+	private CompletableFuture<List<Long>> plan(MessageQueryBuilder query, long from, long to) {
+		long width = (to - from + slices * BINS_PER_SLICE - 1) / (slices * BINS_PER_SLICE);
+		int binWidth = (int) Math.max(1, Math.min(width, Integer.MAX_VALUE));
+		AggregateQueryBuilder count = new AggregateQueryBuilder().count().binWidth(binWidth);
+		count.limit(slices * BINS_PER_SLICE + 1);
+		count.setConstraints(new ArrayList<FieldConstraint>(query.constraints));
+		if (count.constraints.stream().noneMatch(c -> TIMESTAMP.equals(c.getName())
+				&& (c.getOperator() == FieldConstraint.Operator.LT || c.getOperator() == FieldConstraint.Operator.LE))) {
+			count.constraints.add(FieldConstraint.lt(TIMESTAMP, Long.toString(to)));
+		}
+		CompletableFuture<AggregateResponse> aggregate = client.aggregateQueryAsync(count.toUrlString());
+		CompletableFuture<List<Long>> cuts = aggregate.handle((response, ex) -> {
+			if (ex != null || response == null || response.getBins() == null) {
+				logger.debug("Planning aggregate failed, slicing the time range evenly", ex);
+				return evenCuts(from, to);
+			}
+			return countCuts(response.getBins(), from, to);
+		});
+		cuts.whenComplete((c, ex) -> {
+			if (cuts.isCancelled()) {
+				aggregate.cancel(false);
+			}
+		});
+		return cuts;
+	}
+
+	private List<Long> evenCuts(long from, long to) {
+		List<Long> cuts = new ArrayList<Long>();
+		for (int i = 1; i < slices; i++) {
+			long cut = from + (long) ((double) (to - from) * i / slices);
+			if (cut > from && cut < to && (cuts.isEmpty() || cut > cuts.get(cuts.size() - 1))) {
+				cuts.add(cut);
+			}
+		}
+		return cuts;
+	}
+
+	/**
+	 * Cuts after the bins where the running count crosses a multiple of
+	 * total / slices
+	 */
+	private List<Long> countCuts(List<AggregateResponseBin> bins, long from, long to) {
+		List<AggregateResponseBin> sorted = new ArrayList<AggregateResponseBin>();
+		long total = 0;
+		for (AggregateResponseBin bin : bins) {
+			if (bin.getMinTimestamp() != null && bin.getValue() != null && bin.getValue() > 0) {
+				sorted.add(bin);
+				total += bin.getValue();
+			}
+		}
+		List<Long> cuts = new ArrayList<Long>();
+		if (total == 0) {
+			return cuts;
+		}
+		sorted.sort(Comparator.comparing(AggregateResponseBin::getMinTimestamp));
+		long running = 0;
+		int slice = 1;
+		for (AggregateResponseBin bin : sorted) {
+			running += bin.getValue();
+			if (slice < slices && running * slices >= total * slice) {
+				long end = bin.getMaxTimestamp() != null ? bin.getMaxTimestamp() + 1 : bin.getMinTimestamp() + 1;
+				if (end > from && end < to && (cuts.isEmpty() || end > cuts.get(cuts.size() - 1))) {
+					cuts.add(end);
+				}
+				while (slice < slices && running * slices >= total * slice) {
+					slice++;
+				}
+			}
+		}
+		return cuts;
+	}
+
+	/**
+	 * Queries of the slices of one fan-out, started and merged under the lock
+	 * of this object
+	 */
+	private final class Execution {
+		private final MessageQueryBuilder query;
+		private final List<Long> cuts;
+		private final CompletableFuture<MessageQueryResponse> result;
+		private final int count;
+		private final List<CompletableFuture<MessageQueryResponse>> futures;
+		private final List<MessageQueryResponse> responses;
+		private int next;
+		private int running;
+
+		Execution(MessageQueryBuilder query, List<Long> cuts, CompletableFuture<MessageQueryResponse> result) {
+			this.query = query;
+			this.cuts = cuts;
+			this.result = result;
+			this.count = cuts.size() + 1;
+			this.futures = new ArrayList<CompletableFuture<MessageQueryResponse>>(
+					Collections.<CompletableFuture<MessageQueryResponse>> nCopies(count, null));
+			this.responses = new ArrayList<MessageQueryResponse>(Collections.<MessageQueryResponse> nCopies(count, null));
+			result.whenComplete((response, ex) -> {
+				if (result.isCancelled()) {
+					cancel(-1);
+				}
+			});
+		}
+
+		/**
+		 * Query of slice i, slice 0 being the newest
+		 */
+		private MessageQueryBuilder slice(int i) {
+			int upper = count - 1 - i;
+			FieldConstraint lt = upper < cuts.size() ? FieldConstraint.lt(TIMESTAMP, Long.toString(cuts.get(upper)))
+					: null;
+			FieldConstraint ge = upper > 0 ? FieldConstraint.ge(TIMESTAMP, Long.toString(cuts.get(upper - 1))) : null;
+			return query.page(query.limit, ge, lt);
+		}
+
+		synchronized void launch() {
+			while (!result.isDone() && running < parallelism && next < count) {
+				int i = next++;
+				if (!canContribute(i)) {
+					continue;
+				}
+				running++;
+				CompletableFuture<MessageQueryResponse> future = client.messageQueryAsync(slice(i).toUrlString());
+				futures.set(i, future);
+				future.whenComplete((response, ex) -> completed(i, response, ex));
+			}
+			if (running == 0 && !result.isDone()) {
+				result.complete(merge());
+			}
+		}
+
+		private synchronized void completed(int i, MessageQueryResponse response, Throwable ex) {
+			running--;
+			futures.set(i, null);
+			if (ex != null) {
+				Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+				if (cause instanceof CancellationException) {
+					launch();
+					return;
+				}
+				if (result.completeExceptionally(cause)) {
+					cancel(i);
+				}
+				return;
+			}
+			responses.set(i, response);
+			for (int j = i + 1; j < count; j++) {
+				CompletableFuture<MessageQueryResponse> future = futures.get(j);
+				if (future != null && !canContribute(j)) {
+					future.cancel(false);
+				}
+			}
+			launch();
+		}
+
+		/**
+		 * Whether slice i may hold events of the result, that is whether the
+		 * newer slices already received hold less than the limit
+		 */
+		private boolean canContribute(int i) {
+			long newer = 0;
+			for (int j = 0; j < i; j++) {
+				MessageQueryResponse response = responses.get(j);
+				if (response != null && response.getEvents() != null) {
+					newer += response.getEvents().size();
+				}
+			}
+			return newer < query.limit;
+		}
+
+		private synchronized void cancel(int except) {
+			for (int j = 0; j < count; j++) {
+				CompletableFuture<MessageQueryResponse> future = futures.get(j);
+				if (j != except && future != null) {
+					future.cancel(false);
+				}
+			}
+		}
+
+		/**
+		 * K-way merge of the slices, newest first, up to the limit
+		 */
+		private MessageQueryResponse merge() {
+			PriorityQueue<Head> heads = new PriorityQueue<Head>(count, NEWEST_FIRST);
+			boolean complete = true;
+			int duration = 0;
+			for (int i = 0; i < count; i++) {
+				MessageQueryResponse response = responses.get(i);
+				if (response == null) {
+					continue;
+				}
+				complete &= response.isComplete();
+				duration = Math.max(duration, response.getDuration());
+				if (response.getEvents() != null && !response.getEvents().isEmpty()) {
+					heads.add(new Head(response.getEvents(), i));
+				}
+			}
+			List<Message> events = new ArrayList<Message>(Math.min(query.limit, 1024));
+			while (events.size() < query.limit && !heads.isEmpty()) {
+				Head head = heads.poll();
+				events.add(head.events.get(head.index++));
+				if (head.index < head.events.size()) {
+					heads.add(head);
+				}
+			}
+			MessageQueryResponse merged = new MessageQueryResponse();
+			merged.setComplete(complete);
+			merged.setDuration(duration);
+			merged.setEvents(events);
+			return merged;
+		}
+	}
+
+	/**
+	 * Next event of a slice in the merge
+	 */
+	private static final class Head {
+		final List<Message> events;
+		final int slice;
+		int index;
+
+		Head(List<Message> events, int slice) {
+			this.events = events;
+			this.slice = slice;
+		}
+
+		long timestamp() {
+			Long timestamp = events.get(index).getTimestamp();
+			return timestamp == null ? Long.MIN_VALUE : timestamp;
+		}
+	}
+}
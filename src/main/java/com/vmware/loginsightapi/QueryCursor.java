@@ -0,0 +1,326 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.vmware.loginsightapi.core.Field;
+import com.vmware.loginsightapi.core.FieldConstraint;
+import com.vmware.loginsightapi.core.Message;
+
+/**
+ * Iterates over all the events of a message query, page by page. <br>
+ *
+ * The events are walked from the newest to the oldest, the default order of
+ * LogInsight. Each page is queried with {@code timestamp <= t}, t being the
+ * oldest timestamp of the previous page, and the events of timestamp t which
+ * were already returned are skipped, so that no event is lost or repeated when
+ * several events share the timestamp of a page boundary. More than
+ * {@code maxPageSize} events of a single timestamp cannot be paged through
+ * that way: the cursor then fails with a {@link LogInsightApiException} after
+ * returning the events before them. <br>
+ *
+ * The next page is requested as soon as a page arrives, while the caller
+ * processes the current one. The page size adapts to the observed latency of
+ * the pages, within {@code minPageSize} and {@code maxPageSize}, to approach
+ * the target page latency. The limit of the query builder is replaced by the
+ * page size.
+ *
+ * <pre>
+ * try (QueryCursor cursor = client.messageQueryCursor(query)) {
+ * 	while (cursor.hasNext()) {
+ * 		Message message = cursor.next();
+ * 	}
+ * }
+ * </pre>
+ *
+ * A cursor is not thread-safe.
+ */
+public class QueryCursor implements Iterator<Message>, AutoCloseable {
+
+	private static final String TIMESTAMP = "timestamp";
+
+	private final LogInsightClient client;
+	private final MessageQueryBuilder query;
+	private final int minPageSize;
+	private final int maxPageSize;
+	private final long targetLatencyNanos;
+
+	private int pageSize;
+	private long boundary = Long.MAX_VALUE;
+	private Map<String, Integer> seenAtBoundary = new HashMap<String, Integer>();
+	private int seenAtBoundaryCount;
+	private CompletableFuture<Page> pending;
+	private Iterator<Message> page = Collections.<Message> emptyIterator();
+	private boolean exhausted;
+	private int pages;
+	private long count;
+
+	/**
+	 * Constructs the cursor with the paging properties of the client
+	 * configuration. The first page is requested at once.
+	 *
+	 * @param client
+	 *            LogInsight client
+	 * @param query
+	 *            message query, without its limit
+	 */
+	public QueryCursor(LogInsightClient client, MessageQueryBuilder query) {
+		this(client, query, client.getConfiguration().getQueryPageSize(),
+				client.getConfiguration().getQueryPageMinSize(), client.getConfiguration().getQueryPageMaxSize(),
+				client.getConfiguration().getQueryPageTargetLatencyMs());
+	}
+
+	/**
+	 * Constructs the cursor. The first page is requested at once.
+	 *
+	 * @param client
+	 *            LogInsight client
+	 * @param query
+	 *            message query, without its limit
+	 * @param pageSize
+	 *            number of events of the first page
+	 * @param minPageSize
+	 *            minimum number of events in a page
+	 * @param maxPageSize
+	 *            maximum number of events in a page
+	 * @param targetLatencyMs
+	 *            latency of a page the page size adapts to, in milliseconds
+	 */
+	public QueryCursor(LogInsightClient client, MessageQueryBuilder query, int pageSize, int minPageSize,
+			int maxPageSize, long targetLatencyMs) {
+		if (minPageSize <= 0 || maxPageSize < minPageSize || targetLatencyMs <= 0) {
+			throw new IllegalArgumentException("Invalid page limits");
+		}
+		this.client = client;
+		this.query = query;
+		this.minPageSize = minPageSize;
+		this.maxPageSize = maxPageSize;
+		this.pageSize = Math.max(minPageSize, Math.min(pageSize, maxPageSize));
+		this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+		fetch();
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!page.hasNext()) {
+			if (pending == null) {
+				return false;
+			}
+			page = nextPage().iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public Message next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		count++;
+		return page.next();
+	}
+
+	/**
+	 * Sequential stream of the remaining events. Closing the stream closes the
+	 * cursor.
+	 *
+	 * @return stream of messages
+	 */
+	public Stream<Message> stream() {
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+
+	/**
+	 * Number of pages received so far
+	 *
+	 * @return count of pages
+	 */
+	public int getPages() {
+		return pages;
+	}
+
+	/**
+	 * Number of events returned so far
+	 *
+	 * @return count of events
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Current page size, adapted to the page latency
+	 *
+	 * @return number of events per page
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Cancels the prefetched page
+	 */
+	@Override
+	public void close() {
+		exhausted = true;
+		page = Collections.<Message> emptyIterator();
+		if (pending != null) {
+			pending.cancel(false);
+			pending = null;
+		}
+	}
+
+	/**
+	 * Requests the next page. Its limit covers the events of the boundary
+	 * timestamp which are already returned, since they come back first. The
+	 * page fails when those events alone reach the maximum page size.
+	 */
+	private void fetch() {
+		FieldConstraint constraint = boundary == Long.MAX_VALUE ? null
+				: FieldConstraint.le(TIMESTAMP, Long.toString(boundary));
+		int limit = pageSize + seenAtBoundaryCount;
+		if (seenAtBoundaryCount >= maxPageSize) {
+			pending = new CompletableFuture<Page>();
+			pending.completeExceptionally(new LogInsightApiException("More than " + maxPageSize
+					+ " events at timestamp " + boundary + ", raise " + Configuration.KEY_QUERY_PAGE_MAX_SIZE
+					+ " to page through them"));
+			return;
+		}
+		String url = query.page(limit, constraint).toUrlString();
+		int requested = limit;
+		long start = System.nanoTime();
+		pending = client.messageQueryAsync(url)
+				.thenApply(response -> new Page(response.getEvents(), requested, System.nanoTime() - start));
+	}
+
+	/**
+	 * Waits for the pending page, requests the following one and returns the
+	 * events not returned yet
+	 */
+	private List<Message> nextPage() {
+		Page next;
+		try {
+			next = pending.join();
+		} catch (CompletionException e) {
+			pending = null;
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new LogInsightApiException("Message query failed", e.getCause());
+		} catch (CancellationException e) {
+			pending = null;
+			return Collections.emptyList();
+		}
+		pending = null;
+		pages++;
+		adaptPageSize(next.latencyNanos);
+		List<Message> events = deduplicate(next.events);
+		if (!exhausted && next.events.size() >= next.limit) {
+			fetch();
+		} else {
+			exhausted = true;
+		}
+		return events;
+	}
+
+	/**
+	 * Drops the events already returned at the boundary timestamp and moves
+	 * the boundary to the oldest timestamp of the page
+	 */
+	private List<Message> deduplicate(List<Message> events) {
+		Map<String, Integer> duplicates = new HashMap<String, Integer>(seenAtBoundary);
+		List<Message> fresh = new ArrayList<Message>(events.size());
+		long oldest = Long.MAX_VALUE;
+		for (Message event : events) {
+			Long timestamp = event.getTimestamp();
+			if (timestamp != null) {
+				oldest = Math.min(oldest, timestamp);
+				if (timestamp == boundary && consume(duplicates, key(event))) {
+					continue;
+				}
+			}
+			fresh.add(event);
+		}
+		if (oldest == Long.MAX_VALUE) {
+			// no timestamp to continue from
+			exhausted = true;
+			return fresh;
+		}
+		if (oldest != boundary) {
+			boundary = oldest;
+			seenAtBoundary = new HashMap<String, Integer>();
+			seenAtBoundaryCount = 0;
+		}
+		for (Message event : fresh) {
+			if (event.getTimestamp() != null && event.getTimestamp() == boundary) {
+				seenAtBoundary.merge(key(event), 1, Integer::sum);
+				seenAtBoundaryCount++;
+			}
+		}
+		return fresh;
+	}
+
+	private static boolean consume(Map<String, Integer> counts, String key) {
+		Integer n = counts.get(key);
+		if (n == null) {
+			return false;
+		}
+		if (n == 1) {
+			counts.remove(key);
+		} else {
+			counts.put(key, n - 1);
+		}
+		return true;
+	}
+
+	private static String key(Message event) {
+		StringBuilder key = new StringBuilder(event.getText() == null ? "" : event.getText());
+		if (event.getFields() != null) {
+			for (Field field : event.getFields()) {
+				key.append('\u0000').append(field.getName()).append('=').append(field.getContent());
+			}
+		}
+		return key.toString();
+	}
+
+	private void adaptPageSize(long latencyNanos) {
+		double ratio = (double) targetLatencyNanos / Math.max(latencyNanos, 1);
+		ratio = Math.max(0.5, Math.min(ratio, 2.0));
+		pageSize = (int) Math.max(minPageSize, Math.min(Math.round(pageSize * ratio), maxPageSize));
+	}
+
+	private static final class Page {
+		final List<Message> events;
+		final int limit;
+		final long latencyNanos;
+
+		Page(List<Message> events, int limit, long latencyNanos) {
+			this.events = events == null ? Collections.<Message> emptyList() : events;
+			this.limit = limit;
+			this.latencyNanos = latencyNanos;
+		}
+	}
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.AggregateSeries;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.core.MessageQueryResponse;
+import com.vmware.loginsightapi.util.MessageSizeEstimator;
+
+/**
+ * Client-side cache of query results, keyed by the normalized query url. <br>
+ *
+ * The entries are weighed by the estimated size of their json response and
+ * the least recently used entries are evicted above {@code maxBytes}. An entry
+ * expires after {@code ttlMs}, or after {@code settledTtlMs} when the time
+ * range of the query ends more than {@code settleDelayMs} in the past: such a
+ * result no longer changes once the events are ingested. Incomplete results
+ * are not cached. <br>
+ *
+ * Cached responses are shared by the callers and must not be modified.
+ */
+public class QueryResultCache {
+
+	private static final Pattern UPPER_BOUND = Pattern
+			.compile("(?:^|/)timestamp/(LT|LE)(?:%20|\\+| )(\\d+)(?=/|$)");
+
+	/**
+	 * Estimated bytes of a response without events or bins
+	 */
+	private static final int RESPONSE_OVERHEAD = 48;
+
+	/**
+	 * Estimated bytes of an aggregation bin
+	 */
+	private static final int BIN_SIZE = 72;
+
+	private final long maxBytes;
+	private final long ttlNanos;
+	private final long settledTtlNanos;
+	private final long settleDelayMs;
+	private final ClientMetrics metrics;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long weight;
+
+	/**
+	 * Constructs the cache
+	 *
+	 * @param maxBytes
+	 *            maximum estimated size of the cached responses, 0 disables
+	 *            the cache
+	 * @param ttlMs
+	 *            time to live of the results, in milliseconds
+	 * @param settledTtlMs
+	 *            time to live of the results of time ranges in the past, in
+	 *            milliseconds
+	 * @param settleDelayMs
+	 *            delay after which a time range is considered in the past, in
+	 *            milliseconds
+	 * @param metrics
+	 *            metrics recording the hits, misses and evictions
+	 */
+	QueryResultCache(long maxBytes, long ttlMs, long settledTtlMs, long settleDelayMs, ClientMetrics metrics) {
+		this.maxBytes = maxBytes;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+		this.settledTtlNanos = TimeUnit.MILLISECONDS.toNanos(settledTtlMs);
+		this.settleDelayMs = settleDelayMs;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Whether results are cached
+	 *
+	 * @return true if the maximum size is positive
+	 */
+	public boolean isEnabled() {
+		return maxBytes > 0 && ttlNanos > 0;
+	}
+
+	/**
+	 * Cached result of a query
+	 *
+	 * @param url
+	 *            relative url of the query
+	 * @param type
+	 *            class of the response
+	 * @param <T>
+	 *            type of the response
+	 * @return the response, null if not cached or expired
+	 */
+	<T> T get(String url, Class<T> type) {
+		if (!isEnabled()) {
+			return null;
+		}
+		String key = normalize(url);
+		long now = System.nanoTime();
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && now - entry.expiresAt < 0 && type.isInstance(entry.value)) {
+				metrics.recordQueryCacheHit();
+				return type.cast(entry.value);
+			}
+			if (entry != null) {
+				remove(key);
+			}
+		}
+		metrics.recordQueryCacheMiss();
+		return null;
+	}
+
+	/**
+	 * Caches the result of a message query
+	 *
+	 * @param url
+	 *            relative url of the query
+	 * @param response
+	 *            message query response
+	 */
+	void put(String url, MessageQueryResponse response) {
+		if (response == null || !response.isComplete()) {
+			return;
+		}
+		long size = RESPONSE_OVERHEAD;
+		if (response.getEvents() != null) {
+			for (Message event : response.getEvents()) {
+				size += MessageSizeEstimator.estimate(event);
+			}
+		}
+		put(url, response, size);
+	}
+
+	/**
+	 * Caches the result of an aggregate query
+	 *
+	 * @param url
+	 *            relative url of the query
+	 * @param response
+	 *            aggregate response
+	 */
+	void put(String url, AggregateResponse response) {
+		if (response == null || !response.isComplete()) {
+			return;
+		}
+		// the series of a decoded response is counted without creating the bins
+		AggregateSeries series = response.getSeries();
+		long bins = series == null ? 0 : series.size();
+		put(url, response, RESPONSE_OVERHEAD + bins * BIN_SIZE);
+	}
+
+	private void put(String url, Object value, long size) {
+		if (!isEnabled() || size > maxBytes) {
+			return;
+		}
+		long ttl = isSettled(url, System.currentTimeMillis()) ? settledTtlNanos : ttlNanos;
+		String key = normalize(url);
+		synchronized (this) {
+			remove(key);
+			entries.put(key, new Entry(value, size, System.nanoTime() + ttl));
+			weight += size;
+			Iterator<Entry> eldest = entries.values().iterator();
+			while (weight > maxBytes && eldest.hasNext()) {
+				weight -= eldest.next().weight;
+				eldest.remove();
+				metrics.recordQueryCacheEviction();
+			}
+		}
+	}
+
+	private void remove(String key) {
+		Entry removed = entries.remove(key);
+		if (removed != null) {
+			weight -= removed.weight;
+		}
+	}
+
+	/**
+	 * Drops all the cached results
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Number of cached results, including the expired ones not dropped yet
+	 *
+	 * @return count of entries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Estimated size of the cached results
+	 *
+	 * @return bytes
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Whether the time range of the query ends before the settle delay
+	 */
+	boolean isSettled(String url, long nowMs) {
+		Matcher matcher = UPPER_BOUND.matcher(path(url));
+		long upper = Long.MAX_VALUE;
+		while (matcher.find()) {
+			try {
+				long value = Long.parseLong(matcher.group(2));
+				upper = Math.min(upper, "LE".equals(matcher.group(1)) ? value + 1 : value);
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		return upper != Long.MAX_VALUE && upper <= nowMs - settleDelayMs;
+	}
+
+	private static String path(String url) {
+		int query = url.indexOf('?');
+		return query < 0 ? url : url.substring(0, query);
+	}
+
+	/**
+	 * Normalizes a query url, so that the same query gets the same key
+	 * whatever the order of its constraints. The url parameters are sorted
+	 * when none of them is repeated, since the order of the repeated ones
+	 * (order-by, group-by) is significant.
+	 *
+	 * @param url
+	 *            relative url of a query
+	 * @return normalized url
+	 */
+	static String normalize(String url) {
+		String path = path(url);
+		String query = path.length() < url.length() ? url.substring(path.length() + 1) : "";
+		String prefix = path;
+		String constraints = "";
+		for (String api : Arrays.asList(MessageQueryBuilder.API_URL_EVENTS_PATH,
+				AggregateQueryBuilder.API_URL_AGGREGATED_EVENTS_PATH)) {
+			int index = path.indexOf(api);
+			if (index >= 0) {
+				prefix = path.substring(0, index + api.length());
+				constraints = path.substring(index + api.length());
+				break;
+			}
+		}
+		StringBuilder key = new StringBuilder(prefix);
+		List<String> segments = Arrays.asList(constraints.split("/"));
+		if (segments.size() % 2 == 0) {
+			String[] pairs = new String[segments.size() / 2];
+			for (int i = 0; i < pairs.length; i++) {
+				pairs[i] = segments.get(2 * i) + "/" + segments.get(2 * i + 1);
+			}
+			Arrays.sort(pairs);
+			key.append(String.join("/", pairs));
+		} else {
+			key.append(constraints);
+		}
+		if (!query.isEmpty()) {
+			String[] params = query.split("&");
+			Set<String> names = new HashSet<String>();
+			boolean repeated = false;
+			for (String param : params) {
+				int eq = param.indexOf('=');
+				repeated |= !names.add(eq < 0 ? param : param.substring(0, eq));
+			}
+			if (!repeated) {
+				Arrays.sort(params);
+			}
+			key.append('?').append(String.join("&", params));
+		}
+		return key.toString();
+	}
+
+	private static final class Entry {
+		final Object value;
+		final long weight;
+		final long expiresAt;
+
+		Entry(Object value, long weight, long expiresAt) {
+			this.value = value;
+			this.weight = weight;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+/**
+ * Limits the retries of a client to a share of its requests, so that retries
+ * cannot multiply the load on LogInsight during an outage. <br>
+ *
+ * Every request deposits {@code ratio} tokens and every retry takes one. In
+ * addition {@code minRetriesPerSecond} tokens are granted per second, so that
+ * a client sending few requests can still retry. The balance is capped at the
+ * deposits of 1000 requests plus one second of grants.
+ */
+public class RetryBudget {
+
+	private final double ratio;
+	private final int minRetriesPerSecond;
+	private final double maxBalance;
+
+	private double balance;
+	private long lastGrantNanos = System.nanoTime();
+
+	/**
+	 * Constructs the budget
+	 * 
+	 * @param ratio
+	 *            retries allowed per request, e.g. 0.1 for 10%
+	 * @param minRetriesPerSecond
+	 *            retries allowed per second regardless of the requests
+	 */
+	public RetryBudget(double ratio, int minRetriesPerSecond) {
+		if (ratio < 0 || minRetriesPerSecond < 0) {
+			throw new IllegalArgumentException("Invalid retry budget");
+		}
+		this.ratio = ratio;
+		this.minRetriesPerSecond = minRetriesPerSecond;
+		this.maxBalance = ratio * 1000 + minRetriesPerSecond;
+		this.balance = minRetriesPerSecond;
+	}
+
+	/**
+	 * Records a request, depositing {@code ratio} tokens
+	 */
+	public synchronized void recordRequest() {
+		balance = Math.min(balance + ratio, maxBalance);
+	}
+
+	/**
+	 * Takes a token for a retry
+	 * 
+	 * @return true if the retry is allowed
+	 */
+	public synchronized boolean tryAcquire() {
+		long now = System.nanoTime();
+		double grant = (now - lastGrantNanos) / 1e9 * minRetriesPerSecond;
+		lastGrantNanos = now;
+		balance = Math.min(balance + grant, maxBalance);
+		if (balance < 1) {
+			return false;
+		}
+		balance -= 1;
+		return true;
+	}
+
+	/**
+	 * Number of retries currently allowed
+	 * 
+	 * @return whole tokens in the budget
+	 */
+	public synchronized int getAvailable() {
+		return (int) balance;
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.loginsightapi.util.DaemonThreadFactory;
+
+/**
+ * Runs the attempts of a LogInsight request according to a RetryPolicy and a
+ * RetryBudget shared by all the requests of a client. <br>
+ *
+ * Asynchronous retries are scheduled on a timer thread, no thread waits for
+ * the backoff. Synchronous attempts run in the calling thread, which waits for
+ * the same timer between them. The retries pending at shutdown fail instead of
+ * sending new requests.
+ */
+class RetryExecutor {
+
+	private final static Logger logger = LoggerFactory.getLogger(RetryExecutor.class);
+
+	private final RetryBudget budget;
+	private final ClientMetrics metrics;
+	private ScheduledThreadPoolExecutor timer;
+	private final Set<CompletableFuture<?>> pending = new HashSet<CompletableFuture<?>>();
+	private boolean shutdown;
+
+	RetryExecutor(RetryBudget budget, ClientMetrics metrics) {
+		this.budget = budget;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Runs a blocking request, retrying the failed attempts in the calling
+	 * thread
+	 *
+	 * @param attempt
+	 *            performs one attempt of the request
+	 * @param policy
+	 *            retry policy of the request
+	 * @return result of the first successful attempt
+	 * @throws LogInsightApiException
+	 *             if the executor is shut down while waiting for a retry
+	 */
+	<T> T execute(Supplier<T> attempt, RetryPolicy policy) {
+		budget.recordRequest();
+		for (int count = 1;; count++) {
+			try {
+				return attempt.get();
+			} catch (RuntimeException e) {
+				long delay = nextDelay(e, policy, count);
+				CompletableFuture<Void> backoff = new CompletableFuture<Void>();
+				if (delay < 0 || !schedule(backoff, () -> backoff.complete(null), delay)) {
+					throw e;
+				}
+				try {
+					backoff.get();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				} catch (ExecutionException ee) {
+					// closed before the retry
+					throw (RuntimeException) ee.getCause();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs an asynchronous request, scheduling the retries of the failed
+	 * attempts on the timer. Cancelling the returned future cancels the
+	 * running attempt and the pending retries.
+	 *
+	 * @param attempt
+	 *            starts one attempt of the request
+	 * @param policy
+	 *            retry policy of the request
+	 * @return future of the first successful attempt, or of the last failure
+	 */
+	<T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> attempt, RetryPolicy policy) {
+		budget.recordRequest();
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		attempt(result, attempt, policy, 1);
+		return result;
+	}
+
+	private <T> void attempt(CompletableFuture<T> result, Supplier<CompletableFuture<T>> attempt,
+			RetryPolicy policy, int count) {
+		if (result.isDone()) {
+			return;
+		}
+		CompletableFuture<T> future;
+		try {
+			future = attempt.get();
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+			return;
+		}
+		result.whenComplete((response, ex) -> {
+			if (result.isCancelled()) {
+				future.cancel(false);
+			}
+		});
+		future.whenComplete((response, ex) -> {
+			if (ex == null) {
+				result.complete(response);
+				return;
+			}
+			Throwable failure = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+			long delay = nextDelay(failure, policy, count);
+			if (delay < 0 || !schedule(result, () -> attempt(result, attempt, policy, count + 1), delay)) {
+				result.completeExceptionally(failure);
+			}
+		});
+	}
+
+	/**
+	 * Delay before the next attempt, taking a token from the budget
+	 *
+	 * @return delay in milliseconds, -1 if the request is not retried
+	 */
+	private long nextDelay(Throwable failure, RetryPolicy policy, int count) {
+		if (count >= policy.getMaxAttempts() || !policy.isRetryable(failure)) {
+			return -1;
+		}
+		if (!budget.tryAcquire()) {
+			metrics.recordRetryBudgetExhausted();
+			logger.debug("Retry budget exhausted, not retrying: " + failure);
+			return -1;
+		}
+		long retryAfterMs = failure instanceof LogInsightHttpException
+				? ((LogInsightHttpException) failure).getRetryAfterMs() : -1;
+		long delay = policy.getDelayMs(count, retryAfterMs);
+		if (delay < 0) {
+			logger.debug("Retry-After of " + retryAfterMs + "ms exceeds the maximum delay, not retrying: " + failure);
+			return -1;
+		}
+		metrics.recordRetry();
+		logger.debug("Attempt " + count + " failed, retrying in " + delay + "ms: " + failure);
+		return delay;
+	}
+
+	/**
+	 * Schedules the next attempt of a request
+	 *
+	 * @param result
+	 *            future of the request, failed if the executor is shut down
+	 *            before the attempt
+	 * @return false if the executor is shut down
+	 */
+	private synchronized boolean schedule(CompletableFuture<?> result, Runnable task, long delayMs) {
+		if (shutdown) {
+			return false;
+		}
+		if (timer == null) {
+			timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("loginsight-retry"));
+			timer.setRemoveOnCancelPolicy(true);
+		}
+		try {
+			timer.schedule(() -> {
+				synchronized (this) {
+					pending.remove(result);
+				}
+				task.run();
+			}, delayMs, TimeUnit.MILLISECONDS);
+			pending.add(result);
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Stops the timer. The futures of the pending retries fail with a
+	 * LogInsightApiException, their requests are not sent again.
+	 */
+	void shutdown() {
+		List<CompletableFuture<?>> abandoned;
+		synchronized (this) {
+			shutdown = true;
+			if (timer == null) {
+				return;
+			}
+			timer.shutdownNow();
+			abandoned = new ArrayList<CompletableFuture<?>>(pending);
+			pending.clear();
+		}
+		for (CompletableFuture<?> result : abandoned) {
+			result.completeExceptionally(new LogInsightApiException("LogInsightClient closed before the retry"));
+		}
+	}
+}
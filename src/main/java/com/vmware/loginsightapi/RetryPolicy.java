@@ -0,0 +1,147 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed LogInsight request is retried and how long to wait
+ * before the next attempt. <br>
+ *
+ * Requests failing with one of the retryable http statuses or with an I/O
+ * error are retried up to {@code maxAttempts} attempts in total. The delay
+ * before attempt n + 1 is drawn uniformly from 0 to
+ * {@code min(maxDelayMs, baseDelayMs * 2^(n - 1))} (exponential backoff with
+ * full jitter), or is the {@code Retry-After} delay of the response when that
+ * is longer. Requests are not retried when the {@code Retry-After} delay
+ * exceeds {@code maxDelayMs}, so that no caller waits longer than that.
+ */
+public class RetryPolicy {
+
+	/**
+	 * Policy without retries
+	 */
+	public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, Collections.<Integer> emptySet());
+
+	private final int maxAttempts;
+	private final long baseDelayMs;
+	private final long maxDelayMs;
+	private final Set<Integer> retryableStatuses;
+
+	/**
+	 * Constructs the policy
+	 * 
+	 * @param maxAttempts
+	 *            maximum number of attempts including the first one
+	 * @param baseDelayMs
+	 *            backoff ceiling of the first retry in milliseconds
+	 * @param maxDelayMs
+	 *            maximum backoff ceiling in milliseconds
+	 * @param retryableStatuses
+	 *            http status codes which are retried
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, Set<Integer> retryableStatuses) {
+		if (maxAttempts < 1 || baseDelayMs < 0 || maxDelayMs < baseDelayMs) {
+			throw new IllegalArgumentException("Invalid retry policy");
+		}
+		this.maxAttempts = maxAttempts;
+		this.baseDelayMs = baseDelayMs;
+		this.maxDelayMs = maxDelayMs;
+		this.retryableStatuses = Collections.unmodifiableSet(new LinkedHashSet<Integer>(retryableStatuses));
+	}
+
+	/**
+	 * Maximum number of attempts including the first one
+	 * 
+	 * @return number of attempts
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * Backoff ceiling of the first retry
+	 * 
+	 * @return delay in milliseconds
+	 */
+	public long getBaseDelayMs() {
+		return baseDelayMs;
+	}
+
+	/**
+	 * Maximum backoff ceiling
+	 * 
+	 * @return delay in milliseconds
+	 */
+	public long getMaxDelayMs() {
+		return maxDelayMs;
+	}
+
+	/**
+	 * Http status codes which are retried
+	 * 
+	 * @return set of status codes
+	 */
+	public Set<Integer> getRetryableStatuses() {
+		return retryableStatuses;
+	}
+
+	/**
+	 * Checks whether a failure can be retried. Http failures are retried for
+	 * the retryable statuses, other LogInsightApiExceptions when they are
+	 * caused by an I/O error. Authentication failures, unparseable responses
+	 * and interrupted calls are never retried.
+	 * 
+	 * @param failure
+	 *            exception of the failed attempt
+	 * @return true if the request can be retried
+	 */
+	public boolean isRetryable(Throwable failure) {
+		if (failure instanceof LogInsightHttpException) {
+			return retryableStatuses.contains(((LogInsightHttpException) failure).getStatusCode());
+		}
+		if (!(failure instanceof LogInsightApiException) || failure instanceof ParseException) {
+			return false;
+		}
+		boolean io = false;
+		for (Throwable cause = failure.getCause(); cause != null; cause = cause.getCause()) {
+			if (cause instanceof InterruptedException) {
+				return false;
+			}
+			io |= cause instanceof IOException;
+		}
+		return io;
+	}
+
+	/**
+	 * Delay before the next attempt
+	 * 
+	 * @param attempt
+	 *            number of the failed attempt, starting from 1
+	 * @param retryAfterMs
+	 *            delay requested by the server, -1 if none
+	 * @return delay in milliseconds, -1 if the requested delay exceeds
+	 *         {@code maxDelayMs} and the request is not retried
+	 */
+	public long getDelayMs(int attempt, long retryAfterMs) {
+		if (retryAfterMs > maxDelayMs) {
+			return -1;
+		}
+		long ceiling = baseDelayMs << Math.min(attempt - 1, 30);
+		if (ceiling > maxDelayMs || ceiling < 0) {
+			ceiling = maxDelayMs;
+		}
+		long delay = ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+		return Math.max(delay, retryAfterMs);
+	}
+}
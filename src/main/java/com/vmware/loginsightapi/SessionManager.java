@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.loginsightapi.core.AuthInfo;
+import com.vmware.loginsightapi.util.DaemonThreadFactory;
+import com.vmware.loginsightapi.util.SingleFlight;
+
+/**
+ * Holds the LogInsight session of a client. <br>
+ *
+ * The session id is read without locking by every request. Concurrent logins,
+ * whether started by the requests rejected with an expired session or by the
+ * renewal, share a single login request. After each login, a new session is
+ * opened in the background {@code renewalMarginMs} before the ttl of the
+ * session elapses, so that the requests rarely meet an expired session.
+ */
+class SessionManager {
+
+	private static final String LOGIN = "login";
+
+	private final static Logger logger = LoggerFactory.getLogger(SessionManager.class);
+
+	private final Supplier<AuthInfo> login;
+	private final Supplier<CompletableFuture<AuthInfo>> loginAsync;
+	private final long renewalMarginMs;
+	private final ClientMetrics metrics;
+
+	private final AtomicReference<String> sessionId = new AtomicReference<String>();
+	private final SingleFlight<String, String> logins = new SingleFlight<String, String>();
+
+	private ScheduledThreadPoolExecutor timer;
+	private ScheduledFuture<?> renewal;
+	private boolean closed;
+
+	/**
+	 * Constructs the session manager, without session
+	 *
+	 * @param login
+	 *            opens a session, blocking the calling thread
+	 * @param loginAsync
+	 *            opens a session without blocking the calling thread
+	 * @param renewalMarginMs
+	 *            time before the expiry of a session at which a new session
+	 *            is opened, 0 disables the renewal
+	 * @param metrics
+	 *            metrics recording the logins
+	 */
+	SessionManager(Supplier<AuthInfo> login, Supplier<CompletableFuture<AuthInfo>> loginAsync, long renewalMarginMs,
+			ClientMetrics metrics) {
+		this.login = login;
+		this.loginAsync = loginAsync;
+		this.renewalMarginMs = renewalMarginMs;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Current session id
+	 *
+	 * @return session id, null before the first login
+	 */
+	String getSessionId() {
+		return sessionId.get();
+	}
+
+	/**
+	 * Opens a session on the calling thread, or waits for the login in flight
+	 *
+	 * @return the new session id
+	 * @throws AuthFailure
+	 *             if the login failed
+	 */
+	String login() {
+		try {
+			return logins.executeBlocking(LOGIN, () -> onLogin(login.get()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AuthFailure("Interrupted while connecting to LogInsight", e);
+		}
+	}
+
+	/**
+	 * Opens a session without blocking the calling thread, or joins the login
+	 * in flight
+	 *
+	 * @return future of the new session id
+	 */
+	CompletableFuture<String> loginAsync() {
+		return logins.execute(LOGIN, () -> loginAsync.get().thenApply(this::onLogin));
+	}
+
+	/**
+	 * Replaces a session rejected by the server, unless it has already been
+	 * replaced
+	 *
+	 * @param expiredId
+	 *            session id of the rejected request
+	 * @return the session id to send the request again with
+	 * @throws AuthFailure
+	 *             if the login failed
+	 */
+	String relogin(String expiredId) {
+		metrics.recordReauthentication();
+		String current = sessionId.get();
+		if (current != null && !current.equals(expiredId)) {
+			return current;
+		}
+		return login();
+	}
+
+	/**
+	 * Replaces a session rejected by the server without blocking the calling
+	 * thread, unless it has already been replaced
+	 *
+	 * @param expiredId
+	 *            session id of the rejected request
+	 * @return future of the session id to send the request again with
+	 */
+	CompletableFuture<String> reloginAsync(String expiredId) {
+		metrics.recordReauthentication();
+		String current = sessionId.get();
+		if (current != null && !current.equals(expiredId)) {
+			return CompletableFuture.completedFuture(current);
+		}
+		return loginAsync();
+	}
+
+	/**
+	 * Publishes the session before the callers waiting for the login are
+	 * completed
+	 */
+	private String onLogin(AuthInfo authInfo) {
+		sessionId.set(authInfo.getSessionId());
+		metrics.recordLogin();
+		scheduleRenewal(authInfo.getTtl());
+		return authInfo.getSessionId();
+	}
+
+	private synchronized void scheduleRenewal(int ttlSeconds) {
+		if (closed || renewalMarginMs <= 0 || ttlSeconds <= 0) {
+			return;
+		}
+		if (renewal != null) {
+			renewal.cancel(false);
+		}
+		if (timer == null) {
+			timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("loginsight-session"));
+			timer.setRemoveOnCancelPolicy(true);
+		}
+		long ttlMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+		// sessions shorter than twice the margin are renewed halfway
+		long delayMs = Math.max(ttlMs - renewalMarginMs, ttlMs / 2);
+		renewal = timer.schedule(this::renew, delayMs, TimeUnit.MILLISECONDS);
+	}
+
+	private void renew() {
+		loginAsync().whenComplete((id, ex) -> {
+			if (ex == null) {
+				metrics.recordSessionRenewal();
+			} else {
+				Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+				logger.warn("Unable to renew the LogInsight session, logging in again once it has expired", cause);
+			}
+		});
+	}
+
+	/**
+	 * Stops the renewal of the session
+	 */
+	synchronized void close() {
+		closed = true;
+		if (timer != null) {
+			timer.shutdownNow();
+		}
+	}
+}
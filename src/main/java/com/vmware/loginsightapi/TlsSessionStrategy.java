@@ -0,0 +1,196 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.ssl.SSLIOSession;
+
+/**
+ * TLS layering of the connections of the http client, configured with the
+ * {@code loginsight.tls.*} properties. <br>
+ *
+ * TLS 1.3 and TLS 1.2 are enabled by default, with the cipher suites of the
+ * JVM. Server certificates are verified with the default trust store of the
+ * JVM, or the trust store of {@code loginsight.tls.trust.store}, and must
+ * match the host name unless {@code loginsight.tls.verify.hostname} is false.
+ * {@code loginsight.tls.trust.all} trusts any certificate and host name, for
+ * self-signed certificates in test environments only. <br>
+ *
+ * The SSL engines are created for the host and port of the connection, so
+ * that new connections to the same server resume a session of the client
+ * session cache, sized with {@code loginsight.tls.session.cache.size} and
+ * {@code loginsight.tls.session.timeout.s}, with an abbreviated handshake.
+ * The handshakes, the resumed ones and their duration are counted by the
+ * {@link ClientMetrics} of the client.
+ */
+public class TlsSessionStrategy extends SSLIOSessionStrategy {
+
+	private static final String HANDSHAKE_START = "loginsight.tls.handshake.start";
+
+	private final ClientMetrics metrics;
+
+	private TlsSessionStrategy(SSLContext sslContext, String[] protocols, String[] cipherSuites,
+			HostnameVerifier hostnameVerifier, ClientMetrics metrics) {
+		super(sslContext, protocols, cipherSuites, hostnameVerifier);
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Creates the TLS layering of the configuration
+	 *
+	 * @param config
+	 *            Configuration object
+	 * @param metrics
+	 *            metrics counting the handshakes, null for none
+	 * @return TlsSessionStrategy object
+	 * @throws LogInsightApiException
+	 *             if the trust store cannot be loaded or none of the
+	 *             configured protocols is supported
+	 */
+	public static TlsSessionStrategy create(Configuration config, ClientMetrics metrics) {
+		SSLContext sslContext = createSSLContext(config);
+		String[] protocols = supported(config.getTlsProtocols(),
+				sslContext.getSupportedSSLParameters().getProtocols());
+		if (protocols == null || protocols.length == 0) {
+			throw new LogInsightApiException(
+					"None of the TLS protocols " + config.getTlsProtocols() + " is supported by the JVM");
+		}
+		String[] cipherSuites = supported(config.getTlsCipherSuites(),
+				sslContext.getSupportedSSLParameters().getCipherSuites());
+		if (cipherSuites != null && cipherSuites.length == 0) {
+			throw new LogInsightApiException(
+					"None of the cipher suites " + config.getTlsCipherSuites() + " is supported by the JVM");
+		}
+		HostnameVerifier hostnameVerifier = config.isTlsTrustAll() || !config.isTlsVerifyHostname()
+				? NoopHostnameVerifier.INSTANCE : new DefaultHostnameVerifier();
+		return new TlsSessionStrategy(sslContext, protocols, cipherSuites, hostnameVerifier, metrics);
+	}
+
+	/**
+	 * Initializes the SSLContext with the trust store and the client session
+	 * cache of the configuration
+	 *
+	 * @param config
+	 *            Configuration object
+	 * @return SSLContext
+	 */
+	static SSLContext createSSLContext(Configuration config) {
+		try {
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(null, trustManagers(config), null);
+			SSLSessionContext sessions = context.getClientSessionContext();
+			if (config.getTlsSessionCacheSize() > 0) {
+				sessions.setSessionCacheSize(config.getTlsSessionCacheSize());
+			}
+			if (config.getTlsSessionTimeoutS() > 0) {
+				sessions.setSessionTimeout(config.getTlsSessionTimeoutS());
+			}
+			return context;
+		} catch (GeneralSecurityException | IOException e) {
+			throw new LogInsightApiException("Unable to initialize the TLS context", e);
+		}
+	}
+
+	/**
+	 * Trust managers of the configuration, null for the default ones of the
+	 * JVM
+	 */
+	private static TrustManager[] trustManagers(Configuration config) throws GeneralSecurityException, IOException {
+		if (config.isTlsTrustAll()) {
+			return new TrustManager[] { new TrustAllX509TrustManager() };
+		}
+		if (StringUtils.isBlank(config.getTlsTrustStore())) {
+			return null;
+		}
+		KeyStore trustStore = KeyStore.getInstance(config.getTlsTrustStoreType());
+		String password = config.getTlsTrustStorePassword();
+		try (InputStream in = new FileInputStream(config.getTlsTrustStore())) {
+			trustStore.load(in, password == null ? null : password.toCharArray());
+		}
+		TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		factory.init(trustStore);
+		return factory.getTrustManagers();
+	}
+
+	/**
+	 * Configured names supported by the JVM, in the configured order
+	 *
+	 * @return supported names, null when none is configured
+	 */
+	private static String[] supported(List<String> configured, String[] supported) {
+		if (configured == null || configured.isEmpty()) {
+			return null;
+		}
+		List<String> supportedNames = Arrays.asList(supported);
+		List<String> names = new ArrayList<String>();
+		for (String name : configured) {
+			if (supportedNames.contains(name)) {
+				names.add(name);
+			}
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	@Override
+	public SSLIOSession upgrade(HttpHost host, IOSession iosession) throws IOException {
+		iosession.setAttribute(HANDSHAKE_START, new long[] { System.nanoTime(), System.currentTimeMillis() });
+		return super.upgrade(host, iosession);
+	}
+
+	@Override
+	protected void verifySession(HttpHost host, IOSession iosession, SSLSession sslsession) throws SSLException {
+		Object start = iosession.removeAttribute(HANDSHAKE_START);
+		if (metrics != null && start instanceof long[]) {
+			long[] startTimes = (long[]) start;
+			// a resumed session was created by an earlier handshake
+			metrics.recordTlsHandshake(System.nanoTime() - startTimes[0], sslsession.getCreationTime() < startTimes[1]);
+		}
+		super.verifySession(host, iosession, sslsession);
+	}
+
+	private static class TrustAllX509TrustManager implements X509TrustManager {
+
+		@Override
+		public void checkClientTrusted(X509Certificate[] chain, String authType) {
+		}
+
+		@Override
+		public void checkServerTrusted(X509Certificate[] chain, String authType) {
+		}
+
+		@Override
+		public X509Certificate[] getAcceptedIssuers() {
+			return new X509Certificate[0];
+		}
+	}
+}
@@ -9,20 +9,29 @@
 package com.vmware.loginsightapi.core;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.vmware.loginsightapi.ParseException;
+import com.vmware.loginsightapi.util.JsonCodecs;
 
 /**
- * Class to represent the response of event group query
+ * Class to represent the response of event group query. <br>
  *
+ * The bins are held either as a list of bin objects or as a columnar
+ * {@link AggregateSeries}, as they were set or decoded, and converted to the
+ * other form on first access.
  */
 public class AggregateResponse {
 	
 	private boolean complete;
 	private int duration;
 	private List<AggregateResponseBin> bins;
+	private AggregateSeries series;
 	
 	/**
 	 * Indicates whether query is complete or not.
@@ -61,12 +70,17 @@ public class AggregateResponse {
 	}
 	
 	/**
-	 * Returns the list of aggregate bins from the response.
+	 * Returns the list of aggregate bins from the response. When the response
+	 * was decoded as a series, the bin objects are created on first access;
+	 * changes to the list are not reflected in the series.
 	 * 
 	 * @return list of aggregate bins
 	 * @see AggregateResponseBin
 	 */
-	public List<AggregateResponseBin> getBins() {
+	public synchronized List<AggregateResponseBin> getBins() {
+		if (bins == null && series != null) {
+			bins = new ArrayList<AggregateResponseBin>(series.asBins());
+		}
 		return bins;
 	}
 	
@@ -76,8 +90,35 @@ public class AggregateResponse {
 	 * @param bins List of aggregate response bins
 	 * @see AggregateResponseBin
 	 */
-	public void setBins(List<AggregateResponseBin> bins) {
+	public synchronized void setBins(List<AggregateResponseBin> bins) {
 		this.bins = bins;
+		this.series = null;
+	}
+	
+	/**
+	 * Returns the bins of the response as a columnar series, converted from
+	 * the bin objects on first access. Changes to the bin objects made after
+	 * this call are not reflected in the series.
+	 * 
+	 * @return AggregateSeries of the bins, null if the response has no bins
+	 */
+	@JsonIgnore
+	public synchronized AggregateSeries getSeries() {
+		if (series == null && bins != null) {
+			series = AggregateSeries.of(bins);
+		}
+		return series;
+	}
+	
+	/**
+	 * Setter for the bins of the response as a columnar series
+	 * 
+	 * @param series AggregateSeries of the bins
+	 */
+	@JsonIgnore
+	public synchronized void setSeries(AggregateSeries series) {
+		this.series = series;
+		this.bins = null;
 	}
 	
 	/**
@@ -87,14 +128,77 @@ public class AggregateResponse {
 	 * @return AggregateResponse
 	 */
 	public static AggregateResponse fromJsonString(String json) {
-		ObjectMapper mapper = new ObjectMapper();
 		try {
-			return mapper.readValue(json, AggregateResponse.class);
+			return JsonCodecs.get().read(json, AggregateResponse.class);
 		} catch (IOException e) {
 			throw new ParseException("Unable to parse the aggregation query response.", e);
 		}
 	}
 	
+	/**
+	 * Decodes an aggregate response from a JSON stream, reading the bins
+	 * straight into the columns of an {@link AggregateSeries} without
+	 * creating bin objects. The stream is not closed.
+	 * 
+	 * @param json stream of the utf-8 encoded JSON response
+	 * @return AggregateResponse
+	 */
+	public static AggregateResponse fromJsonStream(InputStream json) {
+		try (JsonParser parser = JsonCodecs.jackson().createParser(json)) {
+			parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new ParseException("Aggregation query response is not a json object.");
+			}
+			AggregateResponse response = new AggregateResponse();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("bins".equals(name) && value == JsonToken.START_ARRAY) {
+					response.setSeries(readSeries(parser));
+				} else if ("complete".equals(name)) {
+					response.setComplete(parser.getValueAsBoolean());
+				} else if ("duration".equals(name)) {
+					response.setDuration(parser.getValueAsInt());
+				} else {
+					parser.skipChildren();
+				}
+			}
+			return response;
+		} catch (IOException e) {
+			throw new ParseException("Unable to parse the aggregation query response.", e);
+		}
+	}
+	
+	private static AggregateSeries readSeries(JsonParser parser) throws IOException {
+		AggregateSeries.Builder builder = new AggregateSeries.Builder(64);
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+			Long minTimestamp = null;
+			Long maxTimestamp = null;
+			Long value = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+					// floats are truncated, like the Long fields of the bin objects
+					if ("minTimestamp".equals(name)) {
+						minTimestamp = parser.getLongValue();
+					} else if ("maxTimestamp".equals(name)) {
+						maxTimestamp = parser.getLongValue();
+					} else if ("value".equals(name)) {
+						value = parser.getLongValue();
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+			builder.add(minTimestamp, maxTimestamp, value);
+		}
+		if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+			throw new ParseException("Aggregation query response has an invalid bin.");
+		}
+		return builder.build();
+	}
+	
 	
 
 }
@@ -0,0 +1,431 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar view of the bins of an aggregate response. <br>
+ *
+ * The minimum timestamps, maximum timestamps and values of the bins are held
+ * in three arrays of primitive longs, 24 bytes per bin instead of a bin object
+ * with three boxed Longs. A missing (null) field is recorded in a bitmap of
+ * its column, only allocated when the column has a missing field. <br>
+ *
+ * {@link #slice(int, int)} and {@link #range(long, long)} return views sharing
+ * the arrays of this series, without copying. The timestamp searches assume
+ * the bins are in increasing order of minimum timestamp, which is the order
+ * LogInsight returns the bins of a query without group-by or order-by clause;
+ * see {@link #isSorted()}. <br>
+ *
+ * A series is immutable and can be shared between threads.
+ */
+public final class AggregateSeries {
+
+	private static final AggregateSeries EMPTY = new AggregateSeries(new long[0], new long[0], new long[0], null,
+			null, null, 0, 0);
+
+	private final long[] minTimestamps;
+	private final long[] maxTimestamps;
+	private final long[] values;
+	private final long[] minTimestampNulls;
+	private final long[] maxTimestampNulls;
+	private final long[] valueNulls;
+	private final int offset;
+	private final int size;
+
+	private AggregateSeries(long[] minTimestamps, long[] maxTimestamps, long[] values, long[] minTimestampNulls,
+			long[] maxTimestampNulls, long[] valueNulls, int offset, int size) {
+		this.minTimestamps = minTimestamps;
+		this.maxTimestamps = maxTimestamps;
+		this.values = values;
+		this.minTimestampNulls = minTimestampNulls;
+		this.maxTimestampNulls = maxTimestampNulls;
+		this.valueNulls = valueNulls;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	/**
+	 * Empty series
+	 *
+	 * @return series without bins
+	 */
+	public static AggregateSeries empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Converts a list of bins to a series
+	 *
+	 * @param bins
+	 *            aggregate bins, null elements are not allowed
+	 * @return AggregateSeries of the bins
+	 */
+	public static AggregateSeries of(List<AggregateResponseBin> bins) {
+		Builder builder = new Builder(bins.size());
+		for (AggregateResponseBin bin : bins) {
+			builder.add(bin.getMinTimestamp(), bin.getMaxTimestamp(), bin.getValue());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Number of bins
+	 *
+	 * @return count of bins
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Whether the series has no bins
+	 *
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Minimum timestamp of a bin
+	 *
+	 * @param index
+	 *            index of the bin
+	 * @return timestamp in millis, 0 if missing
+	 */
+	public long getMinTimestamp(int index) {
+		return minTimestamps[checkIndex(index)];
+	}
+
+	/**
+	 * Maximum timestamp of a bin
+	 *
+	 * @param index
+	 *            index of the bin
+	 * @return timestamp in millis, 0 if missing
+	 */
+	public long getMaxTimestamp(int index) {
+		return maxTimestamps[checkIndex(index)];
+	}
+
+	/**
+	 * Value of a bin
+	 *
+	 * @param index
+	 *            index of the bin
+	 * @return value, 0 if missing
+	 */
+	public long getValue(int index) {
+		return values[checkIndex(index)];
+	}
+
+	/**
+	 * Whether a bin has a minimum timestamp
+	 *
+	 * @param index
+	 *            index of the bin
+	 * @return false if the minimum timestamp is null
+	 */
+	public boolean hasMinTimestamp(int index) {
+		return !isSet(minTimestampNulls, checkIndex(index));
+	}
+
+	/**
+	 * Whether a bin has a maximum timestamp
+	 *
+	 * @param index
+	 *            index of the bin
+	 * @return false if the maximum timestamp is null
+	 */
+	public boolean hasMaxTimestamp(int index) {
+		return !isSet(maxTimestampNulls, checkIndex(index));
+	}
+
+	/**
+	 * Whether a bin has a value
+	 *
+	 * @param index
+	 *            index of the bin
+	 * @return false if the value is null
+	 */
+	public boolean hasValue(int index) {
+		return !isSet(valueNulls, checkIndex(index));
+	}
+
+	/**
+	 * Copy of the minimum timestamps
+	 *
+	 * @return array of the minimum timestamps, 0 for the missing ones
+	 */
+	public long[] minTimestamps() {
+		return Arrays.copyOfRange(minTimestamps, offset, offset + size);
+	}
+
+	/**
+	 * Copy of the maximum timestamps
+	 *
+	 * @return array of the maximum timestamps, 0 for the missing ones
+	 */
+	public long[] maxTimestamps() {
+		return Arrays.copyOfRange(maxTimestamps, offset, offset + size);
+	}
+
+	/**
+	 * Copy of the values
+	 *
+	 * @return array of the values, 0 for the missing ones
+	 */
+	public long[] values() {
+		return Arrays.copyOfRange(values, offset, offset + size);
+	}
+
+	/**
+	 * View of a range of the bins, sharing the arrays of this series
+	 *
+	 * @param from
+	 *            index of the first bin, inclusive
+	 * @param to
+	 *            index of the last bin, exclusive
+	 * @return AggregateSeries of the bins
+	 */
+	public AggregateSeries slice(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("Invalid slice [" + from + ", " + to + ") of " + size + " bins");
+		}
+		if (from == 0 && to == size) {
+			return this;
+		}
+		return new AggregateSeries(minTimestamps, maxTimestamps, values, minTimestampNulls, maxTimestampNulls,
+				valueNulls, offset + from, to - from);
+	}
+
+	/**
+	 * View of the bins starting in a time range, sharing the arrays of this
+	 * series. The bins must be sorted.
+	 *
+	 * @param from
+	 *            lowest minimum timestamp, inclusive
+	 * @param to
+	 *            highest minimum timestamp, exclusive
+	 * @return AggregateSeries of the bins
+	 */
+	public AggregateSeries range(long from, long to) {
+		int start = lowerBound(from);
+		return slice(start, Math.max(start, lowerBound(to)));
+	}
+
+	/**
+	 * Binary search of the first bin starting at or after a timestamp. The
+	 * bins must be sorted.
+	 *
+	 * @param timestamp
+	 *            timestamp in millis
+	 * @return index of the bin, {@code size()} if all the bins start before
+	 */
+	public int lowerBound(long timestamp) {
+		int low = offset;
+		int high = offset + size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (minTimestamps[middle] < timestamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low - offset;
+	}
+
+	/**
+	 * Binary search of the bin holding a timestamp, that is the last bin
+	 * starting at or before it. The bins must be sorted.
+	 *
+	 * @param timestamp
+	 *            timestamp in millis
+	 * @return index of the bin, -1 if all the bins start after the timestamp
+	 *         or if the bin ends before it
+	 */
+	public int indexOf(long timestamp) {
+		int index = lowerBound(timestamp == Long.MAX_VALUE ? timestamp : timestamp + 1) - 1;
+		if (index < 0 || (hasMaxTimestamp(index) && getMaxTimestamp(index) < timestamp)) {
+			return -1;
+		}
+		return index;
+	}
+
+	/**
+	 * Whether the bins are in increasing order of minimum timestamp, as
+	 * required by the timestamp searches
+	 *
+	 * @return true if sorted
+	 */
+	public boolean isSorted() {
+		for (int i = offset + 1; i < offset + size; i++) {
+			if (minTimestamps[i] < minTimestamps[i - 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Bin objects of the series, created by this call. The list has a fixed
+	 * size; changes to it are not reflected in the series.
+	 *
+	 * @return list of aggregate bins
+	 */
+	public List<AggregateResponseBin> asBins() {
+		AggregateResponseBin[] bins = new AggregateResponseBin[size];
+		for (int index = 0; index < size; index++) {
+			int i = offset + index;
+			AggregateResponseBin bin = new AggregateResponseBin();
+			bin.setMinTimestamp(isSet(minTimestampNulls, i) ? null : minTimestamps[i]);
+			bin.setMaxTimestamp(isSet(maxTimestampNulls, i) ? null : maxTimestamps[i]);
+			bin.setValue(isSet(valueNulls, i) ? null : values[i]);
+			bins[index] = bin;
+		}
+		return Arrays.asList(bins);
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Bin " + index + " of " + size);
+		}
+		return offset + index;
+	}
+
+	private static boolean isSet(long[] bitmap, int index) {
+		return bitmap != null && (index >>> 6) < bitmap.length && (bitmap[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Appends bins to the columns of a new series
+	 */
+	public static final class Builder {
+		private long[] minTimestamps;
+		private long[] maxTimestamps;
+		private long[] values;
+		private long[] minTimestampNulls;
+		private long[] maxTimestampNulls;
+		private long[] valueNulls;
+		private int size;
+
+		/**
+		 * Constructs an empty builder
+		 *
+		 * @param capacity
+		 *            expected number of bins
+		 */
+		public Builder(int capacity) {
+			int initial = Math.max(capacity, 16);
+			minTimestamps = new long[initial];
+			maxTimestamps = new long[initial];
+			values = new long[initial];
+		}
+
+		/**
+		 * Appends a bin
+		 *
+		 * @param minTimestamp
+		 *            minimum timestamp of the bin, may be null
+		 * @param maxTimestamp
+		 *            maximum timestamp of the bin, may be null
+		 * @param value
+		 *            value of the bin, may be null
+		 * @return this builder
+		 */
+		public Builder add(Long minTimestamp, Long maxTimestamp, Long value) {
+			if (size == minTimestamps.length) {
+				grow();
+			}
+			if (minTimestamp != null) {
+				minTimestamps[size] = minTimestamp;
+			} else {
+				minTimestampNulls = setNull(minTimestampNulls, size);
+			}
+			if (maxTimestamp != null) {
+				maxTimestamps[size] = maxTimestamp;
+			} else {
+				maxTimestampNulls = setNull(maxTimestampNulls, size);
+			}
+			if (value != null) {
+				values[size] = value;
+			} else {
+				valueNulls = setNull(valueNulls, size);
+			}
+			size++;
+			return this;
+		}
+
+		/**
+		 * Appends the bins of a series
+		 *
+		 * @param series
+		 *            bins to append
+		 * @return this builder
+		 */
+		public Builder addAll(AggregateSeries series) {
+			while (minTimestamps.length - size < series.size) {
+				grow();
+			}
+			System.arraycopy(series.minTimestamps, series.offset, minTimestamps, size, series.size);
+			System.arraycopy(series.maxTimestamps, series.offset, maxTimestamps, size, series.size);
+			System.arraycopy(series.values, series.offset, values, size, series.size);
+			for (int i = 0; i < series.size; i++) {
+				int index = series.offset + i;
+				if (isSet(series.minTimestampNulls, index)) {
+					minTimestampNulls = setNull(minTimestampNulls, size + i);
+				}
+				if (isSet(series.maxTimestampNulls, index)) {
+					maxTimestampNulls = setNull(maxTimestampNulls, size + i);
+				}
+				if (isSet(series.valueNulls, index)) {
+					valueNulls = setNull(valueNulls, size + i);
+				}
+			}
+			size += series.size;
+			return this;
+		}
+
+		private void grow() {
+			int capacity = minTimestamps.length + (minTimestamps.length >> 1);
+			minTimestamps = Arrays.copyOf(minTimestamps, capacity);
+			maxTimestamps = Arrays.copyOf(maxTimestamps, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		private long[] setNull(long[] bitmap, int index) {
+			long[] nulls = bitmap;
+			int words = (minTimestamps.length + 63) >>> 6;
+			if (nulls == null) {
+				nulls = new long[words];
+			} else if (nulls.length < words) {
+				nulls = Arrays.copyOf(nulls, words);
+			}
+			nulls[index >>> 6] |= 1L << index;
+			return nulls;
+		}
+
+		/**
+		 * Builds the series. The builder must not be used afterwards.
+		 *
+		 * @return AggregateSeries of the bins added
+		 */
+		public AggregateSeries build() {
+			if (size == 0) {
+				return EMPTY;
+			}
+			return new AggregateSeries(minTimestamps, maxTimestamps, values, minTimestampNulls, maxTimestampNulls,
+					valueNulls, 0, size);
+		}
+	}
+}
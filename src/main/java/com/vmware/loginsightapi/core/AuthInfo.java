@@ -10,8 +10,8 @@ package com.vmware.loginsightapi.core;
 
 import java.io.IOException;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vmware.loginsightapi.ParseException;
+import com.vmware.loginsightapi.util.JsonCodecs;
 
 /**
  * Class to hold the authInfo retrieved from LogInsight on successful
@@ -95,9 +95,8 @@ public class AuthInfo {
 	 * @return AuthInfo object
 	 */
 	public static AuthInfo fromJsonString(String json) {
-		ObjectMapper mapper = new ObjectMapper();
 		try {
-			return mapper.readValue(json, AuthInfo.class);
+			return JsonCodecs.get().read(json, AuthInfo.class);
 		} catch (IOException e) {
 			throw new ParseException("Unable parse the auth response.", e);
 		}
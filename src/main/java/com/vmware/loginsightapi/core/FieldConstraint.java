@@ -132,6 +132,33 @@ public class FieldConstraint {
 		this.value = null;
 	}
 
+	/**
+	 * Returns the name of the field
+	 * 
+	 * @return name of the field
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the operator of the constraint
+	 * 
+	 * @return operator
+	 */
+	public Operator getOperator() {
+		return operator;
+	}
+
+	/**
+	 * Returns the value of the constraint, null for EXISTS
+	 * 
+	 * @return value of the field
+	 */
+	public Object getValue() {
+		return value;
+	}
+
 	/**
 	 * Returns a field constraint with Equals (==) operator
 	 * 
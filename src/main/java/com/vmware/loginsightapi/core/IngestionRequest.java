@@ -8,12 +8,12 @@
  */
 package com.vmware.loginsightapi.core;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vmware.loginsightapi.util.JsonCodecs;
 
 /**
  * Class representing the LogInsight Ingestion request object
@@ -91,12 +91,9 @@ public class IngestionRequest {
 	 * @return serialized json string of IngestinoRequest
 	 */
 	public String toJson() {
-		ObjectMapper mapper = new ObjectMapper();
-		String body;
 		try {
-			body = mapper.writeValueAsString(this);
-			return body;
-		} catch (JsonProcessingException e) {
+			return JsonCodecs.get().write(this);
+		} catch (IOException e) {
 			throw new RuntimeException("Unable serialize messages to string");
 		}
 	}
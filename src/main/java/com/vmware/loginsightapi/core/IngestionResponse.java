@@ -11,10 +11,8 @@ package com.vmware.loginsightapi.core;
 import java.io.IOException;
 import java.util.Optional;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vmware.loginsightapi.ParseException;
+import com.vmware.loginsightapi.util.JsonCodecs;
 
 /**
  * Class representing the response structure of an ingestion request.
@@ -86,9 +84,8 @@ public class IngestionResponse {
 	 * @return IngestionResponse object
 	 */
 	public static IngestionResponse fromJsonString(String json) {
-		ObjectMapper mapper = new ObjectMapper();
 		try {
-			return mapper.readValue(json, IngestionResponse.class);
+			return JsonCodecs.get().read(json, IngestionResponse.class);
 		} catch (IOException e) {
 			throw new ParseException("Unable parse the ingestion response.", e);
 		}
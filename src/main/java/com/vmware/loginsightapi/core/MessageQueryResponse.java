@@ -9,10 +9,11 @@
 package com.vmware.loginsightapi.core;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vmware.loginsightapi.ParseException;
+import com.vmware.loginsightapi.util.JsonCodecs;
 
 /**
  * Class representing the response of a message query.
@@ -98,9 +99,24 @@ public class MessageQueryResponse {
 	 * @return message query response object
 	 */
 	public static MessageQueryResponse fromJsonString(String json) {
-		ObjectMapper mapper = new ObjectMapper();
 		try {
-			return mapper.readValue(json, MessageQueryResponse.class);
+			return JsonCodecs.get().read(json, MessageQueryResponse.class);
+		} catch (IOException e) {
+			throw new ParseException("Message query response parsing failed.", e);
+		}
+	}
+
+	/**
+	 * De-serialize and construct the Message Query Response object from a
+	 * json stream, without reading the stream into a string first
+	 * 
+	 * @param json
+	 *            stream of the json representation of the MessageQueryResponse
+	 * @return message query response object
+	 */
+	public static MessageQueryResponse fromJsonStream(InputStream json) {
+		try {
+			return JsonCodecs.get().read(json, MessageQueryResponse.class);
 		} catch (IOException e) {
 			throw new ParseException("Message query response parsing failed.", e);
 		}
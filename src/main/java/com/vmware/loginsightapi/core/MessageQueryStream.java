@@ -0,0 +1,209 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.vmware.loginsightapi.ParseException;
+import com.vmware.loginsightapi.util.JacksonJsonCodec;
+import com.vmware.loginsightapi.util.JsonCodecs;
+
+/**
+ * Message query response decoded while it is iterated. <br>
+ *
+ * The events are parsed one at a time from the response body, so only the
+ * current message is held on the heap instead of the whole list. The stream
+ * can be iterated once. It is closed when the last event is read, or else
+ * must be closed by the caller. <br>
+ *
+ * {@code complete} and {@code duration} are available at once when LogInsight
+ * sends them before the events, which it does; otherwise they are set when the
+ * iteration is finished.
+ *
+ * <pre>
+ * try (MessageQueryStream stream = client.messageQueryStream(url)) {
+ * 	while (stream.hasNext()) {
+ * 		Message message = stream.next();
+ * 	}
+ * }
+ * </pre>
+ */
+public class MessageQueryStream implements Iterator<Message>, Closeable {
+
+	private final JsonParser parser;
+	private final ObjectReader reader;
+
+	private boolean complete;
+	private int duration;
+	private boolean inEvents;
+	private boolean closed;
+	private Message next;
+	private int count;
+
+	/**
+	 * Starts decoding a message query response. The top-level fields before
+	 * the events are read at once.
+	 *
+	 * @param json
+	 *            stream of the json response, closed with this object
+	 * @throws ParseException
+	 *             if the response is not a json object
+	 */
+	public MessageQueryStream(InputStream json) {
+		JacksonJsonCodec codec = JsonCodecs.jackson();
+		this.reader = codec.reader(Message.class);
+		try {
+			this.parser = codec.createParser(json);
+		} catch (IOException e) {
+			throw new ParseException("Message query response parsing failed.", e);
+		}
+		try {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new ParseException("Message query response is not a json object.");
+			}
+			readFields();
+		} catch (IOException | RuntimeException e) {
+			closeQuietly();
+			throw e instanceof RuntimeException ? (RuntimeException) e
+					: new ParseException("Message query response parsing failed.", e);
+		}
+	}
+
+	/**
+	 * Reads the top-level fields up to the start of the events array, or to
+	 * the end of the response
+	 */
+	private void readFields() throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("events".equals(name) && value == JsonToken.START_ARRAY) {
+				inEvents = true;
+				return;
+			} else if ("complete".equals(name)) {
+				complete = parser.getValueAsBoolean();
+			} else if ("duration".equals(name)) {
+				duration = parser.getValueAsInt();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		close();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+		if (!inEvents) {
+			return false;
+		}
+		try {
+			if (parser.nextToken() == JsonToken.END_ARRAY) {
+				inEvents = false;
+				readFields();
+				return false;
+			}
+			next = reader.readValue(parser);
+			count++;
+			return true;
+		} catch (IOException e) {
+			closeQuietly();
+			throw new ParseException("Message query response parsing failed.", e);
+		}
+	}
+
+	@Override
+	public Message next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Message message = next;
+		next = null;
+		return message;
+	}
+
+	/**
+	 * Sequential stream of the remaining messages. Closing the stream closes
+	 * this object.
+	 *
+	 * @return stream of messages
+	 */
+	public Stream<Message> stream() {
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(() -> {
+					try {
+						close();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+	}
+
+	/**
+	 * Indicates whether query is complete or not.
+	 *
+	 * @return true if the query is complete
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Returns the duration of the query
+	 *
+	 * @return duration of the query
+	 */
+	public int getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Number of messages read so far
+	 *
+	 * @return count of messages
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Stops the decoding and releases the response body
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			inEvents = false;
+			parser.close();
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			// already failing
+		}
+	}
+}
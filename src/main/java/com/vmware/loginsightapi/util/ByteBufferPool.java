@@ -0,0 +1,94 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread safe pool of fixed size heap byte buffers. At most
+ * {@code maxPooled} buffers are retained, additional buffers are left to the
+ * garbage collector when released.
+ */
+public class ByteBufferPool {
+
+	private final int bufferSize;
+	private final int maxPooled;
+	private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * Constructs the pool
+	 *
+	 * @param bufferSize
+	 *            capacity of the buffers in bytes
+	 * @param maxPooled
+	 *            maximum number of idle buffers retained by the pool
+	 */
+	public ByteBufferPool(int bufferSize, int maxPooled) {
+		if (bufferSize <= 0 || maxPooled < 0) {
+			throw new IllegalArgumentException("Invalid buffer pool size");
+		}
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * Capacity of the buffers handed out by this pool
+	 *
+	 * @return buffer size in bytes
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Number of idle buffers in the pool
+	 *
+	 * @return count of pooled buffers
+	 */
+	public int getPooledBuffers() {
+		return pooled.get();
+	}
+
+	/**
+	 * Takes a cleared buffer from the pool or allocates a new one
+	 *
+	 * @return ByteBuffer with {@code getBufferSize()} capacity
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = buffers.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocate(bufferSize);
+		}
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool. Buffers which were not allocated by this
+	 * pool are ignored.
+	 *
+	 * @param buffer
+	 *            ByteBuffer to return
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || buffer.capacity() != bufferSize) {
+			return;
+		}
+		if (pooled.incrementAndGet() > maxPooled) {
+			pooled.decrementAndGet();
+			return;
+		}
+		buffers.offer(buffer);
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThreadFactory creating named daemon threads, so that background workers of
+ * the API never keep the JVM alive.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	private final String prefix;
+	private final AtomicInteger counter = new AtomicInteger();
+
+	/**
+	 * Constructs the factory with a thread name prefix
+	 *
+	 * @param prefix
+	 *            prefix of the thread names (a sequence number is appended)
+	 */
+	public DaemonThreadFactory(String prefix) {
+		this.prefix = prefix;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
@@ -0,0 +1,679 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable, append-only spool of byte records on local disk. <br>
+ *
+ * Records are appended to memory-mapped segment files. Each record is stored
+ * as {@code [length][crc32][payload]}, so torn or corrupted records are
+ * detected when the spool is reopened. A checkpoint file holds the position of
+ * the oldest record which is not committed yet; on startup all the records
+ * after the checkpoint are replayed. <br>
+ *
+ * Records can be polled and processed concurrently. The checkpoint only
+ * advances over records committed in order, and fully consumed segments are
+ * deleted. Records handed back with {@code retry} are polled again before the
+ * newer ones. <br>
+ *
+ * Disk usage is bounded by {@code maxBytes}. When a new segment does not fit,
+ * the oldest segment is dropped ({@code DROP_OLDEST}) or the append is refused
+ * ({@code REJECT}).
+ */
+public class DiskSpool implements Closeable {
+
+	/**
+	 * When the appended records are forced to the storage device
+	 */
+	public enum FsyncPolicy {
+		/**
+		 * after every append and checkpoint update
+		 */
+		ALWAYS,
+		/**
+		 * at most once per fsync interval
+		 */
+		INTERVAL,
+		/**
+		 * left to the operating system
+		 */
+		NEVER
+	}
+
+	/**
+	 * What happens when the spool reaches its maximum size
+	 */
+	public enum EvictionPolicy {
+		/**
+		 * the oldest segment is deleted with its records
+		 */
+		DROP_OLDEST,
+		/**
+		 * new records are refused
+		 */
+		REJECT
+	}
+
+	/**
+	 * Record read from the spool
+	 */
+	public static final class Record implements Comparable<Record> {
+		private final long segmentId;
+		private final int position;
+		private final byte[] payload;
+		private boolean committed;
+
+		private Record(long segmentId, int position, byte[] payload) {
+			this.segmentId = segmentId;
+			this.position = position;
+			this.payload = payload;
+		}
+
+		/**
+		 * Content of the record
+		 *
+		 * @return payload bytes
+		 */
+		public byte[] getPayload() {
+			return payload;
+		}
+
+		@Override
+		public int compareTo(Record other) {
+			int result = Long.compare(segmentId, other.segmentId);
+			return result != 0 ? result : Integer.compare(position, other.position);
+		}
+	}
+
+	private static final class Segment {
+		private final long id;
+		private final Path path;
+		private final FileChannel channel;
+		private final MappedByteBuffer map;
+		private final int capacity;
+		private int end;
+		private int records;
+
+		private Segment(long id, Path path, FileChannel channel, MappedByteBuffer map) {
+			this.id = id;
+			this.path = path;
+			this.channel = channel;
+			this.map = map;
+			this.capacity = map.capacity();
+		}
+	}
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".spool";
+	private static final String CHECKPOINT_FILE = "checkpoint";
+	private static final int RECORD_HEADER = 8;
+	private static final int CHECKPOINT_SIZE = 16;
+
+	private final static Logger logger = LoggerFactory.getLogger(DiskSpool.class);
+
+	private final Path directory;
+	private final long maxBytes;
+	private final int segmentBytes;
+	private final FsyncPolicy fsyncPolicy;
+	private final long fsyncIntervalNanos;
+	private final EvictionPolicy evictionPolicy;
+
+	private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+	private final FileChannel checkpointChannel;
+	private final MappedByteBuffer checkpoint;
+	private long checkpointSegment;
+	private int checkpointPosition;
+
+	private Segment readSegment;
+	private int readPosition;
+	private final ArrayDeque<Record> outstanding = new ArrayDeque<Record>();
+	private final PriorityQueue<Record> retries = new PriorityQueue<Record>();
+
+	private long totalBytes;
+	private long pendingRecords;
+	private long droppedRecords;
+	private boolean dirty;
+	private long lastForce = System.nanoTime();
+	private boolean closed;
+
+	/**
+	 * Opens the spool in the directory, replaying the records left by a
+	 * previous run
+	 *
+	 * @param directory
+	 *            directory of the segment files, created when missing
+	 * @param maxBytes
+	 *            maximum disk usage of the segments
+	 * @param segmentBytes
+	 *            size of a segment file
+	 * @param fsyncPolicy
+	 *            when the records are forced to disk
+	 * @param fsyncIntervalMs
+	 *            fsync interval for {@code FsyncPolicy.INTERVAL}
+	 * @param evictionPolicy
+	 *            behavior when the spool is full
+	 * @throws IOException
+	 *             if the spool files cannot be opened
+	 */
+	public DiskSpool(Path directory, long maxBytes, int segmentBytes, FsyncPolicy fsyncPolicy, long fsyncIntervalMs,
+			EvictionPolicy evictionPolicy) throws IOException {
+		if (segmentBytes <= RECORD_HEADER || maxBytes < segmentBytes || fsyncIntervalMs < 0) {
+			throw new IllegalArgumentException("Invalid spool limits");
+		}
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.segmentBytes = segmentBytes;
+		this.fsyncPolicy = fsyncPolicy;
+		this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+		this.evictionPolicy = evictionPolicy;
+
+		Files.createDirectories(directory);
+		checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_SIZE);
+		recover();
+	}
+
+	/**
+	 * Appends a record to the spool
+	 *
+	 * @param payload
+	 *            content of the record, must not be empty
+	 * @return false if the spool is full and the record is refused
+	 * @throws IOException
+	 *             if a new segment cannot be created
+	 */
+	public synchronized boolean append(byte[] payload) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("DiskSpool is closed");
+		}
+		if (payload.length == 0) {
+			throw new IllegalArgumentException("Empty spool record");
+		}
+		int needed = RECORD_HEADER + payload.length;
+		Segment segment = segments.lastEntry().getValue();
+		if (segment.capacity - segment.end < needed) {
+			segment = roll(needed);
+			if (segment == null) {
+				return false;
+			}
+		}
+		int position = segment.end;
+		MappedByteBuffer map = segment.map;
+		map.putInt(position + 4, checksum(ByteBuffer.wrap(payload)));
+		ByteBuffer target = map.duplicate();
+		target.position(position + RECORD_HEADER);
+		target.put(payload);
+		// the length goes last, a record without length marks the end of data
+		map.putInt(position, payload.length);
+		segment.end += needed;
+		segment.records++;
+		pendingRecords++;
+		dirty = true;
+		if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+			force();
+		} else {
+			forceIfDue();
+		}
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Takes the next record without waiting. The record stays in the spool
+	 * until it is committed.
+	 *
+	 * @return the next record or null if there is none
+	 */
+	public synchronized Record poll() {
+		if (!retries.isEmpty()) {
+			return retries.poll();
+		}
+		while (readSegment != null) {
+			if (readPosition < readSegment.end) {
+				int end = recordEnd(readSegment, readPosition);
+				if (end < 0) {
+					logger.warn("Skipping corrupted records in spool segment " + readSegment.path);
+					readPosition = readSegment.end;
+					continue;
+				}
+				byte[] payload = new byte[end - readPosition - RECORD_HEADER];
+				ByteBuffer source = readSegment.map.duplicate();
+				source.position(readPosition + RECORD_HEADER);
+				source.get(payload);
+				Record record = new Record(readSegment.id, readPosition, payload);
+				readPosition = end;
+				outstanding.add(record);
+				return record;
+			}
+			Map.Entry<Long, Segment> next = segments.higherEntry(readSegment.id);
+			if (next == null) {
+				return null;
+			}
+			readSegment = next.getValue();
+			readPosition = 0;
+			updateCheckpoint();
+		}
+		return null;
+	}
+
+	/**
+	 * Takes the next record, waiting for a record to be appended if the spool
+	 * is empty
+	 *
+	 * @param timeout
+	 *            maximum wait time
+	 * @param unit
+	 *            unit of the timeout
+	 * @return the next record or null if none was appended in time
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted
+	 */
+	public synchronized Record poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		Record record;
+		while ((record = poll()) == null) {
+			forceIfDue();
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0 || closed) {
+				return null;
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		return record;
+	}
+
+	/**
+	 * Marks a record as processed. The checkpoint advances once all the older
+	 * records are committed.
+	 *
+	 * @param record
+	 *            record returned by poll
+	 */
+	public synchronized void commit(Record record) {
+		if (record.committed || !outstanding.contains(record)) {
+			return;
+		}
+		record.committed = true;
+		retries.remove(record);
+		pendingRecords--;
+		while (!outstanding.isEmpty() && outstanding.peekFirst().committed) {
+			outstanding.pollFirst();
+		}
+		updateCheckpoint();
+	}
+
+	/**
+	 * Hands a record back to the spool, it is returned again by the next poll
+	 *
+	 * @param record
+	 *            record returned by poll
+	 */
+	public synchronized void retry(Record record) {
+		if (!record.committed && outstanding.contains(record) && !retries.contains(record)) {
+			retries.add(record);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Number of records which are not committed yet
+	 *
+	 * @return count of pending records
+	 */
+	public synchronized long getPendingRecords() {
+		return pendingRecords;
+	}
+
+	/**
+	 * Number of records dropped by the {@code DROP_OLDEST} eviction policy
+	 *
+	 * @return count of dropped records
+	 */
+	public synchronized long getDroppedRecords() {
+		return droppedRecords;
+	}
+
+	/**
+	 * Disk space used by the segment files
+	 *
+	 * @return size in bytes
+	 */
+	public synchronized long getSizeBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Directory of the spool files
+	 *
+	 * @return spool directory
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Forces the pending changes to disk unless the fsync policy is
+	 * {@code NEVER}
+	 */
+	public synchronized void sync() {
+		if (fsyncPolicy != FsyncPolicy.NEVER && !closed) {
+			force();
+		}
+	}
+
+	/**
+	 * Syncs and closes the segment files. Records which are not committed are
+	 * replayed when the spool is opened again.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		sync();
+		closed = true;
+		for (Segment segment : segments.values()) {
+			segment.channel.close();
+		}
+		checkpointChannel.close();
+		notifyAll();
+	}
+
+	/**
+	 * Loads the segments and the checkpoint left by a previous run
+	 *
+	 * @throws IOException
+	 *             if a segment cannot be opened
+	 */
+	private void recover() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+				SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				long id;
+				try {
+					id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+				} catch (NumberFormatException e) {
+					logger.warn("Ignoring unknown spool file " + file);
+					continue;
+				}
+				if (Files.size(file) <= RECORD_HEADER) {
+					Files.delete(file);
+					continue;
+				}
+				segments.put(id, openSegment(id, file, 0));
+			}
+		}
+		for (Segment segment : segments.values()) {
+			scan(segment);
+			totalBytes += segment.capacity;
+		}
+
+		ByteBuffer checkpointData = checkpoint.duplicate();
+		checkpointData.limit(12);
+		boolean validCheckpoint = checkpoint.getInt(12) == checksum(checkpointData);
+		long firstSegment = validCheckpoint ? checkpoint.getLong(0) : 0;
+		int firstPosition = validCheckpoint ? checkpoint.getInt(8) : 0;
+		while (!segments.isEmpty() && segments.firstKey() < firstSegment) {
+			delete(segments.pollFirstEntry().getValue());
+		}
+		if (segments.isEmpty()) {
+			Segment segment = createSegment(firstSegment, segmentBytes);
+			segments.put(segment.id, segment);
+			totalBytes += segment.capacity;
+		}
+		readSegment = segments.firstEntry().getValue();
+		readPosition = readSegment.id == firstSegment ? Math.min(firstPosition, readSegment.end) : 0;
+		if (recordEnd(readSegment, readPosition) < 0 && readPosition < readSegment.end) {
+			logger.warn("Invalid spool checkpoint, replaying segment " + readSegment.path);
+			readPosition = 0;
+		}
+		checkpointSegment = -1;
+		updateCheckpoint();
+
+		for (Segment segment : segments.values()) {
+			pendingRecords += segment == readSegment ? countRecords(segment, readPosition) : segment.records;
+		}
+		if (pendingRecords > 0) {
+			logger.info("Replaying " + pendingRecords + " records from spool " + directory);
+		}
+	}
+
+	/**
+	 * Finds the end of the valid records of a segment. Invalid data after
+	 * the last valid record is cleared, so that it cannot be mistaken for
+	 * records appended later.
+	 *
+	 * @param segment
+	 *            Segment object
+	 */
+	private void scan(Segment segment) {
+		int position = 0;
+		int records = 0;
+		int end;
+		while ((end = recordEnd(segment, position)) > 0) {
+			position = end;
+			records++;
+		}
+		segment.end = position;
+		segment.records = records;
+		if (position + 4 <= segment.capacity && segment.map.getInt(position) != 0) {
+			logger.warn("Truncating spool segment " + segment.path + " after " + records + " records");
+			for (int i = position; i < segment.capacity; i++) {
+				segment.map.put(i, (byte) 0);
+			}
+		}
+	}
+
+	/**
+	 * Validates the record at the position
+	 *
+	 * @param segment
+	 *            Segment object
+	 * @param position
+	 *            offset of the record
+	 * @return end of the record or -1 if there is no valid record
+	 */
+	private static int recordEnd(Segment segment, int position) {
+		if (position + RECORD_HEADER > segment.capacity) {
+			return -1;
+		}
+		int length = segment.map.getInt(position);
+		if (length <= 0 || length > segment.capacity - position - RECORD_HEADER) {
+			return -1;
+		}
+		ByteBuffer payload = segment.map.duplicate();
+		payload.position(position + RECORD_HEADER);
+		payload.limit(position + RECORD_HEADER + length);
+		if (checksum(payload) != segment.map.getInt(position + 4)) {
+			return -1;
+		}
+		return position + RECORD_HEADER + length;
+	}
+
+	private static int countRecords(Segment segment, int position) {
+		int records = 0;
+		int end;
+		while (position < segment.end && (end = recordEnd(segment, position)) > 0) {
+			position = end;
+			records++;
+		}
+		return records;
+	}
+
+	private static int checksum(ByteBuffer data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Seals the current segment and starts a new one, evicting old segments
+	 * when the spool is full
+	 *
+	 * @param needed
+	 *            size of the record to append
+	 * @return the new segment or null if the record is refused
+	 * @throws IOException
+	 *             if the segment cannot be created
+	 */
+	private Segment roll(int needed) throws IOException {
+		int capacity = Math.max(segmentBytes, needed);
+		if (capacity > maxBytes) {
+			return null;
+		}
+		long id = segments.lastKey() + 1;
+		while (totalBytes + capacity > maxBytes) {
+			if (evictionPolicy == EvictionPolicy.REJECT || segments.isEmpty()) {
+				return null;
+			}
+			evict(segments.firstEntry().getValue());
+		}
+		if (!segments.isEmpty() && fsyncPolicy != FsyncPolicy.NEVER) {
+			segments.lastEntry().getValue().map.force();
+		}
+		Segment segment = createSegment(id, capacity);
+		segments.put(id, segment);
+		totalBytes += capacity;
+		if (readSegment == null) {
+			readSegment = segment;
+			readPosition = 0;
+			updateCheckpoint();
+		}
+		return segment;
+	}
+
+	/**
+	 * Deletes a segment with its pending records
+	 *
+	 * @param segment
+	 *            Segment object
+	 * @throws IOException
+	 *             if the segment file cannot be deleted
+	 */
+	private void evict(Segment segment) throws IOException {
+		int from = segment.id == checkpointSegment ? checkpointPosition : 0;
+		long dropped = segment.id < checkpointSegment ? 0 : countRecords(segment, from);
+		for (Record record : outstanding) {
+			if (record.segmentId == segment.id && record.committed) {
+				dropped--;
+			}
+		}
+		outstanding.removeIf(record -> record.segmentId == segment.id);
+		retries.removeIf(record -> record.segmentId == segment.id);
+		pendingRecords -= dropped;
+		droppedRecords += dropped;
+		segments.remove(segment.id);
+		if (readSegment == segment) {
+			Map.Entry<Long, Segment> next = segments.higherEntry(segment.id);
+			readSegment = next == null ? null : next.getValue();
+			readPosition = 0;
+		}
+		delete(segment);
+		logger.warn("Ingestion spool is full, dropped " + dropped + " records of segment " + segment.path);
+		while (!outstanding.isEmpty() && outstanding.peekFirst().committed) {
+			outstanding.pollFirst();
+		}
+		if (readSegment != null) {
+			updateCheckpoint();
+		}
+	}
+
+	/**
+	 * Moves the checkpoint to the oldest record which is not committed and
+	 * deletes the segments before it
+	 */
+	private void updateCheckpoint() {
+		long segmentId;
+		int position;
+		if (!outstanding.isEmpty()) {
+			segmentId = outstanding.peekFirst().segmentId;
+			position = outstanding.peekFirst().position;
+		} else {
+			segmentId = readSegment.id;
+			position = readPosition;
+		}
+		if (segmentId == checkpointSegment && position == checkpointPosition) {
+			return;
+		}
+		checkpointSegment = segmentId;
+		checkpointPosition = position;
+		checkpoint.putLong(0, segmentId);
+		checkpoint.putInt(8, position);
+		ByteBuffer checkpointData = checkpoint.duplicate();
+		checkpointData.position(0);
+		checkpointData.limit(12);
+		checkpoint.putInt(12, checksum(checkpointData));
+		dirty = true;
+		if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+			force();
+		}
+		while (segments.firstKey() < segmentId) {
+			Segment segment = segments.pollFirstEntry().getValue();
+			try {
+				delete(segment);
+			} catch (IOException e) {
+				logger.warn("Unable to delete spool segment " + segment.path, e);
+			}
+		}
+	}
+
+	private void forceIfDue() {
+		if (fsyncPolicy == FsyncPolicy.INTERVAL && dirty && !closed
+				&& System.nanoTime() - lastForce >= fsyncIntervalNanos) {
+			force();
+		}
+	}
+
+	private void force() {
+		segments.lastEntry().getValue().map.force();
+		checkpoint.force();
+		dirty = false;
+		lastForce = System.nanoTime();
+	}
+
+	private Segment createSegment(long id, int capacity) throws IOException {
+		Path path = directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+		return openSegment(id, path, capacity);
+	}
+
+	private static Segment openSegment(long id, Path path, int capacity) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long size = capacity > 0 ? capacity : channel.size();
+		MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		return new Segment(id, path, channel, map);
+	}
+
+	private void delete(Segment segment) throws IOException {
+		totalBytes -= segment.capacity;
+		segment.channel.close();
+		Files.deleteIfExists(segment.path);
+	}
+}
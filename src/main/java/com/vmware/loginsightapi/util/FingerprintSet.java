@@ -0,0 +1,178 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.util.Arrays;
+
+/**
+ * Bounded set of 64-bit fingerprints of recent events, each added with the
+ * timestamp of its event. <br>
+ *
+ * The fingerprints are kept in an open addressing table of primitive longs,
+ * 32 to 48 bytes per entry, instead of a set of boxed values or strings. The
+ * entries are also queued in the order they are added, so that the oldest
+ * entries are evicted when the set is full and the entries of events older
+ * than a given timestamp can be expired. <br>
+ *
+ * Not thread-safe.
+ */
+public class FingerprintSet {
+
+	private static final long EMPTY = 0;
+
+	/**
+	 * Maximum capacity, keeping the table below 2^30 slots
+	 */
+	public static final int MAX_CAPACITY = 1 << 28;
+
+	private final int capacity;
+	private final long[] table;
+	private final int mask;
+	private final long[] queuedFingerprints;
+	private final long[] queuedTimestamps;
+	private int head;
+	private int size;
+
+	/**
+	 * Constructs an empty set
+	 *
+	 * @param capacity
+	 *            maximum number of fingerprints, the oldest are evicted above
+	 */
+	public FingerprintSet(int capacity) {
+		if (capacity <= 0 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+		this.capacity = capacity;
+		// at most half full, keeps the probe sequences short
+		this.table = new long[Integer.highestOneBit(capacity * 2 - 1) << 1];
+		this.mask = table.length - 1;
+		this.queuedFingerprints = new long[capacity];
+		this.queuedTimestamps = new long[capacity];
+	}
+
+	/**
+	 * Adds a fingerprint, evicting the oldest one if the set is full
+	 *
+	 * @param fingerprint
+	 *            fingerprint of an event
+	 * @param timestamp
+	 *            timestamp of the event
+	 * @return false if the fingerprint was already in the set
+	 */
+	public boolean add(long fingerprint, long timestamp) {
+		long value = fingerprint == EMPTY ? 1 : fingerprint;
+		int slot = slot(value);
+		while (table[slot] != EMPTY) {
+			if (table[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (size == capacity) {
+			removeOldest();
+			// the eviction may have shifted the entries, look for a slot again
+			slot = slot(value);
+			while (table[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+		}
+		table[slot] = value;
+		int tail = (head + size) % capacity;
+		queuedFingerprints[tail] = value;
+		queuedTimestamps[tail] = timestamp;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Whether the set holds a fingerprint
+	 *
+	 * @param fingerprint
+	 *            fingerprint of an event
+	 * @return true if the fingerprint was added and is not evicted yet
+	 */
+	public boolean contains(long fingerprint) {
+		long value = fingerprint == EMPTY ? 1 : fingerprint;
+		for (int slot = slot(value); table[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (table[slot] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the fingerprints of the events older than a timestamp, in the
+	 * order they were added: a fingerprint added after a more recent one is
+	 * only removed once the more recent one is.
+	 *
+	 * @param timestamp
+	 *            oldest timestamp kept
+	 * @return number of fingerprints removed
+	 */
+	public int expire(long timestamp) {
+		int removed = 0;
+		while (size > 0 && queuedTimestamps[head] < timestamp) {
+			removeOldest();
+			removed++;
+		}
+		return removed;
+	}
+
+	/**
+	 * Number of fingerprints in the set
+	 *
+	 * @return count of fingerprints
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all the fingerprints
+	 */
+	public void clear() {
+		Arrays.fill(table, EMPTY);
+		head = 0;
+		size = 0;
+	}
+
+	private int slot(long value) {
+		int hash = (int) (value ^ (value >>> 32)) * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private void removeOldest() {
+		remove(queuedFingerprints[head]);
+		head = (head + 1) % capacity;
+		size--;
+	}
+
+	/**
+	 * Removes a value from the table, shifting back the entries of its probe
+	 * sequence so that no tombstone is needed
+	 */
+	private void remove(long value) {
+		int hole = slot(value);
+		while (table[hole] != value) {
+			hole = (hole + 1) & mask;
+		}
+		for (int next = (hole + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+			int home = slot(table[next]);
+			// keep the entry if its home slot is cyclically in (hole, next]
+			boolean reachable = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+			if (!reachable) {
+				table[hole] = table[next];
+				hole = next;
+			}
+		}
+		table[hole] = EMPTY;
+	}
+}
@@ -0,0 +1,410 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.vmware.loginsightapi.core.IngestionRequest;
+import com.vmware.loginsightapi.core.Message;
+
+/**
+ * Http entity streaming the messages of an IngestionRequest as json. <br>
+ *
+ * With the async http client the messages are serialized one chunk at a time
+ * into a pooled buffer while the socket drains, so the request body is never
+ * held on the heap as a whole. The entity is sent with chunked transfer
+ * encoding and is repeatable. <br>
+ *
+ * With gzip enabled the json is compressed on the fly and the entity carries
+ * {@code Content-Encoding: gzip}.
+ */
+public class IngestionRequestEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+	private static final ByteBufferPool DEFAULT_POOL = new ByteBufferPool(64 * 1024, 64);
+
+	private final List<Message> messages;
+	private final ByteBufferPool pool;
+	private final boolean gzip;
+	private final int compressionLevel;
+	private final JacksonJsonCodec codec = JsonCodecs.jackson();
+	private final ObjectWriter messageWriter = codec.writer(Message.class);
+
+	// producer state, confined to the I/O thread and reset by close()
+	private BufferOutputStream out;
+	private CountingOutputStream content;
+	private LevelGZIPOutputStream gzipStream;
+	private JsonGenerator generator;
+	private Iterator<Message> iterator;
+	private boolean finished;
+
+	private volatile long contentBytes;
+	private volatile long transferredBytes;
+
+	/**
+	 * Constructs the entity for an ingestion request
+	 *
+	 * @param request
+	 *            IngestionRequest object
+	 */
+	public IngestionRequestEntity(IngestionRequest request) {
+		this(request.getMessages(), DEFAULT_POOL, false, 0);
+	}
+
+	/**
+	 * Constructs the entity for an ingestion request, optionally gzip
+	 * compressed
+	 *
+	 * @param request
+	 *            IngestionRequest object
+	 * @param gzip
+	 *            true to compress the body
+	 * @param compressionLevel
+	 *            gzip compression level (1-9)
+	 */
+	public IngestionRequestEntity(IngestionRequest request, boolean gzip, int compressionLevel) {
+		this(request.getMessages(), DEFAULT_POOL, gzip, compressionLevel);
+	}
+
+	/**
+	 * Constructs the entity for a list of messages with the given buffer pool
+	 *
+	 * @param messages
+	 *            list of messages
+	 * @param pool
+	 *            pool providing the serialization buffers
+	 */
+	public IngestionRequestEntity(List<Message> messages, ByteBufferPool pool) {
+		this(messages, pool, false, 0);
+	}
+
+	/**
+	 * Constructs the entity for a list of messages with the given buffer pool,
+	 * optionally gzip compressed
+	 *
+	 * @param messages
+	 *            list of messages
+	 * @param pool
+	 *            pool providing the serialization buffers
+	 * @param gzip
+	 *            true to compress the body
+	 * @param compressionLevel
+	 *            gzip compression level (1-9)
+	 */
+	public IngestionRequestEntity(List<Message> messages, ByteBufferPool pool, boolean gzip, int compressionLevel) {
+		this.messages = messages;
+		this.pool = pool;
+		this.gzip = gzip;
+		this.compressionLevel = compressionLevel;
+		setContentType(ContentType.APPLICATION_JSON.toString());
+		if (gzip) {
+			setContentEncoding("gzip");
+		}
+		setChunked(true);
+	}
+
+	/**
+	 * Size of the serialized json, before compression, of the last completed
+	 * write of the entity
+	 *
+	 * @return json bytes
+	 */
+	public long getContentBytes() {
+		return contentBytes;
+	}
+
+	/**
+	 * Size of the body, after compression, of the last completed write of the
+	 * entity
+	 *
+	 * @return body bytes
+	 */
+	public long getTransferredBytes() {
+		return transferredBytes;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		writeTo(content);
+		return new ByteArrayInputStream(content.toByteArray());
+	}
+
+	/**
+	 * Serializes the messages straight into the output stream. Used by the
+	 * blocking http clients.
+	 */
+	@Override
+	public void writeTo(OutputStream outstream) throws IOException {
+		CountingOutputStream body = new CountingOutputStream(outstream);
+		LevelGZIPOutputStream compressor = gzip ? new LevelGZIPOutputStream(body, compressionLevel) : null;
+		CountingOutputStream json = new CountingOutputStream(gzip ? compressor : body);
+		try {
+			JsonGenerator jsonGenerator = codec.createGenerator(json);
+			jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			writeStart(jsonGenerator);
+			for (Message message : messages) {
+				messageWriter.writeValue(jsonGenerator, message);
+			}
+			writeEnd(jsonGenerator);
+			jsonGenerator.close();
+			if (gzip) {
+				compressor.finish();
+			}
+			body.flush();
+		} finally {
+			if (gzip) {
+				compressor.end();
+			}
+		}
+		contentBytes = json.count;
+		transferredBytes = body.count;
+	}
+
+	/**
+	 * Writes the serialized messages to the encoder, serializing the next
+	 * chunk whenever the previous one is drained. Returns as soon as the
+	 * encoder does not accept more data.
+	 */
+	@Override
+	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+		if (out == null) {
+			out = new BufferOutputStream(pool);
+			if (gzip) {
+				gzipStream = new LevelGZIPOutputStream(out, compressionLevel);
+			}
+			content = new CountingOutputStream(gzip ? gzipStream : out);
+			generator = codec.createGenerator(content);
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+			iterator = messages.iterator();
+			writeStart(generator);
+			fill();
+		}
+		while (true) {
+			ByteBuffer buffer = out.buffer;
+			if (buffer.hasRemaining()) {
+				encoder.write(buffer);
+				if (buffer.hasRemaining()) {
+					return;
+				}
+			}
+			if (finished) {
+				encoder.complete();
+				contentBytes = content.count;
+				transferredBytes = out.count;
+				release();
+				return;
+			}
+			out.reset();
+			fill();
+		}
+	}
+
+	/**
+	 * Releases the buffer and resets the entity, so that it can be produced
+	 * again.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (generator != null) {
+				// returns the buffers of an interrupted production
+				generator.close();
+			}
+		} finally {
+			if (gzipStream != null) {
+				gzipStream.end();
+			}
+			release();
+		}
+		out = null;
+		content = null;
+		gzipStream = null;
+		generator = null;
+		iterator = null;
+		finished = false;
+	}
+
+	private void release() {
+		if (out != null && out.buffer != null) {
+			pool.release(out.buffer);
+			out.buffer = null;
+		}
+	}
+
+	/**
+	 * Serializes messages into the buffer until half of it is used or all
+	 * the messages are written. The buffer is left in read mode and has to be
+	 * reset before the next call.
+	 *
+	 * @throws IOException
+	 *             serialization failure
+	 */
+	private void fill() throws IOException {
+		int threshold = pool.getBufferSize() / 2;
+		while (!finished && out.buffer.position() < threshold) {
+			if (iterator.hasNext()) {
+				messageWriter.writeValue(generator, iterator.next());
+			} else {
+				writeEnd(generator);
+				generator.close();
+				if (gzip) {
+					gzipStream.finish();
+					gzipStream.end();
+				}
+				finished = true;
+			}
+		}
+		if (!finished) {
+			generator.flush();
+		}
+		out.buffer.flip();
+	}
+
+	private static void writeStart(JsonGenerator jsonGenerator) throws IOException {
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeFieldName("messages");
+		jsonGenerator.writeStartArray();
+	}
+
+	private static void writeEnd(JsonGenerator jsonGenerator) throws IOException {
+		jsonGenerator.writeEndArray();
+		jsonGenerator.writeEndObject();
+		jsonGenerator.flush();
+	}
+
+	/**
+	 * GZIPOutputStream with a configurable compression level, which releases
+	 * the native deflater on {@code end()} without closing the target.
+	 */
+	private static class LevelGZIPOutputStream extends GZIPOutputStream {
+
+		LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+			super(out, 8192);
+			def.setLevel(level);
+		}
+
+		void end() {
+			def.end();
+		}
+	}
+
+	/**
+	 * OutputStream counting the bytes passed to the target.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		private final OutputStream target;
+		private long count;
+
+		CountingOutputStream(OutputStream target) {
+			this.target = target;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			target.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			target.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target.flush();
+		}
+	}
+
+	/**
+	 * OutputStream writing into a pooled buffer. The buffer is replaced by a
+	 * larger one when a single message does not fit.
+	 */
+	private static class BufferOutputStream extends OutputStream {
+
+		private final ByteBufferPool pool;
+		private ByteBuffer buffer;
+		private long count;
+
+		BufferOutputStream(ByteBufferPool pool) {
+			this.pool = pool;
+			this.buffer = pool.acquire();
+		}
+
+		/**
+		 * Prepares the buffer for the next chunk, giving back an enlarged
+		 * buffer in favour of a pooled one.
+		 */
+		void reset() {
+			if (buffer.capacity() != pool.getBufferSize()) {
+				buffer = pool.acquire();
+			}
+			buffer.clear();
+		}
+
+		@Override
+		public void write(int b) {
+			ensureCapacity(1);
+			buffer.put((byte) b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			ensureCapacity(len);
+			buffer.put(b, off, len);
+			count += len;
+		}
+
+		private void ensureCapacity(int len) {
+			if (buffer.remaining() >= len) {
+				return;
+			}
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + len));
+			buffer.flip();
+			larger.put(buffer);
+			pool.release(buffer);
+			buffer = larger;
+		}
+	}
+}
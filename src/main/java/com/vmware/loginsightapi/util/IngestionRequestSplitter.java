@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.vmware.loginsightapi.core.Message;
+
+/**
+ * Splits the messages of an ingestion request into parts within a maximum
+ * message count and serialized size. <br>
+ *
+ * The size of each message is estimated with {@link MessageSizeEstimator} in
+ * a single pass, so the messages are not serialized to find the split
+ * points. The parts are views of the original list and keep the message
+ * order.
+ */
+public final class IngestionRequestSplitter {
+
+	private IngestionRequestSplitter() {
+	}
+
+	/**
+	 * Splits the messages into parts of at most {@code maxMessages} messages
+	 * and {@code maxBytes} serialized bytes. A single message larger than
+	 * {@code maxBytes} makes up a part on its own.
+	 *
+	 * @param messages
+	 *            list of messages
+	 * @param maxMessages
+	 *            maximum number of messages in a part
+	 * @param maxBytes
+	 *            maximum serialized size of a part in bytes, including the
+	 *            request envelope
+	 * @return list of parts, a single part when no split is needed
+	 */
+	public static List<List<Message>> split(List<Message> messages, int maxMessages, long maxBytes) {
+		if (maxMessages <= 0 || maxBytes <= MessageSizeEstimator.REQUEST_OVERHEAD) {
+			throw new IllegalArgumentException("Invalid request limits");
+		}
+		if (messages.size() <= 1) {
+			return Collections.singletonList(messages);
+		}
+		List<List<Message>> parts = new ArrayList<List<Message>>();
+		int start = 0;
+		long bytes = MessageSizeEstimator.REQUEST_OVERHEAD;
+		for (int i = 0; i < messages.size(); i++) {
+			int size = MessageSizeEstimator.estimate(messages.get(i));
+			if (i > start && (i - start >= maxMessages || bytes + size > maxBytes)) {
+				parts.add(messages.subList(start, i));
+				start = i;
+				bytes = MessageSizeEstimator.REQUEST_OVERHEAD;
+			}
+			bytes += size;
+		}
+		if (start == 0) {
+			return Collections.singletonList(messages);
+		}
+		parts.add(messages.subList(start, messages.size()));
+		return parts;
+	}
+}
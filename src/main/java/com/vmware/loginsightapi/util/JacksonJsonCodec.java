@@ -0,0 +1,150 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * JsonCodec based on a single Jackson ObjectMapper. <br>
+ *
+ * An ObjectReader and an ObjectWriter are built once per type and reused, so
+ * the introspection and serializer lookups are not repeated on every call.
+ * Readers and writers are immutable and thread-safe. <br>
+ *
+ * The default mapper ignores unknown properties, so that fields added to the
+ * LogInsight responses do not break the parsing.
+ */
+public class JacksonJsonCodec implements JsonCodec {
+
+	private final ObjectMapper mapper;
+	private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<Class<?>, ObjectReader>();
+	private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+
+	/**
+	 * Constructs the codec with the default mapper configuration
+	 */
+	public JacksonJsonCodec() {
+		this(new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+	}
+
+	/**
+	 * Constructs the codec with a configured mapper. The mapper must not be
+	 * reconfigured afterwards.
+	 *
+	 * @param mapper
+	 *            Jackson ObjectMapper
+	 */
+	public JacksonJsonCodec(ObjectMapper mapper) {
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Reader of a type, built on first use
+	 *
+	 * @param type
+	 *            class of the objects
+	 * @return ObjectReader
+	 */
+	public ObjectReader reader(Class<?> type) {
+		return readers.computeIfAbsent(type, mapper::readerFor);
+	}
+
+	/**
+	 * Writer of a type, built on first use
+	 *
+	 * @param type
+	 *            class of the objects
+	 * @return ObjectWriter
+	 */
+	public ObjectWriter writer(Class<?> type) {
+		return writers.computeIfAbsent(type, mapper::writerFor);
+	}
+
+	/**
+	 * Creates a streaming generator, for writing large documents piece by
+	 * piece with {@link #writer(Class)}
+	 *
+	 * @param out
+	 *            output stream
+	 * @return json generator writing utf-8 to the stream
+	 * @throws IOException
+	 *             if the generator cannot be created
+	 */
+	public JsonGenerator createGenerator(OutputStream out) throws IOException {
+		return mapper.getFactory().createGenerator(out);
+	}
+
+	/**
+	 * Creates a streaming parser, for reading large documents piece by piece
+	 * with {@link #reader(Class)}
+	 *
+	 * @param in
+	 *            stream of utf-8 encoded json, closed with the parser
+	 * @return json parser reading from the stream
+	 * @throws IOException
+	 *             if the parser cannot be created
+	 */
+	public JsonParser createParser(InputStream in) throws IOException {
+		return mapper.getFactory().createParser(in);
+	}
+
+	/**
+	 * Underlying mapper
+	 *
+	 * @return ObjectMapper
+	 */
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+
+	@Override
+	public <T> T read(String json, Class<T> type) throws IOException {
+		return reader(type).readValue(json);
+	}
+
+	@Override
+	public <T> T read(byte[] json, Class<T> type) throws IOException {
+		return reader(type).readValue(json);
+	}
+
+	@Override
+	public <T> T read(InputStream json, Class<T> type) throws IOException {
+		JsonParser parser = createParser(json);
+		parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+		try {
+			return reader(type).readValue(parser);
+		} finally {
+			parser.close();
+		}
+	}
+
+	@Override
+	public String write(Object value) throws IOException {
+		return writer(value.getClass()).writeValueAsString(value);
+	}
+
+	@Override
+	public void write(Object value, OutputStream out) throws IOException {
+		JsonGenerator generator = createGenerator(out);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		writer(value.getClass()).writeValue(generator, value);
+		generator.close();
+	}
+}
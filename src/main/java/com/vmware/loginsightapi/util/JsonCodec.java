@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Converts the LogInsight API objects from and to json. <br>
+ *
+ * Implementations must be thread-safe; a single instance is shared by all the
+ * clients, see {@link JsonCodecs}.
+ */
+public interface JsonCodec {
+
+	/**
+	 * De-serializes a json string
+	 *
+	 * @param json
+	 *            json string
+	 * @param type
+	 *            class of the object
+	 * @return de-serialized object
+	 * @throws IOException
+	 *             if the json is invalid
+	 */
+	<T> T read(String json, Class<T> type) throws IOException;
+
+	/**
+	 * De-serializes utf-8 encoded json
+	 *
+	 * @param json
+	 *            json bytes
+	 * @param type
+	 *            class of the object
+	 * @return de-serialized object
+	 * @throws IOException
+	 *             if the json is invalid
+	 */
+	<T> T read(byte[] json, Class<T> type) throws IOException;
+
+	/**
+	 * De-serializes json from a stream, without reading the whole stream into
+	 * memory first. The stream is not closed.
+	 *
+	 * @param json
+	 *            stream of utf-8 encoded json
+	 * @param type
+	 *            class of the object
+	 * @return de-serialized object
+	 * @throws IOException
+	 *             if the json is invalid or the stream fails
+	 */
+	<T> T read(InputStream json, Class<T> type) throws IOException;
+
+	/**
+	 * Serializes an object to a json string
+	 *
+	 * @param value
+	 *            object to serialize
+	 * @return json string
+	 * @throws IOException
+	 *             if the object cannot be serialized
+	 */
+	String write(Object value) throws IOException;
+
+	/**
+	 * Serializes an object as utf-8 encoded json to a stream. The stream is
+	 * not closed.
+	 *
+	 * @param value
+	 *            object to serialize
+	 * @param out
+	 *            output stream
+	 * @throws IOException
+	 *             if the object cannot be serialized or the stream fails
+	 */
+	void write(Object value, OutputStream out) throws IOException;
+}
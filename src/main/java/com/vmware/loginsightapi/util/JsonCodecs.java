@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+/**
+ * Holder of the JsonCodec used by the API objects and the clients. <br>
+ *
+ * A {@link JacksonJsonCodec} with the default configuration is used unless
+ * another codec is installed with {@link #set(JsonCodec)}, typically once at
+ * application startup.
+ */
+public final class JsonCodecs {
+
+	private static final JacksonJsonCodec DEFAULT = new JacksonJsonCodec();
+
+	private static volatile JsonCodec codec = DEFAULT;
+
+	private JsonCodecs() {
+	}
+
+	/**
+	 * Current codec
+	 *
+	 * @return JsonCodec
+	 */
+	public static JsonCodec get() {
+		return codec;
+	}
+
+	/**
+	 * Installs a codec
+	 *
+	 * @param jsonCodec
+	 *            codec to use, null restores the default codec
+	 */
+	public static void set(JsonCodec jsonCodec) {
+		codec = jsonCodec == null ? DEFAULT : jsonCodec;
+	}
+
+	/**
+	 * Jackson codec for the streaming serialization of the ingestion requests:
+	 * the current codec if it is a JacksonJsonCodec, otherwise the default one
+	 *
+	 * @return JacksonJsonCodec
+	 */
+	public static JacksonJsonCodec jackson() {
+		JsonCodec current = codec;
+		return current instanceof JacksonJsonCodec ? (JacksonJsonCodec) current : DEFAULT;
+	}
+}
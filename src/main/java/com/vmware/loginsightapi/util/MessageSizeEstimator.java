@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.util.List;
+
+import com.vmware.loginsightapi.core.Field;
+import com.vmware.loginsightapi.core.Message;
+
+/**
+ * Estimates the number of bytes a message occupies in the serialized (UTF-8
+ * JSON) ingestion request body without actually serializing it.
+ *
+ * The estimate follows the JSON layout produced for {@code IngestionRequest}
+ * and matches the serialized size exactly.
+ */
+public final class MessageSizeEstimator {
+
+	/**
+	 * Bytes taken by the envelope of an ingestion request
+	 * {@code {"messages":[]}}
+	 */
+	public static final int REQUEST_OVERHEAD = 15;
+
+	private MessageSizeEstimator() {
+	}
+
+	/**
+	 * Estimates the serialized size of a message including the separating
+	 * comma in the messages array.
+	 *
+	 * @param message
+	 *            Message object
+	 * @return estimated size in bytes
+	 */
+	public static int estimate(Message message) {
+		// {} and the separating comma, attributes below include their own comma
+		int size = 2;
+		// "emptyMessage":false, derived from Message.isEmptyMessage()
+		size += message.isEmptyMessage() ? 20 : 21;
+		if (null != message.getText() && !message.getText().isEmpty()) {
+			// "text":"",
+			size += 10 + estimate(message.getText());
+		}
+		if (null != message.getTimestamp()) {
+			// "timestamp":,
+			size += 13 + Long.toString(message.getTimestamp()).length();
+		}
+		List<Field> fields = message.getFields();
+		if (null != fields && !fields.isEmpty()) {
+			// "fields":[], without the comma after the last field
+			size += 11;
+			for (Field field : fields) {
+				// {} and the separating comma, attributes include their own comma
+				size += 2;
+				size += estimateAttribute("name", field.getName());
+				size += estimateAttribute("content", field.getContent());
+				size += estimateAttribute("startPosition", field.getStartPosition());
+				size += estimateAttribute("length", field.getLength());
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Estimates the size of a JSON string value in UTF-8 including escape
+	 * sequences, excluding the surrounding quotes.
+	 *
+	 * @param value
+	 *            string value
+	 * @return estimated size in bytes
+	 */
+	public static int estimate(String value) {
+		int size = 0;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				size += 2;
+			} else if (c < 0x20) {
+				// \n, \t etc are written as two chars, others as \\u00XX
+				size += (c == '\n' || c == '\t' || c == '\r' || c == '\b' || c == '\f') ? 2 : 6;
+			} else if (c < 0x80) {
+				size += 1;
+			} else if (c < 0x800) {
+				size += 2;
+			} else if (Character.isHighSurrogate(c)) {
+				// surrogate pair is encoded as 4 bytes in total
+				size += 4;
+				i++;
+			} else {
+				size += 3;
+			}
+		}
+		return size;
+	}
+
+	private static int estimateAttribute(String name, String value) {
+		if (null == value || value.isEmpty()) {
+			return 0;
+		}
+		// "name":"",
+		return name.length() + 6 + estimate(value);
+	}
+}
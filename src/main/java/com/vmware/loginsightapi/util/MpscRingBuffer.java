@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded lock-free ring buffer between many producers and a single consumer.
+ * <br>
+ *
+ * The entries are allocated once and reused, so passing data through the
+ * buffer creates no garbage. A producer claims a sequence, fills the entry of
+ * the sequence and publishes it; the consumer handles the published entries in
+ * sequence order. Claiming never blocks, it fails when the buffer is full.
+ *
+ * <pre>
+ * long sequence = buffer.claim();
+ * if (sequence &gt;= 0) {
+ * 	buffer.get(sequence).set(...);
+ * 	buffer.publish(sequence);
+ * }
+ * </pre>
+ *
+ * @param <E>
+ *            type of the entries
+ */
+public class MpscRingBuffer<E> {
+
+	private final Object[] entries;
+	private final AtomicLongArray published;
+	private final int mask;
+	private final AtomicLong claimed = new AtomicLong();
+	private volatile long consumed;
+
+	/**
+	 * Constructs the buffer and allocates its entries
+	 *
+	 * @param capacity
+	 *            number of entries, rounded up to a power of two
+	 * @param factory
+	 *            creates the entries
+	 */
+	public MpscRingBuffer(int capacity, Supplier<E> factory) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid ring buffer capacity " + capacity);
+		}
+		int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.entries = new Object[size];
+		this.published = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			entries[i] = factory.get();
+			published.set(i, -1);
+		}
+	}
+
+	/**
+	 * Claims the next free entry. The entry must be published once it is
+	 * filled.
+	 *
+	 * @return sequence of the entry, -1 if the buffer is full
+	 */
+	public long claim() {
+		long sequence;
+		do {
+			sequence = claimed.get();
+			if (sequence - consumed >= entries.length) {
+				return -1;
+			}
+		} while (!claimed.compareAndSet(sequence, sequence + 1));
+		return sequence;
+	}
+
+	/**
+	 * Entry of a claimed sequence
+	 *
+	 * @param sequence
+	 *            sequence returned by {@link #claim()}
+	 * @return the entry
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(long sequence) {
+		return (E) entries[(int) sequence & mask];
+	}
+
+	/**
+	 * Hands a filled entry over to the consumer
+	 *
+	 * @param sequence
+	 *            sequence returned by {@link #claim()}
+	 */
+	public void publish(long sequence) {
+		published.lazySet((int) sequence & mask, sequence);
+	}
+
+	/**
+	 * Passes the published entries to the handler in sequence order. Must be
+	 * called from a single consumer thread. An entry is reused by the
+	 * producers once the handler returns.
+	 *
+	 * @param handler
+	 *            consumer of the entries
+	 * @param limit
+	 *            maximum number of entries to handle
+	 * @return number of handled entries
+	 */
+	public int drain(Consumer<E> handler, int limit) {
+		long sequence = consumed;
+		int count = 0;
+		while (count < limit && published.get((int) sequence & mask) == sequence) {
+			handler.accept(get(sequence));
+			consumed = ++sequence;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Number of claimed entries not yet consumed
+	 *
+	 * @return buffer size
+	 */
+	public int size() {
+		return (int) Math.max(claimed.get() - consumed, 0);
+	}
+
+	/**
+	 * Number of entries
+	 *
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return entries.length;
+	}
+}
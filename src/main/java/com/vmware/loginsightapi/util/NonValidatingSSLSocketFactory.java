@@ -24,7 +24,13 @@ import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
  * A custom SSLSocketFactory which ignores the hostname verification and builds
  * a dummy SSL context.
  * 
+ * @deprecated trusts any certificate and host name. The connections are now
+ *             layered with {@link com.vmware.loginsightapi.TlsSessionStrategy},
+ *             which verifies the server certificates; set
+ *             {@code loginsight.tls.trust.all} to trust self-signed
+ *             certificates in test environments.
  */
+@Deprecated
 public class NonValidatingSSLSocketFactory extends SSLConnectionSocketFactory {
 
 	/**
@@ -0,0 +1,211 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue between many producers and a single consumer which applies an
+ * overflow policy when the producers are faster than the consumer. <br>
+ *
+ * The queue never grows beyond its capacity. Depending on the policy a
+ * producer facing a full queue waits for free space, or an element is dropped
+ * and counted. {@code offer} never throws and never blocks longer than the
+ * block timeout.
+ *
+ * @param <E>
+ *            type of the queued elements
+ */
+public class OverflowQueue<E> {
+
+	/**
+	 * What happens when an element is offered to a full queue
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * the producer waits up to the block timeout, then the new element is
+		 * dropped
+		 */
+		BLOCK,
+		/**
+		 * the new element is dropped
+		 */
+		DROP_NEWEST,
+		/**
+		 * the oldest queued element is dropped to make room
+		 */
+		DROP_OLDEST,
+		/**
+		 * once the queue is half full only one in {@code sampleRate} new
+		 * elements is queued, and the new element is dropped when full
+		 */
+		SAMPLE
+	}
+
+	private final BlockingQueue<E> queue;
+	private final int capacity;
+	private final OverflowPolicy policy;
+	private final long blockTimeoutNanos;
+	private final int sampleRate;
+	private final AtomicLong sampled = new AtomicLong();
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * Constructs the queue
+	 *
+	 * @param capacity
+	 *            maximum number of queued elements
+	 * @param policy
+	 *            overflow policy
+	 * @param blockTimeoutMs
+	 *            maximum time in milliseconds a producer waits with the
+	 *            {@code BLOCK} policy
+	 * @param sampleRate
+	 *            one in {@code sampleRate} elements is kept with the
+	 *            {@code SAMPLE} policy
+	 */
+	public OverflowQueue(int capacity, OverflowPolicy policy, long blockTimeoutMs, int sampleRate) {
+		if (capacity <= 0 || policy == null || blockTimeoutMs < 0 || sampleRate <= 0) {
+			throw new IllegalArgumentException("Invalid queue limits");
+		}
+		this.queue = new LinkedBlockingQueue<E>(capacity);
+		this.capacity = capacity;
+		this.policy = policy;
+		this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Queues an element, applying the overflow policy when the queue is full
+	 *
+	 * @param element
+	 *            element to queue
+	 * @return true if the element is queued, false if it is dropped
+	 */
+	public boolean offer(E element) {
+		switch (policy) {
+		case BLOCK:
+			try {
+				if (queue.offer(element) || queue.offer(element, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+					return true;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			break;
+		case DROP_OLDEST:
+			while (!queue.offer(element)) {
+				if (queue.poll() != null) {
+					dropped.increment();
+				}
+			}
+			return true;
+		case SAMPLE:
+			if (queue.size() >= capacity / 2 && sampled.getAndIncrement() % sampleRate != 0) {
+				break;
+			}
+			if (queue.offer(element)) {
+				return true;
+			}
+			break;
+		default:
+			if (queue.offer(element)) {
+				return true;
+			}
+		}
+		dropped.increment();
+		return false;
+	}
+
+	/**
+	 * Queues a marker element without applying the overflow policy, to wake a
+	 * consumer waiting in {@code poll}. The marker is not queued, nor counted
+	 * as dropped, when the queue is full, since {@code poll} does not wait
+	 * then.
+	 *
+	 * @param marker
+	 *            element recognized and skipped by the consumer
+	 */
+	public void signal(E marker) {
+		queue.offer(marker);
+	}
+
+	/**
+	 * Takes the oldest element
+	 *
+	 * @return element or null if the queue is empty
+	 */
+	public E poll() {
+		return queue.poll();
+	}
+
+	/**
+	 * Takes the oldest element, waiting for one if the queue is empty
+	 *
+	 * @param timeout
+	 *            maximum time to wait
+	 * @param unit
+	 *            unit of the timeout
+	 * @return element or null if none arrives within the timeout
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return queue.poll(timeout, unit);
+	}
+
+	/**
+	 * Number of queued elements
+	 *
+	 * @return queue size
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Checks whether the queue is empty
+	 *
+	 * @return true if no element is queued
+	 */
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * Maximum number of queued elements
+	 *
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Overflow policy of the queue
+	 *
+	 * @return overflow policy
+	 */
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Number of elements dropped by the overflow policy
+	 *
+	 * @return count of dropped elements
+	 */
+	public long getDroppedElements() {
+		return dropped.sum();
+	}
+}
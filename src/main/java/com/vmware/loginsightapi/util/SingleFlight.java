@@ -0,0 +1,224 @@
+/**
+ * Copyright © 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into a single call. The first
+ * caller of a key runs the call, the callers arriving while it is in flight
+ * are completed with its result (or failure) instead of running their own.
+ * Once the call completes, the next caller of the key runs it again: results
+ * are only shared between concurrent callers, never cached. <br>
+ *
+ * Each caller gets its own future, so that cancelling it does not affect the
+ * other callers. The shared call is cancelled when all its callers have
+ * cancelled their futures.
+ *
+ * @param <K>
+ *            type of the keys
+ * @param <V>
+ *            type of the results
+ */
+public class SingleFlight<K, V> {
+
+	private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<K, Flight<V>>();
+	private final Runnable onCoalesced;
+
+	/**
+	 * Constructs the single flight
+	 */
+	public SingleFlight() {
+		this(() -> {
+		});
+	}
+
+	/**
+	 * Constructs the single flight with a listener of the coalesced calls
+	 *
+	 * @param onCoalesced
+	 *            run each time a caller joins a call in flight
+	 */
+	public SingleFlight(Runnable onCoalesced) {
+		this.onCoalesced = onCoalesced;
+	}
+
+	/**
+	 * Runs an asynchronous call, or joins the identical call in flight
+	 *
+	 * @param key
+	 *            key identifying identical calls
+	 * @param call
+	 *            starts the call, only invoked when no call of the key is in
+	 *            flight
+	 * @return future of the result of the call
+	 */
+	public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+		Flight<V> flight = new Flight<V>();
+		CompletableFuture<V> joined = join(key, flight);
+		if (joined != null) {
+			return joined;
+		}
+		CompletableFuture<V> waiter = flight.join();
+		CompletableFuture<V> source;
+		try {
+			source = call.get();
+		} catch (RuntimeException | Error e) {
+			source = new CompletableFuture<V>();
+			source.completeExceptionally(e);
+		}
+		flight.start(source);
+		return waiter;
+	}
+
+	/**
+	 * Runs a blocking call on the calling thread, or waits for the identical
+	 * call in flight
+	 *
+	 * @param key
+	 *            key identifying identical calls
+	 * @param call
+	 *            the call, only invoked when no call of the key is in flight
+	 * @return result of the call
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the call in flight
+	 */
+	public V executeBlocking(K key, Supplier<V> call) throws InterruptedException {
+		Flight<V> flight = new Flight<V>();
+		CompletableFuture<V> joined = join(key, flight);
+		if (joined != null) {
+			try {
+				return joined.get();
+			} catch (InterruptedException e) {
+				joined.cancel(false);
+				throw e;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new CompletionException(cause);
+			}
+		}
+		flight.lead();
+		try {
+			V result = call.get();
+			flight.result.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			flight.result.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Joins the call in flight for the key, or registers the new flight
+	 *
+	 * @return future of the call in flight, null when the caller must run the
+	 *         call of the new flight
+	 */
+	private CompletableFuture<V> join(K key, Flight<V> flight) {
+		while (true) {
+			Flight<V> current = flights.putIfAbsent(key, flight);
+			if (current == null) {
+				flight.result.whenComplete((result, ex) -> flights.remove(key, flight));
+				return null;
+			}
+			CompletableFuture<V> waiter = current.join();
+			if (waiter != null) {
+				onCoalesced.run();
+				return waiter;
+			}
+			// completed or abandoned, not removed yet
+			flights.remove(key, current);
+		}
+	}
+
+	/**
+	 * Number of calls in flight
+	 *
+	 * @return count of keys with a call in flight
+	 */
+	public int size() {
+		return flights.size();
+	}
+
+	private static final class Flight<V> {
+		final CompletableFuture<V> result = new CompletableFuture<V>();
+		private CompletableFuture<V> source;
+		private int waiters;
+		private boolean abandoned;
+
+		synchronized void lead() {
+			waiters++;
+		}
+
+		CompletableFuture<V> join() {
+			synchronized (this) {
+				if (abandoned || result.isDone()) {
+					return null;
+				}
+				waiters++;
+			}
+			CompletableFuture<V> waiter = new CompletableFuture<V>();
+			result.whenComplete((value, ex) -> {
+				if (ex == null) {
+					waiter.complete(value);
+				} else {
+					waiter.completeExceptionally(ex);
+				}
+			});
+			waiter.whenComplete((value, ex) -> {
+				if (waiter.isCancelled()) {
+					leave();
+				}
+			});
+			return waiter;
+		}
+
+		void start(CompletableFuture<V> source) {
+			boolean cancel;
+			synchronized (this) {
+				this.source = source;
+				cancel = abandoned;
+			}
+			if (cancel) {
+				source.cancel(true);
+			}
+			source.whenComplete((value, ex) -> {
+				if (ex == null) {
+					result.complete(value);
+				} else {
+					result.completeExceptionally(ex);
+				}
+			});
+		}
+
+		private void leave() {
+			CompletableFuture<V> cancel;
+			synchronized (this) {
+				if (--waiters > 0 || result.isDone()) {
+					return;
+				}
+				abandoned = true;
+				cancel = source;
+			}
+			result.cancel(false);
+			if (cancel != null) {
+				cancel.cancel(true);
+			}
+		}
+	}
+}
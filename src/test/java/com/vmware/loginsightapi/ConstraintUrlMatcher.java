@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates the timestamp constraints of a query url, so that the fake
+ * LogInsight servers of the tests serve the events of the queried range
+ */
+final class ConstraintUrlMatcher {
+
+	private static final Pattern TIMESTAMP = Pattern.compile("timestamp/(GT|GE|LT|LE)(?:%20|\\+)(\\d+)");
+
+	private ConstraintUrlMatcher() {
+	}
+
+	/**
+	 * Checks whether a timestamp satisfies all the timestamp constraints of a
+	 * url
+	 *
+	 * @param url
+	 *            query url
+	 * @param timestamp
+	 *            event timestamp
+	 * @return true if the event is in the queried range
+	 */
+	static boolean matches(String url, long timestamp) {
+		Matcher matcher = TIMESTAMP.matcher(url);
+		while (matcher.find()) {
+			long value = Long.parseLong(matcher.group(2));
+			switch (matcher.group(1)) {
+			case "GT":
+				if (timestamp <= value) {
+					return false;
+				}
+				break;
+			case "GE":
+				if (timestamp < value) {
+					return false;
+				}
+				break;
+			case "LT":
+				if (timestamp >= value) {
+					return false;
+				}
+				break;
+			default:
+				if (timestamp > value) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the value of the first timestamp constraint of a url with an
+	 * operator
+	 *
+	 * @param url
+	 *            query url
+	 * @param operator
+	 *            GT, GE, LT or LE
+	 * @return timestamp of the constraint, -1 if the url has none
+	 */
+	static long bound(String url, String operator) {
+		Matcher matcher = TIMESTAMP.matcher(url);
+		while (matcher.find()) {
+			if (matcher.group(1).equals(operator)) {
+				return Long.parseLong(matcher.group(2));
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import static com.vmware.loginsightapi.ConstraintUrlMatcher.matches;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.core.MessageQueryResponse;
+
+/**
+ * Events of a fake LogInsight server behind a mocked LogInsightClient. The
+ * message queries are answered with the events matching the timestamp
+ * constraints of their url, newest first, up to their limit, and their urls
+ * are recorded.
+ */
+class FakeEventStore {
+
+	private static final Pattern LIMIT = Pattern.compile("limit=(\\d+)");
+
+	final List<Message> events = new CopyOnWriteArrayList<Message>();
+	final List<String> urls = new CopyOnWriteArrayList<String>();
+	volatile boolean failing;
+	volatile boolean cacheUsed;
+
+	/**
+	 * Mocks a client answering its message queries from this store
+	 *
+	 * @return mocked LogInsightClient
+	 */
+	LogInsightClient mockClient() {
+		LogInsightClient client = mock(LogInsightClient.class);
+		when(client.messageQueryAsync(anyString())).thenAnswer(new Answer<CompletableFuture<MessageQueryResponse>>() {
+			@Override
+			public CompletableFuture<MessageQueryResponse> answer(InvocationOnMock invocation) {
+				return serve((String) invocation.getArguments()[0]);
+			}
+		});
+		when(client.messageQueryAsync(anyString(), anyBoolean()))
+				.thenAnswer(new Answer<CompletableFuture<MessageQueryResponse>>() {
+					@Override
+					public CompletableFuture<MessageQueryResponse> answer(InvocationOnMock invocation) {
+						if ((Boolean) invocation.getArguments()[1]) {
+							cacheUsed = true;
+						}
+						return serve((String) invocation.getArguments()[0]);
+					}
+				});
+		return client;
+	}
+
+	/**
+	 * Records the url of a query and answers it, or fails while
+	 * {@code failing} is set
+	 */
+	CompletableFuture<MessageQueryResponse> serve(String url) {
+		urls.add(url);
+		CompletableFuture<MessageQueryResponse> response = new CompletableFuture<MessageQueryResponse>();
+		if (failing) {
+			response.completeExceptionally(new LogInsightApiException("Message query failed"));
+		} else {
+			response.complete(query(url));
+		}
+		return response;
+	}
+
+	/**
+	 * Serves the events, newest first, like LogInsight does
+	 */
+	MessageQueryResponse query(String url) {
+		Matcher limit = LIMIT.matcher(url);
+		int max = limit.find() ? Integer.parseInt(limit.group(1)) : 100;
+		List<Message> sorted = new ArrayList<Message>(events);
+		sorted.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
+		List<Message> page = new ArrayList<Message>();
+		for (Message event : sorted) {
+			if (page.size() < max && matches(url, event.getTimestamp())) {
+				page.add(event);
+			}
+		}
+		MessageQueryResponse response = new MessageQueryResponse();
+		response.setComplete(true);
+		response.setEvents(page);
+		return response;
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.UnsupportedEncodingException;
+import java.net.ConnectException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Http client of a LogInsight node answering the login, version and query
+ * requests from the calling thread. While the node is down the connections
+ * are refused.
+ */
+class FakeHttpAsyncClient extends CloseableHttpAsyncClient {
+
+	static final String AUTH_RESPONSE = "{\"userId\":\"u\",\"sessionId\":\"session-1\",\"ttl\":1800}";
+	static final String AGGREGATE_RESPONSE = "{\"complete\":true,\"duration\":5,"
+			+ "\"bins\":[{\"minTimestamp\":0,\"maxTimestamp\":999,\"value\":3}]}";
+	static final String MESSAGE_RESPONSE = "{\"complete\":true,\"duration\":5,\"events\":[]}";
+
+	/**
+	 * Paths of all the requests
+	 */
+	final List<String> paths = new CopyOnWriteArrayList<String>();
+	/**
+	 * Paths of the query requests
+	 */
+	final List<String> queries = new CopyOnWriteArrayList<String>();
+	final List<FutureCallback<HttpResponse>> held = new CopyOnWriteArrayList<FutureCallback<HttpResponse>>();
+	volatile int loginStatus = 200;
+	volatile int queryStatus = 200;
+	volatile long delayMs;
+	volatile boolean down;
+	volatile boolean hold;
+	volatile boolean running = true;
+
+	@Override
+	public Future<HttpResponse> execute(HttpUriRequest request, FutureCallback<HttpResponse> callback) {
+		String path = request.getURI().getPath();
+		paths.add(path);
+		CompletableFuture<HttpResponse> future = new CompletableFuture<HttpResponse>();
+		if (down) {
+			ConnectException refused = new ConnectException("Connection refused");
+			if (callback != null) {
+				callback.failed(refused);
+			}
+			future.completeExceptionally(refused);
+			return future;
+		}
+		HttpResponse response;
+		if (path.equals(LogInsightClient.API_URL_SESSION_PATH)) {
+			response = response(loginStatus, loginStatus == 200 ? AUTH_RESPONSE : "{}");
+		} else if (path.equals(LogInsightClient.API_URL_VERSION_PATH)) {
+			response = response(200, "{\"version\":\"3.3.0\"}");
+		} else {
+			queries.add(path);
+			if (hold && callback != null) {
+				held.add(callback);
+				return future;
+			}
+			sleep(delayMs);
+			response = response(queryStatus, queryStatus != 200 ? "{\"errorMessage\":\"invalid\"}"
+					: path.startsWith(LogInsightClient.API_URL_EVENTS_PATH) ? MESSAGE_RESPONSE
+							: AGGREGATE_RESPONSE);
+		}
+		if (callback != null) {
+			callback.completed(response);
+		}
+		future.complete(response);
+		return future;
+	}
+
+	/**
+	 * Answers the queries held while {@code hold} was set
+	 */
+	void release() {
+		for (FutureCallback<HttpResponse> callback : held) {
+			callback.completed(response(200, AGGREGATE_RESPONSE));
+		}
+		held.clear();
+	}
+
+	/**
+	 * Number of requests sent to a path
+	 */
+	long count(String path) {
+		return paths.stream().filter(path::equals).count();
+	}
+
+	static HttpResponse response(int status, String body) {
+		BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+		try {
+			response.setEntity(new StringEntity(body));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		return response;
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer,
+			HttpAsyncResponseConsumer<T> responseConsumer, HttpContext context, FutureCallback<T> callback) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void start() {
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public void close() {
+		running = false;
+	}
+}
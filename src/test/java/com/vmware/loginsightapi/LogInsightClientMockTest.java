@@ -19,7 +19,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 import org.apache.commons.configuration2.PropertiesConfiguration;
@@ -439,4 +441,116 @@ public class LogInsightClientMockTest {
 			Assert.assertTrue(false);
 		}
 	}
+
+	private HttpResponse mockResponse(int statusCode, String body) throws Exception {
+		HttpResponse response = mock(HttpResponse.class);
+		HttpEntity httpEntity = mock(HttpEntity.class);
+		when(response.getEntity()).thenReturn(httpEntity);
+		StatusLine statusLine = mock(StatusLine.class);
+		when(response.getStatusLine()).thenReturn(statusLine);
+		when(statusLine.getStatusCode()).thenReturn(statusCode);
+		when(httpEntity.getContent()).thenAnswer(new Answer<InputStream>() {
+			@Override
+			public InputStream answer(InvocationOnMock invocation) throws Exception {
+				return IOUtils.toInputStream(body, "UTF-8");
+			}
+		});
+		return response;
+	}
+
+	private HttpResponse mockCallbackResponse(int statusCode, String body) throws Exception {
+		HttpResponse response = mockResponse(statusCode, body);
+
+		doAnswer(new Answer<Future<HttpResponse>>() {
+			@Override
+			public Future<HttpResponse> answer(InvocationOnMock invocation) {
+				FutureCallback<HttpResponse> responseCallback = invocation.getArgumentAt(1, FutureCallback.class);
+				responseCallback.completed(response);
+				return null;
+			}
+		}).when(asyncHttpClient).execute(any(HttpUriRequest.class), any(FutureCallback.class));
+		return response;
+	}
+
+	@Test
+	public void testIngestAsync() throws Exception {
+		mockCallbackResponse(200, SERVER_EXPECTED_RESPONSE_FOR_INGESTION);
+		IngestionRequest request = new IngestionRequest();
+		request.addMessage(new Message("Testing the async ingestion"));
+
+		CompletableFuture<IngestionResponse> future = client.ingestAsync(request);
+		Assert.assertTrue("Future is not completed by the callback", future.isDone());
+		Assert.assertEquals("Invalid status in ingestion response", "ok", future.get().getStatus());
+		Assert.assertEquals("Invalid number of ingested messages", 1, future.get().getIngested());
+	}
+
+	@Test
+	public void testIngestSplitRequest() throws Exception {
+		mockCallbackResponse(200, SERVER_EXPECTED_RESPONSE_FOR_INGESTION);
+		config.setIngestionRequestMaxMessages(10);
+		IngestionRequest request = new IngestionRequest();
+		for (int i = 0; i < 25; i++) {
+			request.addMessage(new Message("Testing the split ingestion " + i));
+		}
+
+		IngestionResponse response = client.ingest(request);
+		Assert.assertEquals("Invalid status in ingestion response", "ok", response.getStatus());
+		Assert.assertEquals("Responses of the parts are not aggregated", 3, response.getIngested());
+	}
+
+	@Test
+	public void testAggregateQueryAsync() throws Exception {
+		mockCallbackResponse(200, SERVER_EXPECTED_AGGREGATE_QUERY_RESPONSE);
+		AggregateQueryBuilder aqb = (AggregateQueryBuilder) RequestBuilders.aggreateQuery().limit(100)
+				.setConstraints(RequestBuilders.constraint().gt("timestamp", "0").build());
+
+		AggregateResponse response = client.aggregateQueryAsync(aqb.toUrlString()).get();
+		Assert.assertEquals("Invalid number of bins", 1, response.getBins().size());
+	}
+
+	@Test
+	public void testMessageQueryAsyncSessionExpired() throws Exception {
+		mockCallbackResponse(440, "");
+		MessageQueryBuilder mqb = (MessageQueryBuilder) RequestBuilders.messageQuery().limit(100)
+				.setConstraints(RequestBuilders.constraint().gt("timestamp", "0").build());
+
+		CompletableFuture<MessageQueryResponse> future = client.messageQueryAsync(mqb.toUrlString());
+		try {
+			future.get();
+			Assert.fail("Session expiry is not reported");
+		} catch (ExecutionException e) {
+			Assert.assertTrue("Invalid exception " + e.getCause(), e.getCause() instanceof AuthFailure);
+		}
+	}
+
+	@Test
+	public void testAggregateQueryAsyncReauthenticates() throws Exception {
+		HttpResponse expired = mockResponse(440, "");
+		HttpResponse login = mockResponse(200, SERVER_RESPONSE_EXPECTED);
+		HttpResponse aggregate = mockResponse(200, SERVER_EXPECTED_AGGREGATE_QUERY_RESPONSE);
+		CountDownLatch firstQuery = new CountDownLatch(1);
+		doAnswer(new Answer<Future<HttpResponse>>() {
+			@Override
+			public Future<HttpResponse> answer(InvocationOnMock invocation) {
+				HttpUriRequest request = invocation.getArgumentAt(0, HttpUriRequest.class);
+				FutureCallback<HttpResponse> responseCallback = invocation.getArgumentAt(1, FutureCallback.class);
+				if (request instanceof HttpPost) {
+					responseCallback.completed(login);
+				} else if (firstQuery.getCount() > 0) {
+					firstQuery.countDown();
+					responseCallback.completed(expired);
+				} else {
+					responseCallback.completed(aggregate);
+				}
+				return null;
+			}
+		}).when(asyncHttpClient).execute(any(HttpUriRequest.class), any(FutureCallback.class));
+		AggregateQueryBuilder aqb = (AggregateQueryBuilder) RequestBuilders.aggreateQuery().limit(100)
+				.setConstraints(RequestBuilders.constraint().gt("timestamp", "10").build());
+
+		AggregateResponse response = client.aggregateQueryAsync(aqb.toUrlString()).get();
+		Assert.assertEquals("Invalid number of bins", 1, response.getBins().size());
+		Assert.assertEquals("Query is not sent again after login", 1, client.getMetrics().getReauthentications());
+		Assert.assertEquals("Invalid number of logins", 2, client.getMetrics().getLogins());
+	}
 }
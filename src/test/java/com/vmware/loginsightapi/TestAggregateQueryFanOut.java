@@ -0,0 +1,219 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import static com.vmware.loginsightapi.ConstraintUrlMatcher.matches;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.vmware.loginsightapi.AggregateQueryBuilder.AggregationFunction;
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.AggregateResponseBin;
+import com.vmware.loginsightapi.core.FieldConstraint;
+
+public class TestAggregateQueryFanOut {
+
+	private static final Pattern FUNCTION = Pattern.compile("aggregation-function=([A-Z]+)");
+	private static final Pattern BIN_WIDTH = Pattern.compile("bin-width=(\\d+)");
+
+	private LogInsightClient client;
+	private List<long[]> events;
+	private List<String> urls;
+	private boolean fails;
+
+	@Before
+	public void setUp() {
+		client = mock(LogInsightClient.class);
+		events = new ArrayList<long[]>();
+		urls = new CopyOnWriteArrayList<String>();
+		when(client.aggregateQueryAsync(anyString())).thenAnswer(new Answer<CompletableFuture<AggregateResponse>>() {
+			@Override
+			public CompletableFuture<AggregateResponse> answer(InvocationOnMock invocation) {
+				String url = (String) invocation.getArguments()[0];
+				urls.add(url);
+				CompletableFuture<AggregateResponse> response = new CompletableFuture<AggregateResponse>();
+				if (fails && urls.size() == 3) {
+					response.completeExceptionally(new LogInsightApiException("Aggregate query failed"));
+				} else {
+					response.complete(aggregate(url));
+				}
+				return response;
+			}
+		});
+		// events every 7ms with a value field on two events out of three
+		for (long t = 0; t < 100000; t += 7) {
+			events.add(t % 3 == 0 ? new long[] { t } : new long[] { t, (t * 31) % 1000 });
+		}
+	}
+
+	/**
+	 * Aggregates the events in bins aligned on the epoch, like LogInsight does
+	 */
+	private AggregateResponse aggregate(String url) {
+		Matcher function = FUNCTION.matcher(url);
+		AggregationFunction aggregation = function.find() ? AggregationFunction.valueOf(function.group(1))
+				: AggregationFunction.COUNT;
+		boolean exists = url.contains("value/EXISTS");
+		Matcher binWidth = BIN_WIDTH.matcher(url);
+		Assert.assertTrue("Bin width missing", binWidth.find());
+		long width = Long.parseLong(binWidth.group(1));
+		TreeMap<Long, List<Long>> values = new TreeMap<Long, List<Long>>();
+		for (long[] event : events) {
+			if (matches(url, event[0]) && (!exists || event.length > 1)) {
+				List<Long> bin = values.computeIfAbsent(event[0] / width * width, k -> new ArrayList<Long>());
+				if (event.length > 1) {
+					bin.add(event[1]);
+				} else if (aggregation == AggregationFunction.COUNT) {
+					bin.add(null);
+				}
+			}
+		}
+		List<AggregateResponseBin> bins = new ArrayList<AggregateResponseBin>();
+		for (Long min : values.keySet()) {
+			AggregateResponseBin bin = new AggregateResponseBin();
+			bin.setMinTimestamp(min);
+			bin.setMaxTimestamp(min + width - 1);
+			bin.setValue(value(aggregation, values.get(min)));
+			bins.add(bin);
+		}
+		AggregateResponse response = new AggregateResponse();
+		response.setComplete(true);
+		response.setBins(bins);
+		return response;
+	}
+
+	private static Long value(AggregationFunction function, List<Long> values) {
+		if (function == AggregationFunction.COUNT) {
+			return (long) values.size();
+		} else if (function == AggregationFunction.UCOUNT) {
+			return values.stream().distinct().count();
+		}
+		double sum = 0;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (Long value : values) {
+			sum += value;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		double mean = sum / values.size();
+		double squares = 0;
+		for (Long value : values) {
+			squares += (value - mean) * (value - mean);
+		}
+		double variance = values.size() > 1 ? squares / (values.size() - 1) : 0;
+		switch (function) {
+		case SUM:
+			return (long) sum;
+		case MIN:
+			return min;
+		case MAX:
+			return max;
+		case AVG:
+			return Math.round(mean);
+		case VARIANCE:
+			return Math.round(variance);
+		case STDEV:
+			return Math.round(Math.sqrt(variance));
+		default:
+			throw new IllegalArgumentException(function.toString());
+		}
+	}
+
+	private AggregateQueryBuilder rangeQuery(AggregationFunction function) {
+		// the range does not start on a bin boundary of the server, so that
+		// the bins straddle the slices
+		AggregateQueryBuilder query = new AggregateQueryBuilder().aggregator(function, "value").binWidth(1000);
+		query.limit(1000);
+		query.setConstraints(new ArrayList<FieldConstraint>(
+				Arrays.asList(FieldConstraint.ge("timestamp", "500"), FieldConstraint.lt("timestamp", "99500"))));
+		return query;
+	}
+
+	private void assertMergedLikeSingleQuery(AggregationFunction function, int partials) {
+		AggregateQueryBuilder query = rangeQuery(function);
+		List<AggregateResponseBin> expected = aggregate(query.toUrlString()).getBins();
+		urls.clear();
+		AggregateResponse response = new AggregateQueryFanOut(client, 4, 3).query(query);
+		Assert.assertEquals("Wrong number of partial queries", 4 * partials, urls.size());
+		Assert.assertEquals("Wrong number of bins", expected.size(), response.getBins().size());
+		for (int i = 0; i < expected.size(); i++) {
+			AggregateResponseBin bin = response.getBins().get(i);
+			Assert.assertEquals("Wrong bin", expected.get(i).getMinTimestamp(), bin.getMinTimestamp());
+			// the server rounds the partial values
+			Assert.assertEquals("Wrong " + function + " of bin " + bin.getMinTimestamp(), expected.get(i).getValue(),
+					bin.getValue(), 1);
+		}
+		Assert.assertTrue("Complete flag not merged", response.isComplete());
+	}
+
+	@Test
+	public void testCountMerged() {
+		assertMergedLikeSingleQuery(AggregationFunction.COUNT, 1);
+	}
+
+	@Test
+	public void testMinMaxSumMerged() {
+		assertMergedLikeSingleQuery(AggregationFunction.MIN, 1);
+		assertMergedLikeSingleQuery(AggregationFunction.MAX, 1);
+		assertMergedLikeSingleQuery(AggregationFunction.SUM, 1);
+	}
+
+	@Test
+	public void testAverageMergedFromCountAndSum() {
+		assertMergedLikeSingleQuery(AggregationFunction.AVG, 2);
+		Assert.assertTrue("Count not restricted to the field", urls.stream().anyMatch(u -> u.contains("value/EXISTS")));
+	}
+
+	@Test
+	public void testVarianceAndStdevMerged() {
+		assertMergedLikeSingleQuery(AggregationFunction.VARIANCE, 3);
+		assertMergedLikeSingleQuery(AggregationFunction.STDEV, 3);
+	}
+
+	@Test
+	public void testUnmergeableQuerySentAsIs() {
+		AggregateQueryBuilder query = rangeQuery(AggregationFunction.UCOUNT);
+		new AggregateQueryFanOut(client, 4, 4).queryAsync(query);
+		Assert.assertEquals("Unmergeable query sliced", Arrays.asList(query.toUrlString()), urls);
+		urls.clear();
+		query = rangeQuery(AggregationFunction.AVG);
+		query.setConstraints(new ArrayList<FieldConstraint>());
+		new AggregateQueryFanOut(client, 4, 4).queryAsync(query);
+		Assert.assertEquals("Query without range sliced", 1, urls.size());
+	}
+
+	@Test
+	public void testFailureCancelsPartials() throws Exception {
+		fails = true;
+		try {
+			new AggregateQueryFanOut(client, 4, 4).query(rangeQuery(AggregationFunction.AVG));
+			Assert.fail("Failure not reported");
+		} catch (LogInsightApiException e) {
+			Assert.assertEquals("Wrong failure", "Aggregate query failed", e.getMessage());
+		}
+		Assert.assertEquals("Partials launched after the failure", 3, urls.size());
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.AggregateResponseBin;
+import com.vmware.loginsightapi.core.AggregateSeries;
+
+public class TestAggregateSeries {
+
+	private static final String JSON = "{\"complete\":true,\"duration\":12,\"bins\":["
+			+ "{\"minTimestamp\":1000,\"maxTimestamp\":1999,\"value\":5},"
+			+ "{\"minTimestamp\":2000,\"maxTimestamp\":2999,\"value\":null,\"extra\":{\"a\":[1]}},"
+			+ "{\"minTimestamp\":3000,\"value\":7.9}],\"unknown\":\"x\"}";
+
+	private static AggregateSeries series(int bins) {
+		AggregateSeries.Builder builder = new AggregateSeries.Builder(1);
+		for (int i = 0; i < bins; i++) {
+			builder.add(i * 10L, i * 10L + 9, i % 5 == 0 ? null : (long) i);
+		}
+		return builder.build();
+	}
+
+	@Test
+	public void testDecodedFromStream() {
+		AggregateResponse response = AggregateResponse
+				.fromJsonStream(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)));
+		Assert.assertTrue("Mismatch in complete", response.isComplete());
+		Assert.assertEquals("Mismatch in duration", 12, response.getDuration());
+		AggregateSeries series = response.getSeries();
+		Assert.assertEquals("Mismatch in bins", 3, series.size());
+		Assert.assertEquals("Mismatch in value", 5, series.getValue(0));
+		Assert.assertFalse("Null value not recorded", series.hasValue(1));
+		Assert.assertFalse("Missing timestamp not recorded", series.hasMaxTimestamp(2));
+		Assert.assertEquals("Float value not truncated", 7, series.getValue(2));
+	}
+
+	@Test
+	public void testBinsAdapterMatchesObjectDecoding() {
+		List<AggregateResponseBin> expected = AggregateResponse.fromJsonString(JSON).getBins();
+		List<AggregateResponseBin> bins = AggregateResponse
+				.fromJsonStream(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8))).getBins();
+		Assert.assertEquals("Mismatch in bins", expected.size(), bins.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals("Mismatch in min timestamp", expected.get(i).getMinTimestamp(),
+					bins.get(i).getMinTimestamp());
+			Assert.assertEquals("Mismatch in max timestamp", expected.get(i).getMaxTimestamp(),
+					bins.get(i).getMaxTimestamp());
+			Assert.assertEquals("Mismatch in value", expected.get(i).getValue(), bins.get(i).getValue());
+		}
+		Assert.assertSame("Bin objects not kept", bins.get(0), bins.get(0));
+	}
+
+	@Test
+	public void testDecodedBinsMutable() {
+		AggregateResponse response = AggregateResponse
+				.fromJsonStream(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)));
+		int size = response.getSeries().size();
+		List<AggregateResponseBin> bins = response.getBins();
+		bins.add(new AggregateResponseBin());
+		Assert.assertSame("Bins not kept", bins, response.getBins());
+		Assert.assertEquals("Bin not added", size + 1, response.getBins().size());
+		Assert.assertEquals("Series changed", size, response.getSeries().size());
+	}
+
+	@Test
+	public void testSeriesFromBins() {
+		List<AggregateResponseBin> bins = new ArrayList<AggregateResponseBin>();
+		AggregateResponseBin bin = new AggregateResponseBin();
+		bin.setMinTimestamp(10L);
+		bin.setValue(3L);
+		bins.add(bin);
+		AggregateResponse response = new AggregateResponse();
+		response.setBins(bins);
+		AggregateSeries series = response.getSeries();
+		Assert.assertEquals("Mismatch in value", 3, series.getValue(0));
+		Assert.assertFalse("Missing timestamp not recorded", series.hasMaxTimestamp(0));
+		Assert.assertSame("Bins replaced", bins, response.getBins());
+	}
+
+	@Test
+	public void testSliceSharesColumns() {
+		AggregateSeries series = series(1000);
+		AggregateSeries slice = series.slice(100, 200);
+		Assert.assertEquals("Mismatch in size", 100, slice.size());
+		Assert.assertEquals("Mismatch in first bin", 1000, slice.getMinTimestamp(0));
+		Assert.assertFalse("Null bitmap not sliced", slice.hasValue(0));
+		Assert.assertTrue("Null bitmap not sliced", slice.hasValue(1));
+		Assert.assertEquals("Mismatch in nested slice", 1500, slice.slice(50, 60).getMinTimestamp(0));
+		try {
+			slice.getValue(100);
+			Assert.fail("Bin outside of the slice read");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testBinarySearch() {
+		AggregateSeries series = series(1000);
+		Assert.assertEquals("Mismatch in lower bound", 51, series.lowerBound(505));
+		Assert.assertEquals("Mismatch in lower bound", 50, series.lowerBound(500));
+		Assert.assertEquals("Mismatch in lower bound", 1000, series.lowerBound(100000));
+		Assert.assertEquals("Mismatch in bin of timestamp", 50, series.indexOf(509));
+		Assert.assertEquals("Timestamp before the bins found", -1, series.indexOf(-1));
+		Assert.assertEquals("Timestamp after the bins found", -1, series.indexOf(10000));
+		AggregateSeries range = series.range(200, 300);
+		Assert.assertEquals("Mismatch in range", 10, range.size());
+		Assert.assertEquals("Mismatch in range search", 3, range.indexOf(235));
+		Assert.assertTrue("Series not sorted", series.isSorted());
+	}
+}
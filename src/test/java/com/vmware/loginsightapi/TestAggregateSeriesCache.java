@@ -0,0 +1,161 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import static com.vmware.loginsightapi.ConstraintUrlMatcher.bound;
+import static com.vmware.loginsightapi.ConstraintUrlMatcher.matches;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.AggregateResponseBin;
+import com.vmware.loginsightapi.core.AggregateSeries;
+import com.vmware.loginsightapi.core.FieldConstraint;
+
+public class TestAggregateSeriesCache {
+
+	private static final int BIN_WIDTH = 5000;
+	private static final long DAY = 24 * 3600 * 1000;
+
+	private ClientMetrics metrics;
+	private AggregateSeriesCache cache;
+	private List<Long> events;
+	private List<String> urls;
+	private boolean incomplete;
+	private long now;
+
+	@Before
+	public void setUp() {
+		metrics = new ClientMetrics();
+		cache = new AggregateSeriesCache(4, 60000, 3600000, metrics);
+		events = new ArrayList<Long>();
+		urls = new ArrayList<String>();
+		now = System.currentTimeMillis() / BIN_WIDTH * BIN_WIDTH;
+		for (long t = now - DAY; t < now; t += 1000) {
+			events.add(t);
+		}
+	}
+
+	/**
+	 * Counts the events in bins aligned on the epoch, like LogInsight does
+	 */
+	private CompletableFuture<AggregateResponse> count(String url) {
+		urls.add(url);
+		TreeMap<Long, Long> counts = new TreeMap<Long, Long>();
+		for (Long event : events) {
+			if (matches(url, event)) {
+				counts.merge(event / BIN_WIDTH * BIN_WIDTH, 1L, Long::sum);
+			}
+		}
+		List<AggregateResponseBin> bins = new ArrayList<AggregateResponseBin>();
+		for (Long min : counts.keySet()) {
+			AggregateResponseBin bin = new AggregateResponseBin();
+			bin.setMinTimestamp(min);
+			bin.setMaxTimestamp(min + BIN_WIDTH - 1);
+			bin.setValue(counts.get(min));
+			bins.add(bin);
+		}
+		AggregateResponse response = new AggregateResponse();
+		response.setComplete(!incomplete);
+		response.setBins(bins);
+		return CompletableFuture.completedFuture(response);
+	}
+
+	private static AggregateQueryBuilder query(long from, long to) {
+		AggregateQueryBuilder query = new AggregateQueryBuilder().count().binWidth(BIN_WIDTH);
+		query.limit(100000);
+		query.setConstraints(new ArrayList<FieldConstraint>(Arrays.asList(FieldConstraint.eq("source", "web"),
+				FieldConstraint.ge("timestamp", Long.toString(from)), FieldConstraint.lt("timestamp", Long.toString(to)))));
+		return query;
+	}
+
+	private AggregateSeries series(AggregateQueryBuilder query) {
+		return cache.query(query, this::count).join().getSeries();
+	}
+
+	private void assertSameSeries(AggregateSeries expected, AggregateSeries actual) {
+		Assert.assertEquals("Mismatch in bins", expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals("Mismatch in bin", expected.getMinTimestamp(i), actual.getMinTimestamp(i));
+			Assert.assertEquals("Mismatch in value", expected.getValue(i), actual.getValue(i));
+		}
+	}
+
+	@Test
+	public void testRefreshQueriesTrailingBins() {
+		series(query(now - DAY, now));
+		// late events in the last minute and new events after the first query
+		events.add(now - 30000);
+		for (long t = now; t < now + 10000; t += 500) {
+			events.add(t);
+		}
+		AggregateQueryBuilder refresh = query(now - DAY + 10000, now + 10000);
+		urls.clear();
+		AggregateSeries series = series(refresh);
+		Assert.assertEquals("Mismatch in queries", 1, urls.size());
+		long from = bound(urls.get(0), "GE");
+		Assert.assertTrue("Tail not bounded", from >= 0);
+		Assert.assertTrue("Settled bins queried again", from >= now - 65000);
+		assertSameSeries(count(refresh.toUrlString()).join().getSeries(), series);
+		Assert.assertEquals("Mismatch in refreshes", 1, metrics.getSeriesRefreshes());
+		Assert.assertTrue("Settled bins not reused", metrics.getSeriesBinsReused() > 17000);
+	}
+
+	@Test
+	public void testSettledRangeNotQueried() {
+		AggregateQueryBuilder past = query(now - DAY, now - DAY / 2);
+		AggregateSeries first = series(past);
+		urls.clear();
+		assertSameSeries(first, series(past));
+		Assert.assertTrue("Settled range queried again", urls.isEmpty());
+	}
+
+	@Test
+	public void testEarlierRangeQueriedInFull() {
+		series(query(now - DAY / 2, now));
+		urls.clear();
+		AggregateQueryBuilder earlier = query(now - DAY, now);
+		series(earlier);
+		Assert.assertEquals("Earlier range not queried in full", Arrays.asList(earlier.toUrlString()), urls);
+	}
+
+	@Test
+	public void testIncompleteResponseNotReused() {
+		incomplete = true;
+		AggregateQueryBuilder query = query(now - DAY, now);
+		series(query);
+		incomplete = false;
+		urls.clear();
+		series(query);
+		Assert.assertEquals("Incomplete series reused", Arrays.asList(query.toUrlString()), urls);
+	}
+
+	@Test
+	public void testOtherSeriesNotShared() {
+		series(query(now - DAY, now));
+		AggregateQueryBuilder other = query(now - DAY, now);
+		other.constraints.set(0, FieldConstraint.eq("source", "db"));
+		urls.clear();
+		series(other);
+		Assert.assertEquals("Other series reused", Arrays.asList(other.toUrlString()), urls);
+		AggregateQueryBuilder grouped = query(now - DAY, now).groupByFixedBinWidth("status", 100);
+		urls.clear();
+		series(grouped);
+		series(grouped);
+		Assert.assertEquals("Grouped series cached", 2, urls.size());
+	}
+}
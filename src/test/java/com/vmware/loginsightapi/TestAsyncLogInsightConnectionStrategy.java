@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.pool.PoolStats;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAsyncLogInsightConnectionStrategy {
+
+	@Test
+	public void testPoolSizedFromConfiguration() {
+		Configuration config = new Configuration();
+		config.setIngestionMaxInFlight(1);
+		config.setConnectionMaxPerRoute(8);
+		config.setConnectionMaxTotal(12);
+		config.setConnectionIoThreads(3);
+		AsyncLogInsightConnectionStrategy strategy = new AsyncLogInsightConnectionStrategy(config);
+		Assert.assertEquals(8, strategy.getMaxConnectionsPerRoute());
+		Assert.assertEquals(12, strategy.getMaxConnectionsTotal());
+		Assert.assertEquals(3, strategy.getIoThreads());
+	}
+
+	@Test
+	public void testPoolDefaults() {
+		Configuration config = new Configuration();
+		config.setIngestionMaxInFlight(1);
+		config.setConnectionMaxPerRoute(0);
+		config.setConnectionMaxTotal(0);
+		config.setConnectionIoThreads(0);
+		AsyncLogInsightConnectionStrategy strategy = new AsyncLogInsightConnectionStrategy(config);
+		Assert.assertEquals(AsyncLogInsightConnectionStrategy.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+				strategy.getMaxConnectionsPerRoute());
+		Assert.assertEquals(2 * AsyncLogInsightConnectionStrategy.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+				strategy.getMaxConnectionsTotal());
+		Assert.assertEquals(Runtime.getRuntime().availableProcessors(), strategy.getIoThreads());
+	}
+
+	@Test
+	public void testRouteFitsIngestionInFlight() {
+		Configuration config = new Configuration();
+		config.setConnectionMaxPerRoute(4);
+		config.setIngestionMaxInFlight(16);
+		AsyncLogInsightConnectionStrategy strategy = new AsyncLogInsightConnectionStrategy(config);
+		Assert.assertEquals(16, strategy.getMaxConnectionsPerRoute());
+		Assert.assertEquals(32, strategy.getMaxConnectionsTotal());
+	}
+
+	@Test
+	public void testPoolStats() throws Exception {
+		Configuration config = new Configuration();
+		config.setConnectionMaxPerRoute(5);
+		config.setConnectionMaxTotal(7);
+		config.setConnectionIoThreads(1);
+		AsyncLogInsightConnectionStrategy strategy = new AsyncLogInsightConnectionStrategy(config);
+		Assert.assertNull(strategy.getPoolStats());
+		CloseableHttpAsyncClient client = strategy.getHttpClient();
+		try {
+			PoolStats stats = strategy.getPoolStats();
+			Assert.assertEquals(0, stats.getLeased());
+			Assert.assertEquals(0, stats.getPending());
+			Assert.assertEquals(0, stats.getAvailable());
+			Assert.assertEquals(7, stats.getMax());
+		} finally {
+			client.close();
+		}
+	}
+}
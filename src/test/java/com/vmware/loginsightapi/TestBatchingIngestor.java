@@ -0,0 +1,259 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.ConnectException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.vmware.loginsightapi.core.IngestionRequest;
+import com.vmware.loginsightapi.core.IngestionResponse;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.util.DiskSpool;
+import com.vmware.loginsightapi.util.DiskSpool.EvictionPolicy;
+import com.vmware.loginsightapi.util.DiskSpool.FsyncPolicy;
+
+public class TestBatchingIngestor {
+
+	private LogInsightClient client;
+	private List<Integer> batchSizes;
+
+	@Before
+	public void setUp() {
+		client = mock(LogInsightClient.class);
+		batchSizes = new CopyOnWriteArrayList<Integer>();
+		when(client.ingestAsync(any(IngestionRequest.class))).thenAnswer(new Answer<CompletableFuture<IngestionResponse>>() {
+			@Override
+			public CompletableFuture<IngestionResponse> answer(InvocationOnMock invocation) {
+				IngestionRequest request = (IngestionRequest) invocation.getArguments()[0];
+				batchSizes.add(request.count());
+				IngestionResponse response = new IngestionResponse();
+				response.setStatus("ok");
+				response.setIngested(request.count());
+				return CompletableFuture.completedFuture(response);
+			}
+		});
+	}
+
+	@Test
+	public void testBatchingByMessageCount() throws Exception {
+		try (BatchingIngestor ingestor = new BatchingIngestor(client, 100, 1024 * 1024, 60000, 2)) {
+			for (int i = 0; i < 250; i++) {
+				ingestor.add(new Message("message " + i));
+			}
+			ingestor.flush();
+			Assert.assertEquals("Invalid number of ingested messages", 250, ingestor.getSentMessages());
+			Assert.assertEquals("Invalid number of batches", 3, batchSizes.size());
+			Assert.assertEquals("Invalid batch size", Integer.valueOf(100), batchSizes.get(0));
+		}
+	}
+
+	@Test
+	public void testBatchingBySize() throws Exception {
+		try (BatchingIngestor ingestor = new BatchingIngestor(client, 1000, 1024, 60000, 1)) {
+			for (int i = 0; i < 100; i++) {
+				ingestor.add(new MessageBuilder("message line " + i).withField("field1", "content 1").build());
+			}
+			ingestor.flush();
+			Assert.assertEquals("Invalid number of ingested messages", 100, ingestor.getSentMessages());
+			Assert.assertTrue("Batches are not split by size", batchSizes.size() > 1);
+		}
+	}
+
+	@Test
+	public void testLinger() throws Exception {
+		try (BatchingIngestor ingestor = new BatchingIngestor(client, 1000, 1024 * 1024, 10, 1)) {
+			ingestor.add(new Message("message line 1"));
+			long deadline = System.currentTimeMillis() + 5000;
+			while (ingestor.getSentMessages() == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals("Message is not sent after linger time", 1, ingestor.getSentMessages());
+		}
+	}
+
+	@Test
+	public void testCloseSendsPendingMessages() throws Exception {
+		BatchingIngestor ingestor = new BatchingIngestor(client, 1000, 1024 * 1024, 60000, 1);
+		ingestor.add(new Message("message line 1"));
+		ingestor.add(new Message("message line 2"));
+		ingestor.close();
+		Assert.assertEquals("Pending messages are not sent on close", 2, ingestor.getSentMessages());
+	}
+
+	@Test
+	public void testFlushAndCloseDoNotWaitForLinger() throws Exception {
+		BatchingIngestor ingestor = new BatchingIngestor(client, 1000, 1024 * 1024, 60000, 1);
+		// let the dispatcher start waiting for the first message
+		Thread.sleep(50);
+		long start = System.currentTimeMillis();
+		ingestor.add(new Message("message line 1"));
+		ingestor.flush();
+		Assert.assertEquals("Message is not sent on flush", 1, ingestor.getSentMessages());
+		Thread.sleep(50);
+		ingestor.flush();
+		ingestor.add(new Message("message line 2"));
+		Thread.sleep(50);
+		ingestor.close();
+		Assert.assertEquals("Message is not sent on close", 2, ingestor.getSentMessages());
+		Assert.assertTrue("Flush and close wait for the linger time", System.currentTimeMillis() - start < 5000);
+	}
+
+	@Test
+	public void testSenderStatistics() throws Exception {
+		try (BatchingIngestor ingestor = new BatchingIngestor(client, 10, 1024 * 1024, 60000, 3)) {
+			for (int i = 0; i < 95; i++) {
+				ingestor.add(new Message("message " + i));
+			}
+			ingestor.flush();
+			Assert.assertEquals("Invalid number of senders", 3, ingestor.getSenders().size());
+			long requests = 0;
+			for (BatchingIngestor.Sender sender : ingestor.getSenders()) {
+				requests += sender.getRequests();
+				Assert.assertEquals("Invalid number of failures", 0, sender.getFailures());
+				Assert.assertTrue("Invalid latency", sender.getMaxLatencyMs() >= sender.getAverageLatencyMs());
+			}
+			Assert.assertEquals("Invalid number of requests", 10, requests);
+		}
+	}
+
+	@Test
+	public void testFailedBatches() throws Exception {
+		CompletableFuture<IngestionResponse> failure = new CompletableFuture<IngestionResponse>();
+		failure.completeExceptionally(new LogInsightApiException("Ingestion failed"));
+		doReturn(failure).when(client).ingestAsync(any(IngestionRequest.class));
+		try (BatchingIngestor ingestor = new BatchingIngestor(client, 10, 1024 * 1024, 60000, 2)) {
+			for (int i = 0; i < 25; i++) {
+				ingestor.add(new Message("message " + i));
+			}
+			ingestor.flush();
+			Assert.assertEquals("Invalid number of failed messages", 25, ingestor.getFailedMessages());
+			Assert.assertEquals("Invalid number of ingested messages", 0, ingestor.getSentMessages());
+		}
+	}
+
+	@Test
+	public void testSpoolDuringOutage() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		doAnswer(new Answer<CompletableFuture<IngestionResponse>>() {
+			@Override
+			public CompletableFuture<IngestionResponse> answer(InvocationOnMock invocation) {
+				IngestionRequest request = (IngestionRequest) invocation.getArguments()[0];
+				CompletableFuture<IngestionResponse> result = new CompletableFuture<IngestionResponse>();
+				if (calls.incrementAndGet() <= 3) {
+					result.completeExceptionally(
+							new LogInsightApiException("Ingestion failed", new ConnectException("Connection refused")));
+				} else {
+					IngestionResponse response = new IngestionResponse();
+					response.setStatus("ok");
+					response.setIngested(request.count());
+					result.complete(response);
+				}
+				return result;
+			}
+		}).when(client).ingestAsync(any(IngestionRequest.class));
+		Path directory = Files.createTempDirectory("loginsight-spool");
+		try {
+			DiskSpool spool = new DiskSpool(directory, 1024 * 1024, 64 * 1024, FsyncPolicy.NEVER, 0,
+					EvictionPolicy.REJECT);
+			try (BatchingIngestor ingestor = new BatchingIngestor(client, 10, 1024 * 1024, 60000, 2, spool)) {
+				for (int i = 0; i < 50; i++) {
+					ingestor.add(new Message("message " + i));
+				}
+				ingestor.flush();
+				long deadline = System.currentTimeMillis() + 10000;
+				while (ingestor.getSentMessages() < 50 && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				Assert.assertEquals("Spooled messages are not ingested", 50, ingestor.getSentMessages());
+				Assert.assertTrue("Failed batches are not spooled", ingestor.getSpooledMessages() > 0);
+				Assert.assertEquals("Invalid number of failed messages", 0, ingestor.getFailedMessages());
+				Assert.assertEquals("Spool is not drained", 0, ingestor.getSpooledBatches());
+			}
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	@Test
+	public void testRejectedBatchesAreNotSpooled() throws Exception {
+		CompletableFuture<IngestionResponse> failure = new CompletableFuture<IngestionResponse>();
+		failure.completeExceptionally(new LogInsightHttpException("Bad request", 400, -1));
+		doReturn(failure).when(client).ingestAsync(any(IngestionRequest.class));
+		Path directory = Files.createTempDirectory("loginsight-spool");
+		try {
+			DiskSpool spool = new DiskSpool(directory, 1024 * 1024, 64 * 1024, FsyncPolicy.NEVER, 0,
+					EvictionPolicy.REJECT);
+			try (BatchingIngestor ingestor = new BatchingIngestor(client, 10, 1024 * 1024, 60000, 2, spool)) {
+				for (int i = 0; i < 25; i++) {
+					ingestor.add(new Message("message " + i));
+				}
+				ingestor.flush();
+				Assert.assertEquals("Invalid number of failed messages", 25, ingestor.getFailedMessages());
+				Assert.assertEquals("Rejected batches are spooled", 0, ingestor.getSpooledMessages());
+			}
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	@Test
+	public void testRejectedSpooledBatchesAreDropped() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		doAnswer(new Answer<CompletableFuture<IngestionResponse>>() {
+			@Override
+			public CompletableFuture<IngestionResponse> answer(InvocationOnMock invocation) {
+				CompletableFuture<IngestionResponse> result = new CompletableFuture<IngestionResponse>();
+				if (calls.incrementAndGet() <= 1) {
+					result.completeExceptionally(
+							new LogInsightApiException("Ingestion failed", new ConnectException("Connection refused")));
+				} else {
+					result.completeExceptionally(new LogInsightHttpException("Bad request", 400, -1));
+				}
+				return result;
+			}
+		}).when(client).ingestAsync(any(IngestionRequest.class));
+		Path directory = Files.createTempDirectory("loginsight-spool");
+		try {
+			DiskSpool spool = new DiskSpool(directory, 1024 * 1024, 64 * 1024, FsyncPolicy.NEVER, 0,
+					EvictionPolicy.REJECT);
+			try (BatchingIngestor ingestor = new BatchingIngestor(client, 10, 1024 * 1024, 60000, 2, spool)) {
+				for (int i = 0; i < 50; i++) {
+					ingestor.add(new Message("message " + i));
+				}
+				ingestor.flush();
+				long deadline = System.currentTimeMillis() + 10000;
+				while (ingestor.getFailedMessages() < 50 && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				Assert.assertEquals("Invalid number of failed messages", 50, ingestor.getFailedMessages());
+				Assert.assertEquals("Rejected batches stay in the spool", 0, ingestor.getSpooledBatches());
+			}
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+}
@@ -1,14 +1,20 @@
 package com.vmware.loginsightapi;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 
 import org.junit.Test;
 
+import com.vmware.loginsightapi.util.OverflowQueue.OverflowPolicy;
+
 public class TestConfiguration {
 
 	@Test
@@ -79,4 +85,59 @@ public class TestConfiguration {
 		assertEquals("Mismatch in password", Configuration.DEFAULT_SCHEME, config.getScheme());
 	}
 
+	@Test
+	public void testBuildConfigCompression() {
+		Map<String, String> configData = new HashMap<String, String>();
+		configData.put(Configuration.KEY_LI_HOST, "hostname");
+		Configuration config = Configuration.buildConfig(configData);
+		assertEquals("Mismatch in default compression", Configuration.COMPRESSION_NONE,
+				config.getIngestionCompression());
+		assertFalse("Compression is enabled by default", config.isIngestionGzipEnabled());
+
+		configData.put(Configuration.KEY_INGESTION_COMPRESSION, "GZIP");
+		configData.put(Configuration.KEY_INGESTION_COMPRESSION_LEVEL, "9");
+		config = Configuration.buildConfig(configData);
+		assertTrue("Compression is not enabled", config.isIngestionGzipEnabled());
+		assertEquals("Mismatch in compression level", 9, config.getIngestionCompressionLevel());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBuildConfigInvalidCompression() {
+		Map<String, String> configData = new HashMap<String, String>();
+		configData.put(Configuration.KEY_INGESTION_COMPRESSION, "zip");
+		Configuration.buildConfig(configData);
+	}
+
+	@Test
+	public void testBuildConfigQueue() {
+		Map<String, String> configData = new HashMap<String, String>();
+		Configuration config = Configuration.buildConfig(configData);
+		assertEquals("Mismatch in default overflow policy", OverflowPolicy.BLOCK, config.getIngestionQueueOverflow());
+
+		configData.put(Configuration.KEY_INGESTION_QUEUE_CAPACITY, "500");
+		configData.put(Configuration.KEY_INGESTION_QUEUE_OVERFLOW, "drop_oldest");
+		configData.put(Configuration.KEY_INGESTION_QUEUE_SAMPLE_RATE, "100");
+		config = Configuration.buildConfig(configData);
+		assertEquals("Mismatch in queue capacity", 500, config.getIngestionQueueCapacity());
+		assertEquals("Mismatch in overflow policy", OverflowPolicy.DROP_OLDEST, config.getIngestionQueueOverflow());
+		assertEquals("Mismatch in sample rate", 100, config.getIngestionQueueSampleRate());
+	}
+
+	@Test
+	public void testBuildConfigRetry() {
+		Map<String, String> configData = new HashMap<String, String>();
+		Configuration config = Configuration.buildConfig(configData);
+		assertEquals("Mismatch in default retry statuses", new HashSet<Integer>(Arrays.asList(429, 502, 503, 504)),
+				config.getRetryStatuses());
+
+		configData.put(Configuration.KEY_RETRY_QUERY_MAX_ATTEMPTS, "5");
+		configData.put(Configuration.KEY_RETRY_STATUSES, "503, 504");
+		configData.put(Configuration.KEY_RETRY_BUDGET_RATIO, "0.2");
+		config = Configuration.buildConfig(configData);
+		assertEquals("Mismatch in query attempts", 5, config.getQueryRetryPolicy().getMaxAttempts());
+		assertEquals("Mismatch in retry statuses", new HashSet<Integer>(Arrays.asList(503, 504)),
+				config.getQueryRetryPolicy().getRetryableStatuses());
+		assertEquals("Mismatch in budget ratio", 0.2, config.getRetryBudgetRatio(), 0.0001);
+	}
+
 }
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.util.DiskSpool;
+import com.vmware.loginsightapi.util.DiskSpool.EvictionPolicy;
+import com.vmware.loginsightapi.util.DiskSpool.FsyncPolicy;
+import com.vmware.loginsightapi.util.DiskSpool.Record;
+
+public class TestDiskSpool {
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("loginsight-spool");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory.toFile());
+	}
+
+	private DiskSpool open(long maxBytes, EvictionPolicy evictionPolicy) throws IOException {
+		return new DiskSpool(directory, maxBytes, 1024, FsyncPolicy.INTERVAL, 10, evictionPolicy);
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(Record record) {
+		return new String(record.getPayload(), StandardCharsets.UTF_8);
+	}
+
+	private List<Path> segmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".spool")).sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void testAppendPollCommit() throws Exception {
+		try (DiskSpool spool = open(1024 * 1024, EvictionPolicy.DROP_OLDEST)) {
+			for (int i = 0; i < 100; i++) {
+				Assert.assertTrue("Record is refused", spool.append(bytes("record " + i)));
+			}
+			Assert.assertEquals("Invalid number of pending records", 100, spool.getPendingRecords());
+			Assert.assertTrue("Records are not split into segments", segmentFiles().size() > 1);
+			for (int i = 0; i < 100; i++) {
+				Record record = spool.poll();
+				Assert.assertEquals("Records are out of order", "record " + i, string(record));
+				spool.commit(record);
+			}
+			Assert.assertNull("Unexpected record", spool.poll(10, TimeUnit.MILLISECONDS));
+			Assert.assertEquals("Invalid number of pending records", 0, spool.getPendingRecords());
+			Assert.assertEquals("Consumed segments are not deleted", 1, segmentFiles().size());
+		}
+	}
+
+	@Test
+	public void testReplayAfterRestart() throws Exception {
+		try (DiskSpool spool = open(1024 * 1024, EvictionPolicy.DROP_OLDEST)) {
+			for (int i = 0; i < 50; i++) {
+				spool.append(bytes("record " + i));
+			}
+			List<Record> records = new ArrayList<Record>();
+			for (int i = 0; i < 10; i++) {
+				records.add(spool.poll());
+			}
+			// records 0-4 and 6-9 are committed, the checkpoint stays before record 5
+			for (int i = 0; i < 10; i++) {
+				if (i != 5) {
+					spool.commit(records.get(i));
+				}
+			}
+			spool.retry(records.get(5));
+			Assert.assertEquals("Retried record is not polled first", "record 5", string(spool.poll()));
+		}
+		try (DiskSpool spool = open(1024 * 1024, EvictionPolicy.DROP_OLDEST)) {
+			Assert.assertEquals("Invalid number of replayed records", 45, spool.getPendingRecords());
+			Assert.assertEquals("Replay does not start at the checkpoint", "record 5", string(spool.poll()));
+			spool.append(bytes("record 50"));
+		}
+		try (DiskSpool spool = open(1024 * 1024, EvictionPolicy.DROP_OLDEST)) {
+			Assert.assertEquals("Appended record is lost", 46, spool.getPendingRecords());
+		}
+	}
+
+	@Test
+	public void testCorruptedTail() throws Exception {
+		try (DiskSpool spool = open(1024 * 1024, EvictionPolicy.DROP_OLDEST)) {
+			spool.append(bytes("record 0"));
+			spool.append(bytes("record 1"));
+		}
+		// damage the payload of the second record
+		try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+			file.seek(16 + 8 + 3);
+			file.write('X');
+		}
+		try (DiskSpool spool = open(1024 * 1024, EvictionPolicy.DROP_OLDEST)) {
+			Assert.assertEquals("Corrupted record is not skipped", 1, spool.getPendingRecords());
+			spool.append(bytes("record 2"));
+			Assert.assertEquals("Invalid record", "record 0", string(spool.poll()));
+			Assert.assertEquals("Invalid record", "record 2", string(spool.poll()));
+		}
+	}
+
+	@Test
+	public void testDropOldest() throws Exception {
+		try (DiskSpool spool = open(4096, EvictionPolicy.DROP_OLDEST)) {
+			for (int i = 0; i < 1000; i++) {
+				Assert.assertTrue("Record is refused", spool.append(bytes("record " + i)));
+			}
+			Assert.assertTrue("Spool exceeds its size", spool.getSizeBytes() <= 4096);
+			Assert.assertTrue("Records are not dropped", spool.getDroppedRecords() > 0);
+			Assert.assertEquals("Invalid number of records", 1000,
+					spool.getPendingRecords() + spool.getDroppedRecords());
+			Record record = spool.poll();
+			Assert.assertEquals("Oldest records are not dropped", "record " + spool.getDroppedRecords(),
+					string(record));
+		}
+	}
+
+	@Test
+	public void testReject() throws Exception {
+		try (DiskSpool spool = open(2048, EvictionPolicy.REJECT)) {
+			int accepted = 0;
+			while (spool.append(bytes("record " + accepted))) {
+				accepted++;
+			}
+			Assert.assertTrue("Records are not accepted", accepted > 0);
+			Assert.assertEquals("Records are dropped", 0, spool.getDroppedRecords());
+			for (int i = 0; i < accepted; i++) {
+				spool.commit(spool.poll());
+			}
+			Assert.assertTrue("Space is not released after commit", spool.append(bytes("record")));
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.util.FingerprintSet;
+
+public class TestFingerprintSet {
+
+	@Test
+	public void testAddAndContains() {
+		FingerprintSet set = new FingerprintSet(10);
+		Assert.assertTrue("Fingerprint not added", set.add(42L, 1));
+		Assert.assertFalse("Duplicate fingerprint added", set.add(42L, 2));
+		Assert.assertTrue("Fingerprint not found", set.contains(42L));
+		Assert.assertFalse("Unknown fingerprint found", set.contains(43L));
+		Assert.assertTrue("Zero fingerprint not added", set.add(0L, 1));
+		Assert.assertTrue("Zero fingerprint not found", set.contains(0L));
+		Assert.assertEquals("Wrong size", 2, set.size());
+	}
+
+	@Test
+	public void testOldestEvictedWhenFull() {
+		FingerprintSet set = new FingerprintSet(3);
+		for (long i = 1; i <= 4; i++) {
+			set.add(i, i);
+		}
+		Assert.assertEquals("Capacity exceeded", 3, set.size());
+		Assert.assertFalse("Oldest fingerprint kept", set.contains(1L));
+		Assert.assertTrue("Recent fingerprint evicted", set.contains(4L));
+	}
+
+	@Test
+	public void testExpire() {
+		FingerprintSet set = new FingerprintSet(10);
+		set.add(1L, 100);
+		set.add(2L, 200);
+		set.add(3L, 150);
+		Assert.assertEquals("Wrong number of expired fingerprints", 1, set.expire(160));
+		Assert.assertFalse("Expired fingerprint kept", set.contains(1L));
+		Assert.assertTrue("Fingerprint queued after a recent one expired", set.contains(3L));
+		Assert.assertEquals("Wrong number of expired fingerprints", 2, set.expire(300));
+		Assert.assertEquals("Set not empty", 0, set.size());
+	}
+
+	@Test
+	public void testMatchesHashSet() {
+		// colliding fingerprints exercise the removal from the probe sequences
+		Random random = new Random(7);
+		FingerprintSet set = new FingerprintSet(64);
+		Set<Long> expected = new HashSet<Long>();
+		Deque<Long> order = new ArrayDeque<Long>();
+		for (int i = 0; i < 100000; i++) {
+			long fingerprint = random.nextInt(256) << 20;
+			boolean added = set.add(fingerprint, i);
+			Assert.assertEquals("Mismatch in add", expected.add(fingerprint), added);
+			if (added) {
+				order.addLast(fingerprint);
+				if (order.size() > 64) {
+					expected.remove(order.removeFirst());
+				}
+			}
+			long probe = random.nextInt(256) << 20;
+			Assert.assertEquals("Mismatch in contains", expected.contains(probe), set.contains(probe));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.nio.ContentEncoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.IngestionRequest;
+import com.vmware.loginsightapi.util.ByteBufferPool;
+import com.vmware.loginsightapi.util.IngestionRequestEntity;
+
+public class TestIngestionRequestEntity {
+
+	/**
+	 * ContentEncoder accepting at most {@code maxWrite} bytes per call
+	 */
+	private static class ThrottledEncoder implements ContentEncoder {
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		private final int maxWrite;
+		private boolean completed;
+
+		ThrottledEncoder(int maxWrite) {
+			this.maxWrite = maxWrite;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			int count = Math.min(src.remaining(), maxWrite);
+			for (int i = 0; i < count; i++) {
+				content.write(src.get());
+			}
+			return count;
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		@Override
+		public boolean isCompleted() {
+			return completed;
+		}
+	}
+
+	private IngestionRequest buildRequest(int count) {
+		IngestionRequestBuilder builder = new IngestionRequestBuilder();
+		for (int i = 0; i < count; i++) {
+			builder.withMessage(new MessageBuilder("message \"line\" " + i).withTimestamp(1432135888000L + i)
+					.withField("field1", "content " + i).build());
+		}
+		builder.withMessage(new MessageBuilder(StringUtils.repeat("large message ", 1000)).build());
+		return builder.build();
+	}
+
+	private byte[] produceBytes(IngestionRequestEntity entity, int maxWrite) throws Exception {
+		ThrottledEncoder encoder = new ThrottledEncoder(maxWrite);
+		int calls = 0;
+		while (!encoder.isCompleted()) {
+			entity.produceContent(encoder, null);
+			Assert.assertTrue("Entity is not completed", ++calls < 1000000);
+		}
+		return encoder.content.toByteArray();
+	}
+
+	private String produce(IngestionRequestEntity entity, int maxWrite) throws Exception {
+		return new String(produceBytes(entity, maxWrite), "UTF-8");
+	}
+
+	@Test
+	public void testProduceContent() throws Exception {
+		IngestionRequest request = buildRequest(500);
+		ByteBufferPool pool = new ByteBufferPool(1024, 2);
+		IngestionRequestEntity entity = new IngestionRequestEntity(request.getMessages(), pool);
+
+		Assert.assertEquals("Invalid streamed content", request.toJson(), produce(entity, 100));
+		Assert.assertTrue("Buffer is not returned to the pool", pool.getPooledBuffers() > 0);
+
+		entity.close();
+		Assert.assertEquals("Entity is not repeatable", request.toJson(), produce(entity, Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testWriteTo() throws Exception {
+		IngestionRequest request = buildRequest(100);
+		IngestionRequestEntity entity = new IngestionRequestEntity(request);
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		entity.writeTo(content);
+
+		Assert.assertEquals("Invalid serialized content", request.toJson(), content.toString("UTF-8"));
+		Assert.assertTrue("Entity is not chunked", entity.isChunked());
+		Assert.assertEquals("Invalid content length", -1, entity.getContentLength());
+	}
+
+	@Test
+	public void testProduceGzipContent() throws Exception {
+		IngestionRequest request = buildRequest(500);
+		IngestionRequestEntity entity = new IngestionRequestEntity(request.getMessages(), new ByteBufferPool(1024, 2),
+				true, 6);
+		byte[] compressed = produceBytes(entity, 100);
+		String content = IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(compressed)), "UTF-8");
+
+		Assert.assertEquals("Invalid compressed content", request.toJson(), content);
+		Assert.assertEquals("Invalid content encoding", "gzip", entity.getContentEncoding().getValue());
+		Assert.assertEquals("Invalid content bytes", request.toJson().getBytes("UTF-8").length,
+				entity.getContentBytes());
+		Assert.assertEquals("Invalid transferred bytes", compressed.length, entity.getTransferredBytes());
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.IngestionRequest;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.util.IngestionRequestSplitter;
+
+public class TestIngestionRequestSplitter {
+
+	private List<Message> buildMessages(int count) {
+		List<Message> messages = new ArrayList<Message>();
+		for (int i = 0; i < count; i++) {
+			messages.add(new MessageBuilder("message line " + i).withField("field1", "content " + i).build());
+		}
+		return messages;
+	}
+
+	@Test
+	public void testNoSplit() {
+		List<Message> messages = buildMessages(100);
+		List<List<Message>> parts = IngestionRequestSplitter.split(messages, 100, 1024 * 1024);
+		Assert.assertEquals("Request is split", 1, parts.size());
+		Assert.assertSame("Messages are copied", messages, parts.get(0));
+	}
+
+	@Test
+	public void testSplitByCount() {
+		List<List<Message>> parts = IngestionRequestSplitter.split(buildMessages(250), 100, 1024 * 1024);
+		Assert.assertEquals("Invalid number of parts", 3, parts.size());
+		Assert.assertEquals("Invalid part size", 100, parts.get(0).size());
+		Assert.assertEquals("Invalid last part size", 50, parts.get(2).size());
+		Assert.assertEquals("Message order is not kept", "message line 200", parts.get(2).get(0).getText());
+	}
+
+	@Test
+	public void testSplitBySize() throws Exception {
+		List<Message> messages = buildMessages(1000);
+		int maxBytes = 4096;
+		List<List<Message>> parts = IngestionRequestSplitter.split(messages, 10000, maxBytes);
+		Assert.assertTrue("Request is not split", parts.size() > 1);
+		int count = 0;
+		for (List<Message> part : parts) {
+			int size = new IngestionRequest(part).toJson().getBytes("UTF-8").length;
+			Assert.assertTrue("Part exceeds the size limit: " + size, size <= maxBytes);
+			count += part.size();
+		}
+		Assert.assertEquals("Messages are lost", 1000, count);
+	}
+
+	@Test
+	public void testOversizedMessage() {
+		List<Message> messages = buildMessages(2);
+		messages.add(1, new Message(StringUtils.repeat("large message ", 1000)));
+		List<List<Message>> parts = IngestionRequestSplitter.split(messages, 100, 1024);
+		Assert.assertEquals("Invalid number of parts", 3, parts.size());
+		Assert.assertEquals("Oversized message is not sent alone", 1, parts.get(1).size());
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vmware.loginsightapi.core.AuthInfo;
+import com.vmware.loginsightapi.core.IngestionRequest;
+import com.vmware.loginsightapi.core.IngestionResponse;
+import com.vmware.loginsightapi.util.JacksonJsonCodec;
+import com.vmware.loginsightapi.util.JsonCodecs;
+
+public class TestJsonCodec {
+
+	@Test
+	public void testUnknownPropertiesIgnored() {
+		IngestionResponse response = IngestionResponse
+				.fromJsonString("{\"status\":\"ok\",\"message\":\"m\",\"ingested\":3,\"newField\":1}");
+		Assert.assertEquals("Mismatch in ingested", 3, response.getIngested());
+	}
+
+	@Test
+	public void testReadersAndWritersReused() {
+		JacksonJsonCodec codec = new JacksonJsonCodec();
+		Assert.assertSame("Reader not reused", codec.reader(AuthInfo.class), codec.reader(AuthInfo.class));
+		Assert.assertSame("Writer not reused", codec.writer(IngestionRequest.class),
+				codec.writer(IngestionRequest.class));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		IngestionRequest request = new IngestionRequest();
+		request.addMessage(new MessageBuilder("message line 1").withField("field1", "content 1").build());
+		JacksonJsonCodec codec = new JacksonJsonCodec();
+		String json = codec.write(request);
+		IngestionRequest parsed = codec.read(new ByteArrayInputStream(json.getBytes("UTF-8")),
+				IngestionRequest.class);
+		Assert.assertEquals("Mismatch after round trip", json, codec.write(parsed));
+	}
+
+	@Test
+	public void testReadDoesNotCloseStream() throws IOException {
+		AtomicInteger closed = new AtomicInteger();
+		ByteArrayInputStream in = new ByteArrayInputStream("{\"status\":\"ok\"}".getBytes("UTF-8")) {
+			@Override
+			public void close() {
+				closed.incrementAndGet();
+			}
+		};
+		IngestionResponse response = new JacksonJsonCodec().read(in, IngestionResponse.class);
+		Assert.assertEquals("Mismatch in status", "ok", response.getStatus());
+		Assert.assertEquals("Stream closed", 0, closed.get());
+	}
+
+	@Test
+	public void testPluggableCodec() {
+		AtomicInteger reads = new AtomicInteger();
+		JsonCodecs.set(new JacksonJsonCodec(
+				new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true)) {
+			@Override
+			public <T> T read(String json, Class<T> type) throws IOException {
+				reads.incrementAndGet();
+				return super.read(json, type);
+			}
+		});
+		try {
+			AuthInfo.fromJsonString("{\"userId\":\"u\",\"sessionId\":\"s\",\"ttl\":1800}");
+			Assert.assertEquals("Installed codec not used", 1, reads.get());
+			try {
+				AuthInfo.fromJsonString("{\"userId\":\"u\",\"unknown\":true}");
+				Assert.fail("Codec configuration not applied");
+			} catch (ParseException e) {
+				// expected
+			}
+		} finally {
+			JsonCodecs.set(null);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.LogInsightApiError;
+import com.vmware.loginsightapi.core.Message;
+
+public class TestLiveTail {
+
+	private FakeEventStore store;
+	private LogInsightClient client;
+	private List<Message> events;
+	private List<String> urls;
+	private List<List<Message>> batches;
+	private List<LogInsightApiError> errors;
+
+	@Before
+	public void setUp() {
+		store = new FakeEventStore();
+		client = store.mockClient();
+		events = store.events;
+		urls = store.urls;
+		batches = new CopyOnWriteArrayList<List<Message>>();
+		errors = new CopyOnWriteArrayList<LogInsightApiError>();
+	}
+
+	@After
+	public void tearDown() {
+		Assert.assertFalse("Query result cache used", store.cacheUsed);
+	}
+
+	private LiveTail tail(int pageSize, long overlapMs) {
+		return tail(pageSize, overlapMs, 40);
+	}
+
+	private LiveTail tail(int pageSize, long overlapMs, long maxIntervalMs) {
+		return new LiveTail(client, new MessageQueryBuilder(), 1000, (batch, error) -> {
+			if (error.isError()) {
+				errors.add(error);
+			} else {
+				batches.add(batch);
+			}
+		}, pageSize, 5, maxIntervalMs, overlapMs, 1000);
+	}
+
+	private List<String> delivered() {
+		List<String> texts = new ArrayList<String>();
+		for (List<Message> batch : batches) {
+			for (Message event : batch) {
+				texts.add(event.getText());
+			}
+		}
+		return texts;
+	}
+
+	private static void await(String message, long timeoutMs, BooleanSupplier condition)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		while (!condition.getAsBoolean()) {
+			Assert.assertTrue(message, System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	public void testNewAndLateEventsDeliveredOnce() throws InterruptedException {
+		events.add(new Message("before", 999L));
+		events.add(new Message("first", 1000L));
+		events.add(new Message("second", 1100L));
+		try (LiveTail tail = tail(100, 500)) {
+			tail.start();
+			await("Events not delivered", 2000, () -> delivered().size() == 2);
+			events.add(new Message("late", 1050L));
+			events.add(new Message("third", 1200L));
+			await("New events not delivered", 2000, () -> delivered().size() == 4);
+			long polls = tail.getPolls();
+			await("Tail stopped", 2000, () -> tail.getPolls() > polls + 2);
+			Assert.assertTrue("Duplicates not skipped", tail.getDuplicates() > 0);
+			Assert.assertEquals("Wrong watermark", 1200L, tail.getWatermark());
+		}
+		List<String> delivered = delivered();
+		Assert.assertEquals("Wrong events", 4, new HashSet<String>(delivered).size());
+		Assert.assertEquals("Events not oldest first", "first", delivered.get(0));
+		Assert.assertEquals("Late event not ordered", "late", delivered.get(2));
+		Assert.assertEquals("Wrong events", 4, delivered.size());
+	}
+
+	@Test
+	public void testLateEventOutsideOverlapMissed() throws InterruptedException {
+		events.add(new Message("first", 1000L));
+		events.add(new Message("second", 2000L));
+		try (LiveTail tail = tail(100, 500)) {
+			tail.start();
+			await("Events not delivered", 2000, () -> delivered().size() == 2);
+			events.add(new Message("too late", 1200L));
+			long polls = tail.getPolls();
+			await("Tail stopped", 2000, () -> tail.getPolls() > polls + 2);
+		}
+		Assert.assertFalse("Event outside the overlap queried", delivered().contains("too late"));
+		Assert.assertTrue("Overlap window not used", urls.get(urls.size() - 1).contains("timestamp/GE+1500"));
+	}
+
+	@Test
+	public void testFullPagePagedBackward() throws InterruptedException {
+		for (int i = 0; i < 95; i++) {
+			events.add(new Message("message " + i, 1000L + i / 3));
+		}
+		try (LiveTail tail = tail(10, 0)) {
+			tail.start();
+			await("Events not delivered", 2000, () -> delivered().size() >= 95);
+		}
+		Set<String> texts = new HashSet<String>(delivered());
+		Assert.assertEquals("Events lost or repeated", 95, delivered().size());
+		Assert.assertEquals("Events lost or repeated", 95, texts.size());
+		Assert.assertEquals("First poll not in one batch", 95, batches.get(0).size());
+	}
+
+	@Test
+	public void testIdleBackoff() throws InterruptedException {
+		try (LiveTail tail = tail(100, 0, 400)) {
+			tail.start();
+			await("Interval not increased", 3000, () -> tail.getIntervalMs() == 400);
+			events.add(new Message("wake up", 5000L));
+			await("Event not delivered", 3000, () -> delivered().size() == 1);
+			await("Interval not reset", 3000, () -> tail.getIntervalMs() < 400);
+		}
+	}
+
+	@Test
+	public void testErrorReportedAndPollingContinues() throws InterruptedException {
+		store.failing = true;
+		try (LiveTail tail = tail(100, 0)) {
+			tail.start();
+			await("Error not reported", 2000, () -> !errors.isEmpty());
+			store.failing = false;
+			events.add(new Message("recovered", 1000L));
+			await("Tail stopped after an error", 2000, () -> delivered().size() == 1);
+		}
+	}
+
+	@Test
+	public void testFingerprint() {
+		Assert.assertEquals("Same event, different fingerprint", LiveTail.fingerprint(new Message("a", 1L)),
+				LiveTail.fingerprint(new Message("a", 1L)));
+		Assert.assertNotEquals("Different timestamps, same fingerprint", LiveTail.fingerprint(new Message("a", 1L)),
+				LiveTail.fingerprint(new Message("a", 2L)));
+		Assert.assertNotEquals("Different texts, same fingerprint", LiveTail.fingerprint(new Message("a", 1L)),
+				LiveTail.fingerprint(new Message("b", 1L)));
+	}
+}
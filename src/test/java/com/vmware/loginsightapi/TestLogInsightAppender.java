@@ -0,0 +1,147 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.Field;
+import com.vmware.loginsightapi.core.IngestionRequest;
+import com.vmware.loginsightapi.core.IngestionResponse;
+import com.vmware.loginsightapi.core.Message;
+
+public class TestLogInsightAppender {
+
+	private LogInsightClient client;
+	private List<Message> ingested;
+	private AtomicBoolean clientClosed;
+
+	@Before
+	public void setUp() throws Exception {
+		client = mock(LogInsightClient.class);
+		ingested = new CopyOnWriteArrayList<Message>();
+		clientClosed = new AtomicBoolean();
+		doReturn(new Configuration()).when(client).getConfiguration();
+		doAnswer(invocation -> {
+			IngestionRequest request = (IngestionRequest) invocation.getArguments()[0];
+			ingested.addAll(request.getMessages());
+			IngestionResponse response = new IngestionResponse();
+			response.setStatus("ok");
+			response.setIngested(request.count());
+			return CompletableFuture.completedFuture(response);
+		}).when(client).ingestAsync(any(IngestionRequest.class));
+		doAnswer(invocation -> {
+			clientClosed.set(true);
+			return null;
+		}).when(client).close();
+	}
+
+	private static LogEvent event(String loggerName, String text, Map<String, String> mdc) {
+		return new Log4jLogEvent(loggerName, null, null, Level.WARN, new SimpleMessage(text), null, mdc, null,
+				"request-thread", null, 1466000000000L);
+	}
+
+	private static Map<String, String> fields(Message message) {
+		Map<String, String> fields = new HashMap<String, String>();
+		for (Field field : message.getFields()) {
+			fields.put(field.getName(), field.getContent());
+		}
+		return fields;
+	}
+
+	@Test
+	public void testEventToMessage() {
+		LogInsightAppender appender = new LogInsightAppender("test", null, true, () -> client, 16);
+		Map<String, String> mdc = new HashMap<String, String>();
+		mdc.put("request.id", "42");
+		appender.start();
+		appender.append(event("com.example.Service", "disk full", mdc));
+		appender.stop();
+
+		Assert.assertEquals("Invalid number of messages", 1, ingested.size());
+		Message message = ingested.get(0);
+		Assert.assertEquals("Invalid text", "disk full", message.getText());
+		Assert.assertEquals("Invalid timestamp", Long.valueOf(1466000000000L), message.getTimestamp());
+		Map<String, String> fields = fields(message);
+		Assert.assertEquals("Invalid number of fields", 4, fields.size());
+		Assert.assertEquals("Invalid level", "WARN", fields.get("level"));
+		Assert.assertEquals("Invalid logger", "com.example.Service", fields.get("logger"));
+		Assert.assertEquals("Invalid thread", "request-thread", fields.get("thread"));
+		Assert.assertEquals("Invalid MDC field", "42", fields.get("request_id"));
+	}
+
+	@Test
+	public void testIgnoredLoggers() {
+		LogInsightAppender appender = new LogInsightAppender("test", null, true, () -> client, 16);
+		appender.append(event("com.vmware.loginsightapi.BatchingIngestor", "sending batch", null));
+		appender.append(event("org.apache.http.wire", "http-outgoing-0", null));
+		Assert.assertEquals("Events of the ignored loggers are buffered", 0, appender.getPendingEvents());
+		appender.append(event("com.example.Service", "disk full", null));
+		Assert.assertEquals("Event is not buffered", 1, appender.getPendingEvents());
+	}
+
+	@Test
+	public void testWorkerThreadEventsSkipped() {
+		LogInsightAppender[] appender = new LogInsightAppender[1];
+		appender[0] = new LogInsightAppender("test", null, true, () -> {
+			// the client factory runs on the worker thread
+			appender[0].append(event("com.example.ClientFactory", "connecting", null));
+			return client;
+		}, 16);
+		appender[0].start();
+		appender[0].append(event("com.example.Service", "disk full", null));
+		appender[0].stop();
+
+		Assert.assertEquals("Event of the worker thread is sent", 1, ingested.size());
+		Assert.assertEquals("Invalid text", "disk full", ingested.get(0).getText());
+	}
+
+	@Test
+	public void testDroppedEventsWhenBufferFull() {
+		LogInsightAppender appender = new LogInsightAppender("test", null, true, () -> client, 4);
+		for (int i = 0; i < 6; i++) {
+			appender.append(event("com.example.Service", "message " + i, Collections.emptyMap()));
+		}
+		Assert.assertEquals("Invalid number of buffered events", 4, appender.getPendingEvents());
+		Assert.assertEquals("Invalid number of dropped events", 2, appender.getDroppedEvents());
+	}
+
+	@Test
+	public void testStopDrainsAndCloses() {
+		LogInsightAppender appender = new LogInsightAppender("test", null, true, () -> client, 128);
+		for (int i = 0; i < 100; i++) {
+			appender.append(event("com.example.Service", "message " + i, null));
+		}
+		appender.start();
+		appender.stop();
+
+		Assert.assertEquals("Buffered events are not sent on stop", 100, ingested.size());
+		Assert.assertEquals("Invalid order", "message 99", ingested.get(99).getText());
+		Assert.assertEquals("Buffer is not drained", 0, appender.getPendingEvents());
+		Assert.assertTrue("Client is not closed", clientClosed.get());
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+
+public class TestLogInsightClientBuilder {
+
+	private final FakeHttpAsyncClient httpClient = new FakeHttpAsyncClient();
+
+	private LogInsightClientBuilder builder() {
+		return new LogInsightClientBuilder().withConfiguration(new Configuration("localhost", "user", "password"))
+				.withConnectionStrategy(() -> httpClient);
+	}
+
+	@Test
+	public void testLazyLoginWithFirstQuery() throws Exception {
+		LogInsightClient client = builder().withLazyLogin().build();
+		Assert.assertFalse("Client logged in at build", client.isConnected());
+		Assert.assertTrue("Requests sent at build", httpClient.paths.isEmpty());
+
+		AggregateResponse response = client.aggregateQueryAsync("timestamp/GT%200").get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(1, response.getBins().size());
+		Assert.assertTrue(client.isConnected());
+		Assert.assertEquals(1, httpClient.count(LogInsightClient.API_URL_SESSION_PATH));
+		Assert.assertEquals(1, client.getMetrics().getLogins());
+		client.close();
+	}
+
+	@Test
+	public void testBuildLogsInInBackground() throws Exception {
+		LogInsightClient client = builder().build();
+		Assert.assertTrue(client.connectAsync().thenApply(v -> client.isConnected()).get(5, TimeUnit.SECONDS));
+		Assert.assertEquals("session-1", client.getSessionId());
+		client.close();
+	}
+
+	@Test
+	public void testBuildAsyncWarmsUp() throws Exception {
+		LogInsightClient client = builder().withPrewarmedConnections(3).withJsonWarmUp().buildAsync().get(5,
+				TimeUnit.SECONDS);
+		Assert.assertTrue(client.isConnected());
+		// 3 connections to the API port and 3 to the ingestion port
+		Assert.assertEquals(6, httpClient.count(LogInsightClient.API_URL_VERSION_PATH));
+		client.close();
+	}
+
+	@Test
+	public void testBuildAsyncLoginFailure() throws Exception {
+		httpClient.loginStatus = 401;
+		try {
+			builder().buildAsync().get(5, TimeUnit.SECONDS);
+			Assert.fail("Login failure is not reported");
+		} catch (ExecutionException e) {
+			Assert.assertTrue("Invalid exception " + e.getCause(), e.getCause() instanceof AuthFailure);
+		}
+		Assert.assertFalse("Client is not closed", httpClient.isRunning());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNoConfiguration() {
+		new LogInsightClientBuilder().build();
+	}
+}
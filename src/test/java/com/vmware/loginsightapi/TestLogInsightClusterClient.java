@@ -0,0 +1,216 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.LogInsightClusterClient.Balancing;
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.MessageQueryResponse;
+
+public class TestLogInsightClusterClient {
+
+	private final Map<String, FakeHttpAsyncClient> nodes = new HashMap<String, FakeHttpAsyncClient>();
+	private Configuration config;
+	private LogInsightClusterClient cluster;
+
+	@Before
+	public void setUp() {
+		for (String host : Arrays.asList("a", "b", "c")) {
+			nodes.put(host, new FakeHttpAsyncClient());
+		}
+		config = new Configuration("localhost", "user", "password");
+		config.setClusterHosts(Arrays.asList("a", "b", "c"));
+		config.setClusterEjectFailures(2);
+		config.setClusterProbeIntervalMs(20);
+		config.setRetryQueryMaxAttempts(1);
+		config.setRetryIngestionMaxAttempts(1);
+		config.setQueryCacheMaxBytes(0);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (cluster != null) {
+			cluster.close();
+		}
+	}
+
+	private LogInsightClusterClient newCluster() {
+		cluster = new LogInsightClusterClient(config, host -> () -> nodes.get(host));
+		return cluster;
+	}
+
+	private static String query(int i) {
+		return "timestamp/GT%20" + i;
+	}
+
+	private void waitForHealthy(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (cluster.getHealthyHosts().size() != count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		Assert.assertEquals(count, cluster.getHealthyHosts().size());
+	}
+
+	@Test
+	public void testNodeConfigurations() {
+		newCluster();
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), cluster.getHosts());
+		Assert.assertEquals("b", cluster.getClient("b").getConfiguration().getHost());
+		Assert.assertEquals("localhost", config.getHost());
+		Assert.assertEquals(1, cluster.getClient("b").getMetrics().getLogins());
+	}
+
+	@Test
+	public void testSingleHost() throws Exception {
+		config.setClusterHosts(new ArrayList<String>());
+		cluster = new LogInsightClusterClient(config, host -> () -> nodes.get("a"));
+		Assert.assertEquals(Arrays.asList("localhost"), cluster.getHosts());
+		Assert.assertTrue(cluster.aggregateQueryAsync(query(0)).get(5, TimeUnit.SECONDS).isComplete());
+	}
+
+	@Test
+	public void testLeastRequests() throws Exception {
+		newCluster();
+		List<CompletableFuture<AggregateResponse>> futures = new ArrayList<CompletableFuture<AggregateResponse>>();
+		for (FakeHttpAsyncClient node : nodes.values()) {
+			node.hold = true;
+		}
+		for (int i = 0; i < 6; i++) {
+			futures.add(cluster.aggregateQueryAsync(query(i)));
+		}
+		for (FakeHttpAsyncClient node : nodes.values()) {
+			Assert.assertEquals("Unbalanced requests", 2, node.queries.size());
+			node.release();
+		}
+		for (CompletableFuture<AggregateResponse> future : futures) {
+			Assert.assertEquals(1, future.get(5, TimeUnit.SECONDS).getBins().size());
+		}
+	}
+
+	@Test
+	public void testLatencyEwma() throws Exception {
+		config.setClusterBalancing(Balancing.LATENCY_EWMA);
+		config.setClusterHosts(Arrays.asList("a", "b"));
+		newCluster();
+		nodes.get("b").delayMs = 30;
+		for (int i = 0; i < 20; i++) {
+			cluster.aggregateQueryAsync(query(i)).get(5, TimeUnit.SECONDS);
+		}
+		Assert.assertTrue("Slow node selected " + nodes.get("b").queries.size() + " times",
+				nodes.get("b").queries.size() <= 2);
+		Assert.assertEquals(20, nodes.get("a").queries.size() + nodes.get("b").queries.size());
+	}
+
+	@Test
+	public void testNodeDownAtStartIsEjectedAndProbedBack() throws Exception {
+		nodes.get("a").down = true;
+		newCluster();
+		Assert.assertEquals(Arrays.asList("b", "c"), cluster.getHealthyHosts());
+		for (int i = 0; i < 10; i++) {
+			cluster.aggregateQueryAsync(query(i)).get(5, TimeUnit.SECONDS);
+		}
+		Assert.assertEquals(0, nodes.get("a").queries.size());
+		Assert.assertEquals(1, cluster.getMetrics().getNodeEjections());
+
+		nodes.get("a").down = false;
+		waitForHealthy(3);
+		Assert.assertEquals(1, cluster.getMetrics().getNodeReinstatements());
+		for (int i = 0; i < 9; i++) {
+			cluster.aggregateQueryAsync(query(i)).get(5, TimeUnit.SECONDS);
+		}
+		Assert.assertTrue(nodes.get("a").queries.size() > 0);
+		Assert.assertEquals("Session not opened after the restart", 1,
+				cluster.getClient("a").getMetrics().getLogins());
+	}
+
+	@Test
+	public void testNodeRestartIsNotSeenByCallers() throws Exception {
+		newCluster();
+		nodes.get("b").down = true;
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(cluster.aggregateQueryAsync(query(i)).get(5, TimeUnit.SECONDS).isComplete());
+			Assert.assertTrue(cluster.messageQuery(query(i)).isComplete());
+		}
+		Assert.assertEquals(Arrays.asList("a", "c"), cluster.getHealthyHosts());
+		Assert.assertEquals(2, cluster.getMetrics().getFailovers());
+		Assert.assertEquals(1, cluster.getMetrics().getNodeEjections());
+
+		nodes.get("b").down = false;
+		waitForHealthy(3);
+	}
+
+	@Test
+	public void testAllNodesDown() throws Exception {
+		newCluster();
+		for (FakeHttpAsyncClient node : nodes.values()) {
+			node.down = true;
+		}
+		try {
+			cluster.aggregateQueryAsync(query(0)).get(5, TimeUnit.SECONDS);
+			Assert.fail("Failure not reported");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(LogInsightClusterClient.isNodeFailure(e.getCause()));
+		}
+		Assert.assertEquals(2, cluster.getMetrics().getFailovers());
+		try {
+			cluster.messageQuery(query(0));
+			Assert.fail("Failure not reported");
+		} catch (LogInsightApiException e) {
+			Assert.assertTrue(LogInsightClusterClient.isNodeFailure(e));
+		}
+	}
+
+	@Test
+	public void testClientErrorIsNotFailedOver() throws Exception {
+		newCluster();
+		for (FakeHttpAsyncClient node : nodes.values()) {
+			node.queryStatus = 400;
+		}
+		try {
+			cluster.aggregateQueryAsync(query(0)).get(5, TimeUnit.SECONDS);
+			Assert.fail("Failure not reported");
+		} catch (ExecutionException e) {
+			Assert.assertEquals(400, ((LogInsightHttpException) e.getCause()).getStatusCode());
+		}
+		Assert.assertEquals(0, cluster.getMetrics().getFailovers());
+		Assert.assertEquals(3, cluster.getHealthyHosts().size());
+	}
+
+	@Test
+	public void testIsNodeFailure() {
+		Assert.assertTrue(LogInsightClusterClient.isNodeFailure(new LogInsightHttpException("", 503, -1)));
+		Assert.assertFalse(LogInsightClusterClient.isNodeFailure(new LogInsightHttpException("", 404, -1)));
+		Assert.assertTrue(LogInsightClusterClient.isNodeFailure(
+				new AuthFailure("", new ExecutionException(new ConnectException("refused")))));
+		Assert.assertFalse(LogInsightClusterClient.isNodeFailure(new AuthFailure("Invalid credentials")));
+		Assert.assertFalse(LogInsightClusterClient.isNodeFailure(
+				new LogInsightApiException("", new InterruptedException())));
+	}
+
+	@Test
+	public void testMessageQueryAsync() throws Exception {
+		newCluster();
+		MessageQueryResponse response = cluster.messageQueryAsync(query(0)).get(5, TimeUnit.SECONDS);
+		Assert.assertTrue(response.isComplete());
+	}
+}
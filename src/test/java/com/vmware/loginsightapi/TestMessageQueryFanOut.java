@@ -0,0 +1,154 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import static com.vmware.loginsightapi.ConstraintUrlMatcher.matches;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.AggregateResponseBin;
+import com.vmware.loginsightapi.core.FieldConstraint;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.core.MessageQueryResponse;
+
+public class TestMessageQueryFanOut {
+
+	private static final Pattern BIN_WIDTH = Pattern.compile("bin-width=(\\d+)");
+
+	private FakeEventStore store;
+	private LogInsightClient client;
+	private List<Message> events;
+	private List<String> urls;
+	private boolean aggregateFails;
+
+	@Before
+	public void setUp() {
+		store = new FakeEventStore();
+		client = store.mockClient();
+		events = store.events;
+		urls = store.urls;
+		when(client.aggregateQueryAsync(anyString())).thenAnswer(new Answer<CompletableFuture<AggregateResponse>>() {
+			@Override
+			public CompletableFuture<AggregateResponse> answer(InvocationOnMock invocation) {
+				CompletableFuture<AggregateResponse> response = new CompletableFuture<AggregateResponse>();
+				if (aggregateFails) {
+					response.completeExceptionally(new LogInsightApiException("Aggregate query failed"));
+				} else {
+					response.complete(count((String) invocation.getArguments()[0]));
+				}
+				return response;
+			}
+		});
+	}
+
+	private AggregateResponse count(String url) {
+		Matcher binWidth = BIN_WIDTH.matcher(url);
+		Assert.assertTrue("Bin width missing", binWidth.find());
+		long width = Long.parseLong(binWidth.group(1));
+		TreeMap<Long, Long> counts = new TreeMap<Long, Long>();
+		for (Message event : events) {
+			if (matches(url, event.getTimestamp())) {
+				counts.merge(event.getTimestamp() / width * width, 1L, Long::sum);
+			}
+		}
+		List<AggregateResponseBin> bins = new ArrayList<AggregateResponseBin>();
+		for (Long min : counts.keySet()) {
+			AggregateResponseBin bin = new AggregateResponseBin();
+			bin.setMinTimestamp(min);
+			bin.setMaxTimestamp(min + width - 1);
+			bin.setValue(counts.get(min));
+			bins.add(bin);
+		}
+		AggregateResponse response = new AggregateResponse();
+		response.setComplete(true);
+		response.setBins(bins);
+		return response;
+	}
+
+	private MessageQueryBuilder rangeQuery(int limit) {
+		return (MessageQueryBuilder) new MessageQueryBuilder().limit(limit).setConstraints(
+				new ArrayList<FieldConstraint>(Arrays.asList(FieldConstraint.ge("timestamp", "0"),
+						FieldConstraint.lt("timestamp", "100000"))));
+	}
+
+	private void addEvents() {
+		// sparse events over the range and a dense burst at the end of it
+		for (long t = 99999; t >= 90000; t -= 2) {
+			events.add(new Message("burst " + t, t));
+		}
+		for (long t = 89999; t >= 0; t -= 100) {
+			events.add(new Message("sparse " + t, t));
+		}
+	}
+
+	@Test
+	public void testMergedLikeSingleQuery() {
+		addEvents();
+		MessageQueryBuilder query = rangeQuery(10000);
+		List<Message> expected = store.query(query.toUrlString()).getEvents();
+		urls.clear();
+		MessageQueryResponse response = new MessageQueryFanOut(client, 4, 2).query(query);
+		Assert.assertEquals("Wrong events", expected, response.getEvents());
+		Assert.assertEquals("Wrong number of slices", 4, urls.size());
+		Assert.assertTrue("Complete flag not merged", response.isComplete());
+	}
+
+	@Test
+	public void testDenseRangeGetsNarrowSlices() {
+		addEvents();
+		new MessageQueryFanOut(client, 4, 4).query(rangeQuery(10000));
+		Assert.assertTrue("Oldest slice not wide", matches(urls.get(urls.size() - 1), 50000));
+		Assert.assertFalse("Newest slice not narrow", matches(urls.get(0), 90000));
+	}
+
+	@Test
+	public void testOlderSlicesSkippedWhenLimitReached() {
+		addEvents();
+		MessageQueryBuilder query = rangeQuery(100);
+		List<Message> expected = store.query(query.toUrlString()).getEvents();
+		urls.clear();
+		MessageQueryResponse response = new MessageQueryFanOut(client, 4, 1).query(query);
+		Assert.assertEquals("Wrong events", expected, response.getEvents());
+		Assert.assertEquals("Older slices queried", 1, urls.size());
+	}
+
+	@Test
+	public void testEvenSlicesWhenPlanningFails() {
+		addEvents();
+		aggregateFails = true;
+		MessageQueryBuilder query = rangeQuery(10000);
+		List<Message> expected = store.query(query.toUrlString()).getEvents();
+		urls.clear();
+		MessageQueryResponse response = new MessageQueryFanOut(client, 4, 4).query(query);
+		Assert.assertEquals("Wrong events", expected, response.getEvents());
+		Assert.assertTrue("Slices not even", urls.get(0).contains("timestamp/GE+75000"));
+	}
+
+	@Test
+	public void testQueryWithoutRangeNotSliced() {
+		addEvents();
+		new MessageQueryFanOut(client, 4, 4).query((MessageQueryBuilder) new MessageQueryBuilder().limit(10));
+		Assert.assertEquals("Query without range sliced", 1, urls.size());
+	}
+}
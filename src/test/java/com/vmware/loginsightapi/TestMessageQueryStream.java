@@ -0,0 +1,77 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.core.MessageQueryStream;
+
+public class TestMessageQueryStream {
+
+	private static final String EVENTS = "[{\"text\":\"line 1\",\"timestamp\":1,\"fields\":[{\"name\":\"f\",\"content\":\"a\"}]},"
+			+ "{\"text\":\"line 2\",\"timestamp\":2}]";
+
+	private InputStream json(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testIterate() throws IOException {
+		try (MessageQueryStream stream = new MessageQueryStream(
+				json("{\"complete\":true,\"duration\":42,\"events\":" + EVENTS + "}"))) {
+			Assert.assertTrue("Complete not read before the events", stream.isComplete());
+			Assert.assertEquals("Duration not read before the events", 42, stream.getDuration());
+			Message first = stream.next();
+			Assert.assertEquals("Wrong first message", "line 1", first.getText());
+			Assert.assertEquals("Wrong field", "a", first.getFields().get(0).getContent());
+			Assert.assertTrue("Second message missing", stream.hasNext());
+			Assert.assertEquals("Wrong second message", "line 2", stream.next().getText());
+			Assert.assertFalse("Extra message", stream.hasNext());
+			Assert.assertEquals("Wrong count", 2, stream.getCount());
+		}
+	}
+
+	@Test
+	public void testFieldsAfterEvents() throws IOException {
+		try (MessageQueryStream stream = new MessageQueryStream(
+				json("{\"events\":" + EVENTS + ",\"unknown\":{\"a\":[1]},\"complete\":true,\"duration\":7}"))) {
+			List<String> texts = stream.stream().map(Message::getText).collect(Collectors.toList());
+			Assert.assertEquals("Wrong messages", "[line 1, line 2]", texts.toString());
+			Assert.assertTrue("Complete not read after the events", stream.isComplete());
+			Assert.assertEquals("Duration not read after the events", 7, stream.getDuration());
+		}
+	}
+
+	@Test
+	public void testNoEvents() throws IOException {
+		try (MessageQueryStream stream = new MessageQueryStream(json("{\"complete\":false,\"events\":[]}"))) {
+			Assert.assertFalse("Message in empty response", stream.hasNext());
+			Assert.assertFalse("Wrong complete flag", stream.isComplete());
+		}
+	}
+
+	@Test(expected = ParseException.class)
+	public void testTruncatedResponse() throws IOException {
+		try (MessageQueryStream stream = new MessageQueryStream(
+				json("{\"complete\":true,\"events\":[{\"text\":\"line 1\"},{\"text\":"))) {
+			while (stream.hasNext()) {
+				stream.next();
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.util.MpscRingBuffer;
+
+public class TestMpscRingBuffer {
+
+	private static final class Entry {
+		int producer;
+		int value;
+	}
+
+	@Test
+	public void testCapacity() {
+		MpscRingBuffer<Entry> buffer = new MpscRingBuffer<Entry>(5, Entry::new);
+		Assert.assertEquals("Capacity not rounded up", 8, buffer.getCapacity());
+		for (int i = 0; i < 8; i++) {
+			long sequence = buffer.claim();
+			Assert.assertEquals("Wrong sequence", i, sequence);
+			buffer.get(sequence).value = i;
+			buffer.publish(sequence);
+		}
+		Assert.assertEquals("Claimed a full buffer", -1, buffer.claim());
+		List<Integer> values = new ArrayList<Integer>();
+		Assert.assertEquals("Wrong number drained", 3, buffer.drain(entry -> values.add(entry.value), 3));
+		Assert.assertEquals("Wrong size", 5, buffer.size());
+		Assert.assertTrue("Freed entry not claimed", buffer.claim() >= 0);
+		Assert.assertEquals("Wrong order", "[0, 1, 2]", values.toString());
+	}
+
+	@Test
+	public void testUnpublishedEntryNotDrained() {
+		MpscRingBuffer<Entry> buffer = new MpscRingBuffer<Entry>(4, Entry::new);
+		long first = buffer.claim();
+		long second = buffer.claim();
+		buffer.publish(second);
+		Assert.assertEquals("Drained past an unpublished entry", 0, buffer.drain(entry -> {
+		}, 10));
+		buffer.publish(first);
+		Assert.assertEquals("Published entries not drained", 2, buffer.drain(entry -> {
+		}, 10));
+	}
+
+	@Test
+	public void testConcurrentProducers() throws InterruptedException {
+		final int producers = 4;
+		final int perProducer = 100000;
+		MpscRingBuffer<Entry> buffer = new MpscRingBuffer<Entry>(1024, Entry::new);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					long sequence;
+					while ((sequence = buffer.claim()) < 0) {
+						Thread.yield();
+					}
+					Entry entry = buffer.get(sequence);
+					entry.producer = producer;
+					entry.value = i;
+					buffer.publish(sequence);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		int[] next = new int[producers];
+		AtomicLong received = new AtomicLong();
+		AtomicLong outOfOrder = new AtomicLong();
+		while (received.get() < producers * perProducer) {
+			buffer.drain(entry -> {
+				if (entry.value != next[entry.producer]) {
+					outOfOrder.incrementAndGet();
+				}
+				next[entry.producer] = entry.value + 1;
+				received.incrementAndGet();
+			}, 256);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals("Entries lost or reordered", 0, outOfOrder.get());
+		Assert.assertEquals("Buffer not empty", 0, buffer.size());
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.util.OverflowQueue;
+import com.vmware.loginsightapi.util.OverflowQueue.OverflowPolicy;
+
+public class TestOverflowQueue {
+
+	private OverflowQueue<Integer> fill(OverflowPolicy policy, int capacity, int count) {
+		OverflowQueue<Integer> queue = new OverflowQueue<Integer>(capacity, policy, 10, 4);
+		for (int i = 0; i < count; i++) {
+			queue.offer(i);
+		}
+		return queue;
+	}
+
+	@Test
+	public void testBlock() throws Exception {
+		OverflowQueue<Integer> queue = fill(OverflowPolicy.BLOCK, 2, 2);
+		long start = System.nanoTime();
+		Assert.assertFalse("Element is queued beyond capacity", queue.offer(3));
+		Assert.assertTrue("Producer does not wait", System.nanoTime() - start >= 5000000);
+		Assert.assertEquals("Invalid number of dropped elements", 1, queue.getDroppedElements());
+
+		final OverflowQueue<Integer> blocking = new OverflowQueue<Integer>(2, OverflowPolicy.BLOCK, 5000, 1);
+		blocking.offer(1);
+		blocking.offer(2);
+		Thread consumer = new Thread(() -> {
+			try {
+				Thread.sleep(20);
+				blocking.poll();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		consumer.start();
+		Assert.assertTrue("Producer is not released by the consumer", blocking.offer(3));
+		consumer.join();
+		Assert.assertEquals("Invalid number of dropped elements", 0, blocking.getDroppedElements());
+	}
+
+	@Test
+	public void testDropNewest() {
+		OverflowQueue<Integer> queue = fill(OverflowPolicy.DROP_NEWEST, 5, 8);
+		Assert.assertEquals("Invalid queue size", 5, queue.size());
+		Assert.assertEquals("Invalid number of dropped elements", 3, queue.getDroppedElements());
+		Assert.assertEquals("Oldest element is dropped", Integer.valueOf(0), queue.poll());
+	}
+
+	@Test
+	public void testDropOldest() {
+		OverflowQueue<Integer> queue = fill(OverflowPolicy.DROP_OLDEST, 5, 8);
+		Assert.assertEquals("Invalid queue size", 5, queue.size());
+		Assert.assertEquals("Invalid number of dropped elements", 3, queue.getDroppedElements());
+		Assert.assertEquals("Oldest element is kept", Integer.valueOf(3), queue.poll());
+	}
+
+	@Test
+	public void testSample() {
+		OverflowQueue<Integer> queue = fill(OverflowPolicy.SAMPLE, 100, 50);
+		Assert.assertEquals("Elements are sampled below half capacity", 50, queue.size());
+		for (int i = 0; i < 40; i++) {
+			queue.offer(i);
+		}
+		Assert.assertEquals("Invalid number of sampled elements", 60, queue.size());
+		Assert.assertEquals("Invalid number of dropped elements", 30, queue.getDroppedElements());
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.Message;
+
+public class TestQueryCursor {
+
+	private LogInsightClient client;
+	private List<Message> events;
+	private List<String> urls;
+
+	@Before
+	public void setUp() {
+		FakeEventStore store = new FakeEventStore();
+		client = store.mockClient();
+		events = store.events;
+		urls = store.urls;
+	}
+
+	@Test
+	public void testAllEventsOnceWithSharedTimestamps() {
+		long timestamp = 10000;
+		for (int i = 0; i < 1000; i++) {
+			if (i % 7 == 0) {
+				timestamp--;
+			}
+			events.add(new Message("message " + i, timestamp));
+		}
+		Set<String> texts = new HashSet<String>();
+		try (QueryCursor cursor = new QueryCursor(client, new MessageQueryBuilder(), 10, 10, 10, 60000)) {
+			while (cursor.hasNext()) {
+				Assert.assertTrue("Duplicate event", texts.add(cursor.next().getText()));
+			}
+			Assert.assertEquals("Events lost", 1000, texts.size());
+			Assert.assertEquals("Wrong count", 1000, cursor.getCount());
+			Assert.assertTrue("Not paginated", cursor.getPages() > 1);
+		}
+		Assert.assertTrue("Boundary not used", urls.get(1).contains("timestamp/LE"));
+	}
+
+	@Test
+	public void testIdenticalEventsAtBoundary() {
+		for (int i = 0; i < 25; i++) {
+			events.add(new Message("same", 5L));
+		}
+		events.add(new Message("older", 4L));
+		try (QueryCursor cursor = new QueryCursor(client, new MessageQueryBuilder(), 10, 10, 100, 60000)) {
+			Assert.assertEquals("Wrong number of events", 26, cursor.stream().count());
+		}
+	}
+
+	@Test
+	public void testTimestampLargerThanMaxPageFails() {
+		events.add(new Message("newer", 6L));
+		for (int i = 0; i < 30; i++) {
+			events.add(new Message("message " + i, 5L));
+		}
+		events.add(new Message("older", 4L));
+		List<String> texts = new ArrayList<String>();
+		try (QueryCursor cursor = new QueryCursor(client, new MessageQueryBuilder(), 10, 10, 10, 60000)) {
+			cursor.forEachRemaining(m -> texts.add(m.getText()));
+			Assert.fail("Events of the timestamp skipped");
+		} catch (LogInsightApiException e) {
+			Assert.assertTrue("Wrong failure", e.getMessage().contains("timestamp 5"));
+		}
+		Assert.assertEquals("Wrong number of returned events", 20, texts.size());
+		Assert.assertEquals("Events repeated", 20, new HashSet<String>(texts).size());
+		Assert.assertEquals("Wrong first event", "newer", texts.get(0));
+		Assert.assertFalse("Older events returned", texts.contains("older"));
+		for (String url : urls) {
+			Assert.assertFalse("Strict boundary used", url.contains("timestamp/LT"));
+		}
+	}
+
+	@Test
+	public void testPrefetchAndPageSize() {
+		for (int i = 0; i < 100; i++) {
+			events.add(new Message("message " + i, 1000L - i));
+		}
+		try (QueryCursor cursor = new QueryCursor(client, new MessageQueryBuilder(), 10, 10, 40, 60000)) {
+			Assert.assertEquals("First page not requested", 1, urls.size());
+			cursor.next();
+			Assert.assertEquals("Next page not prefetched", 2, urls.size());
+			Assert.assertEquals("Page size not increased for fast pages", 20, cursor.getPageSize());
+		}
+	}
+
+	@Test
+	public void testEmptyResult() {
+		try (QueryCursor cursor = new QueryCursor(client, new MessageQueryBuilder(), 10, 10, 10, 60000)) {
+			Assert.assertFalse("Event in empty result", cursor.hasNext());
+			Assert.assertEquals("Wrong page count", 1, cursor.getPages());
+		}
+	}
+}
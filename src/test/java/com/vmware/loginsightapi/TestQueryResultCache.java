@@ -0,0 +1,127 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.AggregateResponse;
+import com.vmware.loginsightapi.core.Message;
+import com.vmware.loginsightapi.core.MessageQueryResponse;
+
+public class TestQueryResultCache {
+
+	private ClientMetrics metrics;
+
+	@Before
+	public void setUp() {
+		metrics = new ClientMetrics();
+	}
+
+	private MessageQueryResponse response(int events, boolean complete) {
+		List<Message> messages = new ArrayList<Message>();
+		for (int i = 0; i < events; i++) {
+			messages.add(new Message("message line " + i, (long) i));
+		}
+		MessageQueryResponse response = new MessageQueryResponse();
+		response.setComplete(complete);
+		response.setEvents(messages);
+		return response;
+	}
+
+	@Test
+	public void testNormalize() {
+		Assert.assertEquals("Constraint order not normalized",
+				QueryResultCache.normalize("/api/v1/events/text/CONTAINS+a/timestamp/GT+0?timeout=10&limit=5"),
+				QueryResultCache.normalize("/api/v1/events/timestamp/GT+0/text/CONTAINS+a?limit=5&timeout=10"));
+		Assert.assertNotEquals("Repeated parameters reordered",
+				QueryResultCache.normalize(
+						"/api/v1/aggregated-events/?order-by-function=COUNT&order-by-field=a&order-by-function=MAX&order-by-field=b"),
+				QueryResultCache.normalize(
+						"/api/v1/aggregated-events/?order-by-function=COUNT&order-by-field=b&order-by-function=MAX&order-by-field=a"));
+		Assert.assertNotEquals("Message and aggregate queries share a key",
+				QueryResultCache.normalize("/api/v1/events/timestamp/GT+0"),
+				QueryResultCache.normalize("/api/v1/aggregated-events/timestamp/GT+0"));
+	}
+
+	@Test
+	public void testHitAndMiss() {
+		QueryResultCache cache = new QueryResultCache(1 << 20, 60000, 60000, 0, metrics);
+		String url = "/api/v1/events/text/CONTAINS+a/timestamp/GT+0";
+		Assert.assertNull("Unexpected hit", cache.get(url, MessageQueryResponse.class));
+		MessageQueryResponse response = response(10, true);
+		cache.put(url, response);
+		Assert.assertSame("Cached response not returned", response,
+				cache.get("/api/v1/events/timestamp/GT+0/text/CONTAINS+a", MessageQueryResponse.class));
+		Assert.assertNull("Response returned for another type", cache.get(url, AggregateResponse.class));
+		Assert.assertEquals("Mismatch in hits", 1, metrics.getQueryCacheHits());
+		Assert.assertEquals("Mismatch in misses", 2, metrics.getQueryCacheMisses());
+	}
+
+	@Test
+	public void testIncompleteNotCached() {
+		QueryResultCache cache = new QueryResultCache(1 << 20, 60000, 60000, 0, metrics);
+		cache.put("/api/v1/events/", response(10, false));
+		Assert.assertEquals("Incomplete result cached", 0, cache.size());
+	}
+
+	@Test
+	public void testSettledTimeRange() {
+		QueryResultCache cache = new QueryResultCache(1 << 20, 60000, 3600000, 300000, metrics);
+		long now = 1000000000L;
+		Assert.assertTrue("Past range not settled",
+				cache.isSettled("/api/v1/events/timestamp/GT+0/timestamp/LT+" + (now - 300000) + "?limit=5", now));
+		Assert.assertFalse("Recent range settled",
+				cache.isSettled("/api/v1/events/timestamp/GT+0/timestamp/LE+" + (now - 300000), now));
+		Assert.assertFalse("Open range settled", cache.isSettled("/api/v1/events/timestamp/GT+0", now));
+	}
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		long now = System.currentTimeMillis();
+		QueryResultCache cache = new QueryResultCache(1 << 20, 50, 60000, 1000, metrics);
+		String live = "/api/v1/events/timestamp/GT+" + (now - 10000);
+		String past = "/api/v1/events/timestamp/LT+" + (now - 10000);
+		cache.put(live, response(1, true));
+		cache.put(past, response(1, true));
+		Thread.sleep(100);
+		Assert.assertNull("Live result not expired", cache.get(live, MessageQueryResponse.class));
+		Assert.assertNotNull("Settled result expired", cache.get(past, MessageQueryResponse.class));
+	}
+
+	@Test
+	public void testEviction() {
+		QueryResultCache cache = new QueryResultCache(1 << 20, 60000, 60000, 0, metrics);
+		cache.put("/api/v1/events/text/CONTAINS+a", response(100, true));
+		long weight = cache.getWeight();
+		cache = new QueryResultCache(weight * 2, 60000, 60000, 0, metrics);
+		cache.put("/api/v1/events/text/CONTAINS+a", response(100, true));
+		cache.put("/api/v1/events/text/CONTAINS+b", response(100, true));
+		cache.get("/api/v1/events/text/CONTAINS+a", MessageQueryResponse.class);
+		cache.put("/api/v1/events/text/CONTAINS+c", response(100, true));
+		Assert.assertEquals("Mismatch in evictions", 1, metrics.getQueryCacheEvictions());
+		Assert.assertNull("Least recently used entry kept",
+				cache.get("/api/v1/events/text/CONTAINS+b", MessageQueryResponse.class));
+		Assert.assertNotNull("Recently used entry evicted",
+				cache.get("/api/v1/events/text/CONTAINS+a", MessageQueryResponse.class));
+		Assert.assertTrue("Weight above the maximum", cache.getWeight() <= weight * 2);
+	}
+
+	@Test
+	public void testDisabled() {
+		QueryResultCache cache = new QueryResultCache(0, 60000, 60000, 0, metrics);
+		cache.put("/api/v1/events/", response(1, true));
+		Assert.assertNull("Disabled cache returned a result", cache.get("/api/v1/events/", MessageQueryResponse.class));
+		Assert.assertEquals("Disabled cache counted a miss", 0, metrics.getQueryCacheMisses());
+	}
+}
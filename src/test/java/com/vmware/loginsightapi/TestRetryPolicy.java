@@ -0,0 +1,170 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+public class TestRetryPolicy {
+
+	private RetryPolicy policy(int maxAttempts) {
+		return new RetryPolicy(maxAttempts, 10, 40, new HashSet<Integer>(Arrays.asList(429, 503)));
+	}
+
+	@Test
+	public void testIsRetryable() {
+		RetryPolicy policy = policy(3);
+		Assert.assertTrue("503 not retried", policy.isRetryable(new LogInsightHttpException("503", 503, -1)));
+		Assert.assertFalse("400 retried", policy.isRetryable(new LogInsightHttpException("400", 400, -1)));
+		Assert.assertTrue("I/O error not retried",
+				policy.isRetryable(new LogInsightApiException("failed", new ExecutionException(new IOException()))));
+		Assert.assertFalse("Interrupted call retried",
+				policy.isRetryable(new LogInsightApiException("failed", new InterruptedException())));
+		Assert.assertFalse("Parse error retried", policy.isRetryable(new LogInsightApiException("failed")));
+		Assert.assertFalse("Invalid json retried",
+				policy.isRetryable(new ParseException("failed", new JsonParseException(null, "invalid"))));
+		Assert.assertFalse("Auth failure retried", policy.isRetryable(new AuthFailure("failed")));
+	}
+
+	@Test
+	public void testDelay() {
+		RetryPolicy policy = policy(10);
+		for (int attempt = 1; attempt < 10; attempt++) {
+			long ceiling = Math.min(40, 10 << (attempt - 1));
+			long delay = policy.getDelayMs(attempt, -1);
+			Assert.assertTrue("Delay out of bounds: " + delay, delay >= 0 && delay <= ceiling);
+		}
+		Assert.assertEquals("Retry-After ignored", 30, policy.getDelayMs(1, 30));
+		Assert.assertEquals("Retry-After above the maximum delay retried", -1, policy.getDelayMs(1, 5000));
+	}
+
+	@Test
+	public void testRetryUntilSuccess() {
+		ClientMetrics metrics = new ClientMetrics();
+		RetryExecutor executor = new RetryExecutor(new RetryBudget(0.1, 10), metrics);
+		AtomicInteger attempts = new AtomicInteger();
+		String result = executor.execute(() -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw new LogInsightHttpException("unavailable", 503, -1);
+			}
+			return "ok";
+		}, policy(3));
+		Assert.assertEquals("Wrong result", "ok", result);
+		Assert.assertEquals("Wrong number of attempts", 3, attempts.get());
+		Assert.assertEquals("Wrong number of retries", 2, metrics.getRetries());
+	}
+
+	@Test
+	public void testRetryAsyncGivesUp() throws Exception {
+		RetryExecutor executor = new RetryExecutor(new RetryBudget(0.1, 10), new ClientMetrics());
+		AtomicInteger attempts = new AtomicInteger();
+		CompletableFuture<String> future = executor.executeAsync(() -> {
+			attempts.incrementAndGet();
+			CompletableFuture<String> attempt = new CompletableFuture<String>();
+			attempt.completeExceptionally(new LogInsightHttpException("unavailable", 503, -1));
+			return attempt;
+		}, policy(3));
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			Assert.fail("Failure not reported");
+		} catch (ExecutionException e) {
+			Assert.assertTrue("Wrong failure", e.getCause() instanceof LogInsightHttpException);
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertEquals("Wrong number of attempts", 3, attempts.get());
+	}
+
+	@Test
+	public void testBudgetExhausted() {
+		ClientMetrics metrics = new ClientMetrics();
+		RetryExecutor executor = new RetryExecutor(new RetryBudget(0, 0), metrics);
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			executor.execute(() -> {
+				attempts.incrementAndGet();
+				throw new LogInsightHttpException("unavailable", 503, -1);
+			}, policy(3));
+			Assert.fail("Failure not reported");
+		} catch (LogInsightHttpException e) {
+			Assert.assertEquals("Retried without budget", 1, attempts.get());
+			Assert.assertEquals("Exhaustion not counted", 1, metrics.getRetryBudgetExhausted());
+		}
+	}
+
+	@Test
+	public void testRetryAfterAboveMaximumDelay() {
+		ClientMetrics metrics = new ClientMetrics();
+		RetryExecutor executor = new RetryExecutor(new RetryBudget(0.1, 10), metrics);
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			executor.execute(() -> {
+				attempts.incrementAndGet();
+				throw new LogInsightHttpException("unavailable", 503, 3600000);
+			}, policy(3));
+			Assert.fail("Failure not reported");
+		} catch (LogInsightHttpException e) {
+			Assert.assertEquals("Retried after a long Retry-After", 1, attempts.get());
+			Assert.assertEquals("Retry counted", 0, metrics.getRetries());
+		}
+	}
+
+	@Test
+	public void testShutdownFailsPendingRetries() throws Exception {
+		RetryExecutor executor = new RetryExecutor(new RetryBudget(0.1, 10), new ClientMetrics());
+		AtomicInteger attempts = new AtomicInteger();
+		CompletableFuture<String> future = executor.executeAsync(() -> {
+			attempts.incrementAndGet();
+			CompletableFuture<String> attempt = new CompletableFuture<String>();
+			attempt.completeExceptionally(new LogInsightHttpException("unavailable", 503, 10000));
+			return attempt;
+		}, new RetryPolicy(3, 10, 60000, new HashSet<Integer>(Arrays.asList(503))));
+		executor.shutdown();
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			Assert.fail("Failure not reported");
+		} catch (ExecutionException e) {
+			Assert.assertTrue("Wrong failure", e.getCause() instanceof LogInsightApiException);
+		}
+		Thread.sleep(50);
+		Assert.assertEquals("Retry sent after shutdown", 1, attempts.get());
+	}
+
+	@Test
+	public void testShutdownEndsBlockingRetryWait() throws Exception {
+		RetryExecutor executor = new RetryExecutor(new RetryBudget(0.1, 10), new ClientMetrics());
+		AtomicInteger attempts = new AtomicInteger();
+		CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> executor.execute(() -> {
+			attempts.incrementAndGet();
+			throw new LogInsightHttpException("unavailable", 503, 10000);
+		}, new RetryPolicy(3, 10, 60000, new HashSet<Integer>(Arrays.asList(503)))));
+		while (attempts.get() == 0) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(50);
+		executor.shutdown();
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			Assert.fail("Failure not reported");
+		} catch (ExecutionException e) {
+			Assert.assertEquals("Wrong failure", LogInsightApiException.class, e.getCause().getClass());
+		}
+		Assert.assertEquals("Retry sent after shutdown", 1, attempts.get());
+	}
+}
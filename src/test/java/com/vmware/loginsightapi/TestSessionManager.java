@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.core.AuthInfo;
+
+public class TestSessionManager {
+
+	private final AtomicInteger logins = new AtomicInteger();
+	private final List<CompletableFuture<AuthInfo>> pending = new ArrayList<CompletableFuture<AuthInfo>>();
+	private final ClientMetrics metrics = new ClientMetrics();
+	private SessionManager session;
+
+	private static AuthInfo authInfo(String sessionId, int ttl) {
+		AuthInfo authInfo = new AuthInfo();
+		authInfo.setSessionId(sessionId);
+		authInfo.setTtl(ttl);
+		return authInfo;
+	}
+
+	private SessionManager newSession(int ttl, long renewalMarginMs) {
+		session = new SessionManager(() -> authInfo("session-" + logins.incrementAndGet(), ttl), () -> {
+			CompletableFuture<AuthInfo> future = new CompletableFuture<AuthInfo>();
+			synchronized (pending) {
+				pending.add(future);
+			}
+			return future;
+		}, renewalMarginMs, metrics);
+		return session;
+	}
+
+	private void completeLogins() {
+		synchronized (pending) {
+			for (CompletableFuture<AuthInfo> future : pending) {
+				future.complete(authInfo("session-" + logins.incrementAndGet(), 1800));
+			}
+			pending.clear();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		if (session != null) {
+			session.close();
+		}
+	}
+
+	@Test
+	public void testLogin() {
+		newSession(1800, 60000);
+		Assert.assertNull(session.getSessionId());
+		Assert.assertEquals("session-1", session.login());
+		Assert.assertEquals("session-1", session.getSessionId());
+		Assert.assertEquals(1, metrics.getLogins());
+	}
+
+	@Test
+	public void testConcurrentReloginsShareOneLogin() throws Exception {
+		newSession(1800, 60000);
+		String expired = session.login();
+		List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>();
+		for (int i = 0; i < 5; i++) {
+			futures.add(session.reloginAsync(expired));
+		}
+		Assert.assertEquals("Only one login is sent", 1, pending.size());
+		completeLogins();
+		for (CompletableFuture<String> future : futures) {
+			Assert.assertEquals("session-2", future.get());
+		}
+		Assert.assertEquals("session-2", session.getSessionId());
+		Assert.assertEquals(2, metrics.getLogins());
+		Assert.assertEquals(5, metrics.getReauthentications());
+	}
+
+	@Test
+	public void testReplacedSessionNotLoggedInAgain() throws Exception {
+		newSession(1800, 60000);
+		String expired = session.login();
+		CompletableFuture<String> first = session.reloginAsync(expired);
+		completeLogins();
+		Assert.assertEquals("session-2", first.get());
+		// a request sent with the expired session fails after the login
+		Assert.assertEquals("session-2", session.reloginAsync(expired).get());
+		Assert.assertEquals("session-2", session.relogin(expired));
+		Assert.assertEquals(2, logins.get());
+	}
+
+	@Test
+	public void testFailedLogin() throws Exception {
+		newSession(1800, 60000);
+		String expired = session.login();
+		CompletableFuture<String> future = session.reloginAsync(expired);
+		pending.get(0).completeExceptionally(new AuthFailure("Connection to LogInsight failed"));
+		try {
+			future.get();
+			Assert.fail("Login failure is not reported");
+		} catch (ExecutionException e) {
+			Assert.assertTrue("Invalid exception " + e.getCause(), e.getCause() instanceof AuthFailure);
+		}
+		Assert.assertEquals("The expired session is kept", expired, session.getSessionId());
+	}
+
+	@Test
+	public void testRenewalBeforeExpiry() throws Exception {
+		newSession(1, 900);
+		session.login();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (pending.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		Assert.assertEquals("Session is not renewed", 1, pending.size());
+		completeLogins();
+		Assert.assertEquals("session-2", session.getSessionId());
+		Assert.assertEquals(1, metrics.getSessionRenewals());
+	}
+
+	@Test
+	public void testRenewalDisabled() throws Exception {
+		newSession(1, 0);
+		session.login();
+		Thread.sleep(700);
+		Assert.assertTrue("Session is renewed", pending.isEmpty());
+	}
+}
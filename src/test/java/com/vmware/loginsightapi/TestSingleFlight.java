@@ -0,0 +1,141 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.loginsightapi.util.SingleFlight;
+
+public class TestSingleFlight {
+
+	private AtomicInteger calls;
+	private AtomicInteger coalesced;
+	private SingleFlight<String, String> flights;
+
+	@Before
+	public void setUp() {
+		calls = new AtomicInteger();
+		coalesced = new AtomicInteger();
+		flights = new SingleFlight<String, String>(coalesced::incrementAndGet);
+	}
+
+	@Test
+	public void testConcurrentCallsShareResult() throws Exception {
+		CompletableFuture<String> source = new CompletableFuture<String>();
+		CompletableFuture<String> first = flights.execute("a", () -> {
+			calls.incrementAndGet();
+			return source;
+		});
+		CompletableFuture<String> second = flights.execute("a", () -> {
+			calls.incrementAndGet();
+			return new CompletableFuture<String>();
+		});
+		Assert.assertEquals("Identical call not coalesced", 1, calls.get());
+		Assert.assertEquals("Mismatch in coalesced calls", 1, coalesced.get());
+		source.complete("result");
+		Assert.assertEquals("Wrong result", "result", first.get());
+		Assert.assertSame("Result not shared", first.get(), second.get());
+		Assert.assertEquals("Completed call not removed", 0, flights.size());
+	}
+
+	@Test
+	public void testCallAfterCompletionNotCoalesced() throws Exception {
+		flights.execute("a", () -> {
+			calls.incrementAndGet();
+			return CompletableFuture.completedFuture("first");
+		});
+		CompletableFuture<String> second = flights.execute("a", () -> {
+			calls.incrementAndGet();
+			return CompletableFuture.completedFuture("second");
+		});
+		Assert.assertEquals("Completed call reused", "second", second.get());
+		Assert.assertEquals("Mismatch in calls", 2, calls.get());
+	}
+
+	@Test
+	public void testDifferentKeysNotCoalesced() {
+		flights.execute("a", () -> new CompletableFuture<String>());
+		flights.execute("b", () -> new CompletableFuture<String>());
+		Assert.assertEquals("Different calls coalesced", 0, coalesced.get());
+		Assert.assertEquals("Mismatch in calls in flight", 2, flights.size());
+	}
+
+	@Test
+	public void testFailureShared() throws Exception {
+		CompletableFuture<String> source = new CompletableFuture<String>();
+		CompletableFuture<String> first = flights.execute("a", () -> source);
+		CompletableFuture<String> second = flights.execute("a", () -> source);
+		source.completeExceptionally(new LogInsightApiException("Query failed"));
+		try {
+			second.get();
+			Assert.fail("Failure not shared");
+		} catch (ExecutionException e) {
+			Assert.assertTrue("Wrong failure", e.getCause() instanceof LogInsightApiException);
+		}
+		Assert.assertTrue("Failure not shared", first.isCompletedExceptionally());
+	}
+
+	@Test
+	public void testCancellation() throws Exception {
+		CompletableFuture<String> source = new CompletableFuture<String>();
+		CompletableFuture<String> first = flights.execute("a", () -> source);
+		CompletableFuture<String> second = flights.execute("a", () -> source);
+		first.cancel(true);
+		Assert.assertFalse("Call cancelled with a waiter left", source.isCancelled());
+		second.cancel(true);
+		Assert.assertTrue("Abandoned call not cancelled", source.isCancelled());
+		Assert.assertEquals("Abandoned call not removed", 0, flights.size());
+	}
+
+	@Test
+	public void testBlockingCallers() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> {
+			try {
+				return flights.executeBlocking("a", () -> {
+					calls.incrementAndGet();
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return "result";
+				});
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		started.await();
+		CompletableFuture<String> joined = flights.execute("a", () -> {
+			calls.incrementAndGet();
+			return new CompletableFuture<String>();
+		});
+		release.countDown();
+		Assert.assertEquals("Wrong result", "result", leader.get());
+		Assert.assertEquals("Blocking call not shared", "result", joined.get());
+		Assert.assertEquals("Identical call not coalesced", 1, calls.get());
+		try {
+			flights.executeBlocking("b", () -> {
+				throw new LogInsightApiException("Query failed");
+			});
+			Assert.fail("Failure not thrown");
+		} catch (LogInsightApiException e) {
+			Assert.assertEquals("Failed call not removed", 0, flights.size());
+		}
+	}
+}
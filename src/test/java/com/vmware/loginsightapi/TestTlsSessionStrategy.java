@@ -0,0 +1,64 @@
+/**
+ * Copyright 2016 VMware, Inc. All Rights Reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Some files may be comprised of various open source software components, each of which
+ * has its own license that is located in the source code of the respective component.
+ */
+package com.vmware.loginsightapi;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.net.ssl.SSLContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTlsSessionStrategy {
+
+	@Test
+	public void testSessionCacheConfigured() {
+		Configuration config = new Configuration();
+		config.setTlsSessionCacheSize(50);
+		config.setTlsSessionTimeoutS(600);
+		SSLContext context = TlsSessionStrategy.createSSLContext(config);
+		Assert.assertEquals(50, context.getClientSessionContext().getSessionCacheSize());
+		Assert.assertEquals(600, context.getClientSessionContext().getSessionTimeout());
+	}
+
+	@Test
+	public void testDefaultProtocolsSupported() {
+		Assert.assertNotNull(TlsSessionStrategy.create(new Configuration(), new ClientMetrics()));
+	}
+
+	@Test(expected = LogInsightApiException.class)
+	public void testUnsupportedProtocols() {
+		Configuration config = new Configuration();
+		config.setTlsProtocols(Arrays.asList("SSLv9"));
+		TlsSessionStrategy.create(config, null);
+	}
+
+	@Test(expected = LogInsightApiException.class)
+	public void testUnsupportedCipherSuites() {
+		Configuration config = new Configuration();
+		config.setTlsCipherSuites(Collections.singletonList("TLS_NO_SUCH_CIPHER"));
+		TlsSessionStrategy.create(config, null);
+	}
+
+	@Test(expected = LogInsightApiException.class)
+	public void testMissingTrustStore() {
+		Configuration config = new Configuration();
+		config.setTlsTrustStore("/no/such/truststore.jks");
+		TlsSessionStrategy.createSSLContext(config);
+	}
+
+	@Test
+	public void testTrustAllIgnoresTrustStore() {
+		Configuration config = new Configuration();
+		config.setTlsTrustAll(true);
+		config.setTlsTrustStore("/no/such/truststore.jks");
+		Assert.assertNotNull(TlsSessionStrategy.createSSLContext(config));
+	}
+}